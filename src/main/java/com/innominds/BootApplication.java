@@ -40,7 +40,7 @@ public class BootApplication extends SpringBootServletInitializer {
     }
 
     public static void main(String args[]) {
-        System.setProperty("spring.profiles.active", "dev");
+        System.setProperty("spring.profiles.active", System.getProperty("spring.profiles.active", "dev"));// e.g. -Dspring.profiles.active=dev,cluster
 
         LOGGER.info("Running Spring boot application with profile :  {}", System.getProperty("spring.profiles.active"));
 
@@ -0,0 +1,53 @@
+package com.innominds;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.Banner.Mode;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.innominds.config.CacheConfig;
+import com.innominds.config.HazelcastProperties;
+import com.innominds.security.token.HazelcastTokenStore;
+
+/**
+ * Member of the data grid for app nodes running with hazelcast.mode=client. holds the token map and the session index, no web server, no database.<br>
+ * Reads the same <code>hazelcast.*</code> keys as the app, run with -Dspring.profiles.active=cluster and scale it independently of the app nodes. not a
+ * component, so the component scan of {@link BootApplication} does not pick it up.
+ */
+@EnableConfigurationProperties(HazelcastProperties.class)
+public class HazelcastMemberApplication {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(HazelcastMemberApplication.class);
+
+    /**
+     * @param hazelcastProperties
+     *            topology and map settings
+     * @return cluster member which also keeps the session index of the tokens it owns
+     */
+    @Bean
+    public HazelcastInstance hazelcastMember(HazelcastProperties hazelcastProperties) {
+        LOGGER.info("Starting hazelcast member of group {} with members {}", hazelcastProperties.getGroupName(), hazelcastProperties.getMembers());
+        return member(hazelcastProperties);
+    }
+
+    /**
+     * @param hazelcastProperties
+     *            topology and map settings
+     * @return member configured like the embedded member of the app
+     */
+    public static HazelcastInstance member(HazelcastProperties hazelcastProperties) {
+        final HazelcastInstance member = Hazelcast.newHazelcastInstance(CacheConfig.hazelcastConfig(hazelcastProperties));
+        HazelcastTokenStore.unindexEvicted(member, CacheConfig.USER_TOKEN_MAP, CacheConfig.USER_SESSION_INDEX);
+        return member;
+    }
+
+    public static void main(String args[]) {
+        new SpringApplicationBuilder(HazelcastMemberApplication.class).web(false).bannerMode(Mode.OFF).run(args);
+    }
+
+}
@@ -1,17 +1,40 @@
 package com.innominds.config;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.client.config.ClientNetworkConfig;
 import com.hazelcast.config.Config;
 import com.hazelcast.config.GroupConfig;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MapStoreConfig;
+import com.hazelcast.config.MaxSizeConfig;
 import com.hazelcast.config.MulticastConfig;
 import com.hazelcast.config.NetworkConfig;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.instance.GroupProperties;
+import com.innominds.security.token.SessionMapStore;
+import com.innominds.security.token.SessionRecord;
+import com.innominds.security.token.TokenFilter;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenMapMetrics;
+import com.innominds.security.token.TokenNearCache;
+import com.innominds.security.token.serialization.TokenSerializers;
 
 /**
  *
@@ -19,29 +42,223 @@ import com.hazelcast.core.HazelcastInstance;
  *
  */
 @Configuration
+@EnableConfigurationProperties({ TokenProperties.class, HazelcastProperties.class })
 public class CacheConfig {
 
     /** Reference to logger */
     private static final Logger LOGGER = LoggerFactory.getLogger(CacheConfig.class);
 
+    /** cluster map holding authentication token against security context */
+    public static final String USER_TOKEN_MAP = "userTokenMap";
+
+    /** cluster multi map holding username against the tokens issued to the user */
+    public static final String USER_SESSION_INDEX = "userSessionIndex";
+
+    /** keys of the token map fetched per call while the token filter is seeded */
+    private static final int FILTER_SEED_PAGE_SIZE = 10_000;
+
+    /** present with token.persistence.enabled=true */
+    @Autowired(required = false)
+    private SessionMapStore sessionMapStore;
+
+    /**
+     * embedded cluster member, or with hazelcast.mode=client a client of the member tier. only started when tokens are kept in hazelcast
+     * (token.store=hazelcast, the default)
+     *
+     * @param hazelcastProperties
+     *            topology and map settings
+     * @param tokenProperties
+     *            token settings
+     * @return hazelcast instance
+     */
     @Bean
-    public HazelcastInstance hazelcastInstance() {
+    @ConditionalOnProperty(prefix = "token", name = "store", havingValue = "hazelcast", matchIfMissing = true)
+    public HazelcastInstance hazelcastInstance(HazelcastProperties hazelcastProperties, TokenProperties tokenProperties) {
+
+        if (hazelcastProperties.isClient()) {
+            if (sessionMapStore != null) {
+                throw new IllegalStateException("token.persistence needs the map store on the members, it can not be enabled with hazelcast.mode=client");
+            }
+            LOGGER.info("Connecting as hazelcast client to group {} at {}", hazelcastProperties.getGroupName(), hazelcastProperties.getMembers());
+            return HazelcastClient.newHazelcastClient(clientConfig(hazelcastProperties));
+        }
+
+        LOGGER.info("Creating hazelcast cluster node instance with groupName {} and members {}", hazelcastProperties.getGroupName(), hazelcastProperties
+                .getMembers());
+        final Config config = hazelcastConfig(hazelcastProperties);
+
+        if (sessionMapStore != null) {
+            config.getMapConfig(USER_TOKEN_MAP).setMapStoreConfig(mapStoreConfig(sessionMapStore, tokenProperties.getPersistence()));
+        }
+        return Hazelcast.newHazelcastInstance(config);
+    }
+
+    /**
+     * @param mapStore
+     *            map store implementation
+     * @param settings
+     *            persistence settings
+     * @return write-behind map store configuration without initial load
+     */
+    public static MapStoreConfig mapStoreConfig(Object mapStore, TokenProperties.Persistence settings) {
+        final MapStoreConfig mapStoreConfig = new MapStoreConfig();
+        mapStoreConfig.setEnabled(true);
+        mapStoreConfig.setImplementation(mapStore);
+        mapStoreConfig.setWriteDelaySeconds(settings.getWriteDelaySeconds());
+        mapStoreConfig.setWriteBatchSize(settings.getWriteBatchSize());
+        mapStoreConfig.setWriteCoalescing(settings.isWriteCoalescing());
+        mapStoreConfig.setInitialLoadMode(MapStoreConfig.InitialLoadMode.LAZY);
+        LOGGER.info("Map {} is persisted write-behind, delay {}s, batches of {}, coalescing {}", USER_TOKEN_MAP, settings.getWriteDelaySeconds(),
+                settings.getWriteBatchSize(), settings.isWriteCoalescing());
+        return mapStoreConfig;
+    }
+
+    /**
+     * @param hazelcastProperties
+     *            topology and map settings
+     * @return member configuration, TCP/IP join with multicast and AWS discovery disabled
+     */
+    public static Config hazelcastConfig(HazelcastProperties hazelcastProperties) {
 
         final Config config = new Config();
         final GroupConfig groupConfig = new GroupConfig();
-        groupConfig.setName("dev");
-        groupConfig.setPassword("dev");
+        groupConfig.setName(hazelcastProperties.getGroupName());
+        groupConfig.setPassword(hazelcastProperties.getGroupPassword());
         config.setGroupConfig(groupConfig);
-        LOGGER.info("Creating hazelcast cluster node instance with groupName {} ", groupConfig.getName());
+        config.setProperty(GroupProperties.PROP_PARTITION_COUNT, String.valueOf(hazelcastProperties.getPartitionCount()));
+
         final NetworkConfig networkConfig = config.getNetworkConfig();
+        networkConfig.setPort(hazelcastProperties.getPort());
+        networkConfig.setPortAutoIncrement(hazelcastProperties.isPortAutoIncrement());
+        networkConfig.setPortCount(hazelcastProperties.getPortCount());
         final MulticastConfig multicastConfig = new MulticastConfig();
         multicastConfig.setEnabled(false);
         networkConfig.getJoin().setMulticastConfig(multicastConfig);
         networkConfig.getJoin().getAwsConfig().setEnabled(false);
         networkConfig.getJoin().getTcpIpConfig().setEnabled(true);
+        networkConfig.getJoin().getTcpIpConfig().setMembers(hazelcastProperties.getMembers());
+
+        for (final Map.Entry<String, HazelcastProperties.MapSettings> entry : hazelcastProperties.getMaps().entrySet()) {
+            config.addMapConfig(mapConfig(entry.getKey(), entry.getValue()));
+        }
+
+        TokenSerializers.register(config.getSerializationConfig());
+        return config;
+    }
+
+    /**
+     * @param hazelcastProperties
+     *            group, member addresses and client settings
+     * @return client configuration with the serializers of the members
+     */
+    public static ClientConfig clientConfig(HazelcastProperties hazelcastProperties) {
 
-        final HazelcastInstance hazelcastInstance = Hazelcast.newHazelcastInstance(config);
-        return hazelcastInstance;
+        final ClientConfig clientConfig = new ClientConfig();
+        clientConfig.setGroupConfig(new GroupConfig(hazelcastProperties.getGroupName(), hazelcastProperties.getGroupPassword()));
+
+        final HazelcastProperties.Client settings = hazelcastProperties.getClient();
+        final ClientNetworkConfig networkConfig = clientConfig.getNetworkConfig();
+        networkConfig.setAddresses(hazelcastProperties.getMembers().isEmpty() ? Collections.singletonList("127.0.0.1:" + hazelcastProperties.getPort())
+                : new ArrayList<String>(hazelcastProperties.getMembers()));
+        networkConfig.setSmartRouting(settings.isSmartRouting());
+        networkConfig.setConnectionAttemptLimit(settings.getConnectionAttemptLimit());
+        networkConfig.setConnectionAttemptPeriod(settings.getConnectionAttemptPeriodMillis());
+        networkConfig.setConnectionTimeout(settings.getConnectionTimeoutMillis());
+        networkConfig.setRedoOperation(settings.isRedoOperation());
+
+        TokenSerializers.register(clientConfig.getSerializationConfig());
+        return clientConfig;
+    }
+
+    static MapConfig mapConfig(String name, HazelcastProperties.MapSettings settings) {
+        final MapConfig mapConfig = new MapConfig(name);
+        mapConfig.setBackupCount(settings.getBackupCount());
+        mapConfig.setAsyncBackupCount(settings.getAsyncBackupCount());
+        mapConfig.setReadBackupData(settings.isReadBackupData());
+        mapConfig.setInMemoryFormat(settings.getInMemoryFormat());
+        mapConfig.setEvictionPolicy(settings.getEvictionPolicy());
+        mapConfig.setMaxSizeConfig(new MaxSizeConfig(settings.getMaxSize(), settings.getMaxSizePolicy()));
+        mapConfig.setEvictionPercentage(settings.getEvictionPercentage());
+        mapConfig.setTimeToLiveSeconds(settings.getTimeToLiveSeconds());
+        mapConfig.setMaxIdleSeconds(settings.getMaxIdleSeconds());
+        LOGGER.info("Map {}: backups {} sync / {} async, readBackupData {}, format {}, eviction {} at {} {}, ttl {}s, max idle {}s", name, settings
+                .getBackupCount(), settings.getAsyncBackupCount(), settings.isReadBackupData(), settings.getInMemoryFormat(), settings.getEvictionPolicy(),
+                settings.getMaxSize(), settings.getMaxSizePolicy(), settings.getTimeToLiveSeconds(), settings.getMaxIdleSeconds());
+        return mapConfig;
+    }
+
+    /**
+     * node local cache in front of the token map. the entry listener keeps it in sync with the other members
+     *
+     * @param hazelcastInstance
+     *            cluster instance
+     * @param tokenProperties
+     *            token settings
+     * @return near cache
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "token", name = "store", havingValue = "hazelcast", matchIfMissing = true)
+    public TokenNearCache<TokenKey, SessionRecord> tokenNearCache(HazelcastInstance hazelcastInstance, TokenProperties tokenProperties) {
+
+        final TokenProperties.NearCache settings = tokenProperties.getNearCache();
+        final TokenNearCache<TokenKey, SessionRecord> tokenNearCache = new TokenNearCache<TokenKey, SessionRecord>(settings.isEnabled() ? settings
+                .getMaxSize() : 0, settings.getTtlSeconds());
+
+        final IMap<TokenKey, SessionRecord> tokenMap = hazelcastInstance.getMap(USER_TOKEN_MAP);
+        tokenMap.addEntryListener(tokenNearCache, false);
+        LOGGER.info("Near cache for {} enabled {} with maxSize {} and ttl {} seconds", USER_TOKEN_MAP, settings.isEnabled(), settings.getMaxSize(),
+                settings.getTtlSeconds());
+        return tokenNearCache;
+    }
+
+    /**
+     * filter of the live tokens of the cluster. registered as entry listener before it is seeded with the tokens already in the map, a token removed in
+     * between is at worst counted once too often, which only lets it through to the map. the keys are fetched in pages, members and clients alike: a
+     * member which just joined owns no partitions yet, its local keys would leave out every live token. with persistence the tokens of the table are counted as well,
+     * the map only holds those loaded since the cluster started
+     *
+     * @param hazelcastInstance
+     *            cluster instance
+     * @param tokenProperties
+     *            token settings
+     * @return filter
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "token", name = "store", havingValue = "hazelcast", matchIfMissing = true)
+    public TokenFilter tokenFilter(HazelcastInstance hazelcastInstance, TokenProperties tokenProperties) {
+
+        final TokenProperties.Filter settings = tokenProperties.getFilter();
+        final TokenFilter tokenFilter = new TokenFilter(settings.isEnabled(), settings.getExpectedTokens(), settings.getFalsePositiveRate(), settings
+                .getMissCacheSize(), settings.getMissTtlSeconds(), sessionMapStore == null, settings.getGraceSeconds());
+
+        if (tokenFilter.isEnabled()) {
+            final IMap<TokenKey, SessionRecord> tokenMap = hazelcastInstance.getMap(USER_TOKEN_MAP);
+            tokenMap.addEntryListener(tokenFilter, false);
+            int seeded = tokenFilter.seed(tokenMap, FILTER_SEED_PAGE_SIZE);
+            if (sessionMapStore != null) {
+                seeded += tokenFilter.addAll(sessionMapStore.loadLiveTokens());
+            }
+            LOGGER.info("Token filter for {} sized for {} tokens at false positive rate {}, seeded with {} tokens", USER_TOKEN_MAP, settings
+                    .getExpectedTokens(), settings.getFalsePositiveRate(), seeded);
+        }
+        return tokenFilter;
+    }
+
+    /**
+     * memory accounting of the token map on this member, published through the actuator metrics endpoint. clients hold no entries, the member tier
+     * accounts for them
+     *
+     * @param hazelcastInstance
+     *            cluster instance
+     * @return metrics
+     */
+    @Bean
+    @ConditionalOnExpression("'${token.store:hazelcast}' == 'hazelcast' and '${hazelcast.mode:member}' == 'member'")
+    public TokenMapMetrics<TokenKey, SessionRecord> tokenMapMetrics(HazelcastInstance hazelcastInstance) {
+        final IMap<TokenKey, SessionRecord> tokenMap = hazelcastInstance.getMap(USER_TOKEN_MAP);
+        final TokenMapMetrics<TokenKey, SessionRecord> tokenMapMetrics = new TokenMapMetrics<TokenKey, SessionRecord>(tokenMap, "token.map");
+        tokenMap.addLocalEntryListener(tokenMapMetrics);
+        return tokenMapMetrics;
     }
 
     @Bean
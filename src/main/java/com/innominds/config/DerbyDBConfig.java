@@ -91,6 +91,8 @@ public class DerbyDBConfig {
         properties.setProperty("hibernate.dialect", DerbyTenSevenDialect.class.getName());
         properties.setProperty("hibernate.show_sql", "false");
         properties.setProperty("hibernate.format_sql", "false");
+        properties.setProperty("hibernate.jdbc.batch_size", "50");// inserts of a write-behind batch go out together
+        properties.setProperty("hibernate.order_inserts", "true");
         properties.setProperty("hibernate.ejb.naming_strategy", DatabaseNamingStrategy.class.getName());// fully qualified name a string
         return properties;
     }
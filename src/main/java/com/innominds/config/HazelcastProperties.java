@@ -0,0 +1,312 @@
+package com.innominds.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.MaxSizeConfig.MaxSizePolicy;
+
+/**
+ * Externalized settings of the embedded hazelcast member. bound from the <code>hazelcast.*</code> keys of application.properties, see
+ * application-cluster.properties for a production preset and application-client.properties for app nodes connecting to a separate member tier
+ */
+@ConfigurationProperties(prefix = "hazelcast")
+public class HazelcastProperties {
+
+    /** member: every app node is a cluster member. client: app nodes connect to the members listed in members, see HazelcastMemberApplication */
+    private String mode = "member";
+
+    /** members only join a cluster of the same group */
+    private String groupName = "dev";
+
+    private String groupPassword = "dev";
+
+    /** addresses (host or host:port) of the other members. empty list: this node forms a cluster of its own */
+    private List<String> members = new ArrayList<String>();
+
+    /** first port this member tries to bind */
+    private int port = 5701;
+
+    /** try the next ports when the port is taken, e.g. by another member on the same host */
+    private boolean portAutoIncrement = true;
+
+    /** number of ports tried with port auto increment */
+    private int portCount = 100;
+
+    /** number of partitions, must be identical on all members. more partitions spread the data finer at some memory cost */
+    private int partitionCount = 271;
+
+    /** per map settings keyed by map name, e.g. hazelcast.maps.userTokenMap.backup-count. applied by members only */
+    private Map<String, MapSettings> maps = new LinkedHashMap<String, MapSettings>();
+
+    /** connection settings used with mode=client */
+    private Client client = new Client();
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public boolean isClient() {
+        return "client".equals(mode);
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public void setGroupName(String groupName) {
+        this.groupName = groupName;
+    }
+
+    public String getGroupPassword() {
+        return groupPassword;
+    }
+
+    public void setGroupPassword(String groupPassword) {
+        this.groupPassword = groupPassword;
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    public void setMembers(List<String> members) {
+        this.members = members;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public boolean isPortAutoIncrement() {
+        return portAutoIncrement;
+    }
+
+    public void setPortAutoIncrement(boolean portAutoIncrement) {
+        this.portAutoIncrement = portAutoIncrement;
+    }
+
+    public int getPortCount() {
+        return portCount;
+    }
+
+    public void setPortCount(int portCount) {
+        this.portCount = portCount;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public void setPartitionCount(int partitionCount) {
+        this.partitionCount = partitionCount;
+    }
+
+    public Map<String, MapSettings> getMaps() {
+        return maps;
+    }
+
+    public void setMaps(Map<String, MapSettings> maps) {
+        this.maps = maps;
+    }
+
+    public Client getClient() {
+        return client;
+    }
+
+    public void setClient(Client client) {
+        this.client = client;
+    }
+
+    /**
+     * Settings of an app node connecting as hazelcast client
+     */
+    public static class Client {
+
+        /** send each operation straight to the member owning the partition. false: every operation goes through one member */
+        private boolean smartRouting = true;
+
+        /** connection attempts to the member list before the client gives up, zero: try forever */
+        private int connectionAttemptLimit = 0;
+
+        private int connectionAttemptPeriodMillis = 3000;
+
+        /** milliseconds to establish a connection to a member */
+        private int connectionTimeoutMillis = 5000;
+
+        /** retry operations which failed on a lost connection, including non idempotent ones. token writes are idempotent */
+        private boolean redoOperation = true;
+
+        public boolean isSmartRouting() {
+            return smartRouting;
+        }
+
+        public void setSmartRouting(boolean smartRouting) {
+            this.smartRouting = smartRouting;
+        }
+
+        public int getConnectionAttemptLimit() {
+            return connectionAttemptLimit;
+        }
+
+        public void setConnectionAttemptLimit(int connectionAttemptLimit) {
+            this.connectionAttemptLimit = connectionAttemptLimit;
+        }
+
+        public int getConnectionAttemptPeriodMillis() {
+            return connectionAttemptPeriodMillis;
+        }
+
+        public void setConnectionAttemptPeriodMillis(int connectionAttemptPeriodMillis) {
+            this.connectionAttemptPeriodMillis = connectionAttemptPeriodMillis;
+        }
+
+        public int getConnectionTimeoutMillis() {
+            return connectionTimeoutMillis;
+        }
+
+        public void setConnectionTimeoutMillis(int connectionTimeoutMillis) {
+            this.connectionTimeoutMillis = connectionTimeoutMillis;
+        }
+
+        public boolean isRedoOperation() {
+            return redoOperation;
+        }
+
+        public void setRedoOperation(boolean redoOperation) {
+            this.redoOperation = redoOperation;
+        }
+
+    }
+
+    /**
+     * Settings of a single distributed map. the defaults are the hazelcast defaults
+     */
+    public static class MapSettings {
+
+        /** synchronous backups, a put returns once they are written */
+        private int backupCount = 1;
+
+        /** backups written in the background */
+        private int asyncBackupCount = 0;
+
+        /** serve reads from the local backup copy instead of asking the partition owner. may return stale values */
+        private boolean readBackupData = false;
+
+        /** BINARY keeps serialized values (cheap puts and replication), OBJECT keeps deserialized values (cheap entry processors and queries) */
+        private InMemoryFormat inMemoryFormat = InMemoryFormat.BINARY;
+
+        /** NONE, LRU, LFU or RANDOM */
+        private EvictionPolicy evictionPolicy = EvictionPolicy.NONE;
+
+        /** limit for eviction, interpreted according to maxSizePolicy */
+        private int maxSize = Integer.MAX_VALUE;
+
+        /** PER_NODE and PER_PARTITION count entries, USED_HEAP_SIZE is megabytes of heap taken by the map on this member */
+        private MaxSizePolicy maxSizePolicy = MaxSizePolicy.PER_NODE;
+
+        /** share of the entries evicted at once when the limit is reached */
+        private int evictionPercentage = 25;
+
+        /** lifetime of entries written without their own ttl, zero: forever */
+        private int timeToLiveSeconds = 0;
+
+        /** entries not read or written for this long expire, zero: never. reads served by the near cache do not count */
+        private int maxIdleSeconds = 0;
+
+        public int getBackupCount() {
+            return backupCount;
+        }
+
+        public void setBackupCount(int backupCount) {
+            this.backupCount = backupCount;
+        }
+
+        public int getAsyncBackupCount() {
+            return asyncBackupCount;
+        }
+
+        public void setAsyncBackupCount(int asyncBackupCount) {
+            this.asyncBackupCount = asyncBackupCount;
+        }
+
+        public boolean isReadBackupData() {
+            return readBackupData;
+        }
+
+        public void setReadBackupData(boolean readBackupData) {
+            this.readBackupData = readBackupData;
+        }
+
+        public InMemoryFormat getInMemoryFormat() {
+            return inMemoryFormat;
+        }
+
+        public void setInMemoryFormat(InMemoryFormat inMemoryFormat) {
+            this.inMemoryFormat = inMemoryFormat;
+        }
+
+        public EvictionPolicy getEvictionPolicy() {
+            return evictionPolicy;
+        }
+
+        public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+            this.evictionPolicy = evictionPolicy;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public MaxSizePolicy getMaxSizePolicy() {
+            return maxSizePolicy;
+        }
+
+        public void setMaxSizePolicy(MaxSizePolicy maxSizePolicy) {
+            this.maxSizePolicy = maxSizePolicy;
+        }
+
+        public int getEvictionPercentage() {
+            return evictionPercentage;
+        }
+
+        public void setEvictionPercentage(int evictionPercentage) {
+            this.evictionPercentage = evictionPercentage;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public int getMaxIdleSeconds() {
+            return maxIdleSeconds;
+        }
+
+        public void setMaxIdleSeconds(int maxIdleSeconds) {
+            this.maxIdleSeconds = maxIdleSeconds;
+        }
+
+    }
+
+}
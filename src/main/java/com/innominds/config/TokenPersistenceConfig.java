@@ -0,0 +1,33 @@
+package com.innominds.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.innominds.persistence.repository.UserTokenRepository;
+import com.innominds.security.token.SessionMapStore;
+
+/**
+ * Write-behind persistence of the hazelcast token map, enabled with <code>token.persistence.enabled=true</code>. kept apart from CacheConfig, which
+ * hands the map store to the hazelcast member it creates.<br>
+ * The entity manager factory depends on the hazelcast instance, so the repository and the transaction manager are injected as lazy proxies, resolved on
+ * the first write-behind batch or load.
+ */
+@Configuration
+public class TokenPersistenceConfig {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenPersistenceConfig.class);
+
+    @Bean
+    @ConditionalOnProperty(prefix = "token.persistence", name = "enabled", havingValue = "true")
+    public SessionMapStore sessionMapStore(@Lazy UserTokenRepository userTokenRepository, @Lazy PlatformTransactionManager transactionManager) {
+        LOGGER.info("Sessions of {} are persisted to the database", CacheConfig.USER_TOKEN_MAP);
+        return new SessionMapStore(userTokenRepository, transactionManager);
+    }
+
+}
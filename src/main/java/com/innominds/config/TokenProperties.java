@@ -0,0 +1,420 @@
+package com.innominds.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Externalized settings for the authentication token storage. bound from the <code>token.*</code> keys of application.properties
+ */
+@ConfigurationProperties(prefix = "token")
+public class TokenProperties {
+
+    /** where tokens are kept: hazelcast, memory, offheap or jpa. see TokenStoreConfig */
+    private String store = "hazelcast";
+
+    /** opaque: random token resolved through the token store. signed: self contained HMAC signed token verified locally */
+    private String mode = "opaque";
+
+    /** node local cache of resolved security contexts */
+    private final NearCache nearCache = new NearCache();
+
+    /** node local filter of the live tokens, rejects unknown tokens without asking the cluster */
+    private final Filter filter = new Filter();
+
+    /** write-behind persistence of the hazelcast token map */
+    private final Persistence persistence = new Persistence();
+
+    /** how long a request waits for the token store */
+    private final Lookup lookup = new Lookup();
+
+    /** lifetime of authenticated sessions */
+    private final Session session = new Session();
+
+    /** signed token settings, used with mode signed */
+    private final Signed signed = new Signed();
+
+    /** opaque token settings */
+    private final Generator generator = new Generator();
+
+    /** direct memory settings, used with store offheap */
+    private final OffHeap offHeap = new OffHeap();
+
+    public String getStore() {
+        return store;
+    }
+
+    public void setStore(String store) {
+        this.store = store;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public Persistence getPersistence() {
+        return persistence;
+    }
+
+    public Lookup getLookup() {
+        return lookup;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public Signed getSigned() {
+        return signed;
+    }
+
+    public Generator getGenerator() {
+        return generator;
+    }
+
+    public OffHeap getOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Settings of the per-node near cache which sits in front of the cluster token map
+     */
+    public static class NearCache {
+
+        /** when disabled every request goes to the cluster token map */
+        private boolean enabled = true;
+
+        /** maximum number of security contexts kept on this node */
+        private int maxSize = 10000;
+
+        /** how long a resolved security context may be served locally without asking the cluster */
+        private int ttlSeconds = 60;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(int ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+    }
+
+    /**
+     * Settings of the counting bloom filter and negative cache which answer lookups of unknown tokens locally
+     */
+    public static class Filter {
+
+        /** when disabled every token the near cache does not hold is looked up in the cluster token map */
+        private boolean enabled = true;
+
+        /** live tokens in the whole cluster the filter is sized for, half a byte per counter */
+        private int expectedTokens = 1000000;
+
+        /** share of unknown tokens let through to the cluster at expectedTokens live tokens */
+        private double falsePositiveRate = 0.01;
+
+        /** maximum number of tokens remembered as missing on this node */
+        private int missCacheSize = 10000;
+
+        /** how long a token the cluster did not know is rejected locally */
+        private int missTtlSeconds = 10;
+
+        /** how long after login a token the filter does not know yet is still looked up in the cluster, its added event may be on the way */
+        private int graceSeconds = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getExpectedTokens() {
+            return expectedTokens;
+        }
+
+        public void setExpectedTokens(int expectedTokens) {
+            this.expectedTokens = expectedTokens;
+        }
+
+        public double getFalsePositiveRate() {
+            return falsePositiveRate;
+        }
+
+        public void setFalsePositiveRate(double falsePositiveRate) {
+            this.falsePositiveRate = falsePositiveRate;
+        }
+
+        public int getMissCacheSize() {
+            return missCacheSize;
+        }
+
+        public void setMissCacheSize(int missCacheSize) {
+            this.missCacheSize = missCacheSize;
+        }
+
+        public int getMissTtlSeconds() {
+            return missTtlSeconds;
+        }
+
+        public void setMissTtlSeconds(int missTtlSeconds) {
+            this.missTtlSeconds = missTtlSeconds;
+        }
+
+        public int getGraceSeconds() {
+            return graceSeconds;
+        }
+
+        public void setGraceSeconds(int graceSeconds) {
+            this.graceSeconds = graceSeconds;
+        }
+
+    }
+
+    /**
+     * Settings of the map store which persists the sessions of the hazelcast token map to the DataSource
+     */
+    public static class Persistence {
+
+        /** when enabled sessions survive a restart of the whole cluster */
+        private boolean enabled = false;
+
+        /** how long a write is queued before it is stored, batching the writes of this interval */
+        private int writeDelaySeconds = 5;
+
+        /** maximum number of sessions stored in one transaction */
+        private int writeBatchSize = 500;
+
+        /** only the latest write of a token is stored when it was written several times within the delay */
+        private boolean writeCoalescing = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getWriteDelaySeconds() {
+            return writeDelaySeconds;
+        }
+
+        public void setWriteDelaySeconds(int writeDelaySeconds) {
+            this.writeDelaySeconds = writeDelaySeconds;
+        }
+
+        public int getWriteBatchSize() {
+            return writeBatchSize;
+        }
+
+        public void setWriteBatchSize(int writeBatchSize) {
+            this.writeBatchSize = writeBatchSize;
+        }
+
+        public boolean isWriteCoalescing() {
+            return writeCoalescing;
+        }
+
+        public void setWriteCoalescing(boolean writeCoalescing) {
+            this.writeCoalescing = writeCoalescing;
+        }
+
+    }
+
+    /**
+     * Settings of the latency budget of requests waiting for the token store
+     */
+    public static class Lookup {
+
+        /** how long a request may wait for the token store in total, milliseconds */
+        private long budgetMillis = 250;
+
+        /** fail: answer 503 when the budget is spent. near-cache: serve what the near cache of this node still holds, 503 if nothing */
+        private String onTimeout = "fail";
+
+        public long getBudgetMillis() {
+            return budgetMillis;
+        }
+
+        public void setBudgetMillis(long budgetMillis) {
+            this.budgetMillis = budgetMillis;
+        }
+
+        public String getOnTimeout() {
+            return onTimeout;
+        }
+
+        public void setOnTimeout(String onTimeout) {
+            this.onTimeout = onTimeout;
+        }
+
+    }
+
+    /**
+     * Settings of the session expiry
+     */
+    public static class Session {
+
+        /** idle time after which a token expires */
+        private int timeoutMinutes = 30;
+
+        /** when disabled every request writes the whole security context back with a fresh timeout */
+        private boolean slidingExpiration = true;
+
+        /** with sliding expiration an unchanged session is only touched once its remaining lifetime drops below this */
+        private int refreshThresholdMinutes = 25;
+
+        /** access decisions a session remembers per access control list epoch, 0 decides every request */
+        private int decisionMemoSize = 32;
+
+        /** most (method, url) pairs one permission check request may ask for */
+        private int permissionCheckMax = 100;
+
+        public int getTimeoutMinutes() {
+            return timeoutMinutes;
+        }
+
+        public void setTimeoutMinutes(int timeoutMinutes) {
+            this.timeoutMinutes = timeoutMinutes;
+        }
+
+        public boolean isSlidingExpiration() {
+            return slidingExpiration;
+        }
+
+        public void setSlidingExpiration(boolean slidingExpiration) {
+            this.slidingExpiration = slidingExpiration;
+        }
+
+        public int getRefreshThresholdMinutes() {
+            return refreshThresholdMinutes;
+        }
+
+        public void setRefreshThresholdMinutes(int refreshThresholdMinutes) {
+            this.refreshThresholdMinutes = refreshThresholdMinutes;
+        }
+
+        public int getDecisionMemoSize() {
+            return decisionMemoSize;
+        }
+
+        public void setDecisionMemoSize(int decisionMemoSize) {
+            this.decisionMemoSize = decisionMemoSize;
+        }
+
+        public int getPermissionCheckMax() {
+            return permissionCheckMax;
+        }
+
+        public void setPermissionCheckMax(int permissionCheckMax) {
+            this.permissionCheckMax = permissionCheckMax;
+        }
+
+    }
+
+    /**
+     * Settings of self contained signed tokens
+     */
+    public static class Signed {
+
+        /** base64 encoded HMAC key shared by all nodes. when empty the cluster agrees on a random key, a single node generates one per start */
+        private String key;
+
+        /** signed tokens can not slide, they expire this long after login */
+        private int validityMinutes = 60;
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public int getValidityMinutes() {
+            return validityMinutes;
+        }
+
+        public void setValidityMinutes(int validityMinutes) {
+            this.validityMinutes = validityMinutes;
+        }
+
+    }
+
+    /**
+     * Settings of the opaque token generator
+     */
+    public static class Generator {
+
+        /** tokens a thread generates before its random generator is reseeded */
+        private int reseedInterval = 100000;
+
+        public int getReseedInterval() {
+            return reseedInterval;
+        }
+
+        public void setReseedInterval(int reseedInterval) {
+            this.reseedInterval = reseedInterval;
+        }
+
+    }
+
+    /**
+     * Settings of the off-heap token store
+     */
+    public static class OffHeap {
+
+        /** direct memory is taken in slabs of this size, a power of two */
+        private int slabMegabytes = 16;
+
+        /** direct memory taken at most, logins fail once it is full of live sessions. keep it below -XX:MaxDirectMemorySize */
+        private int maxMegabytes = 256;
+
+        public int getSlabMegabytes() {
+            return slabMegabytes;
+        }
+
+        public void setSlabMegabytes(int slabMegabytes) {
+            this.slabMegabytes = slabMegabytes;
+        }
+
+        public int getMaxMegabytes() {
+            return maxMegabytes;
+        }
+
+        public void setMaxMegabytes(int maxMegabytes) {
+            this.maxMegabytes = maxMegabytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.innominds.config;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.innominds.security.token.HazelcastTokenStore;
+import com.innominds.security.token.InMemoryTokenStore;
+import com.innominds.security.token.JpaTokenStore;
+import com.innominds.security.token.LocalTokenDenylist;
+import com.innominds.security.token.LookupBudget;
+import com.innominds.security.token.ReplicatedTokenDenylist;
+import com.innominds.security.token.SessionMapStore;
+import com.innominds.security.token.SignedTokenService;
+import com.innominds.security.token.TokenDenylist;
+import com.innominds.security.token.TokenGenerator;
+import com.innominds.security.token.SessionRecord;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenFilter;
+import com.innominds.security.token.TokenNearCache;
+import com.innominds.security.token.TokenStore;
+import com.innominds.security.token.offheap.OffHeapTokenStore;
+
+/**
+ * Chooses where authentication tokens are kept. set <code>token.store</code> in the profile specific properties file:
+ * <ul>
+ * <li>hazelcast - cluster map shared by all nodes (default)</li>
+ * <li>memory - process local map for single node deployments, no cluster member is started</li>
+ * <li>offheap - process local, sessions kept in direct memory. for single node deployments with many idle sessions</li>
+ * <li>jpa - database table of the configured DataSource</li>
+ * </ul>
+ * With <code>token.mode=signed</code> login issues self contained signed tokens which are verified without the store, only revocations are shared.
+ */
+@Configuration
+public class TokenStoreConfig {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenStoreConfig.class);
+
+    /** replicated map of revoked signed token ids */
+    public static final String REVOKED_TOKENS = "revokedTokens";
+
+    /** cluster map through which members agree on a generated signing key */
+    private static final String SIGNING_KEY_MAP = "tokenSigningKey";
+
+    @Autowired(required = false)
+    private HazelcastInstance hazelcastInstance;
+
+    /** present with token.persistence.enabled=true */
+    @Autowired(required = false)
+    private SessionMapStore sessionMapStore;
+
+    @Bean
+    @ConditionalOnProperty(prefix = "token", name = "store", havingValue = "hazelcast", matchIfMissing = true)
+    public TokenStore hazelcastTokenStore(HazelcastInstance hazelcastInstance, TokenNearCache<TokenKey, SessionRecord> tokenNearCache,
+            TokenFilter tokenFilter) {
+        LOGGER.info("Authentication tokens are stored in hazelcast map {}", CacheConfig.USER_TOKEN_MAP);
+        final HazelcastTokenStore hazelcastTokenStore = new HazelcastTokenStore(hazelcastInstance, CacheConfig.USER_TOKEN_MAP,
+                CacheConfig.USER_SESSION_INDEX, tokenNearCache, tokenFilter);
+        hazelcastTokenStore.setSessionMapStore(sessionMapStore);
+        return hazelcastTokenStore;
+    }
+
+    /**
+     * @param tokenProperties
+     *            token settings
+     * @return latency budget of requests waiting for the token store, with any store
+     */
+    @Bean
+    public LookupBudget lookupBudget(TokenProperties tokenProperties) {
+        final TokenProperties.Lookup settings = tokenProperties.getLookup();
+        LOGGER.info("Requests wait at most {} ms for the token store, on timeout {}", settings.getBudgetMillis(), settings.getOnTimeout());
+        return new LookupBudget(settings.getBudgetMillis(), "near-cache".equals(settings.getOnTimeout()));
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "token", name = "store", havingValue = "memory")
+    public TokenStore inMemoryTokenStore() {
+        LOGGER.info("Authentication tokens are stored in process memory");
+        return new InMemoryTokenStore();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "token", name = "store", havingValue = "offheap")
+    public TokenStore offHeapTokenStore(TokenProperties tokenProperties) {
+        final TokenProperties.OffHeap settings = tokenProperties.getOffHeap();
+        LOGGER.info("Authentication tokens are stored off-heap in slabs of {} MB, {} MB at most", settings.getSlabMegabytes(), settings.getMaxMegabytes());
+        return new OffHeapTokenStore(settings.getSlabMegabytes(), settings.getMaxMegabytes());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "token", name = "store", havingValue = "jpa")
+    public TokenStore jpaTokenStore() {
+        LOGGER.info("Authentication tokens are stored in the database");
+        return new JpaTokenStore();
+    }
+
+    @Bean
+    public TokenGenerator tokenGenerator(TokenProperties tokenProperties) {
+        return new TokenGenerator(tokenProperties.getGenerator().getReseedInterval());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "token", name = "mode", havingValue = "signed")
+    public SignedTokenService signedTokenService(TokenProperties tokenProperties) {
+        final TokenDenylist tokenDenylist = hazelcastInstance == null ? new LocalTokenDenylist() : new ReplicatedTokenDenylist(hazelcastInstance,
+                REVOKED_TOKENS);
+        LOGGER.info("Issuing signed tokens valid for {} minutes", tokenProperties.getSigned().getValidityMinutes());
+        return new SignedTokenService(signingKey(tokenProperties), TimeUnit.MINUTES.toMillis(tokenProperties.getSigned().getValidityMinutes()),
+                tokenDenylist);
+    }
+
+    private byte[] signingKey(TokenProperties tokenProperties) {
+        final String configured = tokenProperties.getSigned().getKey();
+
+        if (configured != null && !configured.isEmpty()) {
+            return Base64.getDecoder().decode(configured);
+        }
+
+        final byte[] generated = new byte[32];
+        new SecureRandom().nextBytes(generated);
+
+        if (hazelcastInstance == null) {
+            LOGGER.warn("No token.signed.key configured, signed tokens do not survive a restart");
+            return generated;
+        }
+
+        LOGGER.warn("No token.signed.key configured, the key shared through map {} and every signed token are lost when the whole cluster restarts",
+                SIGNING_KEY_MAP);
+
+        final byte[] shared = hazelcastInstance.<String, byte[]> getMap(SIGNING_KEY_MAP).putIfAbsent("key", generated);// first member wins
+        return shared == null ? generated : shared;
+    }
+
+}
@@ -8,6 +8,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -15,6 +16,8 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.boot.context.embedded.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -32,7 +35,6 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.AuthenticationEntryPoint;
@@ -52,11 +54,28 @@ import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.security.web.session.SessionManagementFilter;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.web.filter.DelegatingFilterProxy;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hazelcast.core.HazelcastInstance;
+import com.innominds.security.acl.AclAttributes;
+import com.innominds.security.acl.AclChangeTopic;
+import com.innominds.security.acl.AclRegistry;
+import com.innominds.security.acl.AuthorityBits;
+import com.innominds.security.acl.DecisionMemoInterceptor;
+import com.innominds.security.acl.DecisionMemoMetrics;
+import com.innominds.security.acl.HandlerAclIndex;
 import com.innominds.security.auth.filter.JSONPayloadAuthenticationFilter;
 import com.innominds.security.auth.provider.JPAAuthenticationProvider;
+import com.innominds.security.token.LookupBudget;
+import com.innominds.security.token.SessionAuthentication;
+import com.innominds.security.token.TokenNearCache;
+import com.innominds.security.token.SignedTokenService;
+import com.innominds.security.token.TokenGenerator;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenStore;
+import com.innominds.security.token.TokenStoreUnavailableException;
 import com.innominds.web.service.AccessControlService;
 
 @EnableWebSecurity(debug = true)
@@ -66,6 +85,9 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     /** Reference to logger */
     private static final Logger LOGGER = LoggerFactory.getLogger(WebSecurityConfig.class);
 
+    /** name of the hazelcast version counter and topic of the access control list changes */
+    public static final String ACL_CHANGES = "aclChanges";
+
     @Bean()
     FilterRegistrationBean FilterRegistrationBean() {
         final FilterRegistrationBean filterRegistrationBean = new FilterRegistrationBean();
@@ -96,7 +118,8 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         listOfFilterChains.add(new DefaultSecurityFilterChain(new AntPathRequestMatcher("/api/webjars/**")));
         // no filters
         listOfFilterChains.add(new DefaultSecurityFilterChain(new AntPathRequestMatcher("/webjars/**")));// no filters
-        listOfFilterChains.add(new DefaultSecurityFilterChain(new AntPathRequestMatcher("/api/*"), securityContextPersistenceFilterWithASCFalse(),
+        listOfFilterChains.add(new DefaultSecurityFilterChain(new AntPathRequestMatcher("/api/*"), new TokenStoreUnavailableFilter(),
+                securityContextPersistenceFilterWithASCFalse(),
                 usernamePasswordAuthenticationFilter(), sessionManagementFilter(), exceptionTranslationFilter(), filterSecurityInterceptor()));
 
         final FilterChainProxy filterChainProxy = new FilterChainProxy(listOfFilterChains);
@@ -111,18 +134,41 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     }
 
     @Autowired
-    private HazelcastInstance hazelcastInstance;
+    private TokenStore tokenStore;
+
+    @Autowired(required = false)
+    private SignedTokenService signedTokenService;
+
+    @Autowired
+    private TokenGenerator tokenGenerator;
+
+    @Autowired
+    private TokenProperties tokenProperties;
 
     @Autowired
     private ObjectMapper jacksonObjectMapper;
 
+    @Autowired
+    private LookupBudget lookupBudget;
+
+    /** absent unless token.store=hazelcast, access control list changes then stay on the node */
+    @Autowired(required = false)
+    private HazelcastInstance hazelcastInstance;
+
+    @Autowired
+    private AclRegistry aclRegistry;
+
     public JSONPayloadAuthenticationFilter usernamePasswordAuthenticationFilter() throws Exception {
         // final UsernamePasswordAuthenticationFilter usernamePasswordAuthenticationFilter = new UsernamePasswordAuthenticationFilter();
         LOGGER.debug("Preparing JSONPayloadAuthenticationFilter  ");
         final JSONPayloadAuthenticationFilter usernamePasswordAuthenticationFilter = new JSONPayloadAuthenticationFilter();
         usernamePasswordAuthenticationFilter.setAuthenticationManager(authenticationManager());
         usernamePasswordAuthenticationFilter.setJacksonObjectMapper(jacksonObjectMapper);
-        usernamePasswordAuthenticationFilter.setHazelcastInstance(hazelcastInstance);
+        usernamePasswordAuthenticationFilter.setTokenStore(tokenStore);
+        usernamePasswordAuthenticationFilter.setSignedTokenService(signedTokenService);
+        usernamePasswordAuthenticationFilter.setTokenGenerator(tokenGenerator);
+        usernamePasswordAuthenticationFilter.setSessionTimeoutMinutes(tokenProperties.getSession().getTimeoutMinutes());
+        usernamePasswordAuthenticationFilter.setLookupBudget(lookupBudget);
         return usernamePasswordAuthenticationFilter;
     }
 
@@ -148,7 +194,8 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     }
 
     public FilterSecurityInterceptor filterSecurityInterceptor() throws Exception {
-        final FilterSecurityInterceptor filterSecurityInterceptor = new FilterSecurityInterceptor();
+        final FilterSecurityInterceptor filterSecurityInterceptor = new DecisionMemoInterceptor(aclRegistry, tokenProperties.getSession()
+                .getDecisionMemoSize(), decisionMemoMetrics());
         filterSecurityInterceptor.setAuthenticationManager(authenticationManager());
         filterSecurityInterceptor.setAccessDecisionManager(genericAccessDecisionManager());
         filterSecurityInterceptor.setSecurityMetadataSource(secureResouceMetadataSource());
@@ -170,6 +217,48 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         return new SecureResouceMetadataSource();// gives allowed roles
     }
 
+    /**
+     * in-memory access control list the metadata source reads, loaded from and kept in step with the endpoint table
+     *
+     * @param accessControlService
+     *            reads the endpoint rules
+     * @return registry of the current snapshot
+     */
+    @Bean
+    public AclRegistry aclRegistry(AccessControlService accessControlService) {
+        return new AclRegistry(accessControlService::getAclRules, aclChangeTopic());
+    }
+
+    /**
+     * binds the spring mvc handlers to the access control list once, with their @Secured authorities
+     *
+     * @param requestMappingHandlerMapping
+     *            handler mapping of the dispatcher servlet, not the one of the actuator endpoints
+     * @param serverProperties
+     *            gives the dispatcher servlet path the handler paths are relative to
+     * @return index of the handler authorities
+     */
+    @Bean
+    public HandlerAclIndex handlerAclIndex(@Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping requestMappingHandlerMapping,
+            ServerProperties serverProperties) {
+        return new HandlerAclIndex(requestMappingHandlerMapping, aclRegistry, serverProperties.getServletPrefix());
+    }
+
+    /**
+     * carries the access control list changes of every node to every node
+     *
+     * @return topic on hazelcast, publishing nothing without it
+     */
+    @Bean
+    public AclChangeTopic aclChangeTopic() {
+        return hazelcastInstance == null ? new AclChangeTopic() : new AclChangeTopic(hazelcastInstance, ACL_CHANGES);
+    }
+
+    @Bean
+    public DecisionMemoMetrics decisionMemoMetrics() {
+        return new DecisionMemoMetrics();
+    }
+
     @Override
     public void configure(WebSecurity web) throws Exception {
         web.debug(true);// This has no effect since we overridden the springSecurityFilterChain bean definition
@@ -193,7 +282,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public StatelessSecurityContextRepository statelessSecurityContextRepository() {
-        return new StatelessSecurityContextRepository();
+        return new StatelessSecurityContextRepository(tokenProperties);
     }
 
     @Bean
@@ -221,37 +310,180 @@ class StatelessSecurityContextRepository implements SecurityContextRepository {
     /** The logger. */
     private static final Logger LOGGER = LoggerFactory.getLogger(StatelessSecurityContextRepository.class);
 
+    /** request attribute holding the authentication handed out by loadContext, used to detect unchanged contexts */
+    static final String LOADED_AUTHENTICATION = StatelessSecurityContextRepository.class.getName() + ".LOADED_AUTHENTICATION";
+
+    /** request attribute holding the decoded opaque token, so load, save and contains decode the header once */
+    static final String TOKEN_KEY = StatelessSecurityContextRepository.class.getName() + ".TOKEN_KEY";
+
+    /** request attribute holding until when the request waits for the token store */
+    static final String LOOKUP_DEADLINE = StatelessSecurityContextRepository.class.getName() + ".LOOKUP_DEADLINE";
+
     @Autowired
-    private HazelcastInstance hazelcastInstance;
+    private TokenStore tokenStore;
+
+    @Autowired
+    private LookupBudget lookupBudget;
+
+    /** present with token.mode=signed */
+    @Autowired(required = false)
+    private SignedTokenService signedTokenService;
+
+    private final TokenProperties.Session session;
+
+    /** when this node last wrote or touched a token. unknown tokens are touched on their next request */
+    private final TokenNearCache<TokenKey, Long> refreshTimes;
+
+    StatelessSecurityContextRepository(TokenProperties tokenProperties) {
+        session = tokenProperties.getSession();
+        refreshTimes = new TokenNearCache<TokenKey, Long>(tokenProperties.getNearCache().getMaxSize(), (int) TimeUnit.MINUTES.toSeconds(session
+                .getTimeoutMinutes()));
+    }
 
     @Override
     public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
-        final String authToken = getToken(requestResponseHolder.getRequest());
+        final HttpServletRequest request = requestResponseHolder.getRequest();
+        final String authToken = getToken(request);
+
+        if (authToken != null && isSigned(authToken)) {
+            return loadSignedContext(request, authToken);
+        }
+
+        final TokenKey tokenKey = getTokenKey(request);
+        final SecurityContext securityContext = tokenKey == null ? null : lookup(request, tokenKey);
 
-        if (authToken == null || hazelcastInstance.getMap("userTokenMap").get(authToken) == null) {
+        if (securityContext == null || securityContext.getAuthentication() == null) {
             LOGGER.info("Returning empty securityContext");
             return SecurityContextHolder.createEmptyContext();
-        } else {
-            LOGGER.info("Returning valid securityContext");
-            return (SecurityContext) hazelcastInstance.getMap("userTokenMap").get(authToken);
         }
+
+        LOGGER.info("Returning valid securityContext");
+        // stored instance may be shared between requests, hand out a private copy
+        final SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(securityContext.getAuthentication());
+        request.setAttribute(LOADED_AUTHENTICATION, securityContext.getAuthentication());
+        return context;
+    }
+
+    /**
+     * asks the token store without blocking past the latency budget of the request. on timeout the budget serves the stale local copy of the store or
+     * fails the request
+     */
+    SecurityContext lookup(HttpServletRequest request, TokenKey tokenKey) {
+        Long deadline = (Long) request.getAttribute(LOOKUP_DEADLINE);
+
+        if (deadline == null) {
+            deadline = lookupBudget.deadline();
+            request.setAttribute(LOOKUP_DEADLINE, deadline);
+        }
+        return lookupBudget.await(tokenStore.getAsync(tokenKey), deadline, () -> tokenStore.getStale(tokenKey));
+    }
+
+    /**
+     * signed tokens carry their own authentication, nothing is looked up remotely
+     */
+    SecurityContext loadSignedContext(HttpServletRequest request, String authToken) {
+        final SecurityContext context = SecurityContextHolder.createEmptyContext();
+        final Authentication authentication = signedTokenService.verify(authToken);
+
+        if (authentication != null) {
+            context.setAuthentication(authentication);
+            request.setAttribute(LOADED_AUTHENTICATION, authentication);
+        }
+        return context;
+    }
+
+    boolean isSigned(String authToken) {
+        return signedTokenService != null && SignedTokenService.isSigned(authToken);
     }
 
     @Override
     public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
         final String authToken = getToken(request);
 
-        if (authToken != null) {
-            LOGGER.info("Saving authentication token in the cache {}  with securityContext {} ", authToken, context);
-            hazelcastInstance.getMap("userTokenMap").put(authToken, context, 30, TimeUnit.MINUTES);
+        if (authToken == null || context.getAuthentication() == null) {
+            return;// nothing was authenticated with this token, do not store it
+        }
+
+        if (isSigned(authToken)) {
+            return;// signed tokens are never stored and expire at the time they carry
+        }
+
+        final TokenKey tokenKey = getTokenKey(request);
+
+        if (tokenKey == null) {
+            return;// not a token this application issued
+        }
+
+        if (session.isSlidingExpiration() && context.getAuthentication() == request.getAttribute(LOADED_AUTHENTICATION)) {
+            refreshIfDue(tokenKey);
+            return;
+        }
+
+        LOGGER.info("Saving authentication token in the cache {}  with securityContext {} ", authToken, context);
+        // the response does not wait for the write, a failure is counted
+        tokenStore.putAsync(tokenKey, context, session.getTimeoutMinutes(), TimeUnit.MINUTES).whenComplete((stored, failure) -> {
+            if (failure != null) {
+                lookupBudget.writeFailed(failure);
+            }
+        });
+        refreshTimes.put(tokenKey, System.currentTimeMillis());
+        request.setAttribute(LOADED_AUTHENTICATION, context.getAuthentication());
+    }
+
+    /**
+     * touches an unchanged session once its remaining lifetime, as far as this node knows, dropped below the refresh threshold
+     *
+     * @param tokenKey
+     *            token
+     */
+    void refreshIfDue(TokenKey tokenKey) {
+        final long now = System.currentTimeMillis();
+        final Long refreshedAt = refreshTimes.peek(tokenKey);
+        final long remaining = refreshedAt == null ? 0 : refreshedAt + TimeUnit.MINUTES.toMillis(session.getTimeoutMinutes()) - now;
+
+        if (remaining > TimeUnit.MINUTES.toMillis(session.getRefreshThresholdMinutes())) {
+            return;
         }
+
+        LOGGER.debug("Refreshing expiry of authentication token {}", tokenKey);
+        tokenStore.touchAsync(tokenKey, session.getTimeoutMinutes(), TimeUnit.MINUTES).whenComplete((touched, failure) -> {
+            if (failure != null) {
+                lookupBudget.writeFailed(failure);
+            } else if (touched) {
+                refreshTimes.put(tokenKey, now);
+            }
+        });
     }
 
     @Override
     public boolean containsContext(HttpServletRequest request) {
+
+        if (request.getAttribute(LOADED_AUTHENTICATION) != null) {
+            return true;
+        }
+
         final String authToken = getToken(request);
 
-        return authToken != null && hazelcastInstance.getMap("userTokenMap").containsKey(authToken);
+        if (authToken != null && isSigned(authToken)) {
+            return signedTokenService.verify(authToken) != null;
+        }
+
+        final TokenKey tokenKey = getTokenKey(request);
+        return tokenKey != null && lookup(request, tokenKey) != null;
+    }
+
+    /**
+     * @return opaque token of the request decoded to its binary key, null when there is none or the token is not one this application issued
+     */
+    static TokenKey getTokenKey(HttpServletRequest request) {
+        TokenKey tokenKey = (TokenKey) request.getAttribute(TOKEN_KEY);
+
+        if (tokenKey == null) {
+            tokenKey = TokenKey.parse(getToken(request));
+            request.setAttribute(TOKEN_KEY, tokenKey);
+        }
+        return tokenKey;
     }
 
     static String getToken(HttpServletRequest request) {
@@ -271,6 +503,37 @@ class StatelessSecurityContextRepository implements SecurityContextRepository {
 
 }
 
+/**
+ * First filter of the secured chain. answers 503 when the token store did not answer within the latency budget of the request
+ */
+class TokenStoreUnavailableFilter extends OncePerRequestFilter {
+
+    /** The logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenStoreUnavailableFilter.class);
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException,
+            IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } catch (final TokenStoreUnavailableException e) {
+
+            if (response.isCommitted()) {
+                throw e;
+            }
+
+            LOGGER.warn("Token store unavailable for {}: {}", request.getRequestURI(), e.getMessage());
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            response.setContentType("application/json");
+            try (PrintWriter writer = response.getWriter()) {
+                writer.write("{\"status\":\"503\",\"msg\":\"" + e.getMessage() + "\"}");
+            }
+        }
+    }
+
+}
+
 class AuthorizationFailHandler implements AccessDeniedHandler {
 
     /**
@@ -345,14 +608,26 @@ class SecureResouceMetadataSource implements FilterInvocationSecurityMetadataSou
     @Autowired
     private AccessControlService accessControlService;
 
+    @Autowired
+    private HandlerAclIndex handlerAclIndex;
+
+    /**
+     * answered from the in-memory access control list by the handler the request is dispatched to, else by http method and url, no transaction and
+     * no query per request
+     */
     @Override
     public Collection<ConfigAttribute> getAttributes(final Object object) throws IllegalArgumentException {
         final FilterInvocation filterInvocation = (FilterInvocation) object;
+        final String method = filterInvocation.getRequest().getMethod();
         final String uri = filterInvocation.getRequestUrl();
-        LOGGER.info("Requested URI : {} ", uri);
-        return accessControlService.getAllRolesByURI(uri);
+        final Collection<ConfigAttribute> attributes = handlerAclIndex.getAttributes(filterInvocation.getHttpRequest(), uri);
+        LOGGER.debug("Requested {} URI : {} permitted roles : {}", method, uri, attributes);
+        return attributes;
     }
 
+    /**
+     * all the authorities of the database, read once when the security interceptor validates its configuration
+     */
     @Override
     public Collection<ConfigAttribute> getAllConfigAttributes() {
         return accessControlService.getAllRoles();
@@ -374,7 +649,9 @@ class GenericAccessDecisionManager implements AccessDecisionManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(AccessDecisionManager.class);
 
     /**
-     * Decide.
+     * Grants access when the authentication holds at least one of the authorities in the configuration attributes, one of every side of joined
+     * {@link AclAttributes}. both sides are compared as {@link AuthorityBits}: rules of the access control list and sessions carry theirs precompiled,
+     * other attributes and authentications are compiled here.
      *
      * @param authentication
      *            the authentication
@@ -391,20 +668,12 @@ class GenericAccessDecisionManager implements AccessDecisionManager {
     public void decide(final Authentication authentication, final Object object, final Collection<ConfigAttribute> configAttributes)
             throws AccessDeniedException, InsufficientAuthenticationException {
 
-        boolean allowAccess = false;
-
-        for (final GrantedAuthority grantedAuthority : authentication.getAuthorities()) {
-
-            for (final ConfigAttribute attribute : configAttributes) {
-                allowAccess = attribute.getAttribute().equals(grantedAuthority.getAuthority());
-                if (allowAccess) {
-                    break;// this loop
-                }
-            }
-
-        }
+        final AuthorityBits granted = authentication instanceof SessionAuthentication ? ((SessionAuthentication) authentication).getAuthorityBits()
+                : AuthorityBits.of(authentication.getAuthorities());
+        final boolean allowed = configAttributes instanceof AclAttributes ? ((AclAttributes) configAttributes).allows(granted) : granted.intersects(
+                AuthorityBits.ofAttributes(configAttributes));
 
-        if (!allowAccess) {
+        if (!allowed) {
             LOGGER.warn("Throwing access denied exception");
             throw new AccessDeniedException("Access is denied");
         }
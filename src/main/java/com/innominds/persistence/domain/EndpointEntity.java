@@ -11,13 +11,16 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
+import javax.persistence.Table;
 
 import org.hibernate.annotations.Type;
 
 @Entity
+@Table(indexes = { @Index(name = "idx_endpoint_method_url", columnList = "http_method, resource_url") })
 public class EndpointEntity implements Serializable {
 
     /** The Constant serialVersionUID. */
@@ -39,6 +42,10 @@ public class EndpointEntity implements Serializable {
     @Column(name = "resource_url", nullable = false)
     private String endpoint;
 
+    /** The http method, null for every method. */
+    @Column(name = "http_method", length = 10)
+    private String method;
+
     /** The regex. */
     @Column(name = "is_regex")
     @Type(type = "yes_no")
@@ -79,6 +86,20 @@ public class EndpointEntity implements Serializable {
         this.regex = regex;
     }
 
+    /**
+     * @return http method, null for every method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @param method
+     */
+    public void setMethod(final String method) {
+        this.method = method;
+    }
+
     /**
      * @return endpoint
      */
@@ -99,6 +120,7 @@ public class EndpointEntity implements Serializable {
         int result = 1;
         result = prime * result + (endpoint == null ? 0 : endpoint.hashCode());
         result = prime * result + (id == null ? 0 : id.hashCode());
+        result = prime * result + (method == null ? 0 : method.hashCode());
         result = prime * result + (regex == null ? 0 : regex.hashCode());
         return result;
     }
@@ -129,6 +151,13 @@ public class EndpointEntity implements Serializable {
         } else if (!id.equals(other.id)) {
             return false;
         }
+        if (method == null) {
+            if (other.method != null) {
+                return false;
+            }
+        } else if (!method.equals(other.method)) {
+            return false;
+        }
         if (regex == null) {
             if (other.regex != null) {
                 return false;
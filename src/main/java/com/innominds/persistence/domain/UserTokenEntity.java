@@ -0,0 +1,80 @@
+package com.innominds.persistence.domain;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+/**
+ * Authentication token with its serialized security context. used when tokens are kept in the database instead of the cluster map.
+ */
+@Entity
+@Table(indexes = { @Index(name = "idx_user_token_expires_at", columnList = "expires_at"), @Index(name = "idx_user_token_username", columnList = "username") })
+public class UserTokenEntity implements Serializable {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = -3318255496014471235L;
+
+    /** The token. */
+    @Id
+    @Column(name = "token", length = 64)
+    private String token;
+
+    /** The serialized security context. */
+    @Lob
+    @Column(name = "context", nullable = false)
+    private byte[] context;
+
+    /** user the token was issued to, indexed to find all sessions of a user */
+    @Column(name = "username")
+    private String username;
+
+    /** expiry as epoch milliseconds */
+    @Column(name = "expires_at", nullable = false)
+    private Long expiresAt;
+
+    public UserTokenEntity() {
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public byte[] getContext() {
+        return context;
+    }
+
+    public void setContext(byte[] context) {
+        this.context = context;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "UserTokenEntity [token=" + token + ", username=" + username + ", expiresAt=" + expiresAt + "]";
+    }
+
+}
@@ -1,11 +1,14 @@
 package com.innominds.persistence.repository;
 
 import java.io.Serializable;
+import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.innominds.persistence.domain.AuthorityEntity;
+import com.innominds.persistence.vo.Authority;
 
 /**
  * The Interface AuthorityRepository do the crud operations internally by property name.
@@ -21,4 +24,10 @@ public interface AuthorityRepository extends JpaRepository<AuthorityEntity, Seri
      * @return the authority entity
      */
     AuthorityEntity findByAuthority(String authority);
+
+    /**
+     * @return all the authorities, built by the query
+     */
+    @Query("SELECT new com.innominds.persistence.vo.Authority(a.id, a.authority, a.title) FROM AuthorityEntity a")
+    List<Authority> getAuthorities();
 }
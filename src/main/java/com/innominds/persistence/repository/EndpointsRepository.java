@@ -23,6 +23,33 @@ public interface EndpointsRepository extends JpaRepository<EndpointEntity, Seria
 
     EndpointEntity findByEndpoint(String endpoint);
 
+    /**
+     * the whole endpoint to authority graph in one statement: endpoint id, endpoint, regex, authority name per granted authority and http method,
+     * ordered by endpoint id. an endpoint without authorities has one row with a null authority
+     *
+     * @return rows of the access control list
+     */
+    @Query("SELECT e.id, e.endpoint, e.regex, a.authority, e.method FROM EndpointEntity e LEFT JOIN e.authorities a ORDER BY e.id")
+    List<Object[]> getAclRows();
+
+    /**
+     * looked up through the (method, url) index
+     *
+     * @param method
+     *            http method, null for the endpoints of every method only
+     * @param endpoint
+     *            request url
+     * @return the endpoints of the method and of every method in the order they were stored, with their authorities fetched in the same statement
+     */
+    @Query("SELECT DISTINCT e FROM EndpointEntity e LEFT JOIN FETCH e.authorities WHERE (e.method=?1 OR e.method IS NULL) AND e.endpoint=?2 ORDER BY e.id")
+    List<EndpointEntity> findByMethodAndEndpointWithAuthorities(String method, String endpoint);
+
+    /**
+     * @return regex endpoints in the order they were stored, with their authorities fetched in the same statement
+     */
+    @Query("SELECT DISTINCT e FROM EndpointEntity e LEFT JOIN FETCH e.authorities WHERE e.regex=true ORDER BY e.id")
+    List<EndpointEntity> getRegexActivitesWithAuthorities();
+
     @Modifying
     @Query("UPDATE EndpointEntity p SET p=?1 WHERE p.id=?2")
     void updateAuthorites(EndpointEntity endpointEntity, Long id);
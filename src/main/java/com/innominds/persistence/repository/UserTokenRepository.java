@@ -0,0 +1,44 @@
+package com.innominds.persistence.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import com.innominds.persistence.domain.UserTokenEntity;
+
+/**
+ */
+public interface UserTokenRepository extends JpaRepository<UserTokenEntity, String>, UserTokenRepositoryCustom {
+
+    @Query("FROM UserTokenEntity t WHERE t.token IN ?1 AND t.expiresAt > ?2")
+    List<UserTokenEntity> findLive(Collection<String> tokens, Long now);
+
+    @Query("SELECT COUNT(t) FROM UserTokenEntity t WHERE t.token=?1 AND t.expiresAt > ?2")
+    long countLive(String token, Long now);
+
+    @Modifying
+    @Query("UPDATE UserTokenEntity t SET t.expiresAt=?2 WHERE t.token=?1 AND t.expiresAt > ?3")
+    int touch(String token, Long expiresAt, Long now);
+
+    @Modifying
+    @Query("DELETE FROM UserTokenEntity t WHERE t.token IN ?1")
+    int deleteTokens(Collection<String> tokens);
+
+    @Query("SELECT t.token FROM UserTokenEntity t WHERE t.username=?1 AND t.expiresAt > ?2")
+    List<String> findTokensByUsername(String username, Long now);
+
+    @Query("SELECT t.token FROM UserTokenEntity t WHERE t.expiresAt > ?1")
+    List<String> findLiveTokens(Long now);
+
+    @Modifying
+    @Query("DELETE FROM UserTokenEntity t WHERE t.username=?1")
+    int deleteByUsername(String username);
+
+    @Modifying
+    @Query("DELETE FROM UserTokenEntity t WHERE t.expiresAt < ?1")
+    int deleteExpired(Long now);
+
+}
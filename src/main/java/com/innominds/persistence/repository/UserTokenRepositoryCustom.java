@@ -0,0 +1,21 @@
+package com.innominds.persistence.repository;
+
+import java.util.Collection;
+
+import com.innominds.persistence.domain.UserTokenEntity;
+
+/**
+ * Bulk operations of {@link UserTokenRepository} which the derived queries can not express, implemented by {@link UserTokenRepositoryHelper}
+ */
+public interface UserTokenRepositoryCustom {
+
+    /**
+     * Inserts or updates the tokens with one query for the existing rows, unlike save which selects every new row before inserting it. runs in the
+     * transaction of the caller.
+     *
+     * @param userTokenEntities
+     *            tokens with distinct ids
+     */
+    void saveBatch(Collection<UserTokenEntity> userTokenEntities);
+
+}
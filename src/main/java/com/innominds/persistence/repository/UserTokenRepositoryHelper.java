@@ -0,0 +1,55 @@
+package com.innominds.persistence.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import com.innominds.persistence.domain.UserTokenEntity;
+
+/**
+ * Implementation of {@link UserTokenRepositoryCustom}, picked up by the repository postfix configured with EnableJpaRepositories
+ */
+public class UserTokenRepositoryHelper implements UserTokenRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void saveBatch(Collection<UserTokenEntity> userTokenEntities) {
+
+        if (userTokenEntities.isEmpty()) {
+            return;
+        }
+
+        final List<String> tokens = new ArrayList<String>(userTokenEntities.size());
+        for (final UserTokenEntity userTokenEntity : userTokenEntities) {
+            tokens.add(userTokenEntity.getToken());
+        }
+
+        final Map<String, UserTokenEntity> existing = new HashMap<String, UserTokenEntity>();
+        for (final UserTokenEntity userTokenEntity : entityManager.createQuery("FROM UserTokenEntity t WHERE t.token IN :tokens", UserTokenEntity.class)
+                .setParameter("tokens", tokens).getResultList()) {
+            existing.put(userTokenEntity.getToken(), userTokenEntity);
+        }
+
+        for (final UserTokenEntity userTokenEntity : userTokenEntities) {
+            final UserTokenEntity managed = existing.get(userTokenEntity.getToken());
+
+            if (managed == null) {
+                entityManager.persist(userTokenEntity);
+            } else {
+                managed.setContext(userTokenEntity.getContext());
+                managed.setUsername(userTokenEntity.getUsername());
+                managed.setExpiresAt(userTokenEntity.getExpiresAt());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();// nothing of the batch is read again
+    }
+
+}
@@ -62,6 +62,23 @@ public class Authority implements Serializable, GrantedAuthority, ConfigAttribut
         this.title = title;
     }
 
+    /**
+     * Instantiates a stored authority, used by query projections.
+     *
+     * @param id
+     *            the primary key
+     * @param authority
+     *            the authority
+     * @param title
+     *            the title
+     */
+    public Authority(final Long id, final String authority, final String title) {
+
+        this.id = id;
+        this.authority = authority;
+        this.title = title;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -0,0 +1,71 @@
+package com.innominds.persistence.vo;
+
+import java.io.Serializable;
+
+/**
+ * One (method, url) pair of a permission check, answered with allowed
+ */
+public class PermissionCheck implements Serializable {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = -2318270458376604321L;
+    private String method;
+    private String uri;
+    private Boolean allowed;
+
+    public PermissionCheck() {
+
+    }
+
+    public PermissionCheck(String method, String uri) {
+        this.method = method;
+        this.uri = uri;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    /**
+     * @return url within the application, e.g. /api/user/42?fields=name
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    /**
+     * @return true when the session may call the url with the method, null until checked
+     */
+    public Boolean getAllowed() {
+        return allowed;
+    }
+
+    public void setAllowed(Boolean allowed) {
+        this.allowed = allowed;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("PermissionCheck [");
+        builder.append("method=");
+        builder.append(method);
+        builder.append(", uri=");
+        builder.append(uri);
+        builder.append(", allowed=");
+        builder.append(allowed);
+        builder.append("]");
+        return builder.toString();
+    }
+
+}
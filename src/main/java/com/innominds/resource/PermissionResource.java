@@ -0,0 +1,48 @@
+package com.innominds.resource;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.innominds.config.TokenProperties;
+import com.innominds.persistence.vo.PermissionCheck;
+import com.innominds.web.service.PermissionService;
+
+/**
+ * Answers which of the given (method, url) pairs the session of the x-auth-token may call, e.g. to show the entries of a menu, in one call instead
+ * of one request per entry
+ */
+@RestController
+public class PermissionResource {
+
+    @Autowired
+    private PermissionService permissionService;
+
+    @Autowired
+    private TokenProperties tokenProperties;
+
+    @RequestMapping(value = "/permissions", method = RequestMethod.POST)
+    public ResponseEntity<List<PermissionCheck>> permissions(@RequestBody List<PermissionCheck> checks, HttpServletRequest request,
+            HttpServletResponse response) {
+
+        if (checks == null || checks.contains(null)) {
+            return new ResponseEntity<List<PermissionCheck>>(HttpStatus.BAD_REQUEST);
+        }
+        if (checks.size() > tokenProperties.getSession().getPermissionCheckMax()) {
+            return new ResponseEntity<List<PermissionCheck>>(HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        return new ResponseEntity<List<PermissionCheck>>(permissionService.check(SecurityContextHolder.getContext().getAuthentication(), checks,
+                request, response), HttpStatus.OK);
+    }
+
+}
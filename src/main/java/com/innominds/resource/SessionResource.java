@@ -0,0 +1,33 @@
+package com.innominds.resource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.innominds.web.service.SessionService;
+
+/**
+ * Ends the session of the x-auth-token on every node
+ */
+@RestController
+public class SessionResource {
+
+    @Autowired
+    private SessionService sessionService;
+
+    @RequestMapping(value = "/logout", method = RequestMethod.POST)
+    public ResponseEntity<Void> logout(@RequestHeader("x-auth-token") String token) {
+
+        if (!sessionService.logout(token)) {
+            return new ResponseEntity<Void>(HttpStatus.BAD_REQUEST);
+        }
+        SecurityContextHolder.clearContext();// the context repository must not store the session again after this request
+        return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
+    }
+
+}
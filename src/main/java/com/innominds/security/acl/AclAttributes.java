@@ -0,0 +1,96 @@
+package com.innominds.security.acl;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.springframework.security.access.ConfigAttribute;
+
+import com.innominds.persistence.vo.Authority;
+
+/**
+ * Unmodifiable config attributes of an {@link AclRule}, handed to the security interceptor as they are. carries the authorities compiled to
+ * {@link AuthorityBits}, so the decision manager does not compile them per request.<br>
+ * Attributes joined with {@link #and(AclAttributes)} keep the bits of each side: one authority of every side is required, e.g. of the url rule and of
+ * the <code>@Secured</code> annotation of the handler.
+ */
+public final class AclAttributes extends AbstractList<ConfigAttribute> implements RandomAccess {
+
+    /** nothing required, the object is not secured */
+    public static final AclAttributes NONE = new AclAttributes(new ConfigAttribute[0], new AuthorityBits[0]);
+
+    private final ConfigAttribute[] attributes;
+
+    /** one authority of each is required */
+    private final AuthorityBits[] required;
+
+    private AclAttributes(ConfigAttribute[] attributes, AuthorityBits[] required) {
+        this.attributes = attributes;
+        this.required = required;
+    }
+
+    /**
+     * @param authorities
+     *            names of the authorities allowed, unknown (null) and repeated names are skipped
+     * @return the names as config attributes with their bits, one of them required
+     */
+    public static AclAttributes ofNames(Collection<String> authorities) {
+        final List<String> names = new ArrayList<String>(authorities.size());
+        final List<ConfigAttribute> configAttributes = new ArrayList<ConfigAttribute>(authorities.size());
+        for (final String authority : authorities) {
+            if (authority != null && !names.contains(authority)) {
+                names.add(authority);
+                configAttributes.add(new Authority(authority, authority));
+            }
+        }
+        return configAttributes.isEmpty() ? NONE : new AclAttributes(configAttributes.toArray(new ConfigAttribute[configAttributes.size()]),
+                new AuthorityBits[] { AuthorityBits.ofNames(names) });
+    }
+
+    /**
+     * @param other
+     *            attributes required as well
+     * @return attributes requiring one authority of these and one of the other, either side when the other one is empty
+     */
+    public AclAttributes and(AclAttributes other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        final ConfigAttribute[] joined = Arrays.copyOf(attributes, attributes.length + other.attributes.length);
+        System.arraycopy(other.attributes, 0, joined, attributes.length, other.attributes.length);
+        final AuthorityBits[] joinedRequired = Arrays.copyOf(required, required.length + other.required.length);
+        System.arraycopy(other.required, 0, joinedRequired, required.length, other.required.length);
+        return new AclAttributes(joined, joinedRequired);
+    }
+
+    /**
+     * @param granted
+     *            authorities of the authentication
+     * @return true when they hold one authority of every side required
+     */
+    public boolean allows(AuthorityBits granted) {
+        for (final AuthorityBits bits : required) {
+            if (!granted.intersects(bits)) {
+                return false;
+            }
+        }
+        return required.length > 0;
+    }
+
+    @Override
+    public ConfigAttribute get(int index) {
+        return attributes[index];
+    }
+
+    @Override
+    public int size() {
+        return attributes.length;
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.innominds.security.acl;
+
+import java.io.Serializable;
+
+/**
+ * A stored endpoint rule as published to the other nodes. versions are taken from a cluster wide counter after the transaction committed, every node
+ * applies the changes in version order
+ */
+public final class AclChange implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long version;
+
+    private final AclRule rule;
+
+    private final long publishedAt;
+
+    private final String origin;
+
+    /**
+     * @param version
+     *            cluster wide version of the access control list with this change
+     * @param rule
+     *            added or changed rule
+     * @param publishedAt
+     *            epoch milliseconds on the publishing node
+     * @param origin
+     *            uuid of the publishing node
+     */
+    public AclChange(long version, AclRule rule, long publishedAt, String origin) {
+        this.version = version;
+        this.rule = rule;
+        this.publishedAt = publishedAt;
+        this.origin = origin;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public AclRule getRule() {
+        return rule;
+    }
+
+    public long getPublishedAt() {
+        return publishedAt;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    @Override
+    public String toString() {
+        return "AclChange [version=" + version + ", rule=" + rule + ", origin=" + origin + "]";
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.innominds.security.acl;
+
+import java.util.function.Consumer;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IAtomicLong;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.Message;
+import com.hazelcast.topic.ReliableMessageListener;
+
+/**
+ * Publishes the changes of the access control list to every node as {@link AclChange}, numbered by a cluster wide counter. members use a reliable
+ * topic, kept in a ringbuffer, so a slow listener catches up instead of losing changes. hazelcast 3.5 clients have no reliable topic and use a plain
+ * one. a change lost either way shows as a gap in the versions, which {@link AclRegistry} closes with a reload.<br>
+ * Without hazelcast nothing is published, the access control list of the node is the only one.
+ */
+public class AclChangeTopic {
+
+    private final IAtomicLong versions;
+
+    private final ITopic<AclChange> topic;
+
+    private final String origin;
+
+    private volatile Consumer<AclChange> listener = change -> {
+    };
+
+    /**
+     * single node, nothing is published
+     */
+    public AclChangeTopic() {
+        versions = null;
+        topic = null;
+        origin = "local";
+    }
+
+    /**
+     * @param hazelcastInstance
+     *            cluster member or client
+     * @param name
+     *            name of the version counter and of the topic
+     */
+    public AclChangeTopic(HazelcastInstance hazelcastInstance, String name) {
+        versions = hazelcastInstance.getAtomicLong(name);
+        topic = hazelcastInstance.getLocalEndpoint() instanceof Member ? hazelcastInstance.<AclChange> getReliableTopic(name) : hazelcastInstance
+                .<AclChange> getTopic(name);
+        origin = hazelcastInstance.getLocalEndpoint().getUuid();
+        topic.addMessageListener(new ChangeListener());
+    }
+
+    /**
+     * @param listener
+     *            receives the changes of every node, this one included
+     */
+    public void setListener(Consumer<AclChange> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the last version handed out in the cluster, 0 for a single node. a change was committed before its version was taken
+     */
+    public long clusterVersion() {
+        return versions == null ? 0 : versions.get();
+    }
+
+    /**
+     * @param rule
+     *            rule stored and committed on this node
+     * @return version of the change, 0 for a single node
+     */
+    public long publish(AclRule rule) {
+        if (topic == null) {
+            return 0;
+        }
+        final long version = versions.incrementAndGet();
+        topic.publish(new AclChange(version, rule, System.currentTimeMillis(), origin));
+        return version;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * starts at the tail, the registry loads the state before. loss tolerant, the registry finds gaps by version
+     */
+    private final class ChangeListener implements ReliableMessageListener<AclChange> {
+
+        @Override
+        public void onMessage(Message<AclChange> message) {
+            listener.accept(message.getMessageObject());
+        }
+
+        @Override
+        public long retrieveInitialSequence() {
+            return -1;
+        }
+
+        @Override
+        public void storeSequence(long sequence) {
+        }
+
+        @Override
+        public boolean isLossTolerant() {
+            return true;
+        }
+
+        @Override
+        public boolean isTerminal(Throwable failure) {
+            return false;
+        }
+    }
+
+}
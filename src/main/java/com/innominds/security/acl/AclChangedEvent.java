@@ -0,0 +1,29 @@
+package com.innominds.security.acl;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by the access control service when an endpoint rule was stored, delivered to {@link AclRegistry} once the transaction committed
+ */
+public class AclChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final AclRule rule;
+
+    /**
+     * @param source
+     *            publishing service
+     * @param rule
+     *            stored rule
+     */
+    public AclChangedEvent(Object source, AclRule rule) {
+        super(source);
+        this.rule = rule;
+    }
+
+    public AclRule getRule() {
+        return rule;
+    }
+
+}
@@ -0,0 +1,240 @@
+package com.innominds.security.acl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Holds the current {@link AclSnapshot}. requests read it without locking and without touching the database, changes are applied copy-on-write: the
+ * changed copy is built aside and swapped in with a single volatile write.<br>
+ * The snapshot is loaded once all singletons exist, after the seed data was written. rules stored later arrive as {@link AclChangedEvent} after their
+ * transaction committed. writers are serialized, so an event racing the initial load is applied to the loaded snapshot, which at worst contains its
+ * rule already.<br>
+ * Every rule stored here is published through the {@link AclChangeTopic}, every node applies the published changes in version order, the changes
+ * which arrived together in one snapshot. a version still missing {@link #GAP_RELOAD_MILLIS} after the gap opened is read from the database with a
+ * full reload, whether further changes arrive or not. the lag between publishing and applying is measured with the wall clocks of both nodes.
+ */
+public class AclRegistry implements SmartInitializingSingleton, DisposableBean, PublicMetrics {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AclRegistry.class);
+
+    /** how long a missing version is waited for before the snapshot is reloaded */
+    static final long GAP_RELOAD_MILLIS = 5_000;
+
+    private final Supplier<List<AclRule>> loader;
+
+    private final AclChangeTopic aclChangeTopic;
+
+    private volatile AclSnapshot snapshot;
+
+    /** cluster version the snapshot contains */
+    private long clusterVersion;
+
+    /** changes waiting for an earlier version */
+    private final TreeMap<Long, AclChange> pending = new TreeMap<Long, AclChange>();
+
+    private long gapSince;
+
+    /** checks a gap once it had time to close */
+    private final ScheduledExecutorService gapCheck = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "acl-gap-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder swaps = new LongAdder();
+
+    private final LongAdder received = new LongAdder();
+
+    private final LongAdder gapReloads = new LongAdder();
+
+    private volatile long lastLagMillis;
+
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    /**
+     * @param loader
+     *            reads all the rules from the database, in the order they were stored
+     * @param aclChangeTopic
+     *            publishes the changes stored on this node and delivers those of every node
+     */
+    public AclRegistry(Supplier<List<AclRule>> loader, AclChangeTopic aclChangeTopic) {
+        this.loader = loader;
+        this.aclChangeTopic = aclChangeTopic;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        aclChangeTopic.setListener(this::onChange);
+        reload();
+    }
+
+    /**
+     * @return snapshot to evaluate a request against
+     */
+    public AclSnapshot current() {
+        final AclSnapshot current = snapshot;
+        return current != null ? current : reload();
+    }
+
+    /**
+     * replaces the snapshot with the rules in the database
+     *
+     * @return the new snapshot
+     */
+    public synchronized AclSnapshot reload() {
+        final long start = System.nanoTime();
+        final long version = snapshot == null ? 1 : snapshot.getVersion() + 1;
+        final long loadedClusterVersion = aclChangeTopic.clusterVersion();// before the rules: each version counted was committed before
+
+        final AclSnapshot loaded = new AclSnapshot(version, loader.get());
+        swap(loaded);
+        clusterVersion = Math.max(clusterVersion, loadedClusterVersion);
+        pending.headMap(clusterVersion, true).clear();
+        LOGGER.info("Loaded access control list version {} (cluster version {}) with {} endpoints in {} ms", version, clusterVersion, loaded.getRules()
+                .size(), (System.nanoTime() - start) / 1_000_000);
+        return loaded;
+    }
+
+    /**
+     * @param rule
+     *            added or changed rule
+     * @return the new snapshot
+     */
+    public AclSnapshot apply(AclRule rule) {
+        return apply(Collections.singletonList(rule));
+    }
+
+    /**
+     * @param rules
+     *            added or changed rules, in the order they were stored
+     * @return the new snapshot
+     */
+    public synchronized AclSnapshot apply(List<AclRule> rules) {
+        if (snapshot == null) {
+            return reload();// committed already, the load sees it
+        }
+        final AclSnapshot changed = snapshot.with(rules);
+        swap(changed);
+        LOGGER.debug("Access control list version {}: {}", changed.getVersion(), rules);
+        return changed;
+    }
+
+    /**
+     * applies a rule stored on this node at once and publishes it to the other nodes
+     */
+    @TransactionalEventListener
+    public void onAclChanged(AclChangedEvent event) {
+        apply(event.getRule());
+        aclChangeTopic.publish(event.getRule());
+    }
+
+    /**
+     * applies the changes in version order, the own ones again so that concurrent changes of one endpoint end the same on every node
+     *
+     * @param change
+     *            change published by any node
+     */
+    synchronized void onChange(AclChange change) {
+        final long now = System.currentTimeMillis();
+        final long lagMillis = now - change.getPublishedAt();
+        received.increment();
+        lastLagMillis = lagMillis;
+        maxLagMillis.accumulateAndGet(lagMillis, Math::max);
+        LOGGER.debug("Access control list change {} from {} arrived after {} ms", change.getVersion(), change.getOrigin(), lagMillis);
+
+        if (change.getVersion() <= clusterVersion) {
+            return;// contained in a reload already
+        }
+        pending.put(change.getVersion(), change);
+        applyPending(now);
+    }
+
+    /**
+     * applies the pending changes which follow the cluster version, opens a gap when changes are left
+     */
+    private void applyPending(long now) {
+        final List<AclRule> next = new ArrayList<AclRule>();
+        while (!pending.isEmpty() && pending.firstKey() == clusterVersion + 1) {
+            next.add(pending.pollFirstEntry().getValue().getRule());
+            clusterVersion++;
+        }
+        if (!next.isEmpty()) {
+            apply(next);
+        }
+
+        if (pending.isEmpty()) {
+            gapSince = 0;
+        } else if (gapSince == 0) {
+            gapSince = now;
+            final long openedAt = now;
+            gapCheck.schedule(() -> checkGap(openedAt), GAP_RELOAD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * reloads when the gap opened at the time is still open, it may have closed and another one opened since
+     */
+    synchronized void checkGap(long openedAt) {
+        if (gapSince != openedAt) {
+            return;
+        }
+        LOGGER.warn("Access control list change {} did not arrive within {} ms, reloading", clusterVersion + 1, GAP_RELOAD_MILLIS);
+        gapReloads.increment();
+        reload();
+        gapSince = 0;
+        applyPending(System.currentTimeMillis());// changes after a version the reload did not see yet wait for another gap check
+    }
+
+    /**
+     * @return cluster version the snapshot contains, 0 on a single node
+     */
+    public synchronized long getClusterVersion() {
+        return clusterVersion;
+    }
+
+    @Override
+    public void destroy() {
+        gapCheck.shutdownNow();
+    }
+
+    private void swap(AclSnapshot changed) {
+        snapshot = changed;
+        swaps.increment();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final AclSnapshot current = snapshot == null ? AclSnapshot.EMPTY : snapshot;
+        final Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>("acl.version", current.getVersion()));
+        metrics.add(new Metric<Integer>("acl.endpoints", current.getRules().size()));
+        metrics.add(new Metric<Integer>("acl.patterns", current.getPatternCount()));
+        metrics.add(new Metric<Integer>("acl.authorities", AuthorityBits.assigned()));
+        metrics.add(new Metric<Long>("acl.swaps", swaps.sum()));
+        metrics.add(new Metric<Long>("acl.cluster-version", getClusterVersion()));
+        metrics.add(new Metric<Long>("acl.propagation.received", received.sum()));
+        metrics.add(new Metric<Long>("acl.propagation.lag-millis", lastLagMillis));
+        metrics.add(new Metric<Long>("acl.propagation.max-lag-millis", maxLagMillis.get()));
+        metrics.add(new Metric<Long>("acl.propagation.gap-reloads", gapReloads.sum()));
+        return metrics;
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.innominds.security.acl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One endpoint of the access control list with the authorities allowed to call it, with one http method or with every method. immutable, shared by all
+ * the requests which match it
+ */
+public final class AclRule implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String method;
+
+    private final String endpoint;
+
+    private final boolean regex;
+
+    private final List<String> authorities;
+
+    private final transient AclAttributes attributes;
+
+    /**
+     * rule of every http method
+     *
+     * @param endpoint
+     *            request url, or with regex an ant style pattern, e.g. /api/user/**
+     * @param regex
+     *            true when the endpoint is a pattern matching many urls
+     * @param authorities
+     *            names of the authorities allowed, unknown (null) names are skipped
+     */
+    public AclRule(String endpoint, boolean regex, List<String> authorities) {
+        this(null, endpoint, regex, authorities);
+    }
+
+    /**
+     * @param method
+     *            http method, e.g. DELETE, null for every method
+     * @param endpoint
+     *            request url, or with regex an ant style pattern, e.g. /api/user/**
+     * @param regex
+     *            true when the endpoint is a pattern matching many urls
+     * @param authorities
+     *            names of the authorities allowed, unknown (null) names are skipped
+     */
+    public AclRule(String method, String endpoint, boolean regex, List<String> authorities) {
+        this.method = method == null ? null : method.toUpperCase(Locale.ENGLISH);
+        this.endpoint = endpoint;
+        this.regex = regex;
+
+        final List<String> names = new ArrayList<String>(authorities.size());
+        for (final String authority : authorities) {
+            if (authority != null && !names.contains(authority)) {
+                names.add(authority);
+            }
+        }
+        this.authorities = Collections.unmodifiableList(names);
+        attributes = AclAttributes.ofNames(names);
+    }
+
+    /**
+     * @return http method, null for every method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public boolean isRegex() {
+        return regex;
+    }
+
+    public List<String> getAuthorities() {
+        return authorities;
+    }
+
+    /**
+     * @return the authorities as config attributes of the security interceptor, with their bits
+     */
+    public AclAttributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * rebuilds the config attributes and the bits of this node after deserialization
+     */
+    private Object readResolve() {
+        return new AclRule(method, endpoint, regex, authorities);
+    }
+
+    @Override
+    public String toString() {
+        return "AclRule [method=" + method + ", endpoint=" + endpoint + ", regex=" + regex + ", authorities=" + authorities + "]";
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.innominds.security.acl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable access control list, compiled from the endpoint table. exact endpoints are looked up in a hash map, regex endpoints are ant style patterns
+ * compiled into a {@link PathPatternTrie}, the most specific pattern matching the path wins whatever order the rules were stored in. an exact endpoint
+ * beats every pattern, the query string is not part of the path.<br>
+ * Both index the rules of an endpoint by http method: the rule of the request method beats the rule of every method of the same endpoint, a pattern
+ * without either is passed over for the next less specific one. so the lookup costs one more hash probe per endpoint, however many method rules are
+ * stored.<br>
+ * A change produces a new snapshot through {@link #with(AclRule)}, readers keep the one they started with. the new snapshot shares everything but the
+ * changed endpoints with the old one, the rules are not compiled again.
+ */
+public final class AclSnapshot {
+
+    /** no endpoint is secured */
+    public static final AclSnapshot EMPTY = new AclSnapshot(0, Collections.<AclRule> emptyList());
+
+    private final long version;
+
+    private final List<AclRule> rules;
+
+    private final Map<String, MethodRules> exact;
+
+    private final PathPatternTrie<MethodRules> patterns;
+
+    /**
+     * @param version
+     *            increases with every change
+     * @param rules
+     *            rules in the order they were stored, a later rule of the same endpoint and method replaces an earlier one
+     */
+    public AclSnapshot(long version, Collection<AclRule> rules) {
+        this.version = version;
+
+        final Map<String, MethodRules> exactRules = new HashMap<String, MethodRules>();
+        final Map<String, MethodRules> patternRules = new LinkedHashMap<String, MethodRules>();
+        final Map<String, AclRule> all = new LinkedHashMap<String, AclRule>();// a replaced rule keeps its position
+        for (final AclRule rule : rules) {
+            (rule.isRegex() ? patternRules : exactRules).computeIfAbsent(rule.getEndpoint(), endpoint -> new MethodRules()).put(rule);
+            all.put(key(rule), rule);
+        }
+        this.rules = Collections.unmodifiableList(new ArrayList<AclRule>(all.values()));
+        exact = exactRules;
+        patterns = new PathPatternTrie<MethodRules>();
+        for (final Map.Entry<String, MethodRules> pattern : patternRules.entrySet()) {
+            patterns.put(pattern.getKey(), pattern.getValue());
+        }
+    }
+
+    private AclSnapshot(long version, List<AclRule> rules, Map<String, MethodRules> exact, PathPatternTrie<MethodRules> patterns) {
+        this.version = version;
+        this.rules = Collections.unmodifiableList(rules);
+        this.exact = exact;
+        this.patterns = patterns;
+    }
+
+    /**
+     * @param uri
+     *            request url
+     * @return authorities allowed to call the url with every method, empty when the url is not secured
+     */
+    public AclAttributes getAttributes(String uri) {
+        return getAttributes(null, uri);
+    }
+
+    /**
+     * @param method
+     *            http method of the request
+     * @param uri
+     *            request url
+     * @return authorities allowed to call the url with the method, empty when the url is not secured
+     */
+    public AclAttributes getAttributes(String method, String uri) {
+        final AclRule rule = match(method, uri);
+        return rule == null ? AclAttributes.NONE : rule.getAttributes();
+    }
+
+    /**
+     * @param uri
+     *            request url
+     * @return rule of every method of the endpoint, else of the most specific pattern matching the path, null when the url is not secured
+     */
+    public AclRule match(String uri) {
+        return match(null, uri);
+    }
+
+    /**
+     * @param method
+     *            http method of the request, null for the rules of every method only
+     * @param uri
+     *            request url
+     * @return rule of the endpoint for the method, else of the most specific pattern matching the path which has one, null when the url is not secured
+     */
+    public AclRule match(String method, String uri) {
+        final int query = uri.indexOf('?');
+        final String path = query < 0 ? uri : uri.substring(0, query);
+        final MethodRules endpoint = exact.get(path);
+        final AclRule rule = endpoint == null ? null : endpoint.get(method);
+
+        return rule != null ? rule : patterns.match(path, pattern -> pattern.get(method));
+    }
+
+    /**
+     * @param rule
+     *            added or changed rule
+     * @return copy of this snapshot with the rule, one version later
+     */
+    public AclSnapshot with(AclRule rule) {
+        return with(Collections.singletonList(rule));
+    }
+
+    /**
+     * @param changes
+     *            added or changed rules, in the order they were stored
+     * @return copy of this snapshot with the rules, one version later. only the method rules of the changed endpoints and the path to a changed pattern
+     *         are copied
+     */
+    public AclSnapshot with(List<AclRule> changes) {
+        final List<AclRule> changedRules = new ArrayList<AclRule>(rules.size() + changes.size());
+        changedRules.addAll(rules);
+        final Map<String, MethodRules> changedExact = new HashMap<String, MethodRules>(exact);
+        PathPatternTrie<MethodRules> changedPatterns = patterns;
+
+        for (final AclRule rule : changes) {
+            final MethodRules endpoint = rule.isRegex() ? changedPatterns.get(rule.getEndpoint()) : changedExact.get(rule.getEndpoint());
+            final AclRule replaced = endpoint == null ? null : endpoint.byMethod.get(rule.getMethod());
+            final MethodRules changed = endpoint == null ? new MethodRules() : endpoint.copy();
+            changed.put(rule);
+
+            if (rule.isRegex()) {
+                changedPatterns = changedPatterns.with(rule.getEndpoint(), changed);
+            } else {
+                changedExact.put(rule.getEndpoint(), changed);
+            }
+            replace(changedRules, replaced, rule);
+        }
+        return new AclSnapshot(version + 1, changedRules, changedExact, changedPatterns);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<AclRule> getRules() {
+        return rules;
+    }
+
+    public int getPatternCount() {
+        return patterns.size();
+    }
+
+    /**
+     * a replaced rule keeps its position, as on a full load
+     */
+    private static void replace(List<AclRule> rules, AclRule replaced, AclRule rule) {
+        if (replaced != null) {
+            for (int i = rules.size() - 1; i >= 0; i--) {
+                if (rules.get(i) == replaced) {
+                    rules.set(i, rule);
+                    return;
+                }
+            }
+        }
+        rules.add(rule);
+    }
+
+    private static String key(AclRule rule) {
+        return (rule.isRegex() ? "pattern " : "endpoint ") + rule.getMethod() + " " + rule.getEndpoint();
+    }
+
+    /**
+     * rules of one endpoint by http method, the rule of every method under null
+     */
+    static final class MethodRules {
+
+        private final Map<String, AclRule> byMethod = new HashMap<String, AclRule>(4);
+
+        MethodRules copy() {
+            final MethodRules copy = new MethodRules();
+            copy.byMethod.putAll(byMethod);
+            return copy;
+        }
+
+        void put(AclRule rule) {
+            byMethod.put(rule.getMethod(), rule);
+        }
+
+        AclRule get(String method) {
+            final AclRule rule = method == null ? null : byMethod.get(method);
+            return rule != null ? rule : byMethod.get(null);
+        }
+    }
+
+}
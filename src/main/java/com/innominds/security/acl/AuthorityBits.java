@@ -0,0 +1,128 @@
+package com.innominds.security.acl;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Immutable set of authorities as a bitset over dense authority ids. the rules of the access control list and the sessions each compile their
+ * authorities once, a decision is then one {@link #intersects(AuthorityBits)} over a few longs instead of comparing names pairwise.<br>
+ * Ids are assigned per node on first sight of a name and never reused, so bits built against an older snapshot stay valid. the ids only grow with the
+ * roles defined in the database and are not meant to leave the node.
+ */
+public final class AuthorityBits {
+
+    /** no authority */
+    public static final AuthorityBits NONE = new AuthorityBits(new long[0]);
+
+    private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final long[] words;
+
+    private AuthorityBits(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * @param authority
+     *            authority name, e.g. ROLE_USER
+     * @return dense id of the name, assigned on first call
+     */
+    public static int idOf(String authority) {
+        final Integer id = IDS.get(authority);
+        return id != null ? id : IDS.computeIfAbsent(authority, name -> NEXT_ID.getAndIncrement());
+    }
+
+    /**
+     * @return number of ids assigned on this node
+     */
+    public static int assigned() {
+        return NEXT_ID.get();
+    }
+
+    /**
+     * @param authorities
+     *            authority names, null names are skipped
+     * @return bits of the names
+     */
+    public static AuthorityBits ofNames(Collection<String> authorities) {
+        final BitSet bits = new BitSet();
+
+        for (final String authority : authorities) {
+            if (authority != null) {
+                bits.set(idOf(authority));
+            }
+        }
+        return of(bits);
+    }
+
+    /**
+     * @param grantedAuthorities
+     *            authorities of an authentication
+     * @return bits of their names
+     */
+    public static AuthorityBits of(Collection<? extends GrantedAuthority> grantedAuthorities) {
+        final BitSet bits = new BitSet();
+
+        for (final GrantedAuthority grantedAuthority : grantedAuthorities) {
+            if (grantedAuthority.getAuthority() != null) {
+                bits.set(idOf(grantedAuthority.getAuthority()));
+            }
+        }
+        return of(bits);
+    }
+
+    /**
+     * @param configAttributes
+     *            attributes of a secured object, attributes without a name are skipped
+     * @return bits of their names
+     */
+    public static AuthorityBits ofAttributes(Collection<ConfigAttribute> configAttributes) {
+        final BitSet bits = new BitSet();
+
+        for (final ConfigAttribute configAttribute : configAttributes) {
+            if (configAttribute.getAttribute() != null) {
+                bits.set(idOf(configAttribute.getAttribute()));
+            }
+        }
+        return of(bits);
+    }
+
+    private static AuthorityBits of(BitSet bits) {
+        return bits.isEmpty() ? NONE : new AuthorityBits(bits.toLongArray());
+    }
+
+    /**
+     * @param other
+     *            bits to compare with
+     * @return true when both hold at least one common authority
+     */
+    public boolean intersects(AuthorityBits other) {
+        final long[] otherWords = other.words;
+        final int length = Math.min(words.length, otherWords.length);
+
+        for (int i = 0; i < length; i++) {
+            if ((words[i] & otherWords[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthorityBits " + BitSet.valueOf(words);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.innominds.security.acl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Access decisions of one session, request key against allowed, valid for one version of the {@link AclSnapshot}. the least recently used key goes
+ * once the memo is full, all of them go when the version moves.
+ */
+public final class DecisionMemo {
+
+    private final Map<String, Boolean> decisions;
+
+    private long epoch = -1;
+
+    /**
+     * @param capacity
+     *            decisions kept
+     */
+    public DecisionMemo(final int capacity) {
+        decisions = new LinkedHashMap<String, Boolean>(capacity * 2, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param key
+     *            method and path of the request
+     * @param currentEpoch
+     *            epoch read before the lookup
+     * @return remembered decision, null when unknown in this epoch
+     */
+    public synchronized Boolean get(String key, long currentEpoch) {
+        return epoch == currentEpoch ? decisions.get(key) : null;
+    }
+
+    /**
+     * @param key
+     *            method and path of the request
+     * @param decidedEpoch
+     *            epoch read before the decision was taken, a decision of an older epoch than the remembered ones is dropped
+     * @param allowed
+     *            the decision
+     */
+    public synchronized void put(String key, long decidedEpoch, boolean allowed) {
+        if (decidedEpoch < epoch) {
+            return;
+        }
+        if (decidedEpoch > epoch) {
+            decisions.clear();
+            epoch = decidedEpoch;
+        }
+        decisions.put(key, allowed);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.innominds.security.acl;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.intercept.InterceptorStatusToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.access.intercept.FilterSecurityInterceptor;
+
+import com.innominds.security.token.SessionAuthentication;
+
+/**
+ * {@link FilterSecurityInterceptor} which remembers its decisions per session. a session asking again for the same method and path while the
+ * {@link AclSnapshot} of the node is the same version is answered from its {@link DecisionMemo}, without the metadata lookup and the access decision.
+ * denials are remembered as well. a change anywhere in the cluster replaces the snapshot on every node.<br>
+ * Only decisions on requests the {@link HandlerAclIndex} marked {@link HandlerAclIndex#RESOLVED_BY_PATH} are remembered: two handlers may share a
+ * path, told apart by parameters or headers, and the decision on one must not answer for the other. only sessions whose record the token store keeps
+ * across requests carry a memo, see {@link SessionAuthentication#getDecisionMemo(int)}. other authentications are decided on every request, without
+ * allocating a memo or counting a miss.
+ */
+public class DecisionMemoInterceptor extends FilterSecurityInterceptor {
+
+    /** request attribute the superclass marks a checked request with */
+    private static final String FILTER_APPLIED = "__spring_security_filterSecurityInterceptor_filterApplied";
+
+    private final AclRegistry aclRegistry;
+
+    private final int memoSize;
+
+    private final DecisionMemoMetrics decisionMemoMetrics;
+
+    /**
+     * @param aclRegistry
+     *            the version of its snapshot is the epoch decisions are remembered under
+     * @param memoSize
+     *            decisions a session remembers, 0 decides every request
+     * @param decisionMemoMetrics
+     *            counts hits and misses
+     */
+    public DecisionMemoInterceptor(AclRegistry aclRegistry, int memoSize, DecisionMemoMetrics decisionMemoMetrics) {
+        this.aclRegistry = aclRegistry;
+        this.memoSize = memoSize;
+        this.decisionMemoMetrics = decisionMemoMetrics;
+    }
+
+    @Override
+    public void invoke(FilterInvocation fi) throws IOException, ServletException {
+        final HttpServletRequest request = fi.getRequest();
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        final DecisionMemo decisionMemo = memoSize > 0 && authentication instanceof SessionAuthentication ? ((SessionAuthentication) authentication)
+                .getDecisionMemo(memoSize) : null;
+
+        if (decisionMemo == null || isObserveOncePerRequest() && request.getAttribute(FILTER_APPLIED) != null) {
+            super.invoke(fi);
+            return;
+        }
+
+        if (isObserveOncePerRequest()) {
+            request.setAttribute(FILTER_APPLIED, Boolean.TRUE);
+        }
+
+        final String key = key(request.getMethod(), fi.getRequestUrl());
+        final long epoch = aclRegistry.current().getVersion();// before the decision, a change meanwhile discards it
+        final Boolean allowed = decisionMemo.get(key, epoch);
+
+        if (allowed != null) {
+            decisionMemoMetrics.hit();
+            if (!allowed) {
+                throw new AccessDeniedException("Access is denied");
+            }
+            fi.getChain().doFilter(request, fi.getResponse());
+            return;
+        }
+
+        decisionMemoMetrics.miss();
+        final InterceptorStatusToken token;
+        try {
+            token = beforeInvocation(fi);
+        } catch (final AccessDeniedException e) {
+            if (request.getAttribute(HandlerAclIndex.RESOLVED_BY_PATH) != null) {
+                decisionMemo.put(key, epoch, false);
+            }
+            throw e;
+        }
+        if (request.getAttribute(HandlerAclIndex.RESOLVED_BY_PATH) != null) {
+            decisionMemo.put(key, epoch, true);
+        }
+
+        try {
+            fi.getChain().doFilter(request, fi.getResponse());
+        } finally {
+            finallyInvocation(token);
+        }
+        afterInvocation(token, null);
+    }
+
+    /**
+     * method and path, the query string does not take part in the decision
+     */
+    static String key(String method, String requestUrl) {
+        final int query = requestUrl.indexOf('?');
+        return method + ' ' + (query < 0 ? requestUrl : requestUrl.substring(0, query));
+    }
+
+}
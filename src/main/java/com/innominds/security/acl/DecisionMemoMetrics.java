@@ -0,0 +1,39 @@
+package com.innominds.security.acl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Hits and misses of the {@link DecisionMemo}s of all sessions, published through the actuator metrics endpoint
+ */
+public class DecisionMemoMetrics implements PublicMetrics {
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final long hitCount = hits.sum();
+        final long missCount = misses.sum();
+
+        final Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>("acl.memo.hits", hitCount));
+        metrics.add(new Metric<Long>("acl.memo.misses", missCount));
+        metrics.add(new Metric<Double>("acl.memo.hit-rate", hitCount + missCount == 0 ? 0 : hitCount / (double) (hitCount + missCount)));
+        return metrics;
+    }
+
+}
@@ -0,0 +1,365 @@
+package com.innominds.security.acl;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+/**
+ * Authorizes requests by the spring mvc handler they are dispatched to instead of by their url. the handlers are read from the
+ * {@link RequestMappingHandlerMapping} once, each with the authorities of its <code>@Secured</code> annotation, on the method or else on the class,
+ * which are required on top of the url rule.<br>
+ * A handler mapped to literal paths only is bound to the {@link AclSnapshot} per http method it accepts: the rule its urls resolve to joined with
+ * <code>@Secured</code>. a request to one of these urls is then one hash lookup and one array read, without asking the handler mapping. a handler with
+ * templated paths, e.g. /user/{id}, or whose paths resolve to different rules, is matched by url, with its <code>@Secured</code> joined.<br>
+ * Every other request is routed in a {@link PathPatternTrie} of all the handler paths, with their suffix pattern, per http method. it matches every
+ * path the handler mapping matches and more, so a path only one handler takes is dispatched to it, and a path no handler takes to none. only when
+ * several handlers take the path, e.g. by parameters or by a pattern the trie ranks other than the handler mapping, the handler mapping is asked.
+ * requests resolved without it are marked with {@link #RESOLVED_BY_PATH}, their handler follows from their method and path.<br>
+ * The bindings are rebuilt when the snapshot version moves, the routes are built once.
+ */
+public class HandlerAclIndex implements SmartInitializingSingleton, PublicMetrics {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(HandlerAclIndex.class);
+
+    private static final RequestMethod[] METHODS = RequestMethod.values();
+
+    private static final Map<String, Integer> METHOD_INDEX = new HashMap<String, Integer>();
+
+    /** request attribute marking a request whose handler follows from its http method and path alone */
+    public static final String RESOLVED_BY_PATH = HandlerAclIndex.class.getName() + ".resolvedByPath";
+
+    /** stands for several handlers taking a path */
+    private static final Handler AMBIGUOUS = new Handler(null);
+
+    static {
+        for (final RequestMethod requestMethod : METHODS) {
+            METHOD_INDEX.put(requestMethod.name(), requestMethod.ordinal());
+        }
+    }
+
+    private final RequestMappingHandlerMapping handlerMapping;
+
+    private final AclRegistry aclRegistry;
+
+    private final String servletPrefix;
+
+    /** every handler, read once */
+    private volatile Map<Method, Handler> handlers;
+
+    /** the handlers by their paths, built with them */
+    private volatile PathPatternTrie<Route> routes;
+
+    private volatile Bindings bindings;
+
+    /**
+     * @param handlerMapping
+     *            mapping of the dispatcher servlet
+     * @param aclRegistry
+     *            access control list the urls are resolved against
+     * @param servletPrefix
+     *            path of the dispatcher servlet, e.g. /api, the handler paths are relative to it
+     */
+    public HandlerAclIndex(RequestMappingHandlerMapping handlerMapping, AclRegistry aclRegistry, String servletPrefix) {
+        this.handlerMapping = handlerMapping;
+        this.aclRegistry = aclRegistry;
+        this.servletPrefix = servletPrefix;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        bindings(aclRegistry.current());
+    }
+
+    /**
+     * @param request
+     *            the request
+     * @param uri
+     *            request url within the context, used when the request is not bound to a handler
+     * @return authorities allowed to call the handler the request is dispatched to, empty when it is not secured
+     */
+    public AclAttributes getAttributes(HttpServletRequest request, String uri) {
+        final AclSnapshot snapshot = aclRegistry.current();
+        final Bindings current = bindings(snapshot);
+        final Integer methodIndex = METHOD_INDEX.get(request.getMethod());
+
+        final int query = uri.indexOf('?');
+        final String path = query < 0 ? uri : uri.substring(0, query);
+        final boolean dispatched = methodIndex != null && servletPrefix.equals(request.getServletPath());// by the dispatcher servlet
+
+        final AclAttributes[] byUrl = dispatched ? current.byUrl.get(path) : null;
+        if (byUrl != null && byUrl[methodIndex] != null) {
+            request.setAttribute(RESOLVED_BY_PATH, Boolean.TRUE);
+            return byUrl[methodIndex];// the literal path of a handler, the dispatcher servlet matches it directly
+        }
+
+        Handler handler = dispatched ? route(path, methodIndex) : AMBIGUOUS;
+        if (handler != AMBIGUOUS) {
+            request.setAttribute(RESOLVED_BY_PATH, Boolean.TRUE);
+        } else {
+            final Method method = handlerMethod(request);
+            handler = method == null ? null : handlers.get(method);
+        }
+        if (handler == null) {
+            return snapshot.getAttributes(request.getMethod(), uri);
+        }
+
+        final AclAttributes[] bound = dispatched ? current.bound.get(handler.method) : null;
+        if (bound != null && bound[methodIndex] != null) {
+            return bound[methodIndex];
+        }
+        return snapshot.getAttributes(request.getMethod(), uri).and(handler.secured);
+    }
+
+    /**
+     * @return the one handler taking the path with the method, null when none does, {@link #AMBIGUOUS} when several do
+     */
+    private Handler route(String path, int methodIndex) {
+        final Handler[] found = new Handler[1];
+        final Handler other = routes.match(path, route -> {// walks every matching pattern until a second handler turns up
+            final Handler handler = route.handlers[methodIndex];
+            if (handler == null || handler == found[0]) {
+                return null;
+            }
+            if (found[0] != null) {
+                return AMBIGUOUS;
+            }
+            found[0] = handler;
+            return null;
+        });
+        return other != null ? other : found[0];
+    }
+
+    /**
+     * @return the handler method the dispatcher servlet would invoke, null when it is no handler method or none is found
+     */
+    private Method handlerMethod(HttpServletRequest request) {
+        try {
+            final HandlerExecutionChain chain = handlerMapping.getHandler(request);
+            return chain != null && chain.getHandler() instanceof HandlerMethod ? ((HandlerMethod) chain.getHandler()).getMethod() : null;
+        } catch (final Exception e) {// e.g. the method is not supported, the dispatcher servlet answers that
+            LOGGER.debug("No handler for {} {}: {}", request.getMethod(), request.getRequestURI(), e.toString());
+            return null;
+        }
+    }
+
+    private Bindings bindings(AclSnapshot snapshot) {
+        final Bindings current = bindings;
+        return current != null && current.version == snapshot.getVersion() ? current : bind(snapshot);
+    }
+
+    private synchronized Bindings bind(AclSnapshot snapshot) {
+        if (bindings != null && bindings.version == snapshot.getVersion()) {
+            return bindings;
+        }
+        if (handlers == null) {
+            final PathPatternTrie<Route> read = new PathPatternTrie<Route>();
+            handlers = readHandlers(read);
+            routes = read;
+        }
+
+        final Map<Method, AclAttributes[]> bound = new HashMap<Method, AclAttributes[]>();
+        final Map<String, AclAttributes[]> byUrl = new HashMap<String, AclAttributes[]>();
+        final Set<String> ambiguous = new HashSet<String>();
+        for (final Map.Entry<Method, Handler> entry : handlers.entrySet()) {
+            final AclAttributes[] attributes = entry.getValue().bind(snapshot);
+            if (attributes == null) {
+                continue;
+            }
+            bound.put(entry.getKey(), attributes);
+
+            for (final String url : entry.getValue().urls) {
+                final AclAttributes[] merged = byUrl.computeIfAbsent(url, key -> new AclAttributes[METHODS.length]);
+                for (int i = 0; i < METHODS.length; i++) {
+                    if (merged[i] == null) {
+                        merged[i] = attributes[i];
+                    } else if (attributes[i] != null) {
+                        ambiguous.add(url);// two handlers take the method, e.g. by parameters, only the dispatcher servlet can tell
+                    }
+                }
+            }
+        }
+        byUrl.keySet().removeAll(ambiguous);
+        bindings = new Bindings(snapshot.getVersion(), bound, byUrl);
+        LOGGER.info("Bound {} of {} handlers to access control list version {}", bound.size(), handlers.size(), snapshot.getVersion());
+        return bindings;
+    }
+
+    /**
+     * @param routes
+     *            gets every path of every handler
+     */
+    private Map<Method, Handler> readHandlers(PathPatternTrie<Route> routes) {
+        final Map<Method, Handler> read = new HashMap<Method, Handler>();
+
+        for (final Map.Entry<RequestMappingInfo, HandlerMethod> entry : handlerMapping.getHandlerMethods().entrySet()) {
+            final Method method = entry.getValue().getMethod();
+            Secured secured = AnnotationUtils.findAnnotation(method, Secured.class);
+            if (secured == null) {
+                secured = AnnotationUtils.findAnnotation(entry.getValue().getBeanType(), Secured.class);
+            }
+
+            final Handler handler = read.computeIfAbsent(method, Handler::new);
+            handler.secured = secured == null ? AclAttributes.NONE : AclAttributes.ofNames(Arrays.asList(secured.value()));
+            handler.add(entry.getKey(), servletPrefix);
+            route(routes, entry.getKey(), handler);
+            LOGGER.debug("Handler {} {} secured {}", entry.getKey(), method, handler.secured);
+        }
+        return read;
+    }
+
+    /**
+     * adds the paths of a mapping to the routes, each with its suffix pattern as the handler mapping matches it. a mapping without paths takes every
+     * path
+     */
+    private void route(PathPatternTrie<Route> routes, RequestMappingInfo info, Handler handler) {
+        final Set<RequestMethod> mapped = info.getMethodsCondition().getMethods();
+        final Set<String> patterns = info.getPatternsCondition().getPatterns();
+
+        for (final String pattern : patterns.isEmpty() ? Collections.singleton("/**") : patterns) {
+            final String path = servletPrefix + (pattern.startsWith("/") ? pattern : "/" + pattern);
+            final List<String> paths = new ArrayList<String>(2);
+            paths.add(path);
+            if (handlerMapping.useSuffixPatternMatch() && pattern.indexOf('.') < 0) {
+                paths.add(path + ".*");
+            }
+            for (final String routed : paths) {
+                Route route = routes.get(routed);
+                if (route == null) {
+                    route = new Route();
+                    routes.put(routed, route);
+                }
+                route.add(handler, mapped.isEmpty() ? Arrays.asList(METHODS) : mapped);
+            }
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final Bindings current = bindings;
+        final Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Integer>("acl.handlers", handlers == null ? 0 : handlers.size()));
+        metrics.add(new Metric<Integer>("acl.handlers.bound", current == null ? 0 : current.bound.size()));
+        return metrics;
+    }
+
+    /**
+     * the bindings of one snapshot version
+     */
+    private static final class Bindings {
+
+        private final long version;
+
+        /** attributes by request method ordinal, null where the handler is matched by url */
+        private final Map<Method, AclAttributes[]> bound;
+
+        /** the same by literal handler url, for the requests which need no handler lookup */
+        private final Map<String, AclAttributes[]> byUrl;
+
+        Bindings(long version, Map<Method, AclAttributes[]> bound, Map<String, AclAttributes[]> byUrl) {
+            this.version = version;
+            this.bound = bound;
+            this.byUrl = byUrl;
+        }
+    }
+
+    /**
+     * the handlers of one path pattern
+     */
+    private static final class Route {
+
+        /** by request method ordinal, {@link HandlerAclIndex#AMBIGUOUS} where several take the method */
+        private final Handler[] handlers = new Handler[METHODS.length];
+
+        void add(Handler handler, Collection<RequestMethod> methods) {
+            for (final RequestMethod method : methods) {
+                final Handler existing = handlers[method.ordinal()];
+                handlers[method.ordinal()] = existing == null || existing == handler ? handler : AMBIGUOUS;
+            }
+        }
+    }
+
+    /**
+     * the urls and methods of one handler method over all its mappings
+     */
+    private static final class Handler {
+
+        private final Method method;
+
+        private AclAttributes secured = AclAttributes.NONE;
+
+        /** null when a path has wildcards */
+        private Set<String> urls = new LinkedHashSet<String>();
+
+        private final Set<RequestMethod> methods = EnumSet.noneOf(RequestMethod.class);
+
+        Handler(Method method) {
+            this.method = method;
+        }
+
+        void add(RequestMappingInfo info, String servletPrefix) {
+            final Set<RequestMethod> mapped = info.getMethodsCondition().getMethods();
+            methods.addAll(mapped.isEmpty() ? Arrays.asList(METHODS) : mapped);
+
+            final Set<String> patterns = info.getPatternsCondition().getPatterns();
+            for (final String pattern : patterns.isEmpty() ? Collections.singleton("") : patterns) {
+                if (urls != null && isLiteral(pattern)) {
+                    urls.add(servletPrefix + pattern);
+                } else {
+                    urls = null;
+                }
+            }
+        }
+
+        /**
+         * @return attributes by request method ordinal, null when the handler is matched by url
+         */
+        AclAttributes[] bind(AclSnapshot snapshot) {
+            if (urls == null) {
+                return null;
+            }
+            final AclAttributes[] attributes = new AclAttributes[METHODS.length];
+
+            for (final RequestMethod method : methods) {
+                final List<AclRule> rules = new ArrayList<AclRule>(urls.size());
+                for (final String url : urls) {
+                    rules.add(snapshot.match(method.name(), url));
+                }
+                if (Collections.frequency(rules, rules.get(0)) < rules.size()) {
+                    return null;// the urls of the handler are secured differently
+                }
+                attributes[method.ordinal()] = (rules.get(0) == null ? AclAttributes.NONE : rules.get(0).getAttributes()).and(secured);
+            }
+            return attributes;
+        }
+
+        private static boolean isLiteral(String pattern) {
+            return !pattern.isEmpty() && pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0 && pattern.indexOf('{') < 0;
+        }
+    }
+
+}
@@ -0,0 +1,360 @@
+package com.innominds.security.acl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Ant style path patterns compiled into a trie of path segments. a segment of a pattern is a literal, a wildcard segment (<code>*</code>,
+ * <code>?</code>, <code>{name}</code>, e.g. <code>*.json</code>) matching one segment of the path, or <code>**</code> matching any number of segments.
+ * <br>
+ * {@link #match(String)} walks the path once and returns the value of the most specific pattern: at every segment a literal child is tried before the
+ * wildcard segments, which are tried by fewest wildcards first, before <code>**</code>. so the pattern sharing the longest literal prefix with the path
+ * wins, <code>/api/user/**</code> over <code>/api/**</code> for <code>/api/user/42</code> whatever order they were added in. time grows with the depth
+ * of the path, not with the number of patterns, backtracking only happens below <code>**</code>.<br>
+ * Not thread safe while patterns are added with {@link #put(String, Object)}, read only afterwards. {@link #with(String, Object)} leaves the trie as it is
+ * and returns a changed copy, which shares every node off the path of the pattern.
+ *
+ * @param <V>
+ *            value type
+ */
+public class PathPatternTrie<V> {
+
+    private static final String ANY_SEGMENTS = "**";
+
+    private final Node<V> root;
+
+    private int size;
+
+    public PathPatternTrie() {
+        this(new Node<V>());
+    }
+
+    private PathPatternTrie(Node<V> root) {
+        this.root = root;
+    }
+
+    /**
+     * @param pattern
+     *            ant style pattern, e.g. /api/user/**. the value of an earlier identical pattern is replaced
+     * @param value
+     *            value returned for paths the pattern matches best
+     */
+    public void put(String pattern, V value) {
+        Node<V> node = root;
+
+        for (final String segment : segments(pattern)) {
+            if (ANY_SEGMENTS.equals(segment)) {
+                if (node.anySegments == null) {
+                    node.anySegments = new Node<V>();
+                }
+                node = node.anySegments;
+            } else if (isWildcard(segment)) {
+                node = node.wildcard(segment);
+            } else {
+                node = node.literal(segment);
+            }
+        }
+
+        if (node.value == null) {
+            size++;
+        }
+        node.value = value;
+    }
+
+    /**
+     * @param pattern
+     *            ant style pattern
+     * @param value
+     *            value returned for paths the pattern matches best
+     * @return copy of this trie with the value of the pattern replaced or added. only the nodes from the root to the pattern are copied
+     */
+    public PathPatternTrie<V> with(String pattern, V value) {
+        final PathPatternTrie<V> changed = new PathPatternTrie<V>(root.copy());
+        Node<V> node = changed.root;
+
+        for (final String segment : segments(pattern)) {
+            if (ANY_SEGMENTS.equals(segment)) {
+                node.anySegments = node.anySegments == null ? new Node<V>() : node.anySegments.copy();
+                node = node.anySegments;
+            } else if (isWildcard(segment)) {
+                node = node.copyWildcard(segment);
+            } else {
+                node = node.copyLiteral(segment);
+            }
+        }
+
+        changed.size = node.value == null ? size + 1 : size;
+        node.value = value;
+        return changed;
+    }
+
+    /**
+     * @param pattern
+     *            ant style pattern
+     * @return value put for the very pattern, null when it was not added
+     */
+    public V get(String pattern) {
+        Node<V> node = root;
+
+        for (final String segment : segments(pattern)) {
+            if (ANY_SEGMENTS.equals(segment)) {
+                node = node.anySegments;
+            } else if (isWildcard(segment)) {
+                node = node.findWildcard(segment);
+            } else {
+                node = node.literals == null ? null : node.literals.get(segment);
+            }
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * @param path
+     *            request path, a query string is ignored
+     * @return value of the most specific pattern matching the path, null when none matches
+     */
+    public V match(String path) {
+        return match(path, Function.identity());
+    }
+
+    /**
+     * @param path
+     *            request path, a query string is ignored
+     * @param select
+     *            picks the result from the value of a matching pattern, null passes on to the next less specific pattern
+     * @return first result selected, most specific pattern first, null when none
+     */
+    public <R> R match(String path, Function<? super V, ? extends R> select) {
+        final int query = path.indexOf('?');
+        final List<String> segments = segments(query < 0 ? path : path.substring(0, query));
+        return match(root, segments.toArray(new String[segments.size()]), 0, select);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private <R> R match(Node<V> node, String[] segments, int index, Function<? super V, ? extends R> select) {
+
+        if (index == segments.length && node.value != null) {
+            final R selected = select.apply(node.value);
+            if (selected != null) {
+                return selected;
+            }
+        }
+
+        if (index < segments.length) {
+            final String segment = segments[index];
+
+            if (node.literals != null) {
+                final Node<V> literal = node.literals.get(segment);
+                if (literal != null) {
+                    final R value = match(literal, segments, index + 1, select);
+                    if (value != null) {
+                        return value;
+                    }
+                }
+            }
+
+            for (int i = 0; i < node.wildcards.size(); i++) {
+                final WildcardSegment<V> wildcard = node.wildcards.get(i);
+                if (wildcard.matches(segment)) {
+                    final R value = match(wildcard.node, segments, index + 1, select);
+                    if (value != null) {
+                        return value;
+                    }
+                }
+            }
+        }
+
+        if (node.anySegments != null) {
+            for (int next = index; next <= segments.length; next++) {// consume as few segments as possible
+                final R value = match(node.anySegments, segments, next, select);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * splits at slashes, empty segments (double or trailing slashes) are skipped
+     */
+    static List<String> segments(String path) {
+        final List<String> segments = new ArrayList<String>();
+        int start = 0;
+
+        for (int i = 0; i <= path.length(); i++) {
+            if (i == path.length() || path.charAt(i) == '/') {
+                if (i > start) {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return segments;
+    }
+
+    private static boolean isWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0;
+    }
+
+    static final class Node<V> {
+
+        private Map<String, Node<V>> literals;
+
+        /** ordered most specific first */
+        private final List<WildcardSegment<V>> wildcards = new ArrayList<WildcardSegment<V>>(0);
+
+        private Node<V> anySegments;
+
+        private V value;
+
+        Node<V> literal(String segment) {
+            if (literals == null) {
+                literals = new HashMap<String, Node<V>>();
+            }
+            return literals.computeIfAbsent(segment, key -> new Node<V>());
+        }
+
+        /**
+         * @return copy sharing the children
+         */
+        Node<V> copy() {
+            final Node<V> copy = new Node<V>();
+            copy.literals = literals == null ? null : new HashMap<String, Node<V>>(literals);
+            copy.wildcards.addAll(wildcards);
+            copy.anySegments = anySegments;
+            copy.value = value;
+            return copy;
+        }
+
+        /**
+         * @return copy of the literal child, replacing it in this node
+         */
+        Node<V> copyLiteral(String segment) {
+            final Node<V> existing = literals == null ? null : literals.get(segment);
+            final Node<V> copy = existing == null ? new Node<V>() : existing.copy();
+            if (literals == null) {
+                literals = new HashMap<String, Node<V>>();
+            }
+            literals.put(segment, copy);
+            return copy;
+        }
+
+        /**
+         * @return copy of the wildcard child, replacing it in this node
+         */
+        Node<V> copyWildcard(String segment) {
+            final Node<V> existing = findWildcard(segment);
+            if (existing == null) {
+                return wildcard(segment);
+            }
+            final WildcardSegment<V> copy = new WildcardSegment<V>(segment, existing.copy());
+            for (int i = 0; i < wildcards.size(); i++) {
+                if (wildcards.get(i).glob.equals(copy.glob)) {
+                    wildcards.set(i, copy);
+                }
+            }
+            return copy.node;
+        }
+
+        Node<V> findWildcard(String segment) {
+            final String glob = WildcardSegment.glob(segment);
+            for (final WildcardSegment<V> wildcard : wildcards) {
+                if (wildcard.glob.equals(glob)) {
+                    return wildcard.node;
+                }
+            }
+            return null;
+        }
+
+        Node<V> wildcard(String segment) {
+            final WildcardSegment<V> added = new WildcardSegment<V>(segment, new Node<V>());
+            int position = 0;
+
+            for (; position < wildcards.size(); position++) {
+                final WildcardSegment<V> existing = wildcards.get(position);
+                if (existing.glob.equals(added.glob)) {
+                    return existing.node;
+                }
+                if (added.compareTo(existing) < 0) {
+                    break;
+                }
+            }
+            wildcards.add(position, added);
+            return added.node;
+        }
+    }
+
+    /**
+     * one segment with * (any characters) and ? (one character). {name} variables match like *
+     */
+    static final class WildcardSegment<V> implements Comparable<WildcardSegment<V>> {
+
+        private final String glob;
+
+        private final int wildcardCount;
+
+        private final Node<V> node;
+
+        WildcardSegment(String segment, Node<V> node) {
+            glob = glob(segment);
+            this.node = node;
+
+            int count = 0;
+            for (int i = 0; i < glob.length(); i++) {
+                count += glob.charAt(i) == '*' || glob.charAt(i) == '?' ? 1 : 0;
+            }
+            wildcardCount = count;
+        }
+
+        static String glob(String segment) {
+            return segment.replaceAll("\\{[^}]*\\}", "*");
+        }
+
+        boolean matches(String segment) {
+            return matches(glob, 0, segment, 0);
+        }
+
+        private static boolean matches(String glob, int g, String text, int t) {
+            while (g < glob.length()) {
+                final char c = glob.charAt(g);
+
+                if (c == '*') {
+                    for (int skip = t; skip <= text.length(); skip++) {
+                        if (matches(glob, g + 1, text, skip)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                if (t == text.length() || c != '?' && c != text.charAt(t)) {
+                    return false;
+                }
+                g++;
+                t++;
+            }
+            return t == text.length();
+        }
+
+        /**
+         * fewer wildcards first, then more literal characters
+         */
+        @Override
+        public int compareTo(WildcardSegment<V> other) {
+            if (wildcardCount != other.wildcardCount) {
+                return wildcardCount - other.wildcardCount;
+            }
+            return (other.glob.length() - other.wildcardCount) - (glob.length() - wildcardCount);
+        }
+    }
+
+}
@@ -2,8 +2,8 @@ package com.innominds.security.auth.filter;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.math.BigInteger;
-import java.security.SecureRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -19,27 +19,56 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextImpl;
-import org.springframework.security.crypto.codec.Base64;
 import org.springframework.security.web.authentication.AbstractAuthenticationProcessingFilter;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.hazelcast.core.HazelcastInstance;
 import com.innominds.persistence.vo.LoginRequest;
 import com.innominds.persistence.vo.LoginResponse;
 import com.innominds.persistence.vo.User;
+import com.innominds.security.token.LookupBudget;
+import com.innominds.security.token.SignedTokenService;
+import com.innominds.security.token.TokenGenerator;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenStore;
 
 public class JSONPayloadAuthenticationFilter extends AbstractAuthenticationProcessingFilter {
 
     /** Reference to logger */
     private static final Logger LOGGER = LoggerFactory.getLogger(JSONPayloadAuthenticationFilter.class);
 
-    private HazelcastInstance hazelcastInstance;
+    private TokenStore tokenStore;
+
+    /** when set, login hands out self contained signed tokens instead of storing the security context */
+    private SignedTokenService signedTokenService;
+
+    private TokenGenerator tokenGenerator;
+
+    private int sessionTimeoutMinutes = 30;
 
     private ObjectMapper jacksonObjectMapper;
 
-    public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
-        this.hazelcastInstance = hazelcastInstance;
+    /** how long the response waits for the token to be stored */
+    private LookupBudget lookupBudget;
+
+    public void setTokenStore(TokenStore tokenStore) {
+        this.tokenStore = tokenStore;
+    }
+
+    public void setSignedTokenService(SignedTokenService signedTokenService) {
+        this.signedTokenService = signedTokenService;
+    }
+
+    public void setTokenGenerator(TokenGenerator tokenGenerator) {
+        this.tokenGenerator = tokenGenerator;
+    }
+
+    public void setSessionTimeoutMinutes(int sessionTimeoutMinutes) {
+        this.sessionTimeoutMinutes = sessionTimeoutMinutes;
+    }
+
+    public void setLookupBudget(LookupBudget lookupBudget) {
+        this.lookupBudget = lookupBudget;
     }
 
     public void setJacksonObjectMapper(ObjectMapper jacksonObjectMapper) {
@@ -100,30 +129,37 @@ public class JSONPayloadAuthenticationFilter extends AbstractAuthenticationProce
         sCtx.setAuthentication(authResult);
 
         // SecurityContextHolder.getContext().setAuthentication(authResult);
-        final String sessionToken = sessionToken();
+        final String sessionToken;
+        final CompletableFuture<Void> stored;
+
+        if (signedTokenService != null && authResult.getPrincipal() instanceof User) {
+            sessionToken = signedTokenService.issue(authResult);
+            stored = CompletableFuture.completedFuture(null);
+        } else {
+            final TokenKey tokenKey = tokenGenerator.nextKey();
+            stored = tokenStore.putAsync(tokenKey, sCtx, sessionTimeoutMinutes, TimeUnit.MINUTES);
+            sessionToken = tokenKey.toString();
+        }
 
-        hazelcastInstance.getMap("userTokenMap").put(sessionToken, sCtx);
+        // the response is serialized while the token is written, and only sent once the token is stored
+        final LoginResponse loginResponse = new LoginResponse();
+        loginResponse.setAccessToken(sessionToken);
 
-        try (PrintWriter out = response.getWriter()) {
+        if (authResult.getPrincipal() instanceof User) {
+            final User user = (User) authResult.getPrincipal();
+            loginResponse.setName(user.getUsername());
+            loginResponse.setName(user.getUsername());
+        }
+        final String body = jacksonObjectMapper.writeValueAsString(loginResponse);
 
-            final LoginResponse loginResponse = new LoginResponse();
-            loginResponse.setAccessToken(sessionToken);
+        lookupBudget.await(stored, lookupBudget.deadline(), null);
 
-            if (authResult.getPrincipal() instanceof User) {
-                final User user = (User) authResult.getPrincipal();
-                loginResponse.setName(user.getUsername());
-                loginResponse.setName(user.getUsername());
-            }
-            out.write(jacksonObjectMapper.writeValueAsString(loginResponse));
+        try (PrintWriter out = response.getWriter()) {
+            out.write(body);
         }
 
     }
 
-    static String sessionToken() {
-        final String token = new BigInteger(130, new SecureRandom()).toString(32);
-        return new String(Base64.encode(token.getBytes()));
-    }
-
     @Override
     protected boolean requiresAuthentication(HttpServletRequest request, HttpServletResponse response) {
         return "/api/login".equalsIgnoreCase(request.getRequestURI());
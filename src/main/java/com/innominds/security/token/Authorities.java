@@ -0,0 +1,86 @@
+package com.innominds.security.token;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import com.innominds.persistence.vo.Authority;
+
+/**
+ * Flyweights of {@link Authority} and of authority sets. a node holds one instance per authority name and one unmodifiable set per combination of
+ * authorities, shared by every session and principal, instead of a fresh HashSet of fresh authorities per session.<br>
+ * The instances handed out are shared, never modify them. the registry only grows with the roles defined in the database.
+ */
+public final class Authorities {
+
+    private static final ConcurrentMap<String, Authority> AUTHORITIES = new ConcurrentHashMap<String, Authority>();
+
+    /** sorted authority names against the interned set */
+    private static final ConcurrentMap<List<String>, Set<Authority>> SETS = new ConcurrentHashMap<List<String>, Set<Authority>>();
+
+    private Authorities() {
+    }
+
+    /**
+     * @param authority
+     *            authority name, e.g. ROLE_USER
+     * @param title
+     *            title used if this is the first time the authority is seen
+     * @return the shared instance
+     */
+    public static Authority of(String authority, String title) {
+        final Authority interned = AUTHORITIES.get(authority);
+        return interned != null ? interned : AUTHORITIES.computeIfAbsent(authority, name -> new Authority(name, title));
+    }
+
+    /**
+     * @param authority
+     *            authority name
+     * @return the shared instance
+     */
+    public static Authority of(String authority) {
+        return of(authority, authority);
+    }
+
+    /**
+     * @param grantedAuthorities
+     *            authorities of an authentication, of any type
+     * @return the shared set of the same authority names
+     */
+    public static Set<Authority> setOf(Collection<? extends GrantedAuthority> grantedAuthorities) {
+        final List<String> names = new ArrayList<String>(grantedAuthorities.size());
+
+        for (final GrantedAuthority grantedAuthority : grantedAuthorities) {
+            names.add(grantedAuthority.getAuthority());
+        }
+        return setOfNames(names);
+    }
+
+    /**
+     * @param names
+     *            authority names, taken over and sorted by this method
+     * @return the shared set of these authorities
+     */
+    public static Set<Authority> setOfNames(List<String> names) {
+        Collections.sort(names);
+
+        final Set<Authority> interned = SETS.get(names);
+        if (interned != null) {
+            return interned;
+        }
+
+        final Set<Authority> authorities = new LinkedHashSet<Authority>(names.size() * 2);
+        for (final String name : names) {
+            authorities.add(of(name));
+        }
+        return SETS.computeIfAbsent(Collections.unmodifiableList(names), key -> Collections.unmodifiableSet(authorities));
+    }
+
+}
@@ -0,0 +1,329 @@
+package com.innominds.security.token;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.core.context.SecurityContext;
+
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ICompletableFuture;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.MultiMap;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.TruePredicate;
+
+/**
+ * {@link TokenStore} on top of a Hazelcast map from {@link TokenKey} to {@link SessionRecord}, shared by all the nodes of the cluster. reads go through the
+ * node local {@link TokenNearCache}, which keeps the records together with their rebuilt authentication. tokens the near cache does not hold are checked
+ * against the node local {@link TokenFilter} before the cluster is asked, so unknown tokens cost no remote call.<br>
+ * The session index is a multi map from username to tokens. expired and evicted tokens are removed from it by the member which owned them, on a hazelcast
+ * client the members have to register {@link #unindexEvicted(HazelcastInstance, String, String)} themselves.<br>
+ * With a {@link SessionMapStore} the map is persisted and loads sessions on a miss. the index then only knows the tokens written since the cluster started,
+ * the tokens of a user are looked up in the table as well.
+ */
+public class HazelcastTokenStore implements TokenStore {
+
+    /** every entry, {@link TruePredicate} is raw in hazelcast 3.5 */
+    @SuppressWarnings("unchecked")
+    private static final Predicate<TokenKey, SessionRecord> ALL_ENTRIES = TruePredicate.INSTANCE;
+
+    private final IMap<TokenKey, SessionRecord> tokenMap;
+
+    private final MultiMap<String, TokenKey> sessionIndex;
+
+    private final TokenNearCache<TokenKey, SessionRecord> tokenNearCache;
+
+    private final TokenFilter tokenFilter;
+
+    /** map store of the token map, null when sessions are not persisted */
+    private SessionMapStore sessionMapStore;
+
+    /**
+     * @param hazelcastInstance
+     *            cluster instance
+     * @param mapName
+     *            name of the token map
+     * @param indexName
+     *            name of the multi map indexing tokens by username
+     * @param tokenNearCache
+     *            near cache registered as entry listener on the same map
+     * @param tokenFilter
+     *            filter of the live tokens registered as entry listener on the same map
+     */
+    public HazelcastTokenStore(HazelcastInstance hazelcastInstance, String mapName, String indexName,
+            TokenNearCache<TokenKey, SessionRecord> tokenNearCache, TokenFilter tokenFilter) {
+        tokenMap = hazelcastInstance.getMap(mapName);
+        sessionIndex = hazelcastInstance.getMultiMap(indexName);
+        this.tokenNearCache = tokenNearCache;
+        this.tokenFilter = tokenFilter;
+
+        if (hazelcastInstance.getLocalEndpoint() instanceof Member) {// clients do not own entries, local listeners are not supported
+            unindexEvicted(hazelcastInstance, mapName, indexName);
+        }
+    }
+
+    /**
+     * removes expired and evicted tokens from the session index on the member which owned them
+     *
+     * @param member
+     *            cluster member
+     * @param mapName
+     *            name of the token map
+     * @param indexName
+     *            name of the multi map indexing tokens by username
+     */
+    public static void unindexEvicted(HazelcastInstance member, String mapName, String indexName) {
+        final MultiMap<String, TokenKey> sessionIndex = member.getMultiMap(indexName);
+
+        final EntryEvictedListener<TokenKey, SessionRecord> unindexEvicted = event -> unindex(sessionIndex, event.getKey(), event.getOldValue() != null
+                ? event.getOldValue() : event.getValue());
+        member.<TokenKey, SessionRecord> getMap(mapName).addLocalEntryListener(unindexEvicted, ALL_ENTRIES, true);
+    }
+
+    /**
+     * a zero ttl falls back to the time-to-live-seconds of the map, so a token written without lifetime can not stay forever
+     */
+    @Override
+    public void put(TokenKey token, SecurityContext securityContext, long ttl, TimeUnit timeUnit) {
+        final SessionRecord sessionRecord = SessionRecord.of(securityContext, InMemoryTokenStore.expiresAt(ttl, timeUnit));
+
+        if (ttl > 0) {
+            tokenMap.set(token, sessionRecord, ttl, timeUnit);
+        } else {
+            tokenMap.set(token, sessionRecord);
+        }
+        tokenNearCache.put(token, sessionRecord);
+        index(token, sessionRecord);
+    }
+
+    public void setSessionMapStore(SessionMapStore sessionMapStore) {
+        this.sessionMapStore = sessionMapStore;
+    }
+
+    /**
+     * The map write is sent first and the session index is updated while it is in flight. putAsync returns the previous value, nothing to ship for a new
+     * token.<br>
+     * With a map store putAsync would load the previous value from the database, a synchronous set is used instead.
+     */
+    @Override
+    public CompletableFuture<Void> putAsync(TokenKey token, SecurityContext securityContext, long ttl, TimeUnit timeUnit) {
+
+        if (sessionMapStore != null) {
+            put(token, securityContext, ttl, timeUnit);
+            return CompletableFuture.completedFuture(null);
+        }
+        final SessionRecord sessionRecord = SessionRecord.of(securityContext, InMemoryTokenStore.expiresAt(ttl, timeUnit));
+
+        final Future<SessionRecord> written = ttl > 0 ? tokenMap.putAsync(token, sessionRecord, ttl, timeUnit) : tokenMap.putAsync(token,
+                sessionRecord);
+        tokenNearCache.put(token, sessionRecord);
+        index(token, sessionRecord);
+        return toCompletableFuture(written).thenApply(previous -> null);
+    }
+
+    @Override
+    public SecurityContext get(TokenKey token) {
+        final SessionRecord sessionRecord = tokenNearCache.get(token, this::load);
+        return sessionRecord == null ? null : sessionRecord.toSecurityContext();
+    }
+
+    @Override
+    public CompletableFuture<SecurityContext> getAsync(TokenKey token) {
+        return tokenNearCache.getAsync(token, this::loadAsync).thenApply(sessionRecord -> sessionRecord == null ? null : sessionRecord
+                .toSecurityContext());
+    }
+
+    /**
+     * entries past the near cache ttl are served as long as no member reported them removed, evicted or updated
+     */
+    @Override
+    public SecurityContext getStale(TokenKey token) {
+        final SessionRecord sessionRecord = tokenNearCache.peekStale(token);
+        return sessionRecord == null || sessionRecord.isExpired(System.currentTimeMillis()) ? null : sessionRecord.toSecurityContext();
+    }
+
+    @Override
+    public boolean contains(TokenKey token) {
+        if (tokenNearCache.peek(token) != null) {
+            return true;
+        }
+        if (!tokenFilter.mightContain(token) || tokenFilter.isKnownMissing(token)) {
+            return false;
+        }
+
+        final boolean contained = tokenMap.containsKey(token);
+        if (!contained) {
+            tokenFilter.recordMiss(token);
+        }
+        return contained;
+    }
+
+    /**
+     * Runs {@link TouchEntryProcessor} on the owner, so the value is not shipped. the entry keeps the ttl it was stored with, the given ttl only moves the
+     * expiry recorded in the session record.
+     */
+    @Override
+    public boolean touch(TokenKey token, long ttl, TimeUnit timeUnit) {
+        return Boolean.TRUE.equals(tokenMap.executeOnKey(token, new TouchEntryProcessor(timeUnit.toMillis(ttl))));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> touchAsync(TokenKey token, long ttl, TimeUnit timeUnit) {
+        final Future<?> touched = tokenMap.submitToKey(token, new TouchEntryProcessor(timeUnit.toMillis(ttl)));// raw Future in hazelcast 3.5
+        return toCompletableFuture(touched).thenApply(Boolean.TRUE::equals);
+    }
+
+    @Override
+    public void revoke(TokenKey token) {
+        unindex(token, tokenMap.remove(token));
+        tokenNearCache.invalidate(token);
+    }
+
+    @Override
+    public Map<TokenKey, SecurityContext> getAll(Collection<TokenKey> tokens) {
+        final Map<TokenKey, SecurityContext> result = new HashMap<TokenKey, SecurityContext>();
+        final Set<TokenKey> remote = new HashSet<TokenKey>();
+
+        for (final TokenKey token : tokens) {
+            final SessionRecord sessionRecord = tokenNearCache.peek(token);
+            if (sessionRecord != null) {
+                result.put(token, sessionRecord.toSecurityContext());
+            } else if (tokenFilter.mightContain(token) && !tokenFilter.isKnownMissing(token)) {
+                remote.add(token);
+            }
+        }
+
+        if (!remote.isEmpty()) {
+            // one call per partition owner instead of one per token
+            final long now = System.currentTimeMillis();
+            tokenMap.getAll(remote).forEach((token, sessionRecord) -> {
+                if (!sessionRecord.isExpired(now)) {
+                    result.put(token, sessionRecord.toSecurityContext());
+                }
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public void revokeAll(Collection<TokenKey> tokens) {
+        for (final TokenKey token : tokens) {
+            revoke(token);
+        }
+    }
+
+    @Override
+    public Collection<TokenKey> getTokens(String username) {
+        final Collection<TokenKey> tokens = sessionIndex.get(username);
+
+        if (sessionMapStore == null) {
+            return tokens;
+        }
+        final Set<TokenKey> all = new HashSet<TokenKey>(tokens);
+        all.addAll(sessionMapStore.loadTokens(username));
+        return all;
+    }
+
+    /**
+     * with a map store the delete of a token which was never loaded still reaches the table, in order with the writes queued for it
+     */
+    @Override
+    public int revokeByUsername(String username) {
+        final Collection<TokenKey> tokens = new HashSet<TokenKey>(sessionIndex.remove(username));
+
+        if (sessionMapStore != null) {
+            tokens.addAll(sessionMapStore.loadTokens(username));
+        }
+
+        for (final TokenKey token : tokens) {
+            tokenMap.delete(token);
+            tokenNearCache.invalidate(token);
+        }
+        return tokens.size();
+    }
+
+    /**
+     * near cache loader, asks the cluster only for tokens the filter can not rule out
+     */
+    private SessionRecord load(TokenKey token) {
+        if (!tokenFilter.mightContain(token) || tokenFilter.isKnownMissing(token)) {
+            return null;
+        }
+
+        return live(token, tokenMap.get(token));
+    }
+
+    /**
+     * asynchronous variant of {@link #load(TokenKey)}
+     */
+    private CompletableFuture<SessionRecord> loadAsync(TokenKey token) {
+        if (!tokenFilter.mightContain(token) || tokenFilter.isKnownMissing(token)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return toCompletableFuture(tokenMap.getAsync(token)).thenApply(sessionRecord -> live(token, sessionRecord));
+    }
+
+    /**
+     * a session loaded by the map store lives for the time-to-live of the map, its own expiry decides
+     */
+    private SessionRecord live(TokenKey token, SessionRecord sessionRecord) {
+        if (sessionRecord == null) {
+            tokenFilter.recordMiss(token);
+            return null;
+        }
+        return sessionRecord.isExpired(System.currentTimeMillis()) ? null : sessionRecord;
+    }
+
+    /**
+     * the async map operations are declared as {@link Future} but return {@link ICompletableFuture}. completed on the response thread of hazelcast,
+     * dependent stages must not block
+     */
+    static <T> CompletableFuture<T> toCompletableFuture(Future<T> future) {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+
+        ((ICompletableFuture<T>) future).andThen(new ExecutionCallback<T>() {
+
+            @Override
+            public void onResponse(T response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    void index(TokenKey token, SessionRecord sessionRecord) {
+        final String username = sessionRecord.getUsername();
+
+        if (username != null) {
+            sessionIndex.put(username, token);// the index is a set, saving an updated context again is a no-op
+        }
+    }
+
+    void unindex(TokenKey token, SessionRecord sessionRecord) {
+        unindex(sessionIndex, token, sessionRecord);
+    }
+
+    private static void unindex(MultiMap<String, TokenKey> sessionIndex, TokenKey token, SessionRecord sessionRecord) {
+        final String username = sessionRecord == null ? null : sessionRecord.getUsername();
+
+        if (username != null) {
+            sessionIndex.remove(username, token);
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.innominds.security.token;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.core.context.SecurityContext;
+
+/**
+ * Process local {@link TokenStore} of {@link SessionRecord}s. meant for single node deployments which do not need an embedded cluster member.
+ */
+public class InMemoryTokenStore implements TokenStore {
+
+    /** expired entries are swept once per this many writes */
+    private static final int PURGE_INTERVAL = 1024;
+
+    private final ConcurrentMap<TokenKey, SessionRecord> tokens = new ConcurrentHashMap<TokenKey, SessionRecord>();
+
+    /** username against tokens, a user without tokens has no entry */
+    private final ConcurrentMap<String, Set<TokenKey>> sessionIndex = new ConcurrentHashMap<String, Set<TokenKey>>();
+
+    private final AtomicInteger writes = new AtomicInteger();
+
+    @Override
+    public void put(TokenKey token, SecurityContext securityContext, long ttl, TimeUnit timeUnit) {
+        final SessionRecord sessionRecord = SessionRecord.of(securityContext, expiresAt(ttl, timeUnit));
+        final SessionRecord previous = tokens.put(token, sessionRecord);
+
+        if (previous != null) {
+            unindex(token, previous.getUsername());
+        }
+        index(token, sessionRecord.getUsername());
+
+        if (writes.incrementAndGet() % PURGE_INTERVAL == 0) {
+            purgeExpired();
+        }
+    }
+
+    @Override
+    public SecurityContext get(TokenKey token) {
+        final SessionRecord sessionRecord = getRecord(token);
+        return sessionRecord == null ? null : sessionRecord.toSecurityContext();
+    }
+
+    @Override
+    public boolean contains(TokenKey token) {
+        return getRecord(token) != null;
+    }
+
+    @Override
+    public boolean touch(TokenKey token, long ttl, TimeUnit timeUnit) {
+        final SessionRecord sessionRecord = getRecord(token);
+
+        if (sessionRecord == null) {
+            return false;
+        }
+        return tokens.replace(token, sessionRecord, sessionRecord.withExpiresAt(expiresAt(ttl, timeUnit)));
+    }
+
+    /**
+     * @return live record of the token, expired records are dropped on the way
+     */
+    SessionRecord getRecord(TokenKey token) {
+        final SessionRecord sessionRecord = tokens.get(token);
+
+        if (sessionRecord == null) {
+            return null;
+        }
+
+        if (sessionRecord.isExpired(System.currentTimeMillis())) {
+            if (tokens.remove(token, sessionRecord)) {
+                unindex(token, sessionRecord.getUsername());
+            }
+            return null;
+        }
+        return sessionRecord;
+    }
+
+    @Override
+    public void revoke(TokenKey token) {
+        final SessionRecord sessionRecord = tokens.remove(token);
+
+        if (sessionRecord != null) {
+            unindex(token, sessionRecord.getUsername());
+        }
+    }
+
+    @Override
+    public Map<TokenKey, SecurityContext> getAll(Collection<TokenKey> tokenList) {
+        final Map<TokenKey, SecurityContext> result = new HashMap<TokenKey, SecurityContext>();
+
+        for (final TokenKey token : tokenList) {
+            final SecurityContext securityContext = get(token);
+            if (securityContext != null) {
+                result.put(token, securityContext);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void revokeAll(Collection<TokenKey> tokenList) {
+        for (final TokenKey token : tokenList) {
+            revoke(token);
+        }
+    }
+
+    @Override
+    public Collection<TokenKey> getTokens(String username) {
+        final Set<TokenKey> userTokens = sessionIndex.get(username);
+
+        if (userTokens == null) {
+            return Collections.emptySet();
+        }
+        synchronized (userTokens) {
+            return new HashSet<TokenKey>(userTokens);
+        }
+    }
+
+    @Override
+    public int revokeByUsername(String username) {
+        final Collection<TokenKey> userTokens = getTokens(username);
+        revokeAll(userTokens);
+        return userTokens.size();
+    }
+
+    void purgeExpired() {
+        final long now = System.currentTimeMillis();
+
+        for (final Map.Entry<TokenKey, SessionRecord> entry : tokens.entrySet()) {
+            if (entry.getValue().isExpired(now) && tokens.remove(entry.getKey(), entry.getValue())) {
+                unindex(entry.getKey(), entry.getValue().getUsername());
+            }
+        }
+    }
+
+    void index(TokenKey token, String username) {
+        if (username != null) {
+            sessionIndex.compute(username, (key, userTokens) -> {
+                final Set<TokenKey> result = userTokens == null ? new HashSet<TokenKey>() : userTokens;
+                synchronized (result) {
+                    result.add(token);
+                }
+                return result;
+            });
+        }
+    }
+
+    void unindex(TokenKey token, String username) {
+        if (username != null) {
+            sessionIndex.computeIfPresent(username, (key, userTokens) -> {
+                synchronized (userTokens) {
+                    userTokens.remove(token);
+                    return userTokens.isEmpty() ? null : userTokens;
+                }
+            });
+        }
+    }
+
+    /**
+     * @return expiry in epoch milliseconds, {@link Long#MAX_VALUE} for a zero ttl
+     */
+    public static long expiresAt(long ttl, TimeUnit timeUnit) {
+        return ttl > 0 ? System.currentTimeMillis() + timeUnit.toMillis(ttl) : Long.MAX_VALUE;
+    }
+
+}
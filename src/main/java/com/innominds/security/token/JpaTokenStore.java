@@ -0,0 +1,124 @@
+package com.innominds.security.token;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.innominds.persistence.domain.UserTokenEntity;
+import com.innominds.persistence.repository.UserTokenRepository;
+import com.innominds.security.token.serialization.SecurityContextCodec;
+
+/**
+ * {@link TokenStore} backed by the configured DataSource (Derby in dev, MySQL in prod). tokens survive restarts without running a cluster. the session
+ * index is the indexed username column. tokens are stored in their text form, sessions as {@link SessionRecord} bytes.
+ */
+@Transactional
+public class JpaTokenStore implements TokenStore {
+
+    /** expired rows are deleted once per this many writes */
+    private static final int PURGE_INTERVAL = 1024;
+
+    @Autowired
+    private UserTokenRepository userTokenRepository;
+
+    private final AtomicInteger writes = new AtomicInteger();
+
+    @Override
+    public void put(TokenKey token, SecurityContext securityContext, long ttl, TimeUnit timeUnit) {
+        final SessionRecord sessionRecord = SessionRecord.of(securityContext, InMemoryTokenStore.expiresAt(ttl, timeUnit));
+        final UserTokenEntity userTokenEntity = new UserTokenEntity();
+        userTokenEntity.setToken(token.toString());
+        userTokenEntity.setContext(SecurityContextCodec.toBytes(sessionRecord));
+        userTokenEntity.setUsername(sessionRecord.getUsername());
+        userTokenEntity.setExpiresAt(sessionRecord.getExpiresAt());
+        userTokenRepository.save(userTokenEntity);
+
+        if (writes.incrementAndGet() % PURGE_INTERVAL == 0) {
+            userTokenRepository.deleteExpired(System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SecurityContext get(TokenKey token) {
+        final UserTokenEntity userTokenEntity = userTokenRepository.findOne(token.toString());
+
+        if (userTokenEntity == null || userTokenEntity.getExpiresAt() < System.currentTimeMillis()) {
+            return null;
+        }
+        return SecurityContextCodec.recordFromBytes(userTokenEntity.getContext()).toSecurityContext();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean contains(TokenKey token) {
+        return userTokenRepository.countLive(token.toString(), System.currentTimeMillis()) > 0;
+    }
+
+    @Override
+    public boolean touch(TokenKey token, long ttl, TimeUnit timeUnit) {
+        return userTokenRepository.touch(token.toString(), InMemoryTokenStore.expiresAt(ttl, timeUnit), System.currentTimeMillis()) > 0;
+    }
+
+    @Override
+    public void revoke(TokenKey token) {
+        userTokenRepository.deleteTokens(Collections.singleton(token.toString()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<TokenKey, SecurityContext> getAll(Collection<TokenKey> tokens) {
+        final Map<TokenKey, SecurityContext> result = new HashMap<TokenKey, SecurityContext>();
+
+        if (tokens.isEmpty()) {
+            return result;
+        }
+
+        for (final UserTokenEntity userTokenEntity : userTokenRepository.findLive(toText(tokens), System.currentTimeMillis())) {
+            result.put(TokenKey.parse(userTokenEntity.getToken()), SecurityContextCodec.recordFromBytes(userTokenEntity.getContext()).toSecurityContext());
+        }
+        return result;
+    }
+
+    @Override
+    public void revokeAll(Collection<TokenKey> tokens) {
+        if (!tokens.isEmpty()) {
+            userTokenRepository.deleteTokens(toText(tokens));
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Collection<TokenKey> getTokens(String username) {
+        final List<TokenKey> tokens = new ArrayList<TokenKey>();
+
+        for (final String token : userTokenRepository.findTokensByUsername(username, System.currentTimeMillis())) {
+            tokens.add(TokenKey.parse(token));
+        }
+        return tokens;
+    }
+
+    @Override
+    public int revokeByUsername(String username) {
+        return userTokenRepository.deleteByUsername(username);
+    }
+
+    private static List<String> toText(Collection<TokenKey> tokens) {
+        final List<String> text = new ArrayList<String>(tokens.size());
+
+        for (final TokenKey token : tokens) {
+            text.add(token.toString());
+        }
+        return text;
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.innominds.security.token;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process local {@link TokenDenylist} for single node deployments.
+ */
+public class LocalTokenDenylist implements TokenDenylist {
+
+    private final ConcurrentMap<String, Long> deniedTokens = new ConcurrentHashMap<String, Long>();
+
+    /** username against {issuedBefore, expiresAt} */
+    private final ConcurrentMap<String, long[]> deniedUsers = new ConcurrentHashMap<String, long[]>();
+
+    /** username against the latest expiry of the tokens issued to the user, at most one entry per user */
+    private final ConcurrentMap<String, Long> issuedUntil = new ConcurrentHashMap<String, Long>();
+
+    @Override
+    public void deny(String tokenId, long expiresAt) {
+        final long now = System.currentTimeMillis();
+        deniedTokens.values().removeIf(expiry -> expiry < now);// revocations are rare, sweeping here keeps the list small
+        deniedTokens.put(tokenId, expiresAt);
+    }
+
+    @Override
+    public boolean isDenied(String tokenId) {
+        return deniedTokens.containsKey(tokenId);
+    }
+
+    @Override
+    public void issued(String username, long expiresAt) {
+        issuedUntil.merge(username, expiresAt, Math::max);
+    }
+
+    @Override
+    public void denyUser(String username, long issuedBefore, long expiresAt) {
+        final long now = System.currentTimeMillis();
+        deniedUsers.values().removeIf(denial -> denial[1] < now);
+        issuedUntil.values().removeIf(expiry -> expiry < now);
+        deniedUsers.put(username, new long[] { issuedBefore, Math.max(expiresAt, issuedUntil.getOrDefault(username, 0L)) });
+    }
+
+    @Override
+    public long deniedBefore(String username) {
+        final long[] denial = deniedUsers.get(username);
+        return denial == null ? 0 : denial[0];
+    }
+
+}
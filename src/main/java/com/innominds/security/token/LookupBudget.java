@@ -0,0 +1,124 @@
+package com.innominds.security.token;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * How long a request waits for the token store. a request gets one deadline, {@link #await(CompletableFuture, long, Supplier)} waits for an asynchronous
+ * store call until then. when the store fails or does not answer in time the request is either served from the fallback, typically what the near cache of
+ * this node still holds, or failed with {@link TokenStoreUnavailableException}, answered with 503.<br>
+ * Timeouts, failures, fallbacks and writes which failed in the background are published through the actuator metrics endpoint.
+ */
+public class LookupBudget implements PublicMetrics {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(LookupBudget.class);
+
+    private final long budgetMillis;
+
+    private final boolean fallbackEnabled;
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder fallbacks = new LongAdder();
+
+    private final LongAdder unavailable = new LongAdder();
+
+    private final LongAdder writeFailures = new LongAdder();
+
+    /**
+     * @param budgetMillis
+     *            how long a request may wait for the token store in total
+     * @param fallbackEnabled
+     *            true to serve the fallback on timeout, false to fail fast
+     */
+    public LookupBudget(long budgetMillis, boolean fallbackEnabled) {
+        this.budgetMillis = budgetMillis;
+        this.fallbackEnabled = fallbackEnabled;
+    }
+
+    /**
+     * @return deadline of a request starting now, epoch milliseconds
+     */
+    public long deadline() {
+        return System.currentTimeMillis() + budgetMillis;
+    }
+
+    /**
+     * Waits for a store call until the deadline.
+     *
+     * @param future
+     *            pending store call
+     * @param deadline
+     *            from {@link #deadline()}
+     * @param fallback
+     *            answer when the store fails or is late, may return null to fail anyway. null for calls without fallback
+     * @return result of the call, or of the fallback
+     * @throws TokenStoreUnavailableException
+     *             when neither answered
+     */
+    public <T> T await(CompletableFuture<T> future, long deadline, Supplier<T> fallback) {
+        Throwable cause;
+
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            timeouts.increment();
+            cause = e;
+        } catch (final ExecutionException e) {
+            failures.increment();
+            cause = e.getCause();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.increment();
+            cause = e;
+        }
+
+        final T fallbackResult = fallbackEnabled && fallback != null ? fallback.get() : null;
+        if (fallbackResult != null) {
+            fallbacks.increment();
+            LOGGER.debug("Token store did not answer within {} ms, served from the local fallback: {}", budgetMillis, cause.toString());
+            return fallbackResult;
+        }
+
+        unavailable.increment();
+        throw new TokenStoreUnavailableException("Token store did not answer within " + budgetMillis + " ms", cause);
+    }
+
+    /**
+     * counts a write nobody waits for which failed
+     */
+    public void writeFailed(Throwable cause) {
+        writeFailures.increment();
+        LOGGER.warn("Asynchronous token store write failed: {}", cause.toString());
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>("token.lookup.timeouts", timeouts.sum()));
+        metrics.add(new Metric<Long>("token.lookup.failures", failures.sum()));
+        metrics.add(new Metric<Long>("token.lookup.fallbacks", fallbacks.sum()));
+        metrics.add(new Metric<Long>("token.lookup.unavailable", unavailable.sum()));
+        metrics.add(new Metric<Long>("token.lookup.write-failures", writeFailures.sum()));
+        return metrics;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.innominds.security.token;
+
+import java.util.concurrent.TimeUnit;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ReplicatedMap;
+
+/**
+ * {@link TokenDenylist} on a hazelcast replicated map. every member holds a full copy, so checks never leave the node. entries expire together with the token
+ * they deny.
+ */
+public class ReplicatedTokenDenylist implements TokenDenylist {
+
+    /** token ids are base 36 numbers, they never start with these */
+    private static final String USER_PREFIX = "user:";
+
+    private static final String ISSUED_PREFIX = "issued:";
+
+    /** token id against expiry, prefixed username against issuedBefore, and prefixed username against the latest expiry issued */
+    private final ReplicatedMap<String, Long> deniedTokens;
+
+    /**
+     * @param hazelcastInstance
+     *            cluster instance
+     * @param mapName
+     *            name of the replicated map
+     */
+    public ReplicatedTokenDenylist(HazelcastInstance hazelcastInstance, String mapName) {
+        deniedTokens = hazelcastInstance.getReplicatedMap(mapName);
+    }
+
+    @Override
+    public void deny(String tokenId, long expiresAt) {
+        final long ttl = expiresAt - System.currentTimeMillis();
+
+        if (ttl > 0) {
+            deniedTokens.put(tokenId, expiresAt, ttl, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public boolean isDenied(String tokenId) {
+        return deniedTokens.containsKey(tokenId);
+    }
+
+    /**
+     * not atomic: of two logins of one user on two nodes at once the earlier expiry may be kept, the denial then still lasts for the validity of the
+     * revoking node
+     */
+    @Override
+    public void issued(String username, long expiresAt) {
+        final Long issuedUntil = deniedTokens.get(ISSUED_PREFIX + username);
+
+        if ((issuedUntil == null || issuedUntil < expiresAt) && expiresAt > System.currentTimeMillis()) {
+            deniedTokens.put(ISSUED_PREFIX + username, expiresAt, expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void denyUser(String username, long issuedBefore, long expiresAt) {
+        final Long issuedUntil = deniedTokens.get(ISSUED_PREFIX + username);
+        final long ttl = Math.max(expiresAt, issuedUntil == null ? 0 : issuedUntil) - System.currentTimeMillis();
+
+        if (ttl > 0) {
+            deniedTokens.put(USER_PREFIX + username, issuedBefore, ttl, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public long deniedBefore(String username) {
+        final Long issuedBefore = deniedTokens.get(USER_PREFIX + username);
+        return issuedBefore == null ? 0 : issuedBefore;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.innominds.security.token;
+
+import java.util.Collection;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.innominds.security.acl.AuthorityBits;
+import com.innominds.security.acl.DecisionMemo;
+
+/**
+ * Authentication rebuilt from a {@link SessionRecord}, with its authorities compiled to {@link AuthorityBits} once per session, not per request, and the
+ * {@link DecisionMemo} of the session. the memo is only kept once the record handed the authentication out again, i.e. the record is held across
+ * requests by a store or near cache. an authentication rebuilt for one request, from a decoded record or a signed token, would drop its memo with it.
+ */
+public class SessionAuthentication extends UsernamePasswordAuthenticationToken {
+
+    private static final long serialVersionUID = 1L;
+
+    /** ids are local to a node, rebuilt after deserialization */
+    private transient volatile AuthorityBits authorityBits;
+
+    private transient volatile DecisionMemo decisionMemo;
+
+    /** set when the record handed this out a second time */
+    private transient volatile boolean reused;
+
+    /**
+     * @param principal
+     *            the user
+     * @param authorities
+     *            granted authorities
+     */
+    public SessionAuthentication(Object principal, Collection<? extends GrantedAuthority> authorities) {
+        super(principal, null, authorities);
+        authorityBits = AuthorityBits.of(authorities);
+    }
+
+    /**
+     * @return the granted authorities as bits
+     */
+    public AuthorityBits getAuthorityBits() {
+        AuthorityBits result = authorityBits;
+
+        if (result == null) {
+            result = AuthorityBits.of(getAuthorities());
+            authorityBits = result;
+        }
+        return result;
+    }
+
+    /**
+     * the record holding this authentication serves more than one request
+     */
+    void reused() {
+        reused = true;
+    }
+
+    /**
+     * @param capacity
+     *            decisions kept, used when the memo is created
+     * @return access decisions of this session, created on first call. null while the authentication served one request only
+     */
+    public DecisionMemo getDecisionMemo(int capacity) {
+        DecisionMemo result = decisionMemo;
+
+        if (result == null && reused) {
+            synchronized (this) {
+                result = decisionMemo;
+                if (result == null) {
+                    result = new DecisionMemo(capacity);
+                    decisionMemo = result;
+                }
+            }
+        }
+        return result;
+    }
+
+}
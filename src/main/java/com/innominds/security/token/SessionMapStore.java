@@ -0,0 +1,214 @@
+package com.innominds.security.token;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.hazelcast.core.MapStore;
+import com.innominds.persistence.domain.UserTokenEntity;
+import com.innominds.persistence.repository.UserTokenRepository;
+import com.innominds.security.token.serialization.SecurityContextCodec;
+
+/**
+ * Persists the sessions of the cluster token map to the configured DataSource, the same table {@link JpaTokenStore} uses, so a restart of the whole
+ * cluster does not log every user out.<br>
+ * Configured write-behind: hazelcast queues the writes of a member, coalesces repeated writes of a token and hands them over in batches, which are stored
+ * in one transaction each. sessions are loaded one by one on a miss of the map, nothing is loaded at startup. tokens which expire in the map are not
+ * deleted one by one, expired rows are purged every few batches instead.<br>
+ * Runs on hazelcast threads, the transactions are demarcated here.
+ */
+public class SessionMapStore implements MapStore<TokenKey, SessionRecord>, PublicMetrics {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionMapStore.class);
+
+    /** expired rows are deleted once per this many batches */
+    private static final int PURGE_INTERVAL = 64;
+
+    private final UserTokenRepository userTokenRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTemplate;
+
+    private final LongAdder stored = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final AtomicLong largestBatch = new AtomicLong();
+
+    private final LongAdder storeNanos = new LongAdder();
+
+    private final LongAdder deleted = new LongAdder();
+
+    private final LongAdder loaded = new LongAdder();
+
+    private final LongAdder loadMisses = new LongAdder();
+
+    private final LongAdder purged = new LongAdder();
+
+    /**
+     * @param userTokenRepository
+     *            token table
+     * @param transactionManager
+     *            transaction manager of the DataSource
+     */
+    public SessionMapStore(UserTokenRepository userTokenRepository, PlatformTransactionManager transactionManager) {
+        this.userTokenRepository = userTokenRepository;
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+    }
+
+    @Override
+    public void store(TokenKey token, SessionRecord sessionRecord) {
+        storeAll(Collections.singletonMap(token, sessionRecord));
+    }
+
+    /**
+     * one transaction per batch of the write-behind queue
+     */
+    @Override
+    public void storeAll(Map<TokenKey, SessionRecord> sessionRecords) {
+        final long start = System.nanoTime();
+        final List<UserTokenEntity> userTokenEntities = new ArrayList<UserTokenEntity>(sessionRecords.size());
+
+        for (final Map.Entry<TokenKey, SessionRecord> entry : sessionRecords.entrySet()) {
+            final UserTokenEntity userTokenEntity = new UserTokenEntity();
+            userTokenEntity.setToken(entry.getKey().toString());
+            userTokenEntity.setContext(SecurityContextCodec.toBytes(entry.getValue()));
+            userTokenEntity.setUsername(entry.getValue().getUsername());
+            userTokenEntity.setExpiresAt(entry.getValue().getExpiresAt());
+            userTokenEntities.add(userTokenEntity);
+        }
+
+        batches.increment();
+        final boolean purge = batches.sum() % PURGE_INTERVAL == 0;
+
+        transactionTemplate.execute(status -> {
+            userTokenRepository.saveBatch(userTokenEntities);
+            if (purge) {
+                purged.add(userTokenRepository.deleteExpired(System.currentTimeMillis()));
+            }
+            return null;
+        });
+
+        stored.add(sessionRecords.size());
+        storeNanos.add(System.nanoTime() - start);
+        largestBatch.accumulateAndGet(sessionRecords.size(), Math::max);
+        LOGGER.debug("Stored {} sessions in {} ms", sessionRecords.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public void delete(TokenKey token) {
+        deleteAll(Collections.singleton(token));
+    }
+
+    @Override
+    public void deleteAll(Collection<TokenKey> tokens) {
+        final List<String> text = toText(tokens);
+
+        transactionTemplate.execute(status -> userTokenRepository.deleteTokens(text));
+        deleted.add(tokens.size());
+    }
+
+    /**
+     * expired rows count as missing, hazelcast would otherwise keep them for the time-to-live of the map
+     */
+    @Override
+    public SessionRecord load(TokenKey token) {
+        final UserTokenEntity userTokenEntity = readOnlyTemplate.execute(status -> userTokenRepository.findOne(token.toString()));
+
+        if (userTokenEntity == null || userTokenEntity.getExpiresAt() < System.currentTimeMillis()) {
+            loadMisses.increment();
+            return null;
+        }
+        loaded.increment();
+        return SecurityContextCodec.recordFromBytes(userTokenEntity.getContext());
+    }
+
+    @Override
+    public Map<TokenKey, SessionRecord> loadAll(Collection<TokenKey> tokens) {
+        final Map<TokenKey, SessionRecord> result = new HashMap<TokenKey, SessionRecord>();
+        final List<UserTokenEntity> userTokenEntities = readOnlyTemplate.execute(status -> userTokenRepository.findLive(toText(tokens), System
+                .currentTimeMillis()));
+
+        for (final UserTokenEntity userTokenEntity : userTokenEntities) {
+            result.put(TokenKey.parse(userTokenEntity.getToken()), SecurityContextCodec.recordFromBytes(userTokenEntity.getContext()));
+        }
+        loaded.add(result.size());
+        loadMisses.add(tokens.size() - result.size());
+        return result;
+    }
+
+    /**
+     * null: no initial load, sessions are loaded on demand
+     */
+    @Override
+    public Iterable<TokenKey> loadAllKeys() {
+        return null;
+    }
+
+    /**
+     * @return tokens with a live session in the table, to seed the filter of unknown tokens
+     */
+    public List<TokenKey> loadLiveTokens() {
+        final List<TokenKey> tokens = new ArrayList<TokenKey>();
+
+        for (final String token : readOnlyTemplate.execute(status -> userTokenRepository.findLiveTokens(System.currentTimeMillis()))) {
+            tokens.add(TokenKey.parse(token));
+        }
+        return tokens;
+    }
+
+    /**
+     * @param username
+     *            user the tokens were issued to
+     * @return tokens of the user with a live session in the table, including those not loaded into the map
+     */
+    public List<TokenKey> loadTokens(String username) {
+        final List<TokenKey> tokens = new ArrayList<TokenKey>();
+
+        for (final String token : readOnlyTemplate.execute(status -> userTokenRepository.findTokensByUsername(username, System.currentTimeMillis()))) {
+            tokens.add(TokenKey.parse(token));
+        }
+        return tokens;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>("token.persistence.stored", stored.sum()));
+        metrics.add(new Metric<Long>("token.persistence.batches", batches.sum()));
+        metrics.add(new Metric<Long>("token.persistence.largest-batch", largestBatch.get()));
+        metrics.add(new Metric<Long>("token.persistence.store-millis", TimeUnit.NANOSECONDS.toMillis(storeNanos.sum())));
+        metrics.add(new Metric<Long>("token.persistence.deleted", deleted.sum()));
+        metrics.add(new Metric<Long>("token.persistence.loaded", loaded.sum()));
+        metrics.add(new Metric<Long>("token.persistence.load-misses", loadMisses.sum()));
+        metrics.add(new Metric<Long>("token.persistence.purged", purged.sum()));
+        return metrics;
+    }
+
+    private static List<String> toText(Collection<TokenKey> tokens) {
+        final List<String> text = new ArrayList<String>(tokens.size());
+
+        for (final TokenKey token : tokens) {
+            text.add(token.toString());
+        }
+        return text;
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.innominds.security.token;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Set;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import com.innominds.persistence.vo.Authority;
+import com.innominds.persistence.vo.User;
+
+/**
+ * What the token stores keep per session: user id, username, the interned authority set and the issue and expiry timestamps. no password hash,
+ * credentials or request details are stored.<br>
+ * The authentication is rebuilt lazily from these fields on first use and kept with the record, so a record held by a near cache or an in memory store
+ * builds it, and the authority bits the access decision uses, once.
+ */
+public final class SessionRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** user id of principals which are not database users */
+    public static final long NO_USER_ID = -1;
+
+    private final long userId;
+
+    private final String username;
+
+    private final Set<Authority> authorities;
+
+    private final long issuedAt;
+
+    private final long expiresAt;
+
+    private transient volatile Authentication authentication;
+
+    /**
+     * @param userId
+     *            primary key of the user or {@link #NO_USER_ID}
+     * @param username
+     *            name of the authenticated user, null for a context without authentication
+     * @param authorities
+     *            set from {@link Authorities}
+     * @param issuedAt
+     *            epoch milliseconds
+     * @param expiresAt
+     *            epoch milliseconds, {@link Long#MAX_VALUE} if the store decides
+     */
+    public SessionRecord(long userId, String username, Set<Authority> authorities, long issuedAt, long expiresAt) {
+        this.userId = userId;
+        this.username = username;
+        this.authorities = authorities;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @param securityContext
+     *            context to store
+     * @param expiresAt
+     *            epoch milliseconds
+     * @return record issued now
+     */
+    public static SessionRecord of(SecurityContext securityContext, long expiresAt) {
+        final Authentication source = securityContext.getAuthentication();
+        final long now = System.currentTimeMillis();
+
+        if (source == null) {
+            return new SessionRecord(NO_USER_ID, null, Collections.<Authority> emptySet(), now, expiresAt);
+        }
+
+        final Long userId = source.getPrincipal() instanceof User ? ((User) source.getPrincipal()).getId() : null;
+        return new SessionRecord(userId == null ? NO_USER_ID : userId, source.getName(), Authorities.setOf(source.getAuthorities()), now, expiresAt);
+    }
+
+    /**
+     * @return {@link SessionAuthentication} with a {@link User} principal, built on first call. null for a context without authentication. a later
+     *         call marks it reused, so it keeps the decisions of the session
+     */
+    public Authentication getAuthentication() {
+        Authentication result = authentication;
+
+        if (result != null) {
+            ((SessionAuthentication) result).reused();
+        } else if (username != null) {
+            final User user = new User();
+            user.setId(userId == NO_USER_ID ? null : userId);
+            user.setUsername(username);
+            user.setAccountNonExpired(true);
+            user.setAccountNonLocked(true);
+            user.setCredentialsNonExpired(true);
+            user.setEnabled(true);
+            user.setAuthorities(authorities);
+
+            result = new SessionAuthentication(user, authorities);
+            authentication = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return new context around the shared authentication
+     */
+    public SecurityContext toSecurityContext() {
+        final SecurityContext securityContext = new SecurityContextImpl();
+        securityContext.setAuthentication(getAuthentication());
+        return securityContext;
+    }
+
+    /**
+     * @param newExpiresAt
+     *            epoch milliseconds
+     * @return copy with another expiry, sharing the built authentication
+     */
+    public SessionRecord withExpiresAt(long newExpiresAt) {
+        final SessionRecord sessionRecord = new SessionRecord(userId, username, authorities, issuedAt, newExpiresAt);
+        sessionRecord.authentication = authentication;
+        return sessionRecord;
+    }
+
+    public boolean isExpired(long now) {
+        return expiresAt < now;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Set<Authority> getAuthorities() {
+        return authorities;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * java deserialization shares the authority flyweights of this node as well
+     */
+    private Object readResolve() {
+        return new SessionRecord(userId, username, Authorities.setOf(authorities), issuedAt, expiresAt);
+    }
+
+    @Override
+    public String toString() {
+        return "SessionRecord [userId=" + userId + ", username=" + username + ", authorities=" + authorities + ", issuedAt=" + issuedAt + ", expiresAt="
+                + expiresAt + "]";
+    }
+
+}
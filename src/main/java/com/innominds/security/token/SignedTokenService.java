@@ -0,0 +1,243 @@
+package com.innominds.security.token;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.innominds.persistence.vo.User;
+
+/**
+ * Issues and verifies self contained access tokens: <code>base64url(claims).base64url(HmacSHA256(claims))</code>.<br>
+ * The claims carry token id, issue time, user id, username, authorities and expiry, so a token is verified without asking any store. revoked tokens are looked up in
+ * the local copy of the {@link TokenDenylist}.<br>
+ * Forged and malformed tokens are counted, not logged above debug, so token guessing does not flood the log.
+ */
+public class SignedTokenService implements PublicMetrics {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SignedTokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /** 2 added the issue time */
+    private static final byte VERSION = 2;
+
+    private static final char SEPARATOR = '.';
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec secretKey;
+
+    private final long validityMillis;
+
+    private final TokenDenylist tokenDenylist;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final LongAdder invalidSignatures = new LongAdder();
+
+    private final LongAdder malformed = new LongAdder();
+
+    /** Mac instances are not thread safe */
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    /**
+     * @param key
+     *            shared secret, identical on every node
+     * @param validityMillis
+     *            lifetime of issued tokens
+     * @param tokenDenylist
+     *            revoked token ids
+     */
+    public SignedTokenService(byte[] key, long validityMillis, TokenDenylist tokenDenylist) {
+        secretKey = new SecretKeySpec(key, ALGORITHM);
+        this.validityMillis = validityMillis;
+        this.tokenDenylist = tokenDenylist;
+        newMac();// fail at startup on a bad key
+    }
+
+    /**
+     * @param token
+     *            token received from the client
+     * @return true if the token has the signed layout. opaque tokens never contain the separator
+     */
+    public static boolean isSigned(String token) {
+        return token.indexOf(SEPARATOR) > 0;
+    }
+
+    /**
+     * @param authentication
+     *            successful authentication with a {@link User} principal
+     * @return signed token
+     */
+    public String issue(Authentication authentication) {
+        final User user = (User) authentication.getPrincipal();
+        final long issuedAt = System.currentTimeMillis();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(secureRandom.nextLong());
+            out.writeLong(issuedAt);
+            out.writeLong(issuedAt + validityMillis);
+            out.writeLong(user.getId() == null ? -1 : user.getId());
+            out.writeUTF(user.getUsername());
+            out.writeShort(authentication.getAuthorities().size());
+
+            for (final GrantedAuthority grantedAuthority : authentication.getAuthorities()) {
+                out.writeUTF(grantedAuthority.getAuthority());
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to write token claims", e);
+        }
+
+        tokenDenylist.issued(user.getUsername(), issuedAt + validityMillis);
+        final byte[] claims = bytes.toByteArray();
+        return ENCODER.encodeToString(claims) + SEPARATOR + ENCODER.encodeToString(macs.get().doFinal(claims));
+    }
+
+    /**
+     * @param token
+     *            signed token
+     * @return authentication rebuilt from the claims, or null when the signature does not match, the token expired or it was revoked
+     */
+    public Authentication verify(String token) {
+        final Claims claims = readClaims(token);
+
+        if (claims == null || claims.expiresAt < System.currentTimeMillis() || tokenDenylist.isDenied(claims.tokenId)) {
+            return null;
+        }
+
+        if (claims.issuedAt < tokenDenylist.deniedBefore(claims.username)) {
+            return null;// issued before all sessions of the user were revoked
+        }
+
+        return new SessionRecord(claims.userId, claims.username, Authorities.setOfNames(claims.authorities), claims.issuedAt, claims.expiresAt)
+                .getAuthentication();
+    }
+
+    /**
+     * @param token
+     *            signed token to reject from now on, on every node
+     * @return false when the token is forged or malformed, nothing is revoked then
+     */
+    public boolean revoke(String token) {
+        final Claims claims = readClaims(token);
+
+        if (claims != null) {
+            tokenDenylist.deny(claims.tokenId, claims.expiresAt);
+        }
+        return claims != null;
+    }
+
+    /**
+     * @param username
+     *            user whose signed tokens issued until now are rejected from now on, on every node. the denial lasts until the latest of them
+     *            expires, whatever validity it was issued with
+     */
+    public void revokeUser(String username) {
+        final long now = System.currentTimeMillis();
+        tokenDenylist.denyUser(username, now, now + validityMillis);
+    }
+
+    Claims readClaims(String token) {
+        final int separator = token.lastIndexOf(SEPARATOR);
+
+        if (separator < 0) {
+            malformed.increment();
+            return null;
+        }
+
+        try {
+            final byte[] claims = DECODER.decode(token.substring(0, separator));
+            final byte[] signature = DECODER.decode(token.substring(separator + 1));
+
+            if (!MessageDigest.isEqual(signature, macs.get().doFinal(claims))) {
+                invalidSignatures.increment();
+                LOGGER.debug("Rejecting token with invalid signature");
+                return null;
+            }
+
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(claims))) {
+
+                if (in.readByte() != VERSION) {
+                    malformed.increment();
+                    return null;
+                }
+
+                final Claims result = new Claims();
+                result.tokenId = Long.toString(in.readLong(), Character.MAX_RADIX);
+                result.issuedAt = in.readLong();
+                result.expiresAt = in.readLong();
+                result.userId = in.readLong();
+                result.username = in.readUTF();
+
+                final int size = in.readShort();
+                for (int i = 0; i < size; i++) {
+                    result.authorities.add(in.readUTF());
+                }
+                return result;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            malformed.increment();
+            LOGGER.debug("Rejecting malformed signed token");
+            return null;
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>("token.signed.invalid-signatures", invalidSignatures.sum()));
+        metrics.add(new Metric<Long>("token.signed.malformed", malformed.sum()));
+        return metrics;
+    }
+
+    private Mac newMac() {
+        try {
+            final Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + ALGORITHM, e);
+        }
+    }
+
+    static final class Claims {
+
+        String tokenId;
+
+        long issuedAt;
+
+        long expiresAt;
+
+        long userId;
+
+        String username;
+
+        final List<String> authorities = new ArrayList<String>();
+    }
+
+}
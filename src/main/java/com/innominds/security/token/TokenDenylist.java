@@ -0,0 +1,49 @@
+package com.innominds.security.token;
+
+/**
+ * Identifiers of signed tokens revoked before their expiry, and users whose earlier tokens were all revoked. checked on every request, so implementations
+ * answer from local memory. the latest expiry of the tokens issued to a user is kept so that revoking the user outlasts all of them.
+ */
+public interface TokenDenylist {
+
+    /**
+     * @param tokenId
+     *            identifier carried in the signed token
+     * @param expiresAt
+     *            expiry of the token in epoch milliseconds, the entry is not needed afterwards
+     */
+    void deny(String tokenId, long expiresAt);
+
+    /**
+     * @param tokenId
+     *            identifier carried in the signed token
+     * @return true if the token was revoked
+     */
+    boolean isDenied(String tokenId);
+
+    /**
+     * @param username
+     *            user a token was issued to
+     * @param expiresAt
+     *            expiry of the token, a later denial of the user lasts at least until then
+     */
+    void issued(String username, long expiresAt);
+
+    /**
+     * @param username
+     *            user whose tokens are revoked
+     * @param issuedBefore
+     *            tokens issued before this epoch millisecond are denied, later logins are not affected
+     * @param expiresAt
+     *            earliest end of the denial, it lasts until the latest token {@link #issued(String, long)} to the user expired if that is later
+     */
+    void denyUser(String username, long issuedBefore, long expiresAt);
+
+    /**
+     * @param username
+     *            user the token was issued to
+     * @return epoch millisecond before which tokens of the user are denied, zero if none are
+     */
+    long deniedBefore(String username);
+
+}
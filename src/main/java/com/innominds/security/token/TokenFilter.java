@@ -0,0 +1,332 @@
+package com.innominds.security.token;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.IMap;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.query.Predicate;
+
+/**
+ * Node local filter of the tokens present in the cluster token map, so that a lookup of a token which was never issued, or is gone already, is answered
+ * without a remote call.<br>
+ * The live tokens are kept in a counting bloom filter of 4 bit counters, fed by the entry events of the token map: added tokens increment their counters,
+ * removed, expired and evicted ones decrement them. a counter which reached 15 is never decremented again, so the filter only ever errs towards "might
+ * contain" and a false answer is definite. a token the filter lets through and the map does not know is remembered in a small negative cache for a short
+ * while, which covers clients retrying with a stale token and false positives alike.<br>
+ * With a map store evicted tokens can be loaded again, then only removals count and expired tokens stay in the filter as false positives.<br>
+ * Events reach the other members asynchronously. a token carries the second it was issued, see {@link TokenKey#getIssuedAtSecond()}, and a negative for
+ * a token issued less than the grace period ago is not final: it is looked up in the map, so a client sent to another node right after login is not
+ * rejected before the added event arrived there. such lookups are counted, tokens forged with a fresh issue second cost what every token cost without
+ * the filter.
+ */
+public class TokenFilter implements EntryAddedListener<TokenKey, SessionRecord>, EntryRemovedListener<TokenKey, SessionRecord>,
+        EntryEvictedListener<TokenKey, SessionRecord>, PublicMetrics {
+
+    private static final int COUNTERS_PER_WORD = 16;
+
+    private static final long COUNTER_MASK = 0xF;
+
+    private final boolean enabled;
+
+    private final boolean removeEvicted;
+
+    private final AtomicLongArray counters;
+
+    private final int counterCount;
+
+    private final int hashCount;
+
+    private final ConcurrentMap<TokenKey, Long> misses = new ConcurrentHashMap<TokenKey, Long>();
+
+    private final int missCacheSize;
+
+    private final long missTtlMillis;
+
+    private final long graceSeconds;
+
+    private final LongAdder rejections = new LongAdder();
+
+    private final LongAdder missHits = new LongAdder();
+
+    private final LongAdder remoteMisses = new LongAdder();
+
+    private final LongAdder saturations = new LongAdder();
+
+    private final LongAdder graceLookups = new LongAdder();
+
+    /**
+     * @param enabled
+     *            when false every token might be contained and nothing is cached
+     * @param expectedTokens
+     *            number of live tokens in the cluster the filter is sized for
+     * @param falsePositiveRate
+     *            rate of unknown tokens let through at expectedTokens live tokens
+     * @param missCacheSize
+     *            maximum number of tokens remembered as missing
+     * @param missTtlSeconds
+     *            how long a token is remembered as missing
+     * @param removeEvicted
+     *            false when evicted tokens can still be loaded from a map store
+     * @param graceSeconds
+     *            how long after it was issued a token the filter does not know is still looked up in the map
+     */
+    public TokenFilter(boolean enabled, int expectedTokens, double falsePositiveRate, int missCacheSize, int missTtlSeconds, boolean removeEvicted,
+            int graceSeconds) {
+        this.enabled = enabled;
+        this.removeEvicted = removeEvicted;
+
+        final double bits = -Math.max(expectedTokens, 1) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        counterCount = enabled ? (int) Math.min(Math.ceil(bits / COUNTERS_PER_WORD) * COUNTERS_PER_WORD, Integer.MAX_VALUE - COUNTERS_PER_WORD)
+                : COUNTERS_PER_WORD;
+        hashCount = Math.max(1, (int) Math.round(bits / Math.max(expectedTokens, 1) * Math.log(2)));
+        counters = new AtomicLongArray(counterCount / COUNTERS_PER_WORD);
+        this.missCacheSize = missCacheSize;
+        missTtlMillis = missTtlSeconds * 1000L;
+        this.graceSeconds = graceSeconds;
+    }
+
+    /**
+     * @return false when the token is definitely not in the token map, true for unknown tokens within the grace period
+     */
+    public boolean mightContain(TokenKey token) {
+        if (!enabled) {
+            return true;
+        }
+
+        final long h1 = token.getLow();
+        final long h2 = token.getHigh() | 1;
+        for (int i = 0; i < hashCount; i++) {
+            final int index = index(h1 + i * h2);
+            if ((counters.get(index / COUNTERS_PER_WORD) >>> shift(index) & COUNTER_MASK) == 0) {
+                if (isIssuedRecently(token)) {
+                    graceLookups.increment();// its added event may not have arrived yet
+                    return true;
+                }
+                rejections.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true when the token map answered recently that it does not know the token
+     */
+    public boolean isKnownMissing(TokenKey token) {
+        if (!enabled) {
+            return false;
+        }
+
+        final Long expiresAt = misses.get(token);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt < System.currentTimeMillis()) {
+            misses.remove(token, expiresAt);
+            return false;
+        }
+        missHits.increment();
+        return true;
+    }
+
+    /**
+     * remembers a token the filter let through but the token map did not know
+     */
+    public void recordMiss(TokenKey token) {
+        remoteMisses.increment();
+
+        if (!enabled || missCacheSize <= 0) {
+            return;
+        }
+        if (misses.size() >= missCacheSize) {
+            evictMisses();
+        }
+        misses.put(token, System.currentTimeMillis() + missTtlMillis);
+    }
+
+    public void add(TokenKey token) {
+        if (enabled) {
+            update(token, 1);
+            misses.remove(token);
+        }
+    }
+
+    public void remove(TokenKey token) {
+        if (enabled) {
+            update(token, -1);
+        }
+    }
+
+    /**
+     * the issue second of another node may be slightly ahead of this clock
+     */
+    private boolean isIssuedRecently(TokenKey token) {
+        final long age = System.currentTimeMillis() / 1000 - token.getIssuedAtSecond();
+        return age <= graceSeconds && age >= -graceSeconds;
+    }
+
+    /**
+     * counts the tokens already in the map a bucket of keys at a time, so no single call brings every key of the cluster to this node. called once after
+     * the filter was registered as listener
+     *
+     * @param tokenMap
+     *            the token map
+     * @param pageSize
+     *            keys fetched per call, about
+     * @return number of tokens added
+     */
+    public int seed(IMap<TokenKey, SessionRecord> tokenMap, int pageSize) {
+        final int buckets = Math.max(1, tokenMap.size() / Math.max(1, pageSize) + 1);
+        int count = 0;
+
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            final Set<TokenKey> keys = tokenMap.keySet(new KeyBucket(bucket, buckets));
+            count += addAll(keys);
+        }
+        return count;
+    }
+
+    /**
+     * counts the tokens already in the map, called once after the filter was registered as listener
+     *
+     * @return number of tokens added
+     */
+    public int addAll(Collection<TokenKey> tokens) {
+        int count = 0;
+
+        for (final TokenKey token : tokens) {
+            add(token);
+            count++;
+        }
+        return count;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void update(TokenKey token, int delta) {
+        final long h1 = token.getLow();
+        final long h2 = token.getHigh() | 1;
+
+        for (int i = 0; i < hashCount; i++) {
+            final int index = index(h1 + i * h2);
+            final int word = index / COUNTERS_PER_WORD;
+            final int shift = shift(index);
+
+            long current;
+            long next;
+            do {
+                current = counters.get(word);
+                final long count = current >>> shift & COUNTER_MASK;
+
+                if (count == COUNTER_MASK) {
+                    if (delta > 0) {
+                        saturations.increment();
+                    }
+                    break;// saturated counters stay, their real count is unknown
+                }
+                if (count == 0 && delta < 0) {
+                    break;// token counted before the filter was seeded
+                }
+                next = current + ((long) delta << shift);
+            } while (!counters.compareAndSet(word, current, next));
+        }
+    }
+
+    private int index(long hash) {
+        return (int) ((hash >>> 1) % counterCount);
+    }
+
+    private static int shift(int index) {
+        return (index % COUNTERS_PER_WORD) * 4;
+    }
+
+    /**
+     * drops expired entries, then arbitrary ones until there is room again. tokens are random, so is the iteration order
+     */
+    private void evictMisses() {
+        final int target = missCacheSize - Math.max(1, missCacheSize / 16);
+        final long now = System.currentTimeMillis();
+
+        for (final Iterator<Map.Entry<TokenKey, Long>> it = misses.entrySet().iterator(); it.hasNext();) {
+            if (it.next().getValue() < now) {
+                it.remove();
+            }
+        }
+        for (final Iterator<TokenKey> it = misses.keySet().iterator(); it.hasNext() && misses.size() > target;) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    @Override
+    public void entryAdded(EntryEvent<TokenKey, SessionRecord> event) {
+        add(event.getKey());
+    }
+
+    @Override
+    public void entryRemoved(EntryEvent<TokenKey, SessionRecord> event) {
+        remove(event.getKey());
+    }
+
+    /**
+     * expired entries are reported as evicted as well
+     */
+    @Override
+    public void entryEvicted(EntryEvent<TokenKey, SessionRecord> event) {
+        if (removeEvicted) {
+            remove(event.getKey());
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>("token.filter.rejections", rejections.sum()));
+        metrics.add(new Metric<Long>("token.filter.miss-cache.hits", missHits.sum()));
+        metrics.add(new Metric<Long>("token.filter.remote-misses", remoteMisses.sum()));
+        metrics.add(new Metric<Long>("token.filter.saturations", saturations.sum()));
+        metrics.add(new Metric<Long>("token.filter.grace-lookups", graceLookups.sum()));
+        metrics.add(new Metric<Integer>("token.filter.miss-cache.size", misses.size()));
+        metrics.add(new Metric<Long>("token.filter.bytes", counters.length() * 8L));
+        return metrics;
+    }
+
+    /**
+     * the keys of one of several equally large buckets, by the random low half of the key. evaluated on the members
+     */
+    static final class KeyBucket implements Predicate<TokenKey, SessionRecord> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int bucket;
+
+        private final int buckets;
+
+        KeyBucket(int bucket, int buckets) {
+            this.bucket = bucket;
+            this.buckets = buckets;
+        }
+
+        @Override
+        public boolean apply(Map.Entry<TokenKey, SessionRecord> mapEntry) {
+            return (mapEntry.getKey().getLow() >>> 1) % buckets == bucket;
+        }
+    }
+
+}
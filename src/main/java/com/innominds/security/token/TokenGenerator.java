@@ -0,0 +1,93 @@
+package com.innominds.security.token;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Generates opaque authentication tokens as 128 bit {@link TokenKey}s, 96 random bits and the second they are issued.<br>
+ * Every thread draws from its own SHA1PRNG instance, so logins never contend on one generator and never wait for the entropy pool. the per thread
+ * generators are seeded from the platform {@link SecureRandom} (non blocking) and mixed with fresh seed material after a configurable number of tokens.
+ */
+public class TokenGenerator {
+
+    private static final String ALGORITHM = "SHA1PRNG";
+
+    private static final int SEED_BYTES = 32;
+
+    /** seed source shared by all threads, only touched on creation and reseed */
+    private final SecureRandom seedSource = new SecureRandom();
+
+    private final int reseedInterval;
+
+    private final ThreadLocal<Generator> generators = ThreadLocal.withInitial(Generator::new);
+
+    /**
+     * @param reseedInterval
+     *            tokens a thread generates before its generator is reseeded
+     */
+    public TokenGenerator(int reseedInterval) {
+
+        if (reseedInterval < 1) {
+            throw new IllegalArgumentException("Reseed interval must be positive, got " + reseedInterval);
+        }
+
+        this.reseedInterval = reseedInterval;
+    }
+
+    /**
+     * @return new random token issued now. its text form never contains '.', so it can not be mistaken for a signed token
+     */
+    public TokenKey nextKey() {
+        final Generator generator = generators.get();
+        generator.next();
+        return TokenKey.issued(System.currentTimeMillis() / 1000, generator.buffer);
+    }
+
+    /**
+     * @param bytes
+     *            filled with random bytes of the calling thread's generator
+     */
+    public void nextBytes(byte[] bytes) {
+        generators.get().random.nextBytes(bytes);
+    }
+
+    byte[] seed() {
+        final byte[] seed = new byte[SEED_BYTES];
+        synchronized (seedSource) {
+            seedSource.nextBytes(seed);
+        }
+        return seed;
+    }
+
+    /**
+     * generator owned by a single thread together with its reusable buffer
+     */
+    private final class Generator {
+
+        private final SecureRandom random;
+
+        private final byte[] buffer = new byte[TokenKey.BYTES];
+
+        private int remaining = reseedInterval;
+
+        Generator() {
+            try {
+                random = SecureRandom.getInstance(ALGORITHM);
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException(ALGORITHM + " is not available", e);
+            }
+            random.setSeed(seed());// seeding before the first use replaces the self seeding, which may block
+        }
+
+        void next() {
+
+            if (--remaining == 0) {
+                random.setSeed(seed());// supplements the current state
+                remaining = reseedInterval;
+            }
+            random.nextBytes(buffer);
+        }
+
+    }
+
+}
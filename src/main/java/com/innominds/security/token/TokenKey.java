@@ -0,0 +1,164 @@
+package com.innominds.security.token;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Opaque authentication token as a fixed width 128 bit value. the token map and the session index are keyed by this instead of the token text, the
+ * <code>x-auth-token</code> header is decoded once per request with {@link #parse(String)}.<br>
+ * The text form is 22 characters of base64url without padding, the form handed out at login. the top 32 bits of the high half carry the second the
+ * token was issued, the other 96 bits are random. the low half is random, so {@link #hashCode()} and the Hazelcast partition hash over the 16
+ * serialized bytes spread evenly without further mixing.
+ */
+public final class TokenKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** random bytes carried by a key */
+    public static final int BYTES = 16;
+
+    /** length of the text form */
+    public static final int LENGTH = 22;
+
+    private static final int ISSUED_SHIFT = 32;
+
+    private static final long RANDOM_HIGH_MASK = (1L << ISSUED_SHIFT) - 1;
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private final long high;
+
+    private final long low;
+
+    public TokenKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param bytes
+     *            at least {@link #BYTES} bytes, big endian
+     * @return key of the first 16 bytes
+     */
+    public static TokenKey fromBytes(byte[] bytes) {
+        return new TokenKey(readLong(bytes, 0), readLong(bytes, 8));
+    }
+
+    /**
+     * @param issuedAtSecond
+     *            epoch second the token is issued
+     * @param bytes
+     *            at least {@link #BYTES} random bytes, the first 4 are replaced by the issue second
+     * @return key carrying the issue second and 96 random bits
+     */
+    public static TokenKey issued(long issuedAtSecond, byte[] bytes) {
+        return new TokenKey(issuedAtSecond << ISSUED_SHIFT | readLong(bytes, 0) & RANDOM_HIGH_MASK, readLong(bytes, 8));
+    }
+
+    /**
+     * Decodes the text form without intermediate buffers.
+     *
+     * @param token
+     *            token as received from the client
+     * @return the key, or null when the text is not a canonical 22 character base64url token, e.g. a signed token or garbage
+     */
+    public static TokenKey parse(String token) {
+
+        if (token == null || token.length() != LENGTH) {
+            return null;
+        }
+
+        long high = 0;
+        long low = 0;
+
+        for (int i = 0; i < LENGTH - 1; i++) {
+            final int value = decode(token.charAt(i));
+            if (value < 0) {
+                return null;
+            }
+            high = high << 6 | low >>> 58;
+            low = low << 6 | value;
+        }
+
+        // 21 characters carried 126 bits, the last one carries 2 bits and 4 zero bits
+        final int value = decode(token.charAt(LENGTH - 1));
+        if (value < 0 || (value & 0xF) != 0) {
+            return null;
+        }
+        high = high << 2 | low >>> 62;
+        low = low << 2 | value >>> 4;
+        return new TokenKey(high, low);
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * @return epoch second the token was issued, as claimed by the token. zero for keys which were not issued by a {@link TokenGenerator}
+     */
+    public long getIssuedAtSecond() {
+        return high >>> ISSUED_SHIFT;
+    }
+
+    /**
+     * @return the text form, 22 characters of base64url
+     */
+    @Override
+    public String toString() {
+        final char[] chars = new char[LENGTH];
+        long h = high;
+        long l = low;
+
+        for (int i = 0; i < LENGTH - 1; i++) {
+            chars[i] = ALPHABET[(int) (h >>> 58)];
+            h = h << 6 | l >>> 58;
+            l <<= 6;
+        }
+        chars[LENGTH - 1] = ALPHABET[(int) (h >>> 62) << 4];
+        return new String(chars);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ low >>> 32);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TokenKey)) {
+            return false;
+        }
+        final TokenKey other = (TokenKey) obj;
+        return high == other.high && low == other.low;
+    }
+
+    private static int decode(char c) {
+        return c < DECODE.length ? DECODE[c] : -1;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = value << 8 | bytes[i] & 0xFF;
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.innominds.security.token;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.IMap;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.monitor.LocalMapStats;
+
+/**
+ * Publishes the memory this member spends on the token map through the actuator metrics endpoint: entry counts and memory cost of owned and backup
+ * entries, the entries evicted or expired on this member and, with a write-behind map store, the entries not yet written.<br>
+ * Register this as local entry listener, so it only counts events of the partitions this member owns.
+ *
+ * @param <K>
+ *            token type
+ * @param <V>
+ *            value type
+ */
+public class TokenMapMetrics<K, V> implements EntryEvictedListener<K, V>, PublicMetrics {
+
+    private final IMap<K, V> tokenMap;
+
+    private final String prefix;
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param tokenMap
+     *            map to account
+     * @param prefix
+     *            metric name prefix, e.g. token.map
+     */
+    public TokenMapMetrics(IMap<K, V> tokenMap, String prefix) {
+        this.tokenMap = tokenMap;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void entryEvicted(EntryEvent<K, V> event) {
+        evictions.increment();// hazelcast reports expiry as eviction too
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final LocalMapStats localMapStats = tokenMap.getLocalMapStats();
+        final Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>(prefix + ".owned.entries", localMapStats.getOwnedEntryCount()));
+        metrics.add(new Metric<Long>(prefix + ".owned.bytes", localMapStats.getOwnedEntryMemoryCost()));
+        metrics.add(new Metric<Long>(prefix + ".backup.entries", localMapStats.getBackupEntryCount()));
+        metrics.add(new Metric<Long>(prefix + ".backup.bytes", localMapStats.getBackupEntryMemoryCost()));
+        metrics.add(new Metric<Long>(prefix + ".heap.bytes", localMapStats.getHeapCost()));
+        metrics.add(new Metric<Long>(prefix + ".dirty.entries", localMapStats.getDirtyEntryCount()));
+        metrics.add(new Metric<Long>(prefix + ".evictions", evictions.sum()));
+        return metrics;
+    }
+
+}
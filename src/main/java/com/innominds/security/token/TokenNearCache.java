@@ -0,0 +1,248 @@
+package com.innominds.security.token;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+
+/**
+ * Bounded per-node cache of values resolved from the cluster token map.<br>
+ * Register this as an entry listener on the token map, so entries removed, evicted or updated by any member are dropped from every node. Hit, miss and
+ * invalidation counters are published through the actuator metrics endpoint.
+ *
+ * @param <K>
+ *            token type
+ * @param <V>
+ *            cached value type
+ */
+public class TokenNearCache<K, V> implements EntryUpdatedListener<K, V>, EntryRemovedListener<K, V>, EntryEvictedListener<K, V>, PublicMetrics {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenNearCache.class);
+
+    private final ConcurrentMap<K, CachedValue<V>> entries = new ConcurrentHashMap<K, CachedValue<V>>();
+
+    private final int maxSize;
+
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    /** bumped on every invalidation event. a value loaded while this changed may already be stale, so it is not cached */
+    private final AtomicLong invalidationSequence = new AtomicLong();
+
+    /**
+     * @param maxSize
+     *            maximum number of entries kept on this node. zero disables caching
+     * @param ttlSeconds
+     *            how long an entry is served without asking the cluster again
+     */
+    public TokenNearCache(int maxSize, int ttlSeconds) {
+        this.maxSize = maxSize;
+        ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    /**
+     * Returns the locally cached value, or asks the loader (typically the cluster map) and caches the answer.
+     *
+     * @param key
+     *            token
+     * @param loader
+     *            invoked on local miss only
+     * @return value or null when the loader does not know the key
+     */
+    public V get(K key, Function<K, V> loader) {
+
+        if (maxSize <= 0) {
+            return loader.apply(key);
+        }
+
+        final V cached = peek(key);
+
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        final long sequence = invalidationSequence.get();
+        final V value = loader.apply(key);
+
+        if (value != null && sequence == invalidationSequence.get()) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Asynchronous variant of {@link #get(Object, Function)}, a local hit completes immediately.
+     *
+     * @param key
+     *            token
+     * @param loader
+     *            invoked on local miss only
+     * @return value or null when the loader does not know the key
+     */
+    public CompletableFuture<V> getAsync(K key, Function<K, CompletableFuture<V>> loader) {
+
+        if (maxSize <= 0) {
+            return loader.apply(key);
+        }
+
+        final V cached = peek(key);
+
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        misses.increment();
+        final long sequence = invalidationSequence.get();
+        return loader.apply(key).thenApply(value -> {
+            if (value != null && sequence == invalidationSequence.get()) {
+                put(key, value);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * @param key
+     *            token
+     * @return locally cached value without touching the cluster, null if absent or expired
+     */
+    public V peek(K key) {
+        final CachedValue<V> cachedValue = entries.get(key);
+        return cachedValue == null || cachedValue.expiresAt < System.currentTimeMillis() ? null : cachedValue.value;
+    }
+
+    /**
+     * Expired entries stay until they are invalidated or evicted, so they can still be served while the cluster does not answer.
+     *
+     * @param key
+     *            token
+     * @return locally cached value even past its ttl, null if absent or invalidated
+     */
+    public V peekStale(K key) {
+        final CachedValue<V> cachedValue = entries.get(key);
+        return cachedValue == null ? null : cachedValue.value;
+    }
+
+    /**
+     * Caches a value written by this node. remote writes arrive as update events and invalidate instead.
+     *
+     * @param key
+     *            token
+     * @param value
+     *            value
+     */
+    public void put(K key, V value) {
+
+        if (maxSize <= 0) {
+            return;
+        }
+
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(key, new CachedValue<V>(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * @param key
+     *            token to drop from this node
+     */
+    public void invalidate(K key) {
+        invalidationSequence.incrementAndGet();
+
+        if (entries.remove(key) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Tokens are random, so iteration order of the map is effectively random too. expired entries go first, then arbitrary ones until there is room again.
+     */
+    private void evict() {
+
+        final int target = maxSize - Math.max(1, maxSize / 16);
+        final long now = System.currentTimeMillis();
+
+        for (final Iterator<CachedValue<V>> it = entries.values().iterator(); it.hasNext();) {
+            if (it.next().expiresAt < now) {
+                it.remove();
+            }
+        }
+
+        for (final Iterator<K> it = entries.keySet().iterator(); it.hasNext() && entries.size() > target;) {
+            it.next();
+            it.remove();
+        }
+        LOGGER.debug("Near cache evicted down to {} entries", entries.size());
+    }
+
+    @Override
+    public void entryUpdated(EntryEvent<K, V> event) {
+        if (event.getMember() != null && event.getMember().localMember()) {
+            return;// this node already cached what it wrote
+        }
+        invalidate(event.getKey());
+    }
+
+    @Override
+    public void entryRemoved(EntryEvent<K, V> event) {
+        invalidate(event.getKey());
+    }
+
+    @Override
+    public void entryEvicted(EntryEvent<K, V> event) {
+        invalidate(event.getKey());
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>("token.nearcache.hits", hits.sum()));
+        metrics.add(new Metric<Long>("token.nearcache.misses", misses.sum()));
+        metrics.add(new Metric<Long>("token.nearcache.invalidations", invalidations.sum()));
+        metrics.add(new Metric<Integer>("token.nearcache.size", entries.size()));
+        return metrics;
+    }
+
+    private static final class CachedValue<V> {
+
+        final V value;
+
+        final long expiresAt;
+
+        CachedValue(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.innominds.security.token;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+
+/**
+ * Storage of authentication tokens against the security context they were issued for. tokens are passed as {@link TokenKey}, decoded once from the
+ * request header.<br>
+ * The implementation is chosen with the <code>token.store</code> property (hazelcast, memory, offheap or jpa), typically from a profile specific
+ * properties file.
+ * <br>
+ * Every store keeps an index from username to the user's tokens, maintained on put, revoke and expiry, so all sessions of a user are found without a scan.
+ * <br>
+ * The request path uses the asynchronous variants, so it can stop waiting once its latency budget is spent. stores without remote calls complete them
+ * before returning.
+ */
+public interface TokenStore {
+
+    /**
+     * Stores or replaces the security context of a token.
+     *
+     * @param token
+     *            authentication token
+     * @param securityContext
+     *            security context
+     * @param ttl
+     *            time to live, zero keeps the token until it is revoked or the default lifetime of the store ends, if it has one
+     * @param timeUnit
+     *            unit of the ttl
+     */
+    void put(TokenKey token, SecurityContext securityContext, long ttl, TimeUnit timeUnit);
+
+    /**
+     * @param token
+     *            authentication token
+     * @return security context or null when the token is unknown or expired
+     */
+    SecurityContext get(TokenKey token);
+
+    /**
+     * @param token
+     *            authentication token
+     * @return security context or null, as {@link #get(TokenKey)}
+     */
+    default CompletableFuture<SecurityContext> getAsync(TokenKey token) {
+        return CompletableFuture.completedFuture(get(token));
+    }
+
+    /**
+     * Stores a security context without waiting for the store, as {@link #put(TokenKey, SecurityContext, long, TimeUnit)}.
+     *
+     * @return completed once the context is stored
+     */
+    default CompletableFuture<Void> putAsync(TokenKey token, SecurityContext securityContext, long ttl, TimeUnit timeUnit) {
+        put(token, securityContext, ttl, timeUnit);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Extends the lifetime of a token without waiting for the store, as {@link #touch(TokenKey, long, TimeUnit)}.
+     */
+    default CompletableFuture<Boolean> touchAsync(TokenKey token, long ttl, TimeUnit timeUnit) {
+        return CompletableFuture.completedFuture(touch(token, ttl, timeUnit));
+    }
+
+    /**
+     * Fallback of the request path when the store does not answer in time.
+     *
+     * @param token
+     *            authentication token
+     * @return security context this node still holds locally even if it is older than the store would serve it, null when there is none
+     */
+    default SecurityContext getStale(TokenKey token) {
+        return null;
+    }
+
+    /**
+     * @param token
+     *            authentication token
+     * @return true if the token is known and not expired
+     */
+    boolean contains(TokenKey token);
+
+    /**
+     * Extends the lifetime of a token without changing its security context.
+     *
+     * @param token
+     *            authentication token
+     * @param ttl
+     *            new time to live counted from now
+     * @param timeUnit
+     *            unit of the ttl
+     * @return false if the token is unknown or already expired
+     */
+    boolean touch(TokenKey token, long ttl, TimeUnit timeUnit);
+
+    /**
+     * @param token
+     *            authentication token to invalidate
+     */
+    void revoke(TokenKey token);
+
+    /**
+     * @param tokens
+     *            authentication tokens
+     * @return security contexts of the tokens which are known, keyed by token
+     */
+    Map<TokenKey, SecurityContext> getAll(Collection<TokenKey> tokens);
+
+    /**
+     * @param tokens
+     *            authentication tokens to invalidate
+     */
+    void revokeAll(Collection<TokenKey> tokens);
+
+    /**
+     * @param username
+     *            user the tokens were issued to
+     * @return tokens of the user, looked up in the session index. may include tokens which expired a moment ago
+     */
+    Collection<TokenKey> getTokens(String username);
+
+    /**
+     * Revokes every token of a user, e.g. on logout from all devices, password change or user deletion.
+     *
+     * @param username
+     *            user the tokens were issued to
+     * @return number of tokens revoked
+     */
+    int revokeByUsername(String username);
+
+    /**
+     * @param securityContext
+     *            stored security context
+     * @return name of the authenticated user the session index is keyed by, or null for anonymous contexts
+     */
+    static String username(SecurityContext securityContext) {
+        final Authentication authentication = securityContext == null ? null : securityContext.getAuthentication();
+        return authentication == null ? null : authentication.getName();
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.innominds.security.token;
+
+/**
+ * The token store failed or did not answer within the latency budget of the request, and there was nothing to fall back to. answered with 503.
+ */
+public class TokenStoreUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TokenStoreUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
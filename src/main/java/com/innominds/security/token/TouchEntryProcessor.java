@@ -0,0 +1,40 @@
+package com.innominds.security.token;
+
+import java.util.Map.Entry;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+
+/**
+ * Re-arms the ttl of a token map entry on its owner and backups without sending the value over the wire. Setting the value again counts as an update,
+ * which restarts the ttl the entry was stored with. the expiry recorded in the {@link SessionRecord} moves along.
+ */
+public class TouchEntryProcessor extends AbstractEntryProcessor<Object, SessionRecord> {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = -2364716587345609932L;
+
+    private final long ttlMillis;
+
+    /**
+     * @param ttlMillis
+     *            lifetime counted from the time the owner processes the entry
+     */
+    public TouchEntryProcessor(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return true if the entry exists
+     */
+    @Override
+    public Object process(Entry<Object, SessionRecord> entry) {
+        final SessionRecord sessionRecord = entry.getValue();
+
+        if (sessionRecord == null) {
+            return Boolean.FALSE;
+        }
+        entry.setValue(ttlMillis > 0 ? sessionRecord.withExpiresAt(System.currentTimeMillis() + ttlMillis) : sessionRecord);
+        return Boolean.TRUE;
+    }
+
+}
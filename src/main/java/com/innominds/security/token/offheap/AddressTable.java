@@ -0,0 +1,137 @@
+package com.innominds.security.token.offheap;
+
+/**
+ * Open addressing hash table from a 64 bit key hash to a record address, in two primitive arrays. keys themselves live in the records, a {@link Matcher}
+ * compares them on lookup, so hash collisions are harmless. linear probing with backward shift deletion, no tombstones. not thread safe.
+ */
+final class AddressTable {
+
+    /** empty slot, callers never pass this as hash */
+    static final long EMPTY = 0;
+
+    private long[] hashes;
+
+    private long[] addresses;
+
+    private int size;
+
+    /**
+     * Compares the key stored in a record with a lookup key
+     *
+     * @param <K>
+     *            key type
+     */
+    interface Matcher<K> {
+
+        boolean matches(long address, K key);
+    }
+
+    AddressTable(int initialCapacity) {
+        hashes = new long[Integer.highestOneBit(Math.max(initialCapacity, 16) - 1) << 1];
+        addresses = new long[hashes.length];
+    }
+
+    /**
+     * @return address of the record holding key, or -1
+     */
+    <K> long get(long hash, K key, Matcher<K> matcher) {
+        final int mask = hashes.length - 1;
+
+        for (int slot = (int) hash & mask; hashes[slot] != EMPTY; slot = slot + 1 & mask) {
+            if (hashes[slot] == hash && matcher.matches(addresses[slot], key)) {
+                return addresses[slot];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * adds an entry, the key must not be present
+     */
+    void put(long hash, long address) {
+        if (++size * 2 > hashes.length) {
+            resize();
+        }
+        insert(hashes, addresses, hash, address);
+    }
+
+    /**
+     * points the entry of oldAddress at newAddress
+     */
+    void replace(long hash, long oldAddress, long newAddress) {
+        final int slot = slotOf(hash, oldAddress);
+
+        if (slot >= 0) {
+            addresses[slot] = newAddress;
+        }
+    }
+
+    /**
+     * removes the entry and shifts the following entries of the probe run back
+     */
+    void remove(long hash, long address) {
+        int slot = slotOf(hash, address);
+
+        if (slot < 0) {
+            return;
+        }
+        size--;
+
+        final int mask = hashes.length - 1;
+        for (int next = slot + 1 & mask; hashes[next] != EMPTY; next = next + 1 & mask) {
+            final int home = (int) hashes[next] & mask;
+            final boolean between = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+
+            if (!between) {
+                hashes[slot] = hashes[next];
+                addresses[slot] = addresses[next];
+                slot = next;
+            }
+        }
+        hashes[slot] = EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return hashes.length;
+    }
+
+    private int slotOf(long hash, long address) {
+        final int mask = hashes.length - 1;
+
+        for (int slot = (int) hash & mask; hashes[slot] != EMPTY; slot = slot + 1 & mask) {
+            if (hashes[slot] == hash && addresses[slot] == address) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void resize() {
+        final long[] newHashes = new long[hashes.length * 2];
+        final long[] newAddresses = new long[hashes.length * 2];
+
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != EMPTY) {
+                insert(newHashes, newAddresses, hashes[i], addresses[i]);
+            }
+        }
+        hashes = newHashes;
+        addresses = newAddresses;
+    }
+
+    private static void insert(long[] hashes, long[] addresses, long hash, long address) {
+        final int mask = hashes.length - 1;
+        int slot = (int) hash & mask;
+
+        while (hashes[slot] != EMPTY) {
+            slot = slot + 1 & mask;
+        }
+        hashes[slot] = hash;
+        addresses[slot] = address;
+    }
+
+}
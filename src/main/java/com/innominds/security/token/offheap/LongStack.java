@@ -0,0 +1,45 @@
+package com.innominds.security.token.offheap;
+
+import java.util.Arrays;
+
+/**
+ * Growable stack of primitive longs. keeps free lists and timer wheel buckets without boxing.
+ */
+final class LongStack {
+
+    private long[] values = new long[8];
+
+    private int size;
+
+    void push(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    long pop() {
+        return values[--size];
+    }
+
+    long get(int index) {
+        return values[index];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+
+        if (values.length > 1024) {
+            values = new long[8];// a burst of expiries should not pin the large array forever
+        }
+    }
+
+}
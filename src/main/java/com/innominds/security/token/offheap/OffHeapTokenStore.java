@@ -0,0 +1,497 @@
+package com.innominds.security.token.offheap;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.core.context.SecurityContext;
+
+import com.innominds.security.token.InMemoryTokenStore;
+import com.innominds.security.token.SessionRecord;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenStore;
+import com.innominds.security.token.serialization.SecurityContextCodec;
+
+/**
+ * Process local {@link TokenStore} which keeps sessions outside the java heap, for single node and edge deployments with many idle sessions.<br>
+ * Every session is one record in a direct {@link ByteBuffer} slab: token key, username and the {@link SessionRecord} in {@link SecurityContextCodec}
+ * format. the token index is an {@link AddressTable} of primitive longs and expiry is driven by a {@link TimerWheel}, so the collector sees a handful of
+ * arrays instead of several objects per session. records of the same user form a linked list, the head of each list is found through a second address table.
+ *
+ * <pre>
+ * record: sequence(8) expiresAt(8) prev(8) next(8) tokenHigh(8) tokenLow(8) blockSize(4) contextLength(4) usernameLength(4) username(2/char) context
+ * </pre>
+ */
+public class OffHeapTokenStore implements TokenStore, PublicMetrics, Closeable {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapTokenStore.class);
+
+    private static final int SEQUENCE = 0;
+
+    private static final int EXPIRES_AT = 8;
+
+    private static final int PREV = 16;
+
+    private static final int NEXT = 24;
+
+    private static final int TOKEN_HIGH = 32;
+
+    private static final int TOKEN_LOW = 40;
+
+    private static final int BLOCK_SIZE = 48;
+
+    private static final int CONTEXT_LENGTH = 52;
+
+    private static final int USERNAME_LENGTH = 56;
+
+    private static final int DATA = 60;
+
+    private static final long NONE = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final SlabAllocator slabAllocator;
+
+    private final TimerWheel timerWheel = new TimerWheel(System.currentTimeMillis());
+
+    private final TimerWheel.Records records = new TimerWheel.Records() {
+
+        @Override
+        public long expiresAt(long address, long sequence) {
+            final ByteBuffer slab = slabAllocator.slab(address);
+            final int offset = SlabAllocator.offset(address);
+            return slab.getLong(offset + SEQUENCE) == sequence ? slab.getLong(offset + EXPIRES_AT) : -1;
+        }
+
+        @Override
+        public void expire(long address) {
+            remove(address);
+        }
+    };
+
+    /** token against record address */
+    private final AddressTable tokenIndex = new AddressTable(1024);
+
+    /** username against the address of its most recent record */
+    private final AddressTable userHeads = new AddressTable(1024);
+
+    private final AddressTable.Matcher<TokenKey> tokenMatcher = this::tokenEquals;
+
+    private final AddressTable.Matcher<String> usernameMatcher = this::usernameEquals;
+
+    private long nextSequence = 1;
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final ScheduledExecutorService expiryExecutor;
+
+    /**
+     * @param slabMegabytes
+     *            size of one slab, a power of two
+     * @param maxMegabytes
+     *            direct memory taken at most. mind -XX:MaxDirectMemorySize
+     */
+    public OffHeapTokenStore(int slabMegabytes, int maxMegabytes) {
+        slabAllocator = new SlabAllocator(slabMegabytes << 20, Math.max(1, maxMegabytes / slabMegabytes));
+
+        expiryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "offheap-token-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expiryExecutor.scheduleWithFixedDelay(this::expireDue, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void put(TokenKey token, SecurityContext securityContext, long ttl, TimeUnit timeUnit) {
+        final long expiresAt = InMemoryTokenStore.expiresAt(ttl, timeUnit);
+        final SessionRecord sessionRecord = SessionRecord.of(securityContext, expiresAt);
+        final byte[] context = SecurityContextCodec.toBytes(sessionRecord);
+        final String username = sessionRecord.getUsername();
+        final int usernameLength = username == null ? 0 : username.length();
+        final long hash = hash(token);
+        final int blockSize = SlabAllocator.blockSize(DATA + usernameLength * 2 + context.length);
+
+        lock.writeLock().lock();
+        try {
+            final long existing = tokenIndex.get(hash, token, tokenMatcher);
+            if (existing >= 0) {
+                remove(existing);
+            }
+
+            long address = slabAllocator.allocate(blockSize);
+            if (address < 0) {
+                expireDue();
+                address = slabAllocator.allocate(blockSize);
+            }
+            if (address < 0) {
+                LOGGER.error("Off-heap token store is full with {} sessions, rejecting token", tokenIndex.size());
+                throw new IllegalStateException("Off-heap token store is full");
+            }
+
+            final long sequence = nextSequence++;
+            final ByteBuffer slab = slabAllocator.slab(address);
+            final int offset = SlabAllocator.offset(address);
+            slab.putLong(offset + SEQUENCE, sequence);
+            slab.putLong(offset + EXPIRES_AT, expiresAt);
+            slab.putLong(offset + TOKEN_HIGH, token.getHigh());
+            slab.putLong(offset + TOKEN_LOW, token.getLow());
+            slab.putInt(offset + BLOCK_SIZE, blockSize);
+            slab.putInt(offset + CONTEXT_LENGTH, context.length);
+            slab.putInt(offset + USERNAME_LENGTH, usernameLength);
+
+            int position = offset + DATA;
+            position = username == null ? position : putChars(slab, position, username);
+            for (final byte b : context) {
+                slab.put(position++, b);
+            }
+
+            tokenIndex.put(hash, address);
+            link(username, address);
+
+            timerWheel.schedule(address, sequence, expiresAt);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public SecurityContext get(TokenKey token) {
+        final byte[] context;
+
+        lock.readLock().lock();
+        try {
+            final long address = tokenIndex.get(hash(token), token, tokenMatcher);
+
+            if (address < 0 || isExpired(address)) {
+                return null;
+            }
+            context = readContext(address);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return SecurityContextCodec.recordFromBytes(context).toSecurityContext();// decode outside the lock
+    }
+
+    @Override
+    public boolean contains(TokenKey token) {
+        lock.readLock().lock();
+        try {
+            final long address = tokenIndex.get(hash(token), token, tokenMatcher);
+            return address >= 0 && !isExpired(address);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * updates the expiry in place, the timer wheel picks up the new expiry when the old one comes due
+     */
+    @Override
+    public boolean touch(TokenKey token, long ttl, TimeUnit timeUnit) {
+        lock.writeLock().lock();
+        try {
+            final long address = tokenIndex.get(hash(token), token, tokenMatcher);
+
+            if (address < 0 || isExpired(address)) {
+                return false;
+            }
+
+            final ByteBuffer slab = slabAllocator.slab(address);
+            final int offset = SlabAllocator.offset(address);
+            final long expiresAt = InMemoryTokenStore.expiresAt(ttl, timeUnit);
+
+            if (slab.getLong(offset + EXPIRES_AT) == Long.MAX_VALUE && expiresAt != Long.MAX_VALUE) {
+                timerWheel.schedule(address, slab.getLong(offset + SEQUENCE), expiresAt);// not on the wheel while it never expired
+            }
+            slab.putLong(offset + EXPIRES_AT, expiresAt);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void revoke(TokenKey token) {
+        lock.writeLock().lock();
+        try {
+            final long address = tokenIndex.get(hash(token), token, tokenMatcher);
+
+            if (address >= 0) {
+                remove(address);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<TokenKey, SecurityContext> getAll(Collection<TokenKey> tokens) {
+        final Map<TokenKey, SecurityContext> result = new HashMap<TokenKey, SecurityContext>();
+
+        for (final TokenKey token : tokens) {
+            final SecurityContext securityContext = get(token);
+            if (securityContext != null) {
+                result.put(token, securityContext);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void revokeAll(Collection<TokenKey> tokens) {
+        for (final TokenKey token : tokens) {
+            revoke(token);
+        }
+    }
+
+    @Override
+    public Collection<TokenKey> getTokens(String username) {
+        final List<TokenKey> tokens = new ArrayList<TokenKey>();
+
+        lock.readLock().lock();
+        try {
+            for (long address = userHeads.get(hash(username), username, usernameMatcher); address >= 0; address = next(address)) {
+                tokens.add(readToken(address));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return tokens;
+    }
+
+    @Override
+    public int revokeByUsername(String username) {
+        int revoked = 0;
+
+        lock.writeLock().lock();
+        try {
+            final long hash = hash(username);
+
+            for (long head = userHeads.get(hash, username, usernameMatcher); head >= 0; head = userHeads.get(hash, username, usernameMatcher)) {
+                remove(head);
+                revoked++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return revoked;
+    }
+
+    /**
+     * removes the records which came due on the timer wheel
+     */
+    void expireDue() {
+        lock.writeLock().lock();
+        try {
+            final int expired = timerWheel.advance(System.currentTimeMillis(), records);
+            expirations.add(expired);
+        } catch (final RuntimeException e) {
+            LOGGER.error("Expiring off-heap sessions failed", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+
+        lock.readLock().lock();
+        try {
+            metrics.add(new Metric<Integer>("token.offheap.entries", tokenIndex.size()));
+            metrics.add(new Metric<Integer>("token.offheap.users", userHeads.size()));
+            metrics.add(new Metric<Long>("token.offheap.allocated.bytes", slabAllocator.allocatedBytes()));
+            metrics.add(new Metric<Long>("token.offheap.used.bytes", slabAllocator.usedBytes()));
+            metrics.add(new Metric<Integer>("token.offheap.index.slots", tokenIndex.capacity() + userHeads.capacity()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        metrics.add(new Metric<Long>("token.offheap.expirations", expirations.sum()));
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        expiryExecutor.shutdownNow();
+    }
+
+    private boolean isExpired(long address) {
+        return slabAllocator.slab(address).getLong(SlabAllocator.offset(address) + EXPIRES_AT) < System.currentTimeMillis();
+    }
+
+    private long next(long address) {
+        return slabAllocator.slab(address).getLong(SlabAllocator.offset(address) + NEXT);
+    }
+
+    private TokenKey readToken(long address) {
+        final ByteBuffer slab = slabAllocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+        return new TokenKey(slab.getLong(offset + TOKEN_HIGH), slab.getLong(offset + TOKEN_LOW));
+    }
+
+    private byte[] readContext(long address) {
+        final ByteBuffer slab = slabAllocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+        final byte[] context = new byte[slab.getInt(offset + CONTEXT_LENGTH)];
+        final int start = offset + DATA + slab.getInt(offset + USERNAME_LENGTH) * 2;
+
+        final ByteBuffer view = slab.duplicate();// absolute bulk reads need a private position
+        view.position(start);
+        view.get(context);
+        return context;
+    }
+
+    private boolean tokenEquals(long address, TokenKey token) {
+        final ByteBuffer slab = slabAllocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+        return slab.getLong(offset + TOKEN_LOW) == token.getLow() && slab.getLong(offset + TOKEN_HIGH) == token.getHigh();
+    }
+
+    private boolean usernameEquals(long address, String username) {
+        final ByteBuffer slab = slabAllocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+        return charsEqual(slab, offset + DATA, slab.getInt(offset + USERNAME_LENGTH), username);
+    }
+
+    /**
+     * unlinks and frees a record
+     */
+    private void remove(long address) {
+        final ByteBuffer slab = slabAllocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+
+        tokenIndex.remove(hash(slab.getLong(offset + TOKEN_HIGH), slab.getLong(offset + TOKEN_LOW)), address);
+        unlink(address);
+        slab.putLong(offset + SEQUENCE, 0);// stale timer wheel entries no longer match
+        slabAllocator.free(address, slab.getInt(offset + BLOCK_SIZE));
+    }
+
+    private void link(String username, long address) {
+        final ByteBuffer slab = slabAllocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+        slab.putLong(offset + PREV, NONE);
+        slab.putLong(offset + NEXT, NONE);
+
+        if (username == null) {
+            return;
+        }
+
+        final long hash = hash(username);
+        final long head = userHeads.get(hash, username, usernameMatcher);
+
+        if (head < 0) {
+            userHeads.put(hash, address);
+        } else {
+            slab.putLong(offset + NEXT, head);
+            slabAllocator.slab(head).putLong(SlabAllocator.offset(head) + PREV, address);
+            userHeads.replace(hash, head, address);
+        }
+    }
+
+    private void unlink(long address) {
+        final ByteBuffer slab = slabAllocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+        final long prev = slab.getLong(offset + PREV);
+        final long next = slab.getLong(offset + NEXT);
+
+        if (next != NONE) {
+            slabAllocator.slab(next).putLong(SlabAllocator.offset(next) + PREV, prev);
+        }
+
+        if (prev != NONE) {
+            slabAllocator.slab(prev).putLong(SlabAllocator.offset(prev) + NEXT, next);
+            return;
+        }
+
+        final int usernameLength = slab.getInt(offset + USERNAME_LENGTH);
+        if (usernameLength == 0) {
+            return;// anonymous record, not linked
+        }
+
+        final long hash = hashChars(slab, offset + DATA, usernameLength);
+        if (next == NONE) {
+            userHeads.remove(hash, address);
+        } else {
+            userHeads.replace(hash, address, next);
+        }
+    }
+
+    private static int putChars(ByteBuffer slab, int position, String value) {
+        for (int i = 0; i < value.length(); i++, position += 2) {
+            slab.putChar(position, value.charAt(i));
+        }
+        return position;
+    }
+
+    private static boolean charsEqual(ByteBuffer slab, int position, int length, String value) {
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (slab.getChar(position + i * 2) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64 bit FNV-1a over the characters with a final avalanche, never {@link AddressTable#EMPTY}
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return avalanche(hash);
+    }
+
+    /**
+     * the key halves are random already, they are only folded and kept clear of {@link AddressTable#EMPTY}
+     */
+    static long hash(TokenKey token) {
+        return hash(token.getHigh(), token.getLow());
+    }
+
+    private static long hash(long high, long low) {
+        final long h = high ^ low;
+        return h == AddressTable.EMPTY ? 1 : h;
+    }
+
+    /**
+     * same as {@link #hash(String)} over characters stored in a slab
+     */
+    private static long hashChars(ByteBuffer slab, int position, int length) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ slab.getChar(position + i * 2)) * 0x100000001b3L;
+        }
+        return avalanche(hash);
+    }
+
+    private static long avalanche(long hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == AddressTable.EMPTY ? 1 : h;
+    }
+
+}
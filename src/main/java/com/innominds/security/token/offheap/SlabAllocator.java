@@ -0,0 +1,120 @@
+package com.innominds.security.token.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out blocks of direct {@link ByteBuffer} slabs. block sizes are powers of two from {@link #MIN_BLOCK}, freed blocks are kept in one free list per
+ * size and reused before new slab space is taken. slabs are allocated on demand up to the configured maximum and never returned.<br>
+ * An address is <code>slab index &lt;&lt; 32 | offset</code>. not thread safe, the owning store serializes access.
+ */
+final class SlabAllocator {
+
+    /** smallest block handed out */
+    static final int MIN_BLOCK = 64;
+
+    private final int slabSize;
+
+    private final int maxSlabs;
+
+    private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+
+    /** free blocks by log2 of their size */
+    private final LongStack[] freeLists = new LongStack[Integer.SIZE];
+
+    /** next unused offset in the last slab */
+    private int bumpOffset;
+
+    private long usedBytes;
+
+    /**
+     * @param slabSize
+     *            bytes per slab, a power of two
+     * @param maxSlabs
+     *            slabs allocated at most
+     */
+    SlabAllocator(int slabSize, int maxSlabs) {
+        if (Integer.bitCount(slabSize) != 1 || slabSize < MIN_BLOCK) {
+            throw new IllegalArgumentException("Slab size must be a power of two of at least " + MIN_BLOCK + " bytes, got " + slabSize);
+        }
+        this.slabSize = slabSize;
+        this.maxSlabs = maxSlabs;
+
+        for (int i = 0; i < freeLists.length; i++) {
+            freeLists[i] = new LongStack();
+        }
+    }
+
+    /**
+     * @param size
+     *            bytes needed
+     * @return power of two block size holding size bytes
+     */
+    static int blockSize(int size) {
+        return size <= MIN_BLOCK ? MIN_BLOCK : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    static int offset(long address) {
+        return (int) address;
+    }
+
+    /**
+     * @param blockSize
+     *            result of {@link #blockSize(int)}
+     * @return address of the block, or -1 when all slabs are taken
+     */
+    long allocate(int blockSize) {
+
+        if (blockSize > slabSize) {
+            throw new IllegalArgumentException("Record of " + blockSize + " bytes does not fit a slab of " + slabSize + " bytes");
+        }
+
+        final LongStack freeList = freeLists[Integer.numberOfTrailingZeros(blockSize)];
+        if (!freeList.isEmpty()) {
+            usedBytes += blockSize;
+            return freeList.pop();
+        }
+
+        if (slabs.isEmpty() || bumpOffset + blockSize > slabSize) {
+            if (slabs.size() == maxSlabs) {
+                return -1;
+            }
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            bumpOffset = 0;
+        }
+
+        final long address = (long) (slabs.size() - 1) << 32 | bumpOffset;
+        bumpOffset += blockSize;
+        usedBytes += blockSize;
+        return address;
+    }
+
+    void free(long address, int blockSize) {
+        freeLists[Integer.numberOfTrailingZeros(blockSize)].push(address);
+        usedBytes -= blockSize;
+    }
+
+    ByteBuffer slab(long address) {
+        return slabs.get(slabIndex(address));
+    }
+
+    /**
+     * @return bytes of direct memory taken by slabs
+     */
+    long allocatedBytes() {
+        return (long) slabs.size() * slabSize;
+    }
+
+    /**
+     * @return bytes in blocks currently handed out
+     */
+    long usedBytes() {
+        return usedBytes;
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.innominds.security.token.offheap;
+
+/**
+ * Hierarchical timer wheel with one second ticks: four levels of 64 slots cover 64 seconds, 68 minutes, 73 hours and 194 days. later deadlines are parked
+ * in the last slot of the top level.<br>
+ * An entry is a record address plus the sequence number of the record, so an entry whose record was freed or reused is recognized and dropped. the wheel
+ * does not keep deadlines: when a slot comes due, the {@link Records} callback reports the current expiry of each record, so a session which was touched
+ * meanwhile is simply rescheduled. scheduling is O(1), every entry is moved at most once per level. not thread safe.
+ */
+final class TimerWheel {
+
+    private static final int BITS = 6;
+
+    private static final int SLOTS = 1 << BITS;
+
+    private static final int MASK = SLOTS - 1;
+
+    private static final int LEVELS = 4;
+
+    /** entries are address, sequence pairs */
+    private final LongStack[][] buckets = new LongStack[LEVELS][SLOTS];
+
+    /** last processed tick, epoch seconds */
+    private long currentTick;
+
+    /**
+     * Access to the records the wheel points at
+     */
+    interface Records {
+
+        /**
+         * @return expiry in epoch milliseconds, or -1 when the address no longer holds the record with this sequence
+         */
+        long expiresAt(long address, long sequence);
+
+        /**
+         * removes the expired record
+         */
+        void expire(long address);
+    }
+
+    TimerWheel(long nowMillis) {
+        currentTick = nowMillis / 1000;
+
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                buckets[level][slot] = new LongStack();
+            }
+        }
+    }
+
+    /**
+     * @param address
+     *            record address
+     * @param sequence
+     *            record sequence
+     * @param expiresAt
+     *            epoch milliseconds, {@link Long#MAX_VALUE} for a record that never expires is not scheduled
+     */
+    void schedule(long address, long sequence, long expiresAt) {
+        schedule(address, sequence, expiresAt, currentTick + 1);// never into the slot processed last
+    }
+
+    /**
+     * @param earliestTick
+     *            the current tick while cascading, its level 0 slot fires after the cascades
+     */
+    private void schedule(long address, long sequence, long expiresAt, long earliestTick) {
+        if (expiresAt == Long.MAX_VALUE) {
+            return;// the store schedules it again when a touch gives it an expiry
+        }
+
+        final long tick = Math.max(expiresAt / 1000 + (expiresAt % 1000 == 0 ? 0 : 1), earliestTick);
+        final long delta = tick - currentTick;
+
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << BITS * (level + 1) || level == LEVELS - 1) {
+                final long levelTick = Math.min(tick, currentTick + (1L << BITS * LEVELS) - 1) >>> BITS * level;
+                final LongStack bucket = buckets[level][(int) (levelTick & MASK)];
+                bucket.push(address);
+                bucket.push(sequence);
+                return;
+            }
+        }
+    }
+
+    /**
+     * processes all ticks up to now
+     *
+     * @param nowMillis
+     *            epoch milliseconds
+     * @param records
+     *            record access
+     * @return number of records expired
+     */
+    int advance(long nowMillis, Records records) {
+        final long nowTick = nowMillis / 1000;
+        int expired = 0;
+
+        while (currentTick < nowTick) {
+            currentTick++;
+
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & (1L << BITS * level) - 1) == 0) {
+                    cascade(buckets[level][(int) (currentTick >>> BITS * level & MASK)], records);
+                }
+            }
+            expired += fire(buckets[0][(int) (currentTick & MASK)], nowMillis, records);
+        }
+        return expired;
+    }
+
+    private void cascade(LongStack bucket, Records records) {
+        final long[] entries = drain(bucket);
+
+        for (int i = 0; i < entries.length; i += 2) {
+            final long expiresAt = records.expiresAt(entries[i], entries[i + 1]);
+            if (expiresAt >= 0) {
+                schedule(entries[i], entries[i + 1], expiresAt, currentTick);
+            }
+        }
+    }
+
+    private int fire(LongStack bucket, long nowMillis, Records records) {
+        final long[] entries = drain(bucket);
+        int expired = 0;
+
+        for (int i = 0; i < entries.length; i += 2) {
+            final long expiresAt = records.expiresAt(entries[i], entries[i + 1]);
+
+            if (expiresAt < 0) {
+                continue;// revoked or replaced
+            }
+            if (expiresAt <= nowMillis) {
+                records.expire(entries[i]);
+                expired++;
+            } else {
+                schedule(entries[i], entries[i + 1], expiresAt);// touched since it was scheduled
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * rescheduling may push into the bucket being processed, so it is copied out first
+     */
+    private static long[] drain(LongStack bucket) {
+        final long[] entries = new long[bucket.size()];
+
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = bucket.get(i);
+        }
+        bucket.clear();
+        return entries;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.innominds.security.token.serialization;
+
+import java.io.IOException;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+import com.innominds.persistence.vo.Authority;
+
+/**
+ * Hazelcast serializer for {@link Authority}.
+ */
+public class AuthoritySerializer implements StreamSerializer<Authority> {
+
+    @Override
+    public int getTypeId() {
+        return TokenSerializers.AUTHORITY_TYPE_ID;
+    }
+
+    @Override
+    public void write(ObjectDataOutput out, Authority authority) throws IOException {
+        SecurityContextCodec.writeVersion(out);
+        SecurityContextCodec.writeAuthority(out, authority);
+    }
+
+    @Override
+    public Authority read(ObjectDataInput in) throws IOException {
+        SecurityContextCodec.readVersion(in);
+        return SecurityContextCodec.readAuthority(in);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+}
@@ -0,0 +1,318 @@
+package com.innominds.security.token.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.util.SerializationUtils;
+
+import com.innominds.persistence.vo.Authority;
+import com.innominds.persistence.vo.User;
+import com.innominds.security.token.Authorities;
+import com.innominds.security.token.SessionAuthentication;
+import com.innominds.security.token.SessionRecord;
+
+/**
+ * Compact binary layout of the values kept in the token map. works on plain {@link DataOutput}/{@link DataInput}, so hazelcast serializers and other stores
+ * share one format.<br>
+ * Every top level value starts with {@link #VERSION}. bump it whenever the layout below changes and keep reading the previous one.
+ */
+public final class SecurityContextCodec {
+
+    /** schema version written in front of every top level value */
+    public static final byte VERSION = 1;
+
+    /** security context without authentication */
+    private static final byte EMPTY = 0;
+
+    /** username password token holding our {@link User} principal and {@link Authority} authorities */
+    private static final byte USER_TOKEN = 1;
+
+    /** anything else, java serialized */
+    private static final byte SERIALIZED = 2;
+
+    /** {@link SessionRecord}: user id, username, authority names and timestamps */
+    private static final byte SESSION_RECORD = 3;
+
+    private static final int ACCOUNT_NON_EXPIRED = 1;
+
+    private static final int CREDENTIALS_NON_EXPIRED = 1 << 1;
+
+    private static final int ENABLED = 1 << 2;
+
+    private static final int ACCOUNT_NON_LOCKED = 1 << 3;
+
+    private static final int SOCIAL_USER = 1 << 4;
+
+    private SecurityContextCodec() {
+    }
+
+    public static void writeVersion(DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+    }
+
+    public static void readVersion(DataInput in) throws IOException {
+        final byte version = in.readByte();
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported token map schema version " + version);
+        }
+    }
+
+    /**
+     * @param securityContext
+     *            security context
+     * @return versioned bytes, for stores which keep plain byte arrays
+     */
+    public static byte[] toBytes(SecurityContext securityContext) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeVersion(out);
+            writeSecurityContext(out, securityContext);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bytes
+     *            written by {@link #toBytes(SecurityContext)}
+     * @return security context
+     */
+    public static SecurityContext fromBytes(byte[] bytes) {
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            readVersion(in);
+            return readSecurityContext(in);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param sessionRecord
+     *            session record
+     * @return versioned bytes, for stores which keep plain byte arrays
+     */
+    public static byte[] toBytes(SessionRecord sessionRecord) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeVersion(out);
+            out.writeByte(SESSION_RECORD);
+            writeSessionRecord(out, sessionRecord);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bytes
+     *            written by {@link #toBytes(SessionRecord)}, or a security context written by {@link #toBytes(SecurityContext)} before records were
+     *            introduced
+     * @return session record
+     */
+    public static SessionRecord recordFromBytes(byte[] bytes) {
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            readVersion(in);
+            final byte kind = in.readByte();
+            return kind == SESSION_RECORD ? readSessionRecord(in) : SessionRecord.of(readSecurityContext(in, kind), Long.MAX_VALUE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void writeSessionRecord(DataOutput out, SessionRecord sessionRecord) throws IOException {
+        out.writeLong(sessionRecord.getUserId());
+        writeNullableString(out, sessionRecord.getUsername());
+        out.writeShort(sessionRecord.getAuthorities().size());
+
+        for (final Authority authority : sessionRecord.getAuthorities()) {
+            out.writeUTF(authority.getAuthority());
+        }
+        out.writeLong(sessionRecord.getIssuedAt());
+        out.writeLong(sessionRecord.getExpiresAt());
+    }
+
+    public static SessionRecord readSessionRecord(DataInput in) throws IOException {
+        final long userId = in.readLong();
+        final String username = readNullableString(in);
+        final int size = in.readShort();
+        final List<String> names = new ArrayList<String>(size);
+
+        for (int i = 0; i < size; i++) {
+            names.add(in.readUTF());
+        }
+        return new SessionRecord(userId, username, Authorities.setOfNames(names), in.readLong(), in.readLong());
+    }
+
+    public static void writeSecurityContext(DataOutput out, SecurityContext securityContext) throws IOException {
+
+        final Authentication authentication = securityContext.getAuthentication();
+
+        if (authentication == null) {
+            out.writeByte(EMPTY);
+        } else if (isCompact(authentication)) {
+            out.writeByte(USER_TOKEN);
+            writeUser(out, (User) authentication.getPrincipal());
+            writeNullableString(out, (String) authentication.getCredentials());
+            out.writeBoolean(authentication.isAuthenticated());
+            writeAuthorities(out, authentication.getAuthorities());
+        } else {
+            out.writeByte(SERIALIZED);
+            final byte[] bytes = SerializationUtils.serialize(authentication);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    public static SecurityContext readSecurityContext(DataInput in) throws IOException {
+        return readSecurityContext(in, in.readByte());
+    }
+
+    static SecurityContext readSecurityContext(DataInput in, byte kind) throws IOException {
+
+        final SecurityContext securityContext = new SecurityContextImpl();
+
+        if (kind == USER_TOKEN) {
+            final User user = readUser(in);
+            final String credentials = readNullableString(in);
+            final boolean authenticated = in.readBoolean();
+            final List<Authority> authorities = readAuthorities(in);
+            securityContext.setAuthentication(authenticated ? new UsernamePasswordAuthenticationToken(user, credentials, authorities)
+                    : new UsernamePasswordAuthenticationToken(user, credentials));
+        } else if (kind == SERIALIZED) {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            securityContext.setAuthentication((Authentication) SerializationUtils.deserialize(bytes));
+        }
+        return securityContext;
+    }
+
+    public static void writeUser(DataOutput out, User user) throws IOException {
+        writeNullableLong(out, user.getId());
+        writeNullableString(out, user.getUsername());
+        writeNullableString(out, user.getPassword());
+
+        int flags = 0;
+        flags |= user.isAccountNonExpired() ? ACCOUNT_NON_EXPIRED : 0;
+        flags |= user.isCredentialsNonExpired() ? CREDENTIALS_NON_EXPIRED : 0;
+        flags |= user.isEnabled() ? ENABLED : 0;
+        flags |= user.isAccountNonLocked() ? ACCOUNT_NON_LOCKED : 0;
+        flags |= user.isSocialUser() ? SOCIAL_USER : 0;
+        out.writeByte(flags);
+
+        writeAuthorities(out, user.getAuthorities());
+    }
+
+    public static User readUser(DataInput in) throws IOException {
+        final User user = new User();
+        user.setId(readNullableLong(in));
+        user.setUsername(readNullableString(in));
+        user.setPassword(readNullableString(in));
+
+        final int flags = in.readByte();
+        user.setAccountNonExpired((flags & ACCOUNT_NON_EXPIRED) != 0);
+        user.setCredentialsNonExpired((flags & CREDENTIALS_NON_EXPIRED) != 0);
+        user.setEnabled((flags & ENABLED) != 0);
+        user.setAccountNonLocked((flags & ACCOUNT_NON_LOCKED) != 0);
+        user.setSocialUser((flags & SOCIAL_USER) != 0);
+
+        user.getAuthorities().addAll(readAuthorities(in));
+        return user;
+    }
+
+    public static void writeAuthority(DataOutput out, Authority authority) throws IOException {
+        writeNullableLong(out, authority.getId());
+        writeNullableString(out, authority.getAuthority());
+        writeNullableString(out, authority.getTitle());
+    }
+
+    public static Authority readAuthority(DataInput in) throws IOException {
+        final Authority authority = new Authority();
+        authority.setId(readNullableLong(in));
+        authority.setAuthority(readNullableString(in));
+        authority.setTitle(readNullableString(in));
+        return authority;
+    }
+
+    static boolean isCompact(Authentication authentication) {
+
+        if (authentication.getClass() != UsernamePasswordAuthenticationToken.class && authentication.getClass() != SessionAuthentication.class
+                || !(authentication.getPrincipal() instanceof User)
+                || authentication.getDetails() != null) {
+            return false;
+        }
+
+        if (authentication.getCredentials() != null && !(authentication.getCredentials() instanceof String)) {
+            return false;
+        }
+
+        for (final GrantedAuthority grantedAuthority : authentication.getAuthorities()) {
+            if (!(grantedAuthority instanceof Authority)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void writeAuthorities(DataOutput out, Collection<? extends GrantedAuthority> authorities) throws IOException {
+        out.writeShort(authorities.size());
+
+        for (final GrantedAuthority authority : authorities) {
+            writeAuthority(out, (Authority) authority);
+        }
+    }
+
+    static List<Authority> readAuthorities(DataInput in) throws IOException {
+        final int size = in.readShort();
+        final List<Authority> authorities = new ArrayList<Authority>(size);
+
+        for (int i = 0; i < size; i++) {
+            authorities.add(readAuthority(in));
+        }
+        return authorities;
+    }
+
+    static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeNullableLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    static Long readNullableLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+}
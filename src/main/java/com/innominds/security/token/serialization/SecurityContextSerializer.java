@@ -0,0 +1,38 @@
+package com.innominds.security.token.serialization;
+
+import java.io.IOException;
+
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+/**
+ * Hazelcast serializer for {@link SecurityContextImpl}, the former value type of the token map.
+ */
+public class SecurityContextSerializer implements StreamSerializer<SecurityContext> {
+
+    @Override
+    public int getTypeId() {
+        return TokenSerializers.SECURITY_CONTEXT_TYPE_ID;
+    }
+
+    @Override
+    public void write(ObjectDataOutput out, SecurityContext securityContext) throws IOException {
+        SecurityContextCodec.writeVersion(out);
+        SecurityContextCodec.writeSecurityContext(out, securityContext);
+    }
+
+    @Override
+    public SecurityContext read(ObjectDataInput in) throws IOException {
+        SecurityContextCodec.readVersion(in);
+        return SecurityContextCodec.readSecurityContext(in);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.innominds.security.token.serialization;
+
+import java.io.IOException;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+import com.innominds.security.token.SessionRecord;
+
+/**
+ * Hazelcast serializer for {@link SessionRecord}, the value type of the token map.
+ */
+public class SessionRecordSerializer implements StreamSerializer<SessionRecord> {
+
+    @Override
+    public int getTypeId() {
+        return TokenSerializers.SESSION_RECORD_TYPE_ID;
+    }
+
+    @Override
+    public void write(ObjectDataOutput out, SessionRecord sessionRecord) throws IOException {
+        SecurityContextCodec.writeVersion(out);
+        SecurityContextCodec.writeSessionRecord(out, sessionRecord);
+    }
+
+    @Override
+    public SessionRecord read(ObjectDataInput in) throws IOException {
+        SecurityContextCodec.readVersion(in);
+        return SecurityContextCodec.readSessionRecord(in);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+}
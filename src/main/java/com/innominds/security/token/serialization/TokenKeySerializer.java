@@ -0,0 +1,35 @@
+package com.innominds.security.token.serialization;
+
+import java.io.IOException;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+import com.innominds.security.token.TokenKey;
+
+/**
+ * Hazelcast serializer for {@link TokenKey}, the two halves as fixed 16 bytes. keys are compared in serialized form, so the layout is not versioned.
+ */
+public class TokenKeySerializer implements StreamSerializer<TokenKey> {
+
+    @Override
+    public int getTypeId() {
+        return TokenSerializers.TOKEN_KEY_TYPE_ID;
+    }
+
+    @Override
+    public void write(ObjectDataOutput out, TokenKey tokenKey) throws IOException {
+        out.writeLong(tokenKey.getHigh());
+        out.writeLong(tokenKey.getLow());
+    }
+
+    @Override
+    public TokenKey read(ObjectDataInput in) throws IOException {
+        return new TokenKey(in.readLong(), in.readLong());
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.innominds.security.token.serialization;
+
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
+import com.innominds.persistence.vo.Authority;
+import com.innominds.persistence.vo.User;
+import com.innominds.security.token.SessionRecord;
+import com.innominds.security.token.TokenKey;
+
+/**
+ * Registers the custom serializers of the token map keys and values. type ids must be unique and identical on every member and client of the cluster.
+ */
+public final class TokenSerializers {
+
+    public static final int SECURITY_CONTEXT_TYPE_ID = 1001;
+
+    public static final int USER_TYPE_ID = 1002;
+
+    public static final int AUTHORITY_TYPE_ID = 1003;
+
+    public static final int TOKEN_KEY_TYPE_ID = 1004;
+
+    public static final int SESSION_RECORD_TYPE_ID = 1005;
+
+    private TokenSerializers() {
+    }
+
+    /**
+     * @param serializationConfig
+     *            member or client serialization config
+     * @return the given config
+     */
+    public static SerializationConfig register(SerializationConfig serializationConfig) {
+        serializationConfig.addSerializerConfig(new SerializerConfig().setTypeClass(SecurityContextImpl.class).setImplementation(
+                new SecurityContextSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig().setTypeClass(User.class).setImplementation(new UserSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig().setTypeClass(Authority.class).setImplementation(new AuthoritySerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig().setTypeClass(TokenKey.class).setImplementation(new TokenKeySerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig().setTypeClass(SessionRecord.class).setImplementation(new SessionRecordSerializer()));
+        return serializationConfig;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.innominds.security.token.serialization;
+
+import java.io.IOException;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+import com.innominds.persistence.vo.User;
+
+/**
+ * Hazelcast serializer for the authenticated {@link User} principal.
+ */
+public class UserSerializer implements StreamSerializer<User> {
+
+    @Override
+    public int getTypeId() {
+        return TokenSerializers.USER_TYPE_ID;
+    }
+
+    @Override
+    public void write(ObjectDataOutput out, User user) throws IOException {
+        SecurityContextCodec.writeVersion(out);
+        SecurityContextCodec.writeUser(out, user);
+    }
+
+    @Override
+    public User read(ObjectDataInput in) throws IOException {
+        SecurityContextCodec.readVersion(in);
+        return SecurityContextCodec.readUser(in);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+}
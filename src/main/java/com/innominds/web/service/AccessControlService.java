@@ -5,6 +5,8 @@ import java.util.List;
 
 import org.springframework.security.access.ConfigAttribute;
 
+import com.innominds.security.acl.AclRule;
+
 /**
  * The Interface AccessControlService.
  */
@@ -17,6 +19,20 @@ public interface AccessControlService {
      */
     void addActivityForRoles( String endpoint, boolean regex, List<String> list );
 
+    /**
+     * Adds the activity of one http method for roles, it beats the activity of every method of the same endpoint.
+     *
+     * @param method
+     *            the http method, null for every method
+     * @param endpoint
+     *            the endpoint
+     * @param regex
+     *            the regex
+     * @param roleNames
+     *            the role names
+     */
+    void addActivityForRoles( String method, String endpoint, boolean regex, List<String> roleNames );
+
     /**
      * Adds the activity for roles.
      *
@@ -37,11 +53,30 @@ public interface AccessControlService {
     Collection<ConfigAttribute> getAllRoles();
 
     /**
-     * Gets the all roles by uri.
+     * Gets all the endpoint rules, the source of the in-memory access control list. a single statement however many endpoints are stored.
+     *
+     * @return rules in the order they were stored
+     */
+    List<AclRule> getAclRules();
+
+    /**
+     * Gets the all roles by uri. reads the database, requests are authorized against the in-memory access control list instead
      *
      * @param uri
      *            the uri
      * @return the all roles by uri
      */
     Collection<ConfigAttribute> getAllRolesByURI( String uri );
+
+    /**
+     * Gets the all roles by http method and uri. reads the database through the (method, url) index, requests are authorized against the in-memory
+     * access control list instead
+     *
+     * @param method
+     *            the http method
+     * @param uri
+     *            the uri
+     * @return the all roles by method and uri
+     */
+    Collection<ConfigAttribute> getAllRolesByURI( String method, String uri );
 }
@@ -25,8 +25,8 @@ import org.springframework.stereotype.Service;
 import com.innominds.persistence.domain.AuthorityEntity;
 import com.innominds.persistence.domain.UserEntity;
 import com.innominds.persistence.repository.UserRepository;
-import com.innominds.persistence.vo.Authority;
 import com.innominds.persistence.vo.User;
+import com.innominds.security.token.Authorities;
 
 /**
  * only deals with authentication
@@ -61,7 +61,7 @@ public class AuthenticationService implements UserDetailsService {
         user.setEnabled(true);
 
         for (final AuthorityEntity authorityEntity : personEntity.getAuthorities()) {
-            user.getAuthorities().add(new Authority(authorityEntity.getAuthority(), authorityEntity.getTitle()));
+            user.getAuthorities().add(Authorities.of(authorityEntity.getAuthority(), authorityEntity.getTitle()));
         }
 
         return user;
@@ -0,0 +1,32 @@
+package com.innominds.web.service;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.security.core.Authentication;
+
+import com.innominds.persistence.vo.PermissionCheck;
+
+/**
+ * The Interface PermissionService. tells a session which urls it may call without calling them.
+ */
+public interface PermissionService {
+
+    /**
+     * Decides every pair as the security interceptor would decide the request, from the in-memory access control list.
+     *
+     * @param authentication
+     *            the authentication of the session
+     * @param checks
+     *            method (GET when missing) and url within the application of each pair
+     * @param request
+     *            the request asking, the pairs are decided as requests like it
+     * @param response
+     *            the response of the request asking, nothing is written to it
+     * @return the pairs in the same order with allowed set
+     */
+    List<PermissionCheck> check(Authentication authentication, List<PermissionCheck> checks, HttpServletRequest request, HttpServletResponse response);
+
+}
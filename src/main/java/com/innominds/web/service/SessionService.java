@@ -0,0 +1,37 @@
+package com.innominds.web.service;
+
+import com.innominds.exception.ResourceNotFoundException;
+
+/**
+ * The Interface SessionService. ends authenticated sessions of a user on every node.
+ */
+public interface SessionService {
+
+    /**
+     * Revokes all tokens of the user, opaque tokens through the session index of the token store and signed tokens through the denylist.
+     *
+     * @param username
+     *            the username
+     * @return number of opaque tokens revoked
+     */
+    int logoutAll(String username);
+
+    /**
+     * Revokes one token, a signed token through the denylist and an opaque token in the token store.
+     *
+     * @param token
+     *            token of the session as sent by the client
+     * @return false when the token is not one this application issues
+     */
+    boolean logout(String token);
+
+    /**
+     *
+     * @param userId
+     *            primary key of the user
+     * @return number of opaque tokens revoked
+     * @throws ResourceNotFoundException
+     */
+    int revokeSessions(Long userId) throws ResourceNotFoundException;
+
+}
@@ -10,12 +10,25 @@ import com.innominds.persistence.vo.User;
 public interface UserService {
 
     /**
+     * deletes the user and revokes all its sessions
+     *
      * @param id
      *            primary key
      * @throws ResourceNotFoundException
      */
     void deleteUser(Long id) throws ResourceNotFoundException;
 
+    /**
+     * stores the encrypted new password and revokes all sessions of the user
+     *
+     * @param id
+     *            primary key
+     * @param password
+     *            new plain text password
+     * @throws ResourceNotFoundException
+     */
+    void changePassword(Long id, String password) throws ResourceNotFoundException;
+
     /**
      * Encrypt password.
      *
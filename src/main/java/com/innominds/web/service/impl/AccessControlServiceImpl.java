@@ -1,12 +1,16 @@
 package com.innominds.web.service.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.ConfigAttribute;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,13 +20,16 @@ import com.innominds.persistence.domain.EndpointEntity;
 import com.innominds.persistence.repository.AuthorityRepository;
 import com.innominds.persistence.repository.EndpointsRepository;
 import com.innominds.persistence.vo.Authority;
+import com.innominds.security.acl.AclChangedEvent;
+import com.innominds.security.acl.AclRule;
+import com.innominds.security.acl.PathPatternTrie;
 import com.innominds.web.service.AccessControlService;
 
 /**
  * <p>
  * This service used to provide roles against activities (URIs)
  * </p>
- * .
+ * . every stored endpoint is published as {@link AclChangedEvent}, the in-memory access control list applies it once the transaction committed.
  *
  * @author ThirupathiReddy V
  */
@@ -41,40 +48,69 @@ public class AccessControlServiceImpl implements AccessControlService {
     @Autowired
     private EndpointsRepository endpointsRepository;
 
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
     @Override
     public List<ConfigAttribute> getAllRoles() {
 
-        final List<ConfigAttribute> list = new ArrayList<ConfigAttribute>();
-        final List<AuthorityEntity> entities = authorityRepository.findAll();
-
-        for (final AuthorityEntity authorityEntity : entities) {
-            final Authority authority = new Authority();
-            authority.setAuthority(authorityEntity.getAuthority());
-            authority.setId(authorityEntity.getId());
-            authority.setTitle(authorityEntity.getTitle());
-            list.add(authority);
-        }
+        final List<ConfigAttribute> list = new ArrayList<ConfigAttribute>(authorityRepository.getAuthorities());
         LOGGER.debug("Authorities {} ", list);
         return list;
     }
 
+    /**
+     * one statement for the whole list, the rows of an endpoint are adjacent
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<AclRule> getAclRules() {
+
+        final List<AclRule> rules = new ArrayList<AclRule>();
+        Object[] endpointRow = null;
+        List<String> authorities = null;
+
+        for (final Object[] row : endpointsRepository.getAclRows()) {
+            if (endpointRow == null || !endpointRow[0].equals(row[0])) {
+                if (endpointRow != null) {
+                    rules.add(toRule(endpointRow, authorities));
+                }
+                endpointRow = row;
+                authorities = new ArrayList<String>(4);
+            }
+            authorities.add((String) row[3]);
+        }
+        if (endpointRow != null) {
+            rules.add(toRule(endpointRow, authorities));
+        }
+        return rules;
+    }
+
     @Override
     public List<ConfigAttribute> getAllRolesByURI(final String uri) {
+        return getAllRolesByURI(null, uri);
+    }
+
+    @Override
+    public List<ConfigAttribute> getAllRolesByURI(final String method, final String uri) {
 
         final List<ConfigAttribute> configList = new ArrayList<ConfigAttribute>();
 
         try {
-            EndpointEntity permissionsEntity = endpointsRepository.findByEndpoint(uri);
+            EndpointEntity permissionsEntity = forMethod(endpointsRepository.findByMethodAndEndpointWithAuthorities(method, uri), method);
 
             if (permissionsEntity == null) {
 
-                for (final EndpointEntity ae : endpointsRepository.getRegexActivites()) {
-
-                    if (uri.contains(ae.getEndpoint().replaceAll("/\\*\\*", ""))) {
-                        permissionsEntity = ae;
-                        break;
-                    }
+                // most specific pattern which has the method or every method, as the in-memory access control list matches
+                final PathPatternTrie<List<EndpointEntity>> patterns = new PathPatternTrie<List<EndpointEntity>>();
+                final Map<String, List<EndpointEntity>> byPattern = new HashMap<String, List<EndpointEntity>>();
+                for (final EndpointEntity ae : endpointsRepository.getRegexActivitesWithAuthorities()) {
+                    byPattern.computeIfAbsent(ae.getEndpoint(), pattern -> new ArrayList<EndpointEntity>()).add(ae);
                 }
+                for (final Map.Entry<String, List<EndpointEntity>> pattern : byPattern.entrySet()) {
+                    patterns.put(pattern.getKey(), pattern.getValue());
+                }
+                permissionsEntity = patterns.match(uri, endpoints -> forMethod(endpoints, method));
             }
 
             if (permissionsEntity != null) {
@@ -103,8 +139,14 @@ public class AccessControlServiceImpl implements AccessControlService {
 
     @Override
     public void addActivityForRoles(final String endpoint, final boolean regex, final List<String> roleNamesList) {
+        addActivityForRoles(null, endpoint, regex, roleNamesList);
+    }
+
+    @Override
+    public void addActivityForRoles(final String method, final String endpoint, final boolean regex, final List<String> roleNamesList) {
 
         EndpointEntity endpointEntity = new EndpointEntity();
+        endpointEntity.setMethod(method == null ? null : method.toUpperCase(Locale.ENGLISH));
         endpointEntity.setRegex(regex);
         endpointEntity.setEndpoint(endpoint);
         endpointEntity.getAuthorities().clear();
@@ -115,6 +157,7 @@ public class AccessControlServiceImpl implements AccessControlService {
         }
 
         endpointsRepository.updateAuthorites(endpointEntity, endpointEntity.getId());
+        applicationEventPublisher.publishEvent(new AclChangedEvent(this, toRule(endpointEntity)));
     }
 
     @Override
@@ -128,8 +171,39 @@ public class AccessControlServiceImpl implements AccessControlService {
             permissionsEntity.getAuthorities().add(authorityRepository.findByAuthority(authority));
         }
 
-        endpointsRepository.save(permissionsEntity);
+        applicationEventPublisher.publishEvent(new AclChangedEvent(this, toRule(endpointsRepository.save(permissionsEntity))));
+    }
+
+    private static AclRule toRule(final EndpointEntity endpointEntity) {
 
+        final List<String> authorities = new ArrayList<String>(endpointEntity.getAuthorities().size());
+        for (final AuthorityEntity authorityEntity : endpointEntity.getAuthorities()) {
+            authorities.add(authorityEntity == null ? null : authorityEntity.getAuthority());
+        }
+        return new AclRule(endpointEntity.getMethod(), endpointEntity.getEndpoint(), Boolean.TRUE.equals(endpointEntity.getRegex()), authorities);
+    }
+
+    private static AclRule toRule(final Object[] endpointRow, final List<String> authorities) {
+        return new AclRule((String) endpointRow[4], (String) endpointRow[1], Boolean.TRUE.equals(endpointRow[2]), authorities);
+    }
+
+    /**
+     * @param endpoints
+     *            endpoints in the order they were stored
+     * @return the endpoint of the method, else the one of every method. the one stored last, a later rule replaces an earlier one as in the snapshot
+     */
+    private static EndpointEntity forMethod(final List<EndpointEntity> endpoints, final String method) {
+
+        EndpointEntity byMethod = null;
+        EndpointEntity everyMethod = null;
+        for (final EndpointEntity endpointEntity : endpoints) {
+            if (endpointEntity.getMethod() == null) {
+                everyMethod = endpointEntity;
+            } else if (endpointEntity.getMethod().equals(method)) {
+                byMethod = endpointEntity;
+            }
+        }
+        return byMethod != null ? byMethod : everyMethod;
     }
 
 }
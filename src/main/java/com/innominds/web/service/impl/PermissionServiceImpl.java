@@ -0,0 +1,206 @@
+package com.innominds.web.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.Filter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.FilterInvocationSecurityMetadataSource;
+import org.springframework.security.web.access.intercept.FilterSecurityInterceptor;
+import org.springframework.stereotype.Service;
+
+import com.innominds.persistence.vo.PermissionCheck;
+import com.innominds.web.service.PermissionService;
+
+/**
+ * The Class PermissionServiceImpl. every pair is turned into the filter invocation of a request like the asking one, with the method and url of the
+ * pair. the filter chain proxy picks its chain first: a url on a chain without the security interceptor, e.g. /api/health, or on no chain is allowed,
+ * as the request would pass. otherwise the invocation is handed to the metadata source and the decision manager of the interceptor. so the answer is
+ * the one the request would get, by handler or by url, without a filter chain round trip and without a query. an unsecured url is allowed, as the
+ * interceptor lets it pass.
+ */
+@Service("permissionService")
+public class PermissionServiceImpl implements PermissionService {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PermissionService.class);
+
+    /** The metadata source of the security interceptor. */
+    @Autowired
+    private FilterInvocationSecurityMetadataSource secureResouceMetadataSource;
+
+    /** The decision manager of the security interceptor. */
+    @Autowired
+    private AccessDecisionManager genericAccessDecisionManager;
+
+    @Autowired
+    private ServerProperties serverProperties;
+
+    /** The filter chains the requests pass. */
+    @Autowired
+    private FilterChainProxy springSecurityFilterChain;
+
+    @Override
+    public List<PermissionCheck> check(final Authentication authentication, final List<PermissionCheck> checks, final HttpServletRequest request,
+            final HttpServletResponse response) {
+
+        final List<PermissionCheck> answers = new ArrayList<PermissionCheck>(checks.size());
+
+        for (final PermissionCheck check : checks) {
+            final String method = check.getMethod() == null ? "GET" : check.getMethod().toUpperCase(Locale.ENGLISH);
+            final PermissionCheck answer = new PermissionCheck(method, check.getUri());
+
+            if (check.getUri() == null || !check.getUri().startsWith("/")) {
+                answer.setAllowed(false);
+            } else {
+                final FilterInvocation filterInvocation = new FilterInvocation(new CheckedRequest(request, method, check.getUri(), serverProperties
+                        .getServletPrefix()), response, (servletRequest, servletResponse) -> {
+                        });
+                answer.setAllowed(decide(authentication, filterInvocation));
+            }
+            answers.add(answer);
+        }
+        LOGGER.debug("Permissions of {}: {}", authentication.getName(), answers);
+        return answers;
+    }
+
+    private boolean decide(final Authentication authentication, final FilterInvocation filterInvocation) {
+
+        if (!isIntercepted(filterInvocation.getRequest())) {
+            return true;
+        }
+
+        final Collection<ConfigAttribute> attributes = secureResouceMetadataSource.getAttributes(filterInvocation);
+        if (attributes == null || attributes.isEmpty()) {
+            return true;
+        }
+        try {
+            genericAccessDecisionManager.decide(authentication, filterInvocation, attributes);
+            return true;
+        } catch (final AccessDeniedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the first chain matching the request, as the filter chain proxy picks it, has the security interceptor
+     */
+    private boolean isIntercepted(final HttpServletRequest request) {
+
+        for (final SecurityFilterChain securityFilterChain : springSecurityFilterChain.getFilterChains()) {
+            if (securityFilterChain.matches(request)) {
+                for (final Filter filter : securityFilterChain.getFilters()) {
+                    if (filter instanceof FilterSecurityInterceptor) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the asking request with the method and url of one pair, split into servlet path and path info as the container does. keeps its own attributes,
+     * the handler mapping sets some while it looks up the handler
+     */
+    private static final class CheckedRequest extends HttpServletRequestWrapper {
+
+        private final String method;
+
+        private final String servletPath;
+
+        private final String pathInfo;
+
+        private final String queryString;
+
+        private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+        CheckedRequest(HttpServletRequest request, String method, String uri, String servletPrefix) {
+            super(request);
+            this.method = method;
+
+            final int query = uri.indexOf('?');
+            final String path = query < 0 ? uri : uri.substring(0, query);
+            queryString = query < 0 ? null : uri.substring(query + 1);
+            if (!servletPrefix.isEmpty() && (path.equals(servletPrefix) || path.startsWith(servletPrefix + "/"))) {
+                servletPath = servletPrefix;
+                pathInfo = path.length() > servletPrefix.length() ? path.substring(servletPrefix.length()) : null;
+            } else {
+                servletPath = path;
+                pathInfo = null;
+            }
+        }
+
+        @Override
+        public String getMethod() {
+            return method;
+        }
+
+        @Override
+        public String getServletPath() {
+            return servletPath;
+        }
+
+        @Override
+        public String getPathInfo() {
+            return pathInfo;
+        }
+
+        @Override
+        public String getQueryString() {
+            return queryString;
+        }
+
+        @Override
+        public String getRequestURI() {
+            return getContextPath() + servletPath + (pathInfo == null ? "" : pathInfo);
+        }
+
+        @Override
+        public StringBuffer getRequestURL() {
+            return new StringBuffer(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort()).append(getRequestURI());
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        public Enumeration<String> getAttributeNames() {
+            return Collections.enumeration(attributes.keySet());
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            attributes.put(name, value);
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            attributes.remove(name);
+        }
+    }
+
+}
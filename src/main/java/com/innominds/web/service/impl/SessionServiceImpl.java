@@ -0,0 +1,78 @@
+package com.innominds.web.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.innominds.exception.ResourceNotFoundException;
+import com.innominds.persistence.domain.UserEntity;
+import com.innominds.persistence.repository.UserRepository;
+import com.innominds.security.token.SignedTokenService;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenStore;
+import com.innominds.web.service.SessionService;
+
+/**
+ * The Class SessionServiceImpl.
+ */
+@Service("sessionService")
+@Transactional
+public class SessionServiceImpl implements SessionService {
+
+    /** Reference to logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionService.class);
+
+    /** The token store. */
+    @Autowired
+    private TokenStore tokenStore;
+
+    /** present with token.mode=signed */
+    @Autowired(required = false)
+    private SignedTokenService signedTokenService;
+
+    /** The user repository. */
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    public int logoutAll(String username) {
+
+        if (signedTokenService != null) {
+            signedTokenService.revokeUser(username);
+        }
+
+        final int revoked = tokenStore.revokeByUsername(username);
+        LOGGER.info("Revoked {} sessions of user {}", revoked, username);
+        return revoked;
+    }
+
+    @Override
+    public boolean logout(String token) {
+
+        if (signedTokenService != null && SignedTokenService.isSigned(token)) {
+            return signedTokenService.revoke(token);
+        }
+
+        final TokenKey tokenKey = TokenKey.parse(token);
+        if (tokenKey == null) {
+            return false;
+        }
+        tokenStore.revoke(tokenKey);
+        return true;
+    }
+
+    @Override
+    public int revokeSessions(Long userId) throws ResourceNotFoundException {
+        final UserEntity userEntity = userRepository.findOne(userId);
+
+        if (userEntity == null) {
+            LOGGER.info("There is no record with this id {}", userId);
+            throw new ResourceNotFoundException("Record not exists with id :: " + userId);
+        }
+
+        return logoutAll(userEntity.getUsername());
+    }
+
+}
@@ -15,6 +15,7 @@ import com.innominds.persistence.repository.AuthorityRepository;
 import com.innominds.persistence.repository.UserRepository;
 import com.innominds.persistence.vo.Authority;
 import com.innominds.persistence.vo.User;
+import com.innominds.web.service.SessionService;
 import com.innominds.web.service.UserService;
 
 /**
@@ -40,6 +41,10 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private BasePasswordEncoder passwordEncoder;
 
+    /** The session service. */
+    @Autowired
+    private SessionService sessionService;
+
     /** The logger. */
     private static final Logger LOGGER = LoggerFactory.getLogger(UserService.class);
 
@@ -54,6 +59,26 @@ public class UserServiceImpl implements UserService {
 
         userEntity.getAuthorities().clear();
         userRepository.delete(userEntity);
+        sessionService.logoutAll(userEntity.getUsername());
+    }
+
+    @Override
+    public void changePassword(final Long id, final String password) throws ResourceNotFoundException {
+        final UserEntity userEntity = userRepository.findOne(id);
+
+        if (userEntity == null) {
+            LOGGER.info("There is no record with this id {}", id);
+            throw new ResourceNotFoundException("Record not exists with id :: " + id);
+        }
+
+        final User user = new User();
+        user.setUsername(userEntity.getUsername());
+        user.setPassword(password);
+        encryptPassword(user);
+
+        userEntity.setPassword(user.getPassword());
+        userRepository.save(userEntity);
+        sessionService.logoutAll(userEntity.getUsername());
     }
 
     @Override
@@ -0,0 +1,122 @@
+package com.innominds.benchmark;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.util.Assert;
+
+import com.innominds.security.acl.AclRule;
+import com.innominds.security.token.Authorities;
+import com.innominds.security.token.SessionRecord;
+
+/**
+ * Measures the access decision of the security interceptor for users holding dozens of roles: the pairwise comparison of authority names it replaced,
+ * the decision manager with a session authentication and rule attributes carrying precompiled bits, and with a plain authentication compiled per call.
+ * checks first that a role granted before a non matching one is no longer lost. run as plain java application, optional arguments: roles rules
+ */
+public class AccessDecisionBenchmark {
+
+    private static final int DECISIONS = 2_000_000;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+
+        final int roles = args.length > 0 ? Integer.parseInt(args[0]) : 48;
+        final int ruleCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        final AccessDecisionManager decisionManager = decisionManager();
+
+        final AclRule adminOnly = new AclRule("/api/admin", false, Collections.singletonList("ROLE_ADMIN"));
+        final Authentication adminAndOther = record(Arrays.asList("ROLE_ADMIN", "ROLE_ZZZ")).getAuthentication();
+        Assert.state(!legacyDecide(adminAndOther, adminOnly.getAttributes()), "the pairwise comparison no longer loses ROLE_ADMIN");
+        decisionManager.decide(adminAndOther, null, adminOnly.getAttributes());
+        try {
+            decisionManager.decide(record(Arrays.asList("ROLE_USER")).getAuthentication(), null, adminOnly.getAttributes());
+            Assert.state(false, "ROLE_USER granted /api/admin");
+        } catch (final AccessDeniedException e) {
+            System.out.println("ROLE_ADMIN before a non matching role granted, ROLE_USER denied");
+        }
+
+        // the user holds roles ROLE_0..ROLE_n, every rule requires three roles, one of them the user holds
+        final List<String> names = new ArrayList<String>();
+        for (int i = 0; i < roles; i++) {
+            names.add("ROLE_" + i);
+        }
+        final Authentication session = record(names).getAuthentication();
+        final Authentication plain = new UsernamePasswordAuthenticationToken(session.getPrincipal(), null, session.getAuthorities());
+
+        final List<Collection<ConfigAttribute>> attributes = new ArrayList<Collection<ConfigAttribute>>();
+        for (int i = 0; i < ruleCount; i++) {
+            attributes.add(new AclRule("/api/rule" + i, false, Arrays.asList("ROLE_OTHER_" + i, "ROLE_OTHER_" + (i + 1), "ROLE_" + i % roles))
+                    .getAttributes());
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {// earlier rounds warm up
+            int granted = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < DECISIONS; i++) {
+                granted += legacyDecide(session, attributes.get(i % ruleCount)) ? 1 : 0;
+            }
+            final double legacyNanos = (System.nanoTime() - start) / (double) DECISIONS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < DECISIONS; i++) {
+                decisionManager.decide(session, null, attributes.get(i % ruleCount));
+            }
+            final double bitsNanos = (System.nanoTime() - start) / (double) DECISIONS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < DECISIONS / 10; i++) {
+                decisionManager.decide(plain, null, attributes.get(i % ruleCount));
+            }
+            final double plainNanos = (System.nanoTime() - start) / (double) (DECISIONS / 10);
+
+            if (round == ROUNDS - 1) {
+                System.out.println(String.format("roles=%d rules=%d  pairwise=%7.1f ns/op (granted %d of %d)  bits=%6.1f ns/op  "
+                        + "bits compiled per call=%7.1f ns/op", roles, ruleCount, legacyNanos, granted, DECISIONS, bitsNanos, plainNanos));
+            }
+        }
+    }
+
+    /**
+     * the comparison before the bits, including its bug: a later non matching authority resets the result
+     */
+    private static boolean legacyDecide(Authentication authentication, Collection<ConfigAttribute> configAttributes) {
+        boolean allowAccess = false;
+
+        for (final GrantedAuthority grantedAuthority : authentication.getAuthorities()) {
+            for (final ConfigAttribute attribute : configAttributes) {
+                allowAccess = attribute.getAttribute().equals(grantedAuthority.getAuthority());
+                if (allowAccess) {
+                    break;
+                }
+            }
+        }
+        return allowAccess;
+    }
+
+    private static SessionRecord record(List<String> names) {
+        return new SessionRecord(1, "benchmark", Authorities.setOfNames(new ArrayList<String>(names)), 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * the decision manager is package private to the security configuration
+     */
+    private static AccessDecisionManager decisionManager() throws Exception {
+        final Constructor<?> constructor = Class.forName("com.innominds.config.GenericAccessDecisionManager").getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return (AccessDecisionManager) constructor.newInstance();
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.innominds.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.util.Assert;
+
+import com.innominds.security.acl.AclRule;
+import com.innominds.security.acl.AclSnapshot;
+
+/**
+ * Compares matching a request path against the access control list by scanning the pattern endpoints in stored order (prefix contained in the url, as
+ * before) with the {@link AclSnapshot} compiled into a path segment trie. checks most specific match semantics first, then prints build time and
+ * nanoseconds per match. run as plain java application, optional argument: rules
+ */
+public class AclMatcherBenchmark {
+
+    private static final int PATHS = 100_000;
+
+    /** the scan is slow, it only sees the first paths */
+    private static final int SCANNED_PATHS = 1_000;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+
+        final int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        checkSemantics();
+
+        final List<AclRule> rules = new ArrayList<AclRule>(ruleCount);
+        rules.add(rule("/api/**", "ROLE_ADMIN"));// stored first, the scan stops at it for every path
+        for (int i = 0; rules.size() < ruleCount; i++) {
+            rules.add(rule("/api/svc" + i + "/**", "ROLE_USER"));
+            rules.add(rule("/api/svc" + i + "/items/*", "ROLE_USER"));
+            rules.add(rule("/api/svc" + i + "/items/{id}/detail", "ROLE_USER"));
+            rules.add(new AclRule("/api/svc" + i + "/status", false, Collections.singletonList("ROLE_USER")));
+        }
+
+        long start = System.nanoTime();
+        final AclSnapshot snapshot = new AclSnapshot(1, rules);
+        System.out.println(String.format("rules=%d patterns=%d  build=%.1f ms", rules.size(), snapshot.getPatternCount(), (System.nanoTime() - start)
+                / 1_000_000.0));
+
+        final Random random = new Random(42);
+        final int services = ruleCount / 4;
+        final String[] paths = new String[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            final int service = random.nextInt(services);
+            switch (i % 4) {
+            case 0:
+                paths[i] = "/api/svc" + service + "/items/" + random.nextInt(1000);
+                break;
+            case 1:
+                paths[i] = "/api/svc" + service + "/items/" + random.nextInt(1000) + "/detail";
+                break;
+            case 2:
+                paths[i] = "/api/svc" + service + "/status";
+                break;
+            default:
+                paths[i] = "/api/unknown" + service + "/x";// falls through to /api/**
+            }
+        }
+
+        // the scan of the rules still stored last, the worst case before
+        final List<AclRule> reversed = new ArrayList<AclRule>(rules.subList(1, rules.size()));
+        Collections.reverse(reversed);
+        reversed.add(rules.get(0));
+
+        for (int round = 0; round < ROUNDS; round++) {// earlier rounds warm up
+            int found = 0;
+            start = System.nanoTime();
+            for (final String path : paths) {
+                found += snapshot.match(path) != null ? 1 : 0;
+            }
+            final double trieNanos = (System.nanoTime() - start) / (double) PATHS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SCANNED_PATHS; i++) {
+                found += scan(reversed, paths[i]) != null ? 1 : 0;
+            }
+            final double scanNanos = (System.nanoTime() - start) / (double) SCANNED_PATHS;
+
+            if (round == ROUNDS - 1) {
+                System.out.println(String.format("trie=%8.1f ns/op  linear scan=%10.1f ns/op  matched=%d", trieNanos, scanNanos, found));
+            }
+        }
+    }
+
+    private static void checkSemantics() {
+        final AclSnapshot snapshot = new AclSnapshot(1, Arrays.asList(rule("/api/**", "ROLE_ADMIN"), rule("/api/user/**", "ROLE_USER"), rule(
+                "/api/user/*/photo", "ROLE_PHOTO"), rule("/api/user/{id}.json", "ROLE_JSON"), rule("/api/files/*.txt", "ROLE_TXT"), rule("/api/files/*",
+                        "ROLE_FILE"), new AclRule("/api/user/me", false, Collections.singletonList("ROLE_ME"))));
+
+        expect(snapshot, "/api/other", "ROLE_ADMIN");
+        expect(snapshot, "/api", "ROLE_ADMIN");
+        expect(snapshot, "/api/user/42", "ROLE_USER");// more specific than /api/** although stored after it
+        expect(snapshot, "/api/user/42/photo", "ROLE_PHOTO");
+        expect(snapshot, "/api/user/42/photo/large", "ROLE_USER");
+        expect(snapshot, "/api/user/42.json", "ROLE_JSON");
+        expect(snapshot, "/api/user/me?fields=name", "ROLE_ME");
+        expect(snapshot, "/api/files/a.txt", "ROLE_TXT");
+        expect(snapshot, "/api/files/a.pdf", "ROLE_FILE");
+        expect(snapshot, "/apiary", null);// no longer matched by containing the prefix
+        expect(snapshot, "/public/api/user/42", null);
+        System.out.println("most specific pattern wins whatever the stored order");
+    }
+
+    private static void expect(AclSnapshot snapshot, String path, String authority) {
+        final AclRule rule = snapshot.match(path);
+        final String matched = rule == null ? null : rule.getAuthorities().get(0);
+        Assert.state(authority == null ? matched == null : authority.equals(matched), path + " matched " + rule + ", expected "
+                + authority);
+    }
+
+    /**
+     * the matching before the trie: the first pattern endpoint whose prefix the url contains
+     */
+    private static AclRule scan(List<AclRule> rules, String uri) {
+        for (final AclRule rule : rules) {
+            if (rule.isRegex() ? uri.contains(rule.getEndpoint().replaceAll("/\\*\\*", "")) : uri.equals(rule.getEndpoint())) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static AclRule rule(String pattern, String authority) {
+        return new AclRule(pattern, true, Collections.singletonList(authority));
+    }
+
+}
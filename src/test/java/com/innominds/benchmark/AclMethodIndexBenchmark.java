@@ -0,0 +1,117 @@
+package com.innominds.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.Assert;
+
+import com.innominds.security.acl.AclRule;
+import com.innominds.security.acl.AclSnapshot;
+
+/**
+ * Grows the access control list with http method specific rules, four methods on every service pattern next to its rule of every method, and prints
+ * nanoseconds per (method, path) lookup in the {@link AclSnapshot} at every size next to scanning the rules for the first one matching method and
+ * pattern. checks the method semantics first. run as plain java application, optional argument: largest service count
+ */
+public class AclMethodIndexBenchmark {
+
+    private static final String[] METHODS = { "GET", "POST", "PUT", "DELETE", "PATCH" };
+
+    private static final int LOOKUPS = 100_000;
+
+    /** the scan is slow, it only sees the first lookups */
+    private static final int SCANNED_LOOKUPS = 200;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+
+        final int largest = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        checkSemantics();
+
+        final AntPathMatcher antPathMatcher = new AntPathMatcher();
+        for (final int services : new int[] { largest / 1000, largest / 100, largest / 10, largest }) {
+            final List<AclRule> rules = new ArrayList<AclRule>();
+            for (int i = 0; i < services; i++) {
+                for (int m = 0; m < 4; m++) {
+                    rules.add(new AclRule(METHODS[m], "/api/svc" + i + "/**", true, Collections.singletonList("ROLE_" + METHODS[m])));
+                }
+                rules.add(new AclRule("/api/svc" + i + "/**", true, Collections.singletonList("ROLE_USER")));
+                rules.add(new AclRule("GET", "/api/svc" + i + "/status", false, Collections.singletonList("ROLE_STATUS")));
+            }
+            rules.add(new AclRule("/api/**", true, Collections.singletonList("ROLE_ADMIN")));
+            final AclSnapshot snapshot = new AclSnapshot(1, rules);
+
+            final Random random = new Random(42);
+            final String[] methods = new String[LOOKUPS];
+            final String[] paths = new String[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                methods[i] = METHODS[random.nextInt(METHODS.length)];
+                paths[i] = i % 3 == 0 ? "/api/svc" + random.nextInt(services) + "/status" : "/api/svc" + random.nextInt(services) + "/items/" + i;
+            }
+
+            for (int round = 0; round < ROUNDS; round++) {// earlier rounds warm up
+                int found = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < LOOKUPS; i++) {
+                    found += snapshot.match(methods[i], paths[i]) != null ? 1 : 0;
+                }
+                final double indexNanos = (System.nanoTime() - start) / (double) LOOKUPS;
+
+                start = System.nanoTime();
+                for (int i = 0; i < SCANNED_LOOKUPS; i++) {
+                    found += scan(antPathMatcher, rules, methods[i], paths[i]) != null ? 1 : 0;
+                }
+                final double scanNanos = (System.nanoTime() - start) / (double) SCANNED_LOOKUPS;
+
+                if (round == ROUNDS - 1) {
+                    System.out.println(String.format("rules=%7d  (method, path) index=%7.1f ns/op  linear scan=%12.1f ns/op  matched=%d", rules.size(),
+                            indexNanos, scanNanos, found));
+                }
+            }
+        }
+    }
+
+    private static void checkSemantics() {
+        final AclSnapshot snapshot = new AclSnapshot(1, Arrays.asList(new AclRule("/api/**", true, Collections.singletonList("ROLE_ADMIN")),
+                new AclRule("/api/user/**", true, Collections.singletonList("ROLE_USER")), new AclRule("DELETE", "/api/user/**", true, Collections
+                        .singletonList("ROLE_DELETE")), new AclRule("POST", "/api/orders/**", true, Collections.singletonList("ROLE_ORDER")),
+                new AclRule("put", "/api/user/me", false, Collections.singletonList("ROLE_ME"))));
+
+        expect(snapshot, "GET", "/api/user/42", "ROLE_USER");
+        expect(snapshot, "DELETE", "/api/user/42", "ROLE_DELETE");// the method beats every method of the same pattern
+        expect(snapshot, "POST", "/api/orders/7", "ROLE_ORDER");
+        expect(snapshot, "GET", "/api/orders/7", "ROLE_ADMIN");// no rule for GET, the less specific pattern decides
+        expect(snapshot, "PUT", "/api/user/me", "ROLE_ME");
+        expect(snapshot, "GET", "/api/user/me", "ROLE_USER");// the exact endpoint has PUT only
+        expect(snapshot, null, "/api/user/42", "ROLE_USER");
+        expect(snapshot, "GET", "/public", null);
+        System.out.println("method rules beat the rules of every method, a pattern without the method passes on");
+    }
+
+    private static void expect(AclSnapshot snapshot, String method, String path, String authority) {
+        final AclRule rule = snapshot.match(method, path);
+        final String matched = rule == null ? null : rule.getAuthorities().get(0);
+        Assert.state(authority == null ? matched == null : authority.equals(matched), method + " " + path + " matched " + rule
+                + ", expected " + authority);
+    }
+
+    /**
+     * the first rule of the method or of every method whose pattern matches, the extra uri rules scanned in stored order
+     */
+    private static AclRule scan(AntPathMatcher antPathMatcher, List<AclRule> rules, String method, String path) {
+        for (final AclRule rule : rules) {
+            if ((rule.getMethod() == null || rule.getMethod().equals(method)) && (rule.isRegex() ? antPathMatcher.match(rule.getEndpoint(), path) : rule
+                    .getEndpoint().equals(path))) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.innominds.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.util.Assert;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.innominds.HazelcastMemberApplication;
+import com.innominds.config.HazelcastProperties;
+import com.innominds.config.WebSecurityConfig;
+import com.innominds.security.acl.AclChangeTopic;
+import com.innominds.security.acl.AclChangedEvent;
+import com.innominds.security.acl.AclRegistry;
+import com.innominds.security.acl.AclRule;
+
+/**
+ * Runs two hazelcast members with an {@link AclRegistry} each over one shared list of rules standing in for the database. both store changes at the
+ * same time, then every node must hold the same rules at the same cluster version without having reloaded. prints the propagation lag. then takes a
+ * version without publishing it, as a node dying in between would, and checks that the gap is closed with one reload although no further change
+ * arrives. run as plain java application, optional argument: changes per node
+ */
+public class AclPropagationHarness {
+
+    private static final int BASE_PORT = 5961;
+
+    public static void main(String[] args) throws Exception {
+
+        final int changes = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+
+        final HazelcastProperties hazelcastProperties = new HazelcastProperties();
+        hazelcastProperties.setGroupName("acl-propagation-harness");
+        hazelcastProperties.setPort(BASE_PORT);
+        hazelcastProperties.setPortCount(2);
+        hazelcastProperties.getMembers().add("127.0.0.1:" + BASE_PORT);
+        hazelcastProperties.getMembers().add("127.0.0.1:" + (BASE_PORT + 1));
+
+        final List<AclRule> database = new CopyOnWriteArrayList<AclRule>(Arrays.asList(new AclRule("/api/**", true, Arrays.asList("ROLE_ADMIN"))));
+        try {
+            final HazelcastInstance firstMember = HazelcastMemberApplication.member(hazelcastProperties);
+            final AclRegistry first = registry(firstMember, database);
+            final AclRegistry second = registry(HazelcastMemberApplication.member(hazelcastProperties), database);
+
+            // both nodes change the same endpoints at the same time, the last version wins everywhere
+            final long start = System.nanoTime();
+            final Thread[] writers = { writer(first, database, changes, "ROLE_FIRST_"), writer(second, database, changes, "ROLE_SECOND_") };
+            for (final Thread writer : writers) {
+                writer.start();
+            }
+            for (final Thread writer : writers) {
+                writer.join();
+            }
+            await(() -> first.getClusterVersion() == 2 * changes && second.getClusterVersion() == 2 * changes, 10_000);
+            final double millis = (System.nanoTime() - start) / 1e6;
+
+            Assert.state(second.getClusterVersion() == 2 * changes, "cluster version " + second.getClusterVersion() + ", " + 2 * changes
+                    + " expected");
+            for (int i = 0; i < 10; i++) {
+                final String path = "/api/endpoint" + i;
+                Assert.state(first.current().match(path).getAuthorities().equals(second.current().match(path).getAuthorities()), path
+                        + " differs between the nodes");
+            }
+            Assert.state(metric(first, "acl.propagation.gap-reloads") == 0 && metric(second, "acl.propagation.gap-reloads") == 0,
+                    "a node reloaded although no change was lost");
+            System.out.println(String.format("%d changes from two nodes applied everywhere in %.1f ms, lag last=%d ms max=%d ms, no reload", 2 * changes,
+                    millis, metric(second, "acl.propagation.lag-millis"), metric(second, "acl.propagation.max-lag-millis")));
+
+            // a version taken but never published
+            firstMember.getAtomicLong(WebSecurityConfig.ACL_CHANGES).incrementAndGet();
+            final AclRule lost = new AclRule("/api/lost", false, Arrays.asList("ROLE_LOST"));
+            database.add(lost);
+            change(first, database, new AclRule("/api/after", false, Arrays.asList("ROLE_AFTER")));
+
+            await(() -> metric(second, "acl.propagation.gap-reloads") == 1, 10_000);
+            Assert.state(metric(second, "acl.propagation.gap-reloads") == 1, "the gap was not closed without a further change");
+            Assert.state(second.current().match("/api/lost").getAuthorities().equals(lost.getAuthorities()),
+                    "the reload did not read the rule of the lost change");
+            Assert.state(second.getClusterVersion() == first.getClusterVersion(), "cluster version " + second.getClusterVersion()
+                    + " after the reload, " + first.getClusterVersion() + " expected");
+            System.out.println("a lost version was closed with one reload at cluster version " + second.getClusterVersion());
+        } finally {
+            Hazelcast.shutdownAll();
+        }
+    }
+
+    private static AclRegistry registry(HazelcastInstance hazelcastInstance, List<AclRule> database) {
+        final AclRegistry registry = new AclRegistry(() -> new ArrayList<AclRule>(database), new AclChangeTopic(hazelcastInstance,
+                WebSecurityConfig.ACL_CHANGES));
+        registry.afterSingletonsInstantiated();
+        return registry;
+    }
+
+    private static Thread writer(AclRegistry registry, List<AclRule> database, int changes, String prefix) {
+        return new Thread(() -> {
+            for (int i = 0; i < changes; i++) {
+                change(registry, database, new AclRule("/api/endpoint" + i % 10, false, Arrays.asList(prefix + i)));
+            }
+        });
+    }
+
+    /**
+     * what the service and the transaction do for a stored rule
+     */
+    private static void change(AclRegistry registry, List<AclRule> database, AclRule rule) {
+        database.add(rule);
+        registry.onAclChanged(new AclChangedEvent(database, rule));
+    }
+
+    private static long metric(AclRegistry registry, String name) {
+        for (final Metric<?> metric : registry.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static boolean await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.innominds.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.access.intercept.FilterInvocationSecurityMetadataSource;
+import org.springframework.util.Assert;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.innominds.HazelcastMemberApplication;
+import com.innominds.config.HazelcastProperties;
+import com.innominds.config.WebSecurityConfig;
+import com.innominds.security.acl.AclChangeTopic;
+import com.innominds.security.acl.AclChangedEvent;
+import com.innominds.security.acl.AclRegistry;
+import com.innominds.security.acl.AclRule;
+import com.innominds.security.acl.DecisionMemoInterceptor;
+import com.innominds.security.acl.DecisionMemoMetrics;
+import com.innominds.security.acl.HandlerAclIndex;
+import com.innominds.security.token.Authorities;
+import com.innominds.security.token.SessionRecord;
+
+import ch.qos.logback.classic.Level;
+
+/**
+ * Runs two hazelcast members, each with the {@link AclRegistry}, {@link AclChangeTopic} and {@link DecisionMemoInterceptor} wired as in
+ * WebSecurityConfig over one shared list of rules standing in for the database. prints nanoseconds per request through the interceptor with and without
+ * the memo and the hit rate, checks that a session decoded per request takes no memo, then changes the rules on one node and checks that the other
+ * node applied the change and no longer answers from its memo.
+ * run as plain java application, optional argument: requests
+ */
+public class DecisionMemoHarness {
+
+    private static final int BASE_PORT = 5951;
+
+    private static final int ROUNDS = 5;
+
+    private static final String[] PATHS = { "/api/user", "/api/user/42", "/api/user/42/photo", "/api/orders", "/api/orders/7", "/api/cors",
+            "/api/items?page=2", "/api/items?page=3" };
+
+    public static void main(String[] args) throws Exception {
+
+        final int requests = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        // without a logback configuration the interceptor logs every decision at debug, which would dominate the time
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        final HazelcastProperties hazelcastProperties = new HazelcastProperties();
+        hazelcastProperties.setGroupName("decision-memo-harness");
+        hazelcastProperties.setPort(BASE_PORT);
+        hazelcastProperties.setPortCount(2);
+        hazelcastProperties.getMembers().add("127.0.0.1:" + BASE_PORT);
+        hazelcastProperties.getMembers().add("127.0.0.1:" + (BASE_PORT + 1));
+
+        final List<AclRule> database = new CopyOnWriteArrayList<AclRule>(Arrays.asList(new AclRule("/api/cors", false, Arrays.asList("ROLE_ADMIN",
+                "ROLE_USER")), new AclRule("/api/user/**", true, Arrays.asList("ROLE_ADMIN", "ROLE_USER")), new AclRule("/api/**", true, Arrays.asList(
+                        "ROLE_ADMIN", "ROLE_USER"))));
+        try {
+            final Node first = new Node(HazelcastMemberApplication.member(hazelcastProperties), database, 32);
+            final Node second = new Node(HazelcastMemberApplication.member(hazelcastProperties), database, 32);
+            final Node undecided = new Node(null, database, 0);
+
+            final SessionRecord session = new SessionRecord(1, "user", Authorities.setOfNames(new ArrayList<String>(Arrays.asList("ROLE_USER"))), 0,
+                    Long.MAX_VALUE);
+            session.getAuthentication();
+            final Authentication user = session.getAuthentication();// handed out again, as by a store which keeps the record
+            SecurityContextHolder.getContext().setAuthentication(user);
+
+            final FilterInvocation[] invocations = new FilterInvocation[PATHS.length];
+            for (int i = 0; i < PATHS.length; i++) {
+                invocations[i] = invocation(PATHS[i]);
+            }
+
+            for (int round = 0; round < ROUNDS; round++) {// earlier rounds warm up
+                long start = System.nanoTime();
+                for (int i = 0; i < requests; i++) {
+                    first.interceptor.invoke(invocations[i % invocations.length]);
+                }
+                final double memoNanos = (System.nanoTime() - start) / (double) requests;
+
+                start = System.nanoTime();
+                for (int i = 0; i < requests; i++) {
+                    undecided.interceptor.invoke(invocations[i % invocations.length]);
+                }
+                final double decideNanos = (System.nanoTime() - start) / (double) requests;
+
+                if (round == ROUNDS - 1) {
+                    System.out.println(String.format("memo=%6.1f ns/request  decided every request=%6.1f ns/request  %s", memoNanos, decideNanos,
+                            metrics(first.metrics)));
+                }
+            }
+
+            final String counted = metrics(first.metrics);
+            for (int i = 0; i < 100; i++) {// a record decoded for every request, as from the database or a signed token
+                SecurityContextHolder.getContext().setAuthentication(new SessionRecord(1, "user", session.getAuthorities(), 0, Long.MAX_VALUE)
+                        .getAuthentication());
+                first.interceptor.invoke(invocations[i % invocations.length]);
+            }
+            Assert.state(counted.equals(metrics(first.metrics)), "a session decoded per request took a memo: " + metrics(first.metrics));
+            SecurityContextHolder.getContext().setAuthentication(user);
+
+            second.interceptor.invoke(invocation("/api/user/42"));// remembered as allowed on the other node
+            final long before = second.registry.getClusterVersion();
+
+            final AclRule adminOnly = new AclRule("/api/user/**", true, Arrays.asList("ROLE_ADMIN"));
+            database.add(adminOnly);
+            first.registry.onAclChanged(new AclChangedEvent(database, adminOnly));
+
+            final long deadline = System.currentTimeMillis() + 5_000;
+            while (second.registry.getClusterVersion() <= before && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.state(second.registry.getClusterVersion() == first.registry.getClusterVersion(), "cluster version " + second.registry
+                    .getClusterVersion() + " on the other node, " + first.registry.getClusterVersion() + " expected");
+            Assert.state(second.registry.current().match("/api/user/42").getAuthorities().equals(adminOnly.getAuthorities()),
+                    "the other node did not apply the changed rule");
+            for (final Node node : Arrays.asList(first, second)) {
+                try {
+                    node.interceptor.invoke(invocation("/api/user/42"));
+                    Assert.state(false, "ROLE_USER still allowed /api/user/42 from the memo");
+                } catch (final AccessDeniedException e) {
+                    // decided again against the new snapshot
+                }
+            }
+            System.out.println("a change on one node moved both to cluster version " + second.registry.getClusterVersion()
+                    + ", remembered decisions were dropped");
+        } finally {
+            SecurityContextHolder.clearContext();
+            Hazelcast.shutdownAll();
+        }
+    }
+
+    private static FilterInvocation invocation(String url) {
+        final int query = url.indexOf('?');
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", query < 0 ? url : url.substring(0, query));
+        request.setServletPath(request.getRequestURI());
+        request.setQueryString(query < 0 ? null : url.substring(query + 1));
+        return new FilterInvocation(request, new MockHttpServletResponse(), (servletRequest, servletResponse) -> {
+        });
+    }
+
+    private static String metrics(DecisionMemoMetrics decisionMemoMetrics) {
+        final StringBuilder text = new StringBuilder();
+        for (final Metric<?> metric : decisionMemoMetrics.metrics()) {
+            text.append(metric.getName()).append('=').append(metric.getValue()).append(' ');
+        }
+        return text.toString();
+    }
+
+    /**
+     * one app node
+     */
+    static final class Node {
+
+        final AclRegistry registry;
+
+        final DecisionMemoMetrics metrics = new DecisionMemoMetrics();
+
+        final DecisionMemoInterceptor interceptor;
+
+        Node(HazelcastInstance hazelcastInstance, List<AclRule> database, int memoSize) throws Exception {
+            registry = new AclRegistry(() -> new ArrayList<AclRule>(database), hazelcastInstance == null ? new AclChangeTopic() : new AclChangeTopic(
+                    hazelcastInstance, WebSecurityConfig.ACL_CHANGES));
+            registry.afterSingletonsInstantiated();
+
+            interceptor = new DecisionMemoInterceptor(registry, memoSize, metrics);
+            interceptor.setObserveOncePerRequest(false);// the same request objects are sent again
+            interceptor.setAuthenticationManager(authentication -> authentication);
+            interceptor.setAccessDecisionManager(decisionManager());
+            interceptor.setSecurityMetadataSource(new FilterInvocationSecurityMetadataSource() {
+
+                @Override
+                public Collection<ConfigAttribute> getAttributes(Object object) {
+                    final FilterInvocation filterInvocation = (FilterInvocation) object;
+                    filterInvocation.getRequest().setAttribute(HandlerAclIndex.RESOLVED_BY_PATH, Boolean.TRUE);// no handlers, one per url
+                    return registry.current().getAttributes(filterInvocation.getRequest().getMethod(), filterInvocation.getRequestUrl());
+                }
+
+                @Override
+                public Collection<ConfigAttribute> getAllConfigAttributes() {
+                    return null;
+                }
+
+                @Override
+                public boolean supports(Class<?> clazz) {
+                    return true;
+                }
+            });
+            interceptor.afterPropertiesSet();
+        }
+
+        private static AccessDecisionManager decisionManager() throws Exception {
+            final java.lang.reflect.Constructor<?> constructor = Class.forName("com.innominds.config.GenericAccessDecisionManager")
+                    .getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return (AccessDecisionManager) constructor.newInstance();
+        }
+    }
+
+}
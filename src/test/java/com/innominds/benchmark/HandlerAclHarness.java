@@ -0,0 +1,126 @@
+package com.innominds.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.util.Assert;
+
+import com.innominds.BootApplication;
+import com.innominds.security.acl.AclAttributes;
+import com.innominds.security.acl.AclRegistry;
+import com.innominds.security.acl.AuthorityBits;
+import com.innominds.security.acl.HandlerAclIndex;
+import com.innominds.web.service.AccessControlService;
+
+/**
+ * Boots the application on the dev database, restricts DELETE /api/user/** to ROLE_ADMIN and checks the {@link HandlerAclIndex}: the handlers of
+ * CorsTestResource are bound, /api/user.json is guarded like /api/user, the DELETE rule applies to the handler of every method and the
+ * <code>@Secured</code> authority of /api/cors is required on top of its url rule. prints nanoseconds per lookup by handler, for literal handler urls
+ * and for urls routed by the handler path patterns, next to the url lookup in the snapshot. run as plain java application, optional argument: lookups
+ */
+public class HandlerAclHarness {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+
+        final int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        System.setProperty("spring.profiles.active", System.getProperty("spring.profiles.active", "dev"));
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder(BootApplication.class).run("--server.port=0",
+                "--server.servletPath=/api/*", "--logging.level.root=WARN");
+        try {
+            // the seed data restricts no http method, the checks below need one
+            context.getBean(AccessControlService.class).addActivityForRoles("DELETE", "/api/user/**", true, Collections.singletonList(
+                    "ROLE_ADMIN"));
+            final HandlerAclIndex handlerAclIndex = context.getBean(HandlerAclIndex.class);
+            final AclRegistry aclRegistry = context.getBean(AclRegistry.class);
+
+            final AuthorityBits user = AuthorityBits.ofNames(Arrays.asList("ROLE_USER"));
+            final AuthorityBits admin = AuthorityBits.ofNames(Arrays.asList("ROLE_ADMIN"));
+            final AuthorityBits securedAdmin = AuthorityBits.ofNames(Arrays.asList("ROLE_ADMIN", "ADMIN"));
+
+            final AclAttributes userAttributes = attributes(handlerAclIndex, "GET", "/user");
+            Assert.state(userAttributes == attributes(handlerAclIndex, "GET", "/user"), "GET /api/user is not bound to its handler");
+            Assert.state(names(userAttributes).equals(aclRegistry.current().match("GET", "/api/user").getAuthorities()),
+                    "GET /api/user bound to " + userAttributes);
+            Assert.state(userAttributes == attributes(handlerAclIndex, "GET", "/user.json"),
+                    "/api/user.json is guarded other than its handler");
+            Assert.state(userAttributes.allows(user), "ROLE_USER denied GET /api/user");
+
+            final AclAttributes delete = attributes(handlerAclIndex, "DELETE", "/user");
+            Assert.state(!delete.allows(user) && delete.allows(admin), "DELETE /api/user bound to " + delete);
+
+            final AclAttributes cors = attributes(handlerAclIndex, "GET", "/cors");
+            Assert.state(!cors.allows(admin) && cors.allows(securedAdmin), "@Secured(\"ADMIN\") of /api/cors is not required: " + cors);
+
+            final AclAttributes unmapped = attributes(handlerAclIndex, "GET", "/unmapped/7");
+            Assert.state(names(unmapped).equals(aclRegistry.current().match("GET", "/api/unmapped/7").getAuthorities()),
+                    "a url without handler is not matched by url: " + unmapped);
+            System.out.println("handlers bound, suffix urls guarded as their handler, @Secured required on top of the url rule");
+
+            final MockHttpServletRequest[] literal = { request("GET", "/user"), request("DELETE", "/user"), request("GET", "/cors") };
+            final MockHttpServletRequest[] resolved = { request("GET", "/user.json"), request("GET", "/user/") };
+            for (int round = 0; round < ROUNDS; round++) {// earlier rounds warm up
+                final double literalNanos = nanos(handlerAclIndex, null, literal, lookups);
+                final double resolvedNanos = nanos(handlerAclIndex, null, resolved, lookups);
+                final double urlNanos = nanos(null, aclRegistry, literal, lookups);
+
+                if (round == ROUNDS - 1) {
+                    System.out.println(String.format("by handler: literal url=%7.1f ns/lookup  routed by pattern=%7.1f ns/lookup  "
+                            + "by url in the snapshot=%7.1f ns/lookup", literalNanos, resolvedNanos, urlNanos));
+                }
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * through the handler index, or by url in the snapshot without it
+     */
+    private static double nanos(HandlerAclIndex handlerAclIndex, AclRegistry aclRegistry, MockHttpServletRequest[] requests, int lookups) {
+        int secured = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            final MockHttpServletRequest request = requests[i % requests.length];
+            final String uri = request.getServletPath() + request.getPathInfo();
+            secured += (handlerAclIndex != null ? handlerAclIndex.getAttributes(request, uri) : aclRegistry.current().getAttributes(request
+                    .getMethod(), uri)).size();
+        }
+        final double nanos = (System.nanoTime() - start) / (double) lookups;
+        return secured > 0 ? nanos : -1;
+    }
+
+    private static AclAttributes attributes(HandlerAclIndex handlerAclIndex, String method, String path) {
+        final MockHttpServletRequest request = request(method, path);
+        return handlerAclIndex.getAttributes(request, request.getServletPath() + request.getPathInfo());
+    }
+
+    /**
+     * as the container hands it to the filters: the dispatcher servlet is mapped to /api/*
+     */
+    private static MockHttpServletRequest request(String method, String path) {
+        final MockHttpServletRequest request = new MockHttpServletRequest(method, "/spring-rest-template/api" + path);
+        request.setContextPath("/spring-rest-template");
+        request.setServletPath("/api");
+        request.setPathInfo(path);
+        return request;
+    }
+
+    private static List<String> names(AclAttributes attributes) {
+        final List<String> names = new ArrayList<String>();
+        for (final ConfigAttribute attribute : attributes) {
+            names.add(attribute.getAttribute());
+        }
+        return names;
+    }
+
+}
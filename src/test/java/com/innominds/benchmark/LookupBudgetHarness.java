@@ -0,0 +1,132 @@
+package com.innominds.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.core.context.SecurityContext;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.MapInterceptor;
+import com.innominds.config.CacheConfig;
+import com.innominds.config.HazelcastProperties;
+import com.innominds.security.token.HazelcastTokenStore;
+import com.innominds.security.token.LookupBudget;
+import com.innominds.security.token.SessionRecord;
+import com.innominds.security.token.TokenFilter;
+import com.innominds.security.token.TokenGenerator;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenNearCache;
+import com.innominds.security.token.TokenStoreUnavailableException;
+
+/**
+ * Simulates a member stalling in a GC pause or partition migration: a map interceptor delays every read of the token map while requests look up tokens
+ * whose near cache entries went stale. prints the slowest lookup and how many requests were failed or served from the near cache, once with
+ * on-timeout=fail and once with on-timeout=near-cache. run as plain java application, optional arguments: stallMillis budgetMillis
+ */
+public class LookupBudgetHarness {
+
+    private static final int TOKENS = 200;
+
+    /** read delay applied by the interceptor, static as the interceptor runs in the same JVM */
+    static volatile long stallMillis;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        final long stall = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        final long budgetMillis = args.length > 1 ? Long.parseLong(args[1]) : 50;
+
+        final HazelcastProperties hazelcastProperties = new HazelcastProperties();
+        hazelcastProperties.setGroupName("lookup-budget-harness");
+        final HazelcastInstance hazelcastInstance = Hazelcast.newHazelcastInstance(CacheConfig.hazelcastConfig(hazelcastProperties));
+        try {
+            hazelcastInstance.getMap(CacheConfig.USER_TOKEN_MAP).addInterceptor(new StallingInterceptor());
+
+            run("fail", hazelcastInstance, new LookupBudget(budgetMillis, false), stall);
+            run("near-cache", hazelcastInstance, new LookupBudget(budgetMillis, true), stall);
+        } finally {
+            Hazelcast.shutdownAll();
+        }
+    }
+
+    static void run(String name, HazelcastInstance hazelcastInstance, LookupBudget lookupBudget, long stall) throws InterruptedException {
+
+        final TokenNearCache<TokenKey, SessionRecord> tokenNearCache = new TokenNearCache<TokenKey, SessionRecord>(10_000, 1);
+        final HazelcastTokenStore tokenStore = new HazelcastTokenStore(hazelcastInstance, CacheConfig.USER_TOKEN_MAP, CacheConfig.USER_SESSION_INDEX,
+                tokenNearCache, new TokenFilter(false, 1, 0.01, 0, 0, true, 10));
+
+        final TokenGenerator tokenGenerator = new TokenGenerator(100_000);
+        final SecurityContext securityContext = TokenMapSerializationBenchmark.sampleContext();
+        final TokenKey[] tokens = new TokenKey[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = tokenGenerator.nextKey();
+            tokenStore.put(tokens[i], securityContext, 30, TimeUnit.MINUTES);
+        }
+
+        Thread.sleep(1_100);// near cache entries are stale now
+        stallMillis = stall;
+
+        int served = 0;
+        int failed = 0;
+        long slowest = 0;
+        for (final TokenKey token : tokens) {
+            final long start = System.nanoTime();
+            try {
+                served += lookupBudget.await(tokenStore.getAsync(token), lookupBudget.deadline(), () -> tokenStore.getStale(token)) != null ? 1 : 0;
+            } catch (final TokenStoreUnavailableException e) {
+                failed++;
+            }
+            slowest = Math.max(slowest, System.nanoTime() - start);
+        }
+        stallMillis = 0;
+
+        System.out.println(String.format("on-timeout=%-10s stall=%d ms budget=%d ms  served=%d failed=%d slowest=%.1f ms", name, stall, lookupBudget
+                .getBudgetMillis(), served, failed, slowest / 1e6));
+        for (final Metric<?> metric : lookupBudget.metrics()) {
+            System.out.println(String.format("  %-28s %6d", metric.getName(), metric.getValue().longValue()));
+        }
+    }
+
+    /**
+     * delays reads on the partition thread, as a member in a long pause would
+     */
+    static class StallingInterceptor implements MapInterceptor {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object interceptGet(Object value) {
+            if (stallMillis > 0) {
+                try {
+                    Thread.sleep(stallMillis);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void afterGet(Object value) {
+        }
+
+        @Override
+        public Object interceptPut(Object oldValue, Object newValue) {
+            return null;
+        }
+
+        @Override
+        public void afterPut(Object value) {
+        }
+
+        @Override
+        public Object interceptRemove(Object removedValue) {
+            return null;
+        }
+
+        @Override
+        public void afterRemove(Object value) {
+        }
+    }
+
+}
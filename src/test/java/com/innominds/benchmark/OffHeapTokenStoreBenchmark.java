@@ -0,0 +1,134 @@
+package com.innominds.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import com.innominds.persistence.constants.ApplicationRole;
+import com.innominds.persistence.vo.Authority;
+import com.innominds.persistence.vo.User;
+import com.innominds.security.token.InMemoryTokenStore;
+import com.innominds.security.token.TokenGenerator;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenStore;
+import com.innominds.security.token.offheap.OffHeapTokenStore;
+
+/**
+ * Fills a token store with idle sessions and compares heap footprint, allocation and collector pauses of the on-heap {@link InMemoryTokenStore} with the
+ * {@link OffHeapTokenStore}. run each store in its own JVM as plain java application, e.g.
+ *
+ * <pre>
+ * java -Xmx2g -XX:MaxDirectMemorySize=1g ... OffHeapTokenStoreBenchmark memory 1000000
+ * java -Xmx2g -XX:MaxDirectMemorySize=1g ... OffHeapTokenStoreBenchmark offheap 1000000
+ * </pre>
+ */
+public class OffHeapTokenStoreBenchmark {
+
+    private static final int READS = 2_000_000;
+
+    public static void main(String[] args) {
+
+        final String store = args.length > 0 ? args[0] : "offheap";
+        final int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+
+        final TokenStore tokenStore = "memory".equals(store) ? new InMemoryTokenStore() : new OffHeapTokenStore(16, 1024);
+        final TokenGenerator tokenGenerator = new TokenGenerator(100_000);
+        final TokenKey[] tokens = new TokenKey[sessions];
+        final String[] usernames = new String[sessions];
+
+        for (int i = 0; i < sessions; i++) {// the benchmark's own strings are part of the baseline
+            tokens[i] = tokenGenerator.nextKey();
+            usernames[i] = "user" + i;
+        }
+
+        final long heapBefore = usedHeapAfterGc();
+        final long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < sessions; i++) {
+            tokenStore.put(tokens[i], sessionOf(usernames[i]), 30, TimeUnit.MINUTES);
+        }
+
+        final double putMicros = (System.nanoTime() - start) / 1000.0 / sessions;
+        final long fillAllocated = allocatedBytes() - allocatedBefore;
+        final long heapRetained = usedHeapAfterGc() - heapBefore;
+
+        final long gcCountBefore = gcCount();
+        final long gcTimeBefore = gcMillis();
+        final long readAllocatedBefore = allocatedBytes();
+        long sink = 0;
+        start = System.nanoTime();
+
+        for (int i = 0; i < READS; i++) {
+            final SecurityContext securityContext = tokenStore.get(tokens[i % sessions]);
+            sink += securityContext.getAuthentication().getName().length();
+        }
+
+        final double getNanos = (System.nanoTime() - start) / (double) READS;
+        final long readAllocated = allocatedBytes() - readAllocatedBefore;
+        final long readGcCount = gcCount() - gcCountBefore;
+        final long readGcMillis = gcMillis() - gcTimeBefore;
+
+        start = System.nanoTime();
+        System.gc();
+        final double fullGcMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.println(String.format("store=%s sessions=%d (%d)", store, sessions, sink & 1));
+        System.out.println(String.format("  put %8.2f us/op, allocated %6.0f bytes/session", putMicros, fillAllocated / (double) sessions));
+        System.out.println(String.format("  retained heap %8.1f MB (%5.0f bytes/session)", heapRetained / 1048576.0, heapRetained / (double) sessions));
+        System.out.println(String.format("  get %8.0f ns/op, allocated %6.0f bytes/get, %d collections taking %d ms during %d gets", getNanos, readAllocated
+                / (double) READS, readGcCount, readGcMillis, READS));
+        System.out.println(String.format("  full gc with all sessions live %8.1f ms", fullGcMillis));
+
+        if (tokenStore instanceof OffHeapTokenStore) {
+            ((OffHeapTokenStore) tokenStore).metrics().forEach(metric -> System.out.println("  " + metric.getName() + " = " + metric.getValue()));
+            ((OffHeapTokenStore) tokenStore).close();
+        }
+    }
+
+    static SecurityContext sessionOf(String username) {
+        final User user = new User();
+        user.setId(42L);
+        user.setUsername(username);
+        user.setAccountNonExpired(true);
+        user.setAccountNonLocked(true);
+        user.setCredentialsNonExpired(true);
+        user.setEnabled(true);
+        user.getAuthorities().add(new Authority(ApplicationRole.ROLE_USER));
+
+        final SecurityContext securityContext = new SecurityContextImpl();
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        return securityContext;
+    }
+
+    static long usedHeapAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static long gcCount() {
+        long count = 0;
+        for (final GarbageCollectorMXBean garbageCollectorMXBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += garbageCollectorMXBean.getCollectionCount();
+        }
+        return count;
+    }
+
+    static long gcMillis() {
+        long millis = 0;
+        for (final GarbageCollectorMXBean garbageCollectorMXBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += garbageCollectorMXBean.getCollectionTime();
+        }
+        return millis;
+    }
+
+}
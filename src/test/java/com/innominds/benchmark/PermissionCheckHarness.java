@@ -0,0 +1,101 @@
+package com.innominds.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.util.Assert;
+
+import com.innominds.BootApplication;
+import com.innominds.persistence.vo.PermissionCheck;
+import com.innominds.web.service.AccessControlService;
+import com.innominds.web.service.PermissionService;
+
+/**
+ * Boots the application on the dev database, restricts DELETE /api/user/** to ROLE_ADMIN and checks the answers of the {@link PermissionService} for
+ * a user and an admin: a user may read /api/user but not delete it, an admin may do both. urls the security interceptor does not see are allowed,
+ * /api/cors on an open chain, /api/user/1 on no chain and /login.html, and a malformed one is not. prints microseconds per batch of menu entries and
+ * per entry. run as plain java application, optional argument: batches
+ */
+public class PermissionCheckHarness {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+
+        final int batches = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        System.setProperty("spring.profiles.active", System.getProperty("spring.profiles.active", "dev"));
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder(BootApplication.class).run("--server.port=0",
+                "--server.servletPath=/api/*", "--logging.level.root=WARN", "--logging.level.org.springframework.security.access=ERROR");
+        try {
+            // the seed data restricts no http method, the checks below need one
+            context.getBean(AccessControlService.class).addActivityForRoles("DELETE", "/api/user/**", true, Collections.singletonList(
+                    "ROLE_ADMIN"));
+            final PermissionService permissionService = context.getBean(PermissionService.class);
+            final Authentication user = authentication("tvajjala", "ROLE_USER");
+            final Authentication admin = authentication("admin", "ROLE_ADMIN");
+
+            final List<PermissionCheck> menu = Arrays.asList(new PermissionCheck("GET", "/api/user"), new PermissionCheck("delete", "/api/user"),
+                    new PermissionCheck(null, "/api/user.json?page=2"), new PermissionCheck("GET", "/api/cors"), new PermissionCheck("DELETE",
+                            "/api/user/1"), new PermissionCheck("GET", "/login.html"), new PermissionCheck("GET", "api/user"));
+
+            expect(permissionService.check(user, menu, request(), new MockHttpServletResponse()), true, false, true, true, true, true, false);
+            expect(permissionService.check(admin, menu, request(), new MockHttpServletResponse()), true, true, true, true, true, true, false);
+            System.out.println("user reads but does not delete, admin does both, urls the interceptor does not see allowed");
+
+            for (int round = 0; round < ROUNDS; round++) {// earlier rounds warm up
+                final MockHttpServletRequest request = request();
+                final MockHttpServletResponse response = new MockHttpServletResponse();
+                int allowed = 0;
+                final long start = System.nanoTime();
+                for (int i = 0; i < batches; i++) {
+                    for (final PermissionCheck answer : permissionService.check(i % 2 == 0 ? user : admin, menu, request, response)) {
+                        allowed += answer.getAllowed() ? 1 : 0;
+                    }
+                }
+                final double micros = (System.nanoTime() - start) / 1000.0 / batches;
+
+                if (round == ROUNDS - 1) {
+                    System.out.println(String.format("batch of %d entries=%7.2f us  per entry=%7.2f us  allowed=%d", menu.size(), micros, micros
+                            / menu.size(), allowed));
+                }
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void expect(List<PermissionCheck> answers, Boolean... allowed) {
+        final List<Boolean> actual = new ArrayList<Boolean>();
+        for (final PermissionCheck answer : answers) {
+            actual.add(answer.getAllowed());
+        }
+        Assert.state(actual.equals(Arrays.asList(allowed)), "answered " + answers);
+    }
+
+    private static Authentication authentication(String username, String authority) {
+        return new UsernamePasswordAuthenticationToken(username, null, AuthorityUtils.createAuthorityList(authority));
+    }
+
+    /**
+     * the permission check request as the container hands it to the dispatcher servlet
+     */
+    private static MockHttpServletRequest request() {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/spring-rest-template/api/permissions");
+        request.setContextPath("/spring-rest-template");
+        request.setServletPath("/api");
+        request.setPathInfo("/permissions");
+        return request;
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.innominds.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.core.context.SecurityContext;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.innominds.config.CacheConfig;
+import com.innominds.config.HazelcastProperties;
+import com.innominds.security.token.HazelcastTokenStore;
+import com.innominds.security.token.SessionRecord;
+import com.innominds.security.token.TokenFilter;
+import com.innominds.security.token.TokenGenerator;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenNearCache;
+
+/**
+ * Measures the {@link TokenFilter}: false positive rate and nanoseconds per check at its expected number of tokens, then lookups of unknown tokens through
+ * {@link HazelcastTokenStore} on a two member cluster with and without the filter. the unknown tokens are guessed, not issued a moment ago. run as plain java application, optional argument: expectedTokens
+ */
+public class TokenFilterBenchmark {
+
+    private static final int PROBES = 1_000_000;
+
+    private static final int STORED = 10_000;
+
+    private static final int LOOKUPS = 20_000;
+
+    public static void main(String[] args) {
+
+        final int expectedTokens = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        final TokenGenerator tokenGenerator = new TokenGenerator(100_000);
+
+        final TokenFilter tokenFilter = new TokenFilter(true, expectedTokens, 0.01, 0, 0, true, 10);
+        for (int i = 0; i < expectedTokens; i++) {
+            tokenFilter.add(tokenGenerator.nextKey());
+        }
+
+        final TokenKey[] unknown = new TokenKey[PROBES];
+        final byte[] guessed = new byte[TokenKey.BYTES];
+        for (int i = 0; i < PROBES; i++) {// guessed tokens, their issue second is random as well
+            tokenGenerator.nextBytes(guessed);
+            unknown[i] = TokenKey.fromBytes(guessed);
+        }
+
+        int falsePositives = 0;
+        for (int round = 0; round < 2; round++) {// first round warms up
+            falsePositives = 0;
+            final long start = System.nanoTime();
+            for (final TokenKey token : unknown) {
+                falsePositives += tokenFilter.mightContain(token) ? 1 : 0;
+            }
+            if (round == 1) {
+                System.out.println(String.format("filter tokens=%d bytes=%d false positives=%.4f  mightContain=%5.1f ns/op", expectedTokens, bytes(
+                        tokenFilter), falsePositives / (double) PROBES, (System.nanoTime() - start) / (double) PROBES));
+            }
+        }
+
+        final HazelcastProperties hazelcastProperties = new HazelcastProperties();
+        hazelcastProperties.setGroupName("filter-benchmark");
+        final HazelcastInstance owner = Hazelcast.newHazelcastInstance(CacheConfig.hazelcastConfig(hazelcastProperties));
+        final HazelcastInstance reader = Hazelcast.newHazelcastInstance(CacheConfig.hazelcastConfig(hazelcastProperties));
+        try {
+            final HazelcastTokenStore writer = store(owner, new TokenFilter(false, 1, 0.01, 0, 0, true, 10));
+            final SecurityContext securityContext = TokenMapSerializationBenchmark.sampleContext();
+            for (int i = 0; i < STORED; i++) {
+                writer.put(tokenGenerator.nextKey(), securityContext, 30, TimeUnit.MINUTES);
+            }
+
+            lookups("without filter", store(reader, new TokenFilter(false, 1, 0.01, 0, 0, true, 10)), null, unknown);
+
+            final TokenFilter readerFilter = new TokenFilter(true, STORED * 10, 0.01, 10_000, 10, true, 10);
+            reader.<TokenKey, SessionRecord> getMap(CacheConfig.USER_TOKEN_MAP).addEntryListener(readerFilter, false);
+            readerFilter.addAll(reader.<TokenKey, SessionRecord> getMap(CacheConfig.USER_TOKEN_MAP).keySet());
+            lookups("with filter", store(reader, readerFilter), readerFilter, unknown);
+        } finally {
+            Hazelcast.shutdownAll();
+        }
+    }
+
+    static HazelcastTokenStore store(HazelcastInstance hazelcastInstance, TokenFilter tokenFilter) {
+        return new HazelcastTokenStore(hazelcastInstance, CacheConfig.USER_TOKEN_MAP, CacheConfig.USER_SESSION_INDEX,
+                new TokenNearCache<TokenKey, SessionRecord>(0, 0), tokenFilter);
+    }
+
+    static void lookups(String name, HazelcastTokenStore tokenStore, TokenFilter tokenFilter, TokenKey[] unknown) {
+        int found = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += tokenStore.get(unknown[i]) != null ? 1 : 0;
+        }
+        System.out.println(String.format("%-15s unknown token lookup=%8.1f ns/op  found=%d", name, (System.nanoTime() - start) / (double) LOOKUPS, found));
+
+        if (tokenFilter != null) {
+            for (final Metric<?> metric : tokenFilter.metrics()) {
+                System.out.println(String.format("  %-28s %10d", metric.getName(), metric.getValue().longValue()));
+            }
+        }
+    }
+
+    private static long bytes(TokenFilter tokenFilter) {
+        for (final Metric<?> metric : tokenFilter.metrics()) {
+            if ("token.filter.bytes".equals(metric.getName())) {
+                return metric.getValue().longValue();
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.innominds.benchmark;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.function.Supplier;
+
+import org.springframework.security.crypto.codec.Base64;
+
+import com.innominds.security.token.TokenGenerator;
+
+/**
+ * Compares the former login token code (new SecureRandom, 130 bit BigInteger in base 32, base64 of the characters) against {@link TokenGenerator}. run as
+ * plain java application, prints nanoseconds per token and token length.
+ */
+public class TokenGeneratorBenchmark {
+
+    private static final int WARMUP = 20_000;
+
+    private static final int ITERATIONS = 200_000;
+
+    public static void main(String[] args) {
+
+        final TokenGenerator tokenGenerator = new TokenGenerator(100_000);
+
+        run("legacy", TokenGeneratorBenchmark::legacyToken);
+        run("generator", () -> tokenGenerator.nextKey().toString());
+    }
+
+    static void run(String name, Supplier<String> tokens) {
+        long sink = 0;
+
+        for (int i = 0; i < WARMUP; i++) {
+            sink += tokens.get().length();
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += tokens.get().hashCode();
+        }
+        final double nanos = (System.nanoTime() - start) / (double) ITERATIONS;
+
+        System.out.println(String.format("%-10s length=%3d  %8.1f ns/token  (%d)", name, tokens.get().length(), nanos, sink & 1));
+    }
+
+    static String legacyToken() {
+        final String token = new BigInteger(130, new SecureRandom()).toString(32);
+        return new String(Base64.encode(token.getBytes()));
+    }
+
+}
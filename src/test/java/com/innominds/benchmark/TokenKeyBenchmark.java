@@ -0,0 +1,70 @@
+package com.innominds.benchmark;
+
+import java.util.function.IntFunction;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.nio.serialization.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.SerializationService;
+import com.innominds.security.token.TokenGenerator;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.serialization.TokenSerializers;
+
+/**
+ * Compares token map keys: the legacy 44 character login token, its 22 character base64url successor and the binary {@link TokenKey}. run as plain java
+ * application, prints retained heap per key, serialized size and nanoseconds per toData plus partition hash, and the cost of decoding the header.
+ */
+public class TokenKeyBenchmark {
+
+    private static final int KEYS = 1_000_000;
+
+    private static final int ITERATIONS = 2_000_000;
+
+    public static void main(String[] args) {
+
+        final TokenGenerator tokenGenerator = new TokenGenerator(100_000);
+        final SerializationService serializationService = new DefaultSerializationServiceBuilder().setConfig(
+                TokenSerializers.register(new SerializationConfig())).build();
+
+        run("legacy", i -> TokenGeneratorBenchmark.legacyToken(), serializationService);
+        run("base64url", i -> tokenGenerator.nextKey().toString(), serializationService);
+        run("TokenKey", i -> tokenGenerator.nextKey(), serializationService);
+
+        final String header = tokenGenerator.nextKey().toString();
+        long sink = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += TokenKey.parse(header).getLow();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += TokenKey.parse(header).getLow();
+        }
+        System.out.println(String.format("header decode %6.1f ns/op  (%d)", (System.nanoTime() - start) / (double) ITERATIONS, sink & 1));
+    }
+
+    static void run(String name, IntFunction<Object> keys, SerializationService serializationService) {
+
+        final long heapBefore = OffHeapTokenStoreBenchmark.usedHeapAfterGc();
+        final Object[] retained = new Object[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            retained[i] = keys.apply(i);
+        }
+        final long heapPerKey = (OffHeapTokenStoreBenchmark.usedHeapAfterGc() - heapBefore) / KEYS - 4;// minus the array slot
+
+        long sink = 0;
+        for (int i = 0; i < ITERATIONS; i++) {// warm up
+            sink += serializationService.toData(retained[i % KEYS]).getPartitionHash();
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += serializationService.toData(retained[i % KEYS]).getPartitionHash();
+        }
+        final double nanos = (System.nanoTime() - start) / (double) ITERATIONS;
+
+        final Data data = serializationService.toData(retained[0]);
+        System.out.println(String.format("%-10s heap=%4d bytes/key  serialized=%3d bytes  toData+partitionHash=%6.1f ns/op  (%d)", name, heapPerKey, data
+                .totalSize(), nanos, sink & 1));
+    }
+
+}
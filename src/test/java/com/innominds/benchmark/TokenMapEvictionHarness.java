@@ -0,0 +1,77 @@
+package com.innominds.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.core.context.SecurityContext;
+
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.MaxSizeConfig.MaxSizePolicy;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.innominds.config.CacheConfig;
+import com.innominds.config.HazelcastProperties;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenMapMetrics;
+
+/**
+ * Simulates credential stuffing against a heap bounded token map: many logins whose tokens are never used again, while a few real users keep reading
+ * theirs. prints the memory accounting of {@link TokenMapMetrics} and whether the active tokens survived. run as plain java application, optional
+ * arguments: logins maxHeapMegabytes evictionPolicy
+ */
+public class TokenMapEvictionHarness {
+
+    private static final int ACTIVE_USERS = 100;
+
+    public static void main(String[] args) {
+
+        final int logins = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        final int maxHeapMegabytes = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        final HazelcastProperties hazelcastProperties = new HazelcastProperties();
+        hazelcastProperties.setGroupName("eviction-harness");
+        final HazelcastProperties.MapSettings mapSettings = new HazelcastProperties.MapSettings();
+        mapSettings.setEvictionPolicy(args.length > 2 ? EvictionPolicy.valueOf(args[2]) : EvictionPolicy.LFU);
+        mapSettings.setMaxSizePolicy(MaxSizePolicy.USED_HEAP_SIZE);
+        mapSettings.setMaxSize(maxHeapMegabytes);
+        mapSettings.setEvictionPercentage(10);
+        hazelcastProperties.getMaps().put(CacheConfig.USER_TOKEN_MAP, mapSettings);
+
+        final HazelcastInstance hazelcastInstance = Hazelcast.newHazelcastInstance(CacheConfig.hazelcastConfig(hazelcastProperties));
+        try {
+            final IMap<TokenKey, SecurityContext> tokenMap = hazelcastInstance.getMap(CacheConfig.USER_TOKEN_MAP);
+            final TokenMapMetrics<TokenKey, SecurityContext> tokenMapMetrics = new TokenMapMetrics<TokenKey, SecurityContext>(tokenMap, "token.map");
+            tokenMap.addLocalEntryListener(tokenMapMetrics);
+
+            final SecurityContext securityContext = TokenMapSerializationBenchmark.sampleContext();
+            for (int i = 0; i < ACTIVE_USERS; i++) {
+                tokenMap.set(new TokenKey(1, i), securityContext, 30, TimeUnit.MINUTES);
+            }
+
+            for (int i = 0; i < logins; i++) {
+                tokenMap.set(new TokenKey(2, i), securityContext, 30, TimeUnit.MINUTES);
+
+                if (i % 100 == 0) {
+                    for (int a = 0; a < ACTIVE_USERS; a++) {
+                        tokenMap.get(new TokenKey(1, a));// real users keep using their sessions
+                    }
+                }
+            }
+
+            int activeLeft = 0;
+            for (int i = 0; i < ACTIVE_USERS; i++) {
+                activeLeft += tokenMap.containsKey(new TokenKey(1, i)) ? 1 : 0;
+            }
+
+            System.out.println(String.format("policy=%s limit=%d MB logins=%d active tokens kept=%d/%d", mapSettings.getEvictionPolicy(), maxHeapMegabytes,
+                    logins, activeLeft, ACTIVE_USERS));
+            for (final Metric<?> metric : tokenMapMetrics.metrics()) {
+                System.out.println(String.format("  %-24s %12d", metric.getName(), metric.getValue().longValue()));
+            }
+        } finally {
+            Hazelcast.shutdownAll();
+        }
+    }
+
+}
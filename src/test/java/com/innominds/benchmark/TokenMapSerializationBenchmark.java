@@ -0,0 +1,83 @@
+package com.innominds.benchmark;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.nio.serialization.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.SerializationService;
+import com.innominds.persistence.constants.ApplicationRole;
+import com.innominds.persistence.vo.Authority;
+import com.innominds.persistence.vo.User;
+import com.innominds.security.token.SessionRecord;
+import com.innominds.security.token.serialization.TokenSerializers;
+
+/**
+ * Compares java serialization of the token map values against the custom stream serializers, and the full security context against the
+ * {@link SessionRecord} now stored. run as plain java application, prints serialized size and nanoseconds per put (toData) and get (toObject).
+ */
+public class TokenMapSerializationBenchmark {
+
+    private static final int WARMUP = 200_000;
+
+    private static final int ITERATIONS = 1_000_000;
+
+    public static void main(String[] args) {
+
+        final SecurityContext securityContext = sampleContext();
+
+        final SerializationService javaSerialization = new DefaultSerializationServiceBuilder().build();
+        final SerializationService compactSerialization = new DefaultSerializationServiceBuilder().setConfig(
+                TokenSerializers.register(new SerializationConfig())).build();
+
+        run("java", javaSerialization, securityContext);
+        run("compact", compactSerialization, securityContext);
+        run("record", compactSerialization, SessionRecord.of(securityContext, System.currentTimeMillis() + 1_800_000));
+    }
+
+    static void run(String name, SerializationService serializationService, Object value) {
+
+        Data data = serializationService.toData(value);
+        long sink = 0;
+
+        for (int i = 0; i < WARMUP; i++) {
+            data = serializationService.toData(value);
+            sink += serializationService.toObject(data).hashCode();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            data = serializationService.toData(value);
+        }
+        final double putNanos = (System.nanoTime() - start) / (double) ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += serializationService.toObject(data).hashCode();
+        }
+        final double getNanos = (System.nanoTime() - start) / (double) ITERATIONS;
+
+        System.out.println(String.format("%-8s size=%5d bytes  toData=%8.1f ns/op  toObject=%8.1f ns/op  (%d)", name, data.totalSize(), putNanos, getNanos,
+                sink & 1));
+    }
+
+    static SecurityContext sampleContext() {
+        final User user = new User();
+        user.setId(42L);
+        user.setUsername("tvajjala");
+        user.setPassword("6b6a2c9c1d0e4b0f3b2c8a7f8e0c1f2d3a4b5c6d");
+        user.setAccountNonExpired(true);
+        user.setAccountNonLocked(true);
+        user.setCredentialsNonExpired(true);
+        user.setEnabled(true);
+        user.getAuthorities().add(new Authority(ApplicationRole.ROLE_USER));
+        user.getAuthorities().add(new Authority(ApplicationRole.ROLE_ADMIN));
+
+        final SecurityContext securityContext = new SecurityContextImpl();
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        return securityContext;
+    }
+
+}
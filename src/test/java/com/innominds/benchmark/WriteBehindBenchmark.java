@@ -0,0 +1,123 @@
+package com.innominds.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.context.SecurityContext;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.innominds.BootApplication;
+import com.innominds.config.CacheConfig;
+import com.innominds.persistence.repository.UserTokenRepository;
+import com.innominds.security.token.SessionMapStore;
+import com.innominds.security.token.SessionRecord;
+import com.innominds.security.token.TokenGenerator;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenStore;
+
+/**
+ * Boots the application with token.persistence.enabled=true on the dev database and logs in at a fixed rate, every login followed by sliding refreshes
+ * of earlier sessions. prints the write-behind backlog (dirty entries) per second, login latency and how long the queue takes to drain afterwards, then
+ * evicts sessions from the map and loads them back from the table. the near cache is disabled, so the reads reach the map. run as plain java
+ * application, optional arguments: loginsPerSecond seconds refreshesPerLogin
+ */
+public class WriteBehindBenchmark {
+
+    private static final int RELOADED = 1_000;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        final int loginsPerSecond = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final int refreshesPerLogin = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        System.setProperty("spring.profiles.active", System.getProperty("spring.profiles.active", "dev"));
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder(BootApplication.class).run("--server.port=0",
+                "--token.persistence.enabled=true", "--token.persistence.write-delay-seconds=1", "--token.near-cache.enabled=false",
+                "--logging.level.root=WARN");
+        try {
+            final TokenStore tokenStore = context.getBean(TokenStore.class);
+            final SessionMapStore sessionMapStore = context.getBean(SessionMapStore.class);
+            final UserTokenRepository userTokenRepository = context.getBean(UserTokenRepository.class);
+            final IMap<TokenKey, SessionRecord> tokenMap = context.getBean(HazelcastInstance.class).getMap(CacheConfig.USER_TOKEN_MAP);
+
+            final TokenGenerator tokenGenerator = new TokenGenerator(100_000);
+            final SecurityContext securityContext = TokenMapSerializationBenchmark.sampleContext();
+            final List<TokenKey> issued = new ArrayList<TokenKey>();
+            final long[] latencies = new long[loginsPerSecond * seconds];
+            long maxDirty = 0;
+
+            final long start = System.nanoTime();
+            for (int i = 0; i < latencies.length; i++) {
+                final long due = start + TimeUnit.SECONDS.toNanos(i) / loginsPerSecond;
+                while (System.nanoTime() < due) {
+                    Thread.sleep(0, 100_000);
+                }
+
+                final TokenKey token = tokenGenerator.nextKey();
+                final long loginStart = System.nanoTime();
+                tokenStore.putAsync(token, securityContext, 30, TimeUnit.MINUTES).join();
+                latencies[i] = System.nanoTime() - loginStart;
+                issued.add(token);
+
+                for (int r = 0; r < refreshesPerLogin; r++) {
+                    tokenStore.touchAsync(issued.get(ThreadLocalRandom.current().nextInt(issued.size())), 30, TimeUnit.MINUTES);
+                }
+
+                if ((i + 1) % loginsPerSecond == 0) {
+                    final long dirty = tokenMap.getLocalMapStats().getDirtyEntryCount();
+                    maxDirty = Math.max(maxDirty, dirty);
+                    System.out.println(String.format("t=%3ds logins=%7d dirty=%6d stored=%8d batches=%5d", (i + 1) / loginsPerSecond, i + 1, dirty, value(
+                            sessionMapStore, "token.persistence.stored"), value(sessionMapStore, "token.persistence.batches")));
+                }
+            }
+
+            final long drainStart = System.nanoTime();
+            while (tokenMap.getLocalMapStats().getDirtyEntryCount() > 0) {
+                Thread.sleep(100);
+            }
+            final double drainSeconds = (System.nanoTime() - drainStart) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.println(String.format("logins=%d/s for %ds, %d refreshes each: login p50=%.3f ms p99=%.3f ms max=%.3f ms", loginsPerSecond, seconds,
+                    refreshesPerLogin, latencies[latencies.length / 2] / 1e6, latencies[latencies.length * 99 / 100] / 1e6,
+                    latencies[latencies.length - 1] / 1e6));
+            System.out.println(String.format("max dirty=%d, drained %.1fs after the last login, rows=%d", maxDirty, drainSeconds, userTokenRepository
+                    .count()));
+
+            final long reloadStart = System.nanoTime();
+            int reloaded = 0;
+            for (int i = 0; i < RELOADED; i++) {
+                final TokenKey token = issued.get(i);
+                tokenMap.evict(token);
+                reloaded += tokenStore.get(token) != null ? 1 : 0;
+            }
+            System.out.println(String.format("evicted and loaded again %d/%d sessions, %.3f ms each", reloaded, RELOADED, (System.nanoTime() - reloadStart)
+                    / 1e6 / RELOADED));
+
+            for (final Metric<?> metric : sessionMapStore.metrics()) {
+                System.out.println(String.format("  %-34s %10d", metric.getName(), metric.getValue().longValue()));
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    private static long value(SessionMapStore sessionMapStore, String name) {
+        for (final Metric<?> metric : sessionMapStore.metrics()) {
+            if (name.equals(metric.getName())) {
+                return metric.getValue().longValue();
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.innominds.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.innominds.persistence.constants.ApplicationRole;
+import com.innominds.persistence.vo.Authority;
+import com.innominds.persistence.vo.User;
+import com.innominds.security.token.TokenKey;
+
+/**
+ * Starts several members on this host with the configuration built by {@link CacheConfig#hazelcastConfig(HazelcastProperties)} and checks that they form
+ * one cluster, that a token written on one member is read on another and that no token is lost when a member crashes.
+ */
+public class HazelcastClusterTest {
+
+    private static final int BASE_PORT = 5801;
+
+    private static final int MEMBERS = 3;
+
+    private static final int TOKENS = 2_000;
+
+    private final List<HazelcastInstance> members = new ArrayList<HazelcastInstance>();
+
+    @Before
+    public void startMembers() {
+        final HazelcastProperties hazelcastProperties = new HazelcastProperties();
+        hazelcastProperties.setGroupName("cluster-test");
+        hazelcastProperties.setPort(BASE_PORT);
+        hazelcastProperties.setPortAutoIncrement(true);
+        hazelcastProperties.setPortCount(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            hazelcastProperties.getMembers().add("127.0.0.1:" + (BASE_PORT + i));
+        }
+
+        final HazelcastProperties.MapSettings mapSettings = new HazelcastProperties.MapSettings();
+        mapSettings.setBackupCount(1);
+        mapSettings.setInMemoryFormat(InMemoryFormat.BINARY);
+        hazelcastProperties.getMaps().put(CacheConfig.USER_TOKEN_MAP, mapSettings);
+
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(Hazelcast.newHazelcastInstance(CacheConfig.hazelcastConfig(hazelcastProperties)));
+        }
+    }
+
+    @After
+    public void stopMembers() {
+        for (final HazelcastInstance member : members) {
+            member.getLifecycleService().terminate();
+        }
+    }
+
+    @Test
+    public void tokensSurviveTheCrashOfAMember() {
+        assertEquals(MEMBERS, members.get(0).getCluster().getMembers().size());
+
+        final SecurityContext securityContext = securityContext();
+        final IMap<TokenKey, SecurityContext> writer = members.get(0).getMap(CacheConfig.USER_TOKEN_MAP);
+        for (int i = 0; i < TOKENS; i++) {
+            writer.set(new TokenKey(0, i), securityContext);
+        }
+
+        final IMap<TokenKey, SecurityContext> reader = members.get(MEMBERS - 1).getMap(CacheConfig.USER_TOKEN_MAP);
+        for (int i = 0; i < TOKENS; i++) {
+            final SecurityContext read = reader.get(new TokenKey(0, i));
+            assertNotNull("token " + i + " is not readable on another member", read);
+            assertEquals("tvajjala", read.getAuthentication().getName());
+        }
+
+        members.remove(0).getLifecycleService().terminate();// crash, no graceful migration
+        assertEquals("tokens lost with a member", TOKENS, members.get(0).getMap(CacheConfig.USER_TOKEN_MAP).size());
+    }
+
+    private static SecurityContext securityContext() {
+        final User user = new User();
+        user.setId(42L);
+        user.setUsername("tvajjala");
+        user.setAccountNonExpired(true);
+        user.setAccountNonLocked(true);
+        user.setCredentialsNonExpired(true);
+        user.setEnabled(true);
+        user.getAuthorities().add(new Authority(ApplicationRole.ROLE_USER));
+
+        final SecurityContext securityContext = new SecurityContextImpl();
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        return securityContext;
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.innominds.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.WebIntegrationTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innominds.BootApplication;
+import com.innominds.config.TokenProperties;
+import com.innominds.persistence.constants.ApplicationRole;
+import com.innominds.persistence.vo.Authority;
+import com.innominds.persistence.vo.PermissionCheck;
+import com.innominds.persistence.vo.User;
+import com.innominds.security.token.TokenGenerator;
+import com.innominds.security.token.TokenKey;
+import com.innominds.security.token.TokenStore;
+import com.innominds.web.service.AccessControlService;
+
+/**
+ * Boots the application on the dev database and posts permission checks through the security filter chain, for sessions of the seeded user and of an
+ * administrator, with DELETE /api/user/** restricted to ROLE_ADMIN while a test runs. every answer is compared with what the same session gets when it sends the request itself.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(BootApplication.class)
+@WebIntegrationTest({ "server.port=0", "server.servletPath=/api/*", "spring.devtools.restart.enabled=false" })
+@ActiveProfiles("dev")
+public class PermissionResourceTest {
+
+    /** secured, open chains, on no chain as more than one segment despite the DELETE rule, no handler, outside the security filter */
+    private static final List<PermissionCheck> MENU = Arrays.asList(new PermissionCheck("GET", "/api/user"), new PermissionCheck("delete",
+            "/api/user"), new PermissionCheck(null, "/api/user.json?page=2"), new PermissionCheck("GET", "/api/health"), new PermissionCheck("GET",
+                    "/api/cors"), new PermissionCheck("DELETE", "/api/user/42"), new PermissionCheck("GET", "/api/nothing"), new PermissionCheck("GET",
+                            "/login.html"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private FilterChainProxy springSecurityFilterChain;
+
+    @Autowired
+    private TokenStore tokenStore;
+
+    @Autowired
+    private TokenProperties tokenProperties;
+
+    @Autowired
+    private AccessControlService accessControlService;
+
+    private final TokenGenerator tokenGenerator = new TokenGenerator(1_000);
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).addFilters(springSecurityFilterChain).build();
+        // the seed data restricts no http method, the checks below need one
+        accessControlService.addActivityForRoles("DELETE", "/api/user/**", true, Collections.singletonList("ROLE_ADMIN"));
+    }
+
+    /**
+     * there is no removal, a later rule replaces an earlier one: grants the roles of the seeded /api/** rule again for the contexts shared with other
+     * tests
+     */
+    @After
+    public void tearDown() {
+        accessControlService.addActivityForRoles("DELETE", "/api/user/**", true, Arrays.asList("ROLE_ADMIN", "ROLE_USER"));
+    }
+
+    @Test
+    public void answersAsTheInterceptorDecides() throws Exception {
+        final String user = session("tvajjala", ApplicationRole.ROLE_USER);
+        final String admin = session("admin", ApplicationRole.ROLE_ADMIN);
+
+        final List<Boolean> userAnswers = allowed(check(user, MENU));
+        final List<Boolean> adminAnswers = allowed(check(admin, MENU));
+
+        assertEquals(sent(user, MENU), userAnswers);
+        assertEquals(sent(admin, MENU), adminAnswers);
+        assertEquals(Arrays.asList(true, false, true, true, true, true, true, true), userAnswers);
+        assertEquals(Collections.nCopies(MENU.size(), true), adminAnswers);
+    }
+
+    @Test
+    public void malformedUrisAreNotAllowed() throws Exception {
+        final List<PermissionCheck> answers = check(session("tvajjala", ApplicationRole.ROLE_USER), Arrays.asList(new PermissionCheck("GET", "api/user"),
+                new PermissionCheck("GET", null), new PermissionCheck("GET", "")));
+
+        assertEquals(Arrays.asList(false, false, false), allowed(answers));
+    }
+
+    @Test
+    public void nullCheckIsABadRequest() throws Exception {
+        final String user = session("tvajjala", ApplicationRole.ROLE_USER);
+
+        assertEquals(HttpStatus.BAD_REQUEST.value(), post(user, "[null]").getResponse().getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST.value(), post(user, "[{\"method\":\"GET\",\"uri\":\"/api/user\"},null]").getResponse().getStatus());
+    }
+
+    @Test
+    public void tooManyChecksArePayloadTooLarge() throws Exception {
+        final String user = session("tvajjala", ApplicationRole.ROLE_USER);
+        final int max = tokenProperties.getSession().getPermissionCheckMax();
+
+        assertEquals(HttpStatus.OK.value(), post(user, objectMapper.writeValueAsString(Collections.nCopies(max, MENU.get(0)))).getResponse()
+                .getStatus());
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.value(), post(user, objectMapper.writeValueAsString(Collections.nCopies(max + 1, MENU.get(0))))
+                .getResponse().getStatus());
+    }
+
+    private List<PermissionCheck> check(String token, List<PermissionCheck> checks) throws Exception {
+        final MvcResult result = post(token, objectMapper.writeValueAsString(checks));
+        assertEquals(result.getResponse().getContentAsString(), HttpStatus.OK.value(), result.getResponse().getStatus());
+        return objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<List<PermissionCheck>>() {
+        });
+    }
+
+    private MvcResult post(String token, String body) throws Exception {
+        return mockMvc.perform(request(HttpMethod.POST, "/api/permissions").servletPath("/api").header("x-auth-token", token).contentType(
+                MediaType.APPLICATION_JSON).content(body)).andReturn();
+    }
+
+    /**
+     * whether the session passes the security interceptor when it sends the requests itself. a denial is answered with a json status 403
+     */
+    private List<Boolean> sent(String token, List<PermissionCheck> checks) throws Exception {
+        final List<Boolean> allowed = new ArrayList<Boolean>();
+
+        for (final PermissionCheck check : checks) {
+            final String method = check.getMethod() == null ? "GET" : check.getMethod().toUpperCase();
+            final String path = check.getUri().startsWith("/api/") ? check.getUri() : null;
+            final MvcResult result = path == null ? null : mockMvc.perform(request(HttpMethod.valueOf(method), path).servletPath("/api").header(
+                    "x-auth-token", token)).andReturn();
+            allowed.add(result == null || !result.getResponse().getContentAsString().contains("\"status\":\"403\""));
+        }
+        return allowed;
+    }
+
+    private static List<Boolean> allowed(List<PermissionCheck> answers) {
+        final List<Boolean> allowed = new ArrayList<Boolean>();
+        for (final PermissionCheck answer : answers) {
+            allowed.add(answer.getAllowed());
+        }
+        return allowed;
+    }
+
+    private String session(String username, ApplicationRole role) {
+        final User principal = new User();
+        principal.setId(42L);
+        principal.setUsername(username);
+        principal.getAuthorities().add(new Authority(role));
+
+        final SecurityContext securityContext = new SecurityContextImpl();
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        final TokenKey token = tokenGenerator.nextKey();
+        tokenStore.put(token, securityContext, 5, TimeUnit.MINUTES);
+        return token.toString();
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.innominds.security.acl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that a snapshot changed with {@link AclSnapshot#with(List)} answers as one compiled from all the rules, and that the snapshot it was changed
+ * from still answers as before.
+ */
+public class AclSnapshotTest {
+
+    private static final String[] METHODS = { null, "GET", "DELETE" };
+
+    private static final String[] PATTERNS = { "/api/**", "/api/user/**", "/api/user/*/orders", "/api/user/{id}", "/api/*.json" };
+
+    private static final String[] PATHS = { "/api/user", "/api/user/42", "/api/user/42/orders", "/api/user/42/orders/7", "/api/report.json",
+            "/api/cors", "/api/other/1", "/static/app.js" };
+
+    @Test
+    public void changedSnapshotAnswersAsACompiledOne() {
+        final Random random = new Random(42);
+        final List<AclRule> stored = new ArrayList<AclRule>();
+        AclSnapshot changed = AclSnapshot.EMPTY;
+
+        for (int i = 0; i < 500; i++) {
+            final List<AclRule> changes = new ArrayList<AclRule>();
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                changes.add(randomRule(random, i + "_" + j));
+            }
+            stored.addAll(changes);
+            changed = changed.with(changes);
+
+            final AclSnapshot compiled = new AclSnapshot(changed.getVersion(), stored);
+            assertEquals(compiled.getRules(), changed.getRules());
+            assertEquals(compiled.getPatternCount(), changed.getPatternCount());
+            for (final String method : METHODS) {
+                for (final String path : PATHS) {
+                    assertSame(method + " " + path, compiled.match(method, path), changed.match(method, path));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void changeLeavesTheFormerSnapshotAsItWas() {
+        final AclRule admin = new AclRule("/api/user/**", true, Collections.singletonList("ROLE_ADMIN"));
+        final AclSnapshot former = new AclSnapshot(1, Arrays.asList(admin));
+
+        final AclRule user = new AclRule("/api/user/**", true, Collections.singletonList("ROLE_USER"));
+        final AclRule delete = new AclRule("DELETE", "/api/user/*", true, Collections.singletonList("ROLE_ADMIN"));
+        final AclRule cors = new AclRule("/api/cors", false, Collections.singletonList("ROLE_USER"));
+        final AclSnapshot changed = former.with(Arrays.asList(user, delete, cors));
+
+        assertEquals(2, changed.getVersion());
+        assertSame(user, changed.match("/api/user/42/orders"));
+        assertSame(delete, changed.match("DELETE", "/api/user/42"));
+        assertSame(cors, changed.match("/api/cors"));
+
+        assertEquals(Collections.singletonList(admin), former.getRules());
+        assertSame(admin, former.match("DELETE", "/api/user/42"));
+        assertNull(former.match("/api/cors"));
+        assertTrue(former.getPatternCount() == 1 && changed.getPatternCount() == 2);
+    }
+
+    private static AclRule randomRule(Random random, String authority) {
+        final String method = METHODS[random.nextInt(METHODS.length)];
+        if (random.nextInt(4) == 0) {
+            return new AclRule(method, PATHS[random.nextInt(PATHS.length)], false, Collections.singletonList("ROLE_" + authority));
+        }
+        return new AclRule(method, PATTERNS[random.nextInt(PATTERNS.length)], true, Collections.singletonList("ROLE_" + authority));
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.innominds.security.acl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+/**
+ * Checks that the {@link HandlerAclIndex} guards a request as the handler the handler mapping dispatches it to, and marks it
+ * {@link HandlerAclIndex#RESOLVED_BY_PATH} only when no other handler could take its method and path.
+ */
+public class HandlerAclIndexTest {
+
+    private AnnotationConfigWebApplicationContext context;
+
+    private RequestMappingHandlerMapping handlerMapping;
+
+    private AclRegistry aclRegistry;
+
+    private HandlerAclIndex handlerAclIndex;
+
+    @Before
+    public void bindHandlers() {
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.register(UserHandlers.class, OrderHandlers.class);
+        context.refresh();
+
+        handlerMapping = new RequestMappingHandlerMapping();
+        handlerMapping.setApplicationContext(context);
+        handlerMapping.afterPropertiesSet();
+
+        aclRegistry = new AclRegistry(() -> Arrays.asList(new AclRule("/api/**", true, Arrays.asList("ROLE_USER")), new AclRule("/api/admin/**", true,
+                Arrays.asList("ROLE_ADMIN"))), new AclChangeTopic());
+        aclRegistry.afterSingletonsInstantiated();
+        handlerAclIndex = new HandlerAclIndex(handlerMapping, aclRegistry, "/api");
+        handlerAclIndex.afterSingletonsInstantiated();
+    }
+
+    @After
+    public void close() {
+        aclRegistry.destroy();
+        context.close();
+    }
+
+    @Test
+    public void templatedHandlerIsResolvedByPath() {
+        assertResolvedByPath(request("GET", "/user/42"), "ROLE_USER", "ROLE_READ");
+        assertResolvedByPath(request("DELETE", "/user/42"), "ROLE_USER", "ROLE_DELETE");
+        assertResolvedByPath(request("GET", "/user/42.json"), "ROLE_USER", "ROLE_READ");
+        assertResolvedByPath(request("GET", "/user/42/"), "ROLE_USER", "ROLE_READ");
+    }
+
+    @Test
+    public void literalHandlerBeatsTemplatedOne() {
+        assertResolvedByPath(request("GET", "/user/me"), "ROLE_USER", "ROLE_ME");
+    }
+
+    @Test
+    public void samePathServedByAnotherServletIsGuardedByItsUrl() {
+        final MockHttpServletRequest request = request("GET", "/user/me");
+        request.setServletPath("/api/user");// a servlet mapped to /api/user/*
+        request.setPathInfo("/me");
+
+        assertResolvedByHandlerMapping(request, "ROLE_USER");
+    }
+
+    @Test
+    public void pathWithoutHandlerIsGuardedByItsUrl() {
+        assertResolvedByPath(request("GET", "/unmapped/7"), "ROLE_USER");
+        assertResolvedByPath(request("GET", "/admin/settings"), "ROLE_ADMIN");
+        assertResolvedByPath(request("POST", "/user/42"), "ROLE_USER");// no handler takes the method
+    }
+
+    @Test
+    public void handlersSharingAPathAreToldApartByTheHandlerMapping() {
+        final MockHttpServletRequest expanded = request("GET", "/orders/7");
+        expanded.setParameter("expand", "items");
+        assertResolvedByHandlerMapping(expanded, "ROLE_USER", "ROLE_EXPAND");
+        assertResolvedByHandlerMapping(request("GET", "/orders/7"), "ROLE_USER");
+    }
+
+    @Test
+    public void patternsRankedByTheHandlerMappingAreLeftToIt() {
+        final MockHttpServletRequest reports = request("GET", "/user/reports");
+        assertResolvedByHandlerMapping(reports, names(expected(reports)).toArray(new String[0]));
+
+        final MockHttpServletRequest suffix = request("GET", "/user/me.json");
+        assertResolvedByHandlerMapping(suffix, names(expected(suffix)).toArray(new String[0]));
+    }
+
+    private void assertResolvedByPath(MockHttpServletRequest request, String... authorities) {
+        assertEquals(request.getPathInfo(), Arrays.asList(authorities), names(attributes(request)));
+        assertNotNull(request.getPathInfo() + " not resolved by path", request.getAttribute(HandlerAclIndex.RESOLVED_BY_PATH));
+        assertEquals(request.getPathInfo(), names(expected(request)), names(attributes(request)));
+    }
+
+    private void assertResolvedByHandlerMapping(MockHttpServletRequest request, String... authorities) {
+        assertEquals(request.getPathInfo(), Arrays.asList(authorities), names(attributes(request)));
+        assertNull(request.getPathInfo() + " resolved by path", request.getAttribute(HandlerAclIndex.RESOLVED_BY_PATH));
+    }
+
+    private AclAttributes attributes(MockHttpServletRequest request) {
+        return handlerAclIndex.getAttributes(request, request.getServletPath() + request.getPathInfo());
+    }
+
+    /**
+     * the url rule joined with the <code>@Secured</code> authorities of the handler the handler mapping picks
+     */
+    private AclAttributes expected(MockHttpServletRequest request) {
+        final AclAttributes byUrl = aclRegistry.current().getAttributes(request.getMethod(), request.getServletPath() + request.getPathInfo());
+        try {
+            final Method method = ((HandlerMethod) handlerMapping.getHandler(request).getHandler()).getMethod();
+            final Secured secured = method.getAnnotation(Secured.class);
+            return secured == null ? byUrl : byUrl.and(AclAttributes.ofNames(Arrays.asList(secured.value())));
+        } catch (final Exception e) {// no handler
+            return byUrl;
+        }
+    }
+
+    /**
+     * as the container hands it to the filters: the dispatcher servlet is mapped to /api/*
+     */
+    private static MockHttpServletRequest request(String method, String path) {
+        final MockHttpServletRequest request = new MockHttpServletRequest(method, "/spring-rest-template/api" + path);
+        request.setContextPath("/spring-rest-template");
+        request.setServletPath("/api");
+        request.setPathInfo(path);
+        return request;
+    }
+
+    private static List<String> names(AclAttributes attributes) {
+        final List<String> names = new ArrayList<String>();
+        for (final ConfigAttribute attribute : attributes) {
+            names.add(attribute.getAttribute());
+        }
+        return names;
+    }
+
+    /**
+     * a handler by its type level mapping, not a component the application would scan
+     */
+    @RequestMapping
+    @ResponseBody
+    static class UserHandlers {
+
+        @Secured("ROLE_READ")
+        @RequestMapping(value = "/user/{id}", method = RequestMethod.GET)
+        public String user() {
+            return "user";
+        }
+
+        @Secured("ROLE_DELETE")
+        @RequestMapping(value = "/user/{id}", method = RequestMethod.DELETE)
+        public void delete() {
+        }
+
+        @Secured("ROLE_ME")
+        @RequestMapping(value = "/user/me", method = RequestMethod.GET)
+        public String me() {
+            return "me";
+        }
+    }
+
+    @RequestMapping
+    @ResponseBody
+    static class OrderHandlers {
+
+        @Secured("ROLE_EXPAND")
+        @RequestMapping(value = "/orders/{id}", params = "expand")
+        public String expanded() {
+            return "expanded";
+        }
+
+        @RequestMapping("/orders/{id}")
+        public String order() {
+            return "order";
+        }
+
+        @Secured("ROLE_REPORT")
+        @RequestMapping("/{section}/reports")
+        public String reports() {
+            return "reports";
+        }
+    }
+
+}
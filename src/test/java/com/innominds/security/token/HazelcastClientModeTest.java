@@ -0,0 +1,191 @@
+package com.innominds.security.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.innominds.HazelcastMemberApplication;
+import com.innominds.config.CacheConfig;
+import com.innominds.config.HazelcastProperties;
+import com.innominds.persistence.constants.ApplicationRole;
+import com.innominds.persistence.vo.Authority;
+import com.innominds.persistence.vo.User;
+
+/**
+ * Runs a member tier started by {@link HazelcastMemberApplication#member(HazelcastProperties)} and two app nodes connected as clients with
+ * {@link CacheConfig#clientConfig(HazelcastProperties)} in one JVM, each client with a {@link HazelcastTokenStore} wired as in CacheConfig.
+ */
+public class HazelcastClientModeTest {
+
+    private static final int BASE_PORT = 5901;
+
+    private static final int MEMBERS = 3;
+
+    private static final int TOKENS = 1_000;
+
+    private final List<HazelcastInstance> members = new ArrayList<HazelcastInstance>();
+
+    private final List<HazelcastInstance> clients = new ArrayList<HazelcastInstance>();
+
+    private HazelcastTokenStore writer;
+
+    private HazelcastTokenStore reader;
+
+    private final TokenGenerator tokenGenerator = new TokenGenerator(100_000);
+
+    private final SecurityContext securityContext = securityContext();
+
+    /**
+     * a fresh cluster per test, one test crashes a member
+     */
+    @Before
+    public void startMembersAndClients() {
+        final HazelcastProperties hazelcastProperties = new HazelcastProperties();
+        hazelcastProperties.setGroupName("client-mode-test");
+        hazelcastProperties.setPort(BASE_PORT);
+        hazelcastProperties.setPortCount(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            hazelcastProperties.getMembers().add("127.0.0.1:" + (BASE_PORT + i));
+        }
+        final HazelcastProperties.MapSettings mapSettings = new HazelcastProperties.MapSettings();
+        mapSettings.setBackupCount(1);
+        hazelcastProperties.getMaps().put(CacheConfig.USER_TOKEN_MAP, mapSettings);
+
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(HazelcastMemberApplication.member(hazelcastProperties));
+        }
+        hazelcastProperties.setMode("client");
+        for (int i = 0; i < 2; i++) {
+            clients.add(HazelcastClient.newHazelcastClient(CacheConfig.clientConfig(hazelcastProperties)));
+        }
+        writer = store(clients.get(0));
+        reader = store(clients.get(1));
+    }
+
+    @After
+    public void stopMembersAndClients() {
+        for (final HazelcastInstance client : clients) {
+            client.shutdown();
+        }
+        for (final HazelcastInstance member : members) {
+            member.getLifecycleService().terminate();
+        }
+    }
+
+    @Test
+    public void clientsConnectToTheMemberTier() {
+        assertEquals(members.size(), clients.get(0).getCluster().getMembers().size());
+        assertEquals(2, clientCount());
+    }
+
+    @Test
+    public void expiredTokenLeavesTheSessionIndexWithoutAnEmbeddedMember() throws InterruptedException {
+        final String username = SessionRecord.of(securityContext, 0).getUsername();
+        final TokenKey shortLived = tokenGenerator.nextKey();
+
+        writer.put(shortLived, securityContext, 1, TimeUnit.SECONDS);
+        assertTrue(writer.getTokens(username).contains(shortLived));
+        // members check a sample of the entries for expiry per run
+        assertTrue("members do not unindex expired tokens", await(() -> !writer.getTokens(username).contains(shortLived), 30_000));
+    }
+
+    @Test
+    public void tokenWrittenByOneClientIsReadAndRevokedByAnother() throws InterruptedException {
+        final TokenKey[] issued = put(TOKENS);
+
+        for (final TokenKey token : issued) {
+            assertNotNull(token + " written by one client is not readable by another", reader.get(token));
+        }
+
+        writer.revoke(issued[0]);
+        assertTrue("revocation did not reach the near cache of the other client", await(() -> reader.get(issued[0]) == null, 10_000));
+        assertNotNull(reader.get(issued[1]));
+    }
+
+    @Test
+    public void noTokenIsLostWhenAMemberCrashes() {
+        final TokenKey[] issued = put(TOKENS);
+
+        members.remove(0).getLifecycleService().terminate();// crash, no graceful migration
+
+        final IMap<TokenKey, SessionRecord> tokenMap = clients.get(0).getMap(CacheConfig.USER_TOKEN_MAP);
+        for (final TokenKey token : issued) {
+            assertNotNull(token + " lost with a member", tokenMap.get(token));
+        }
+    }
+
+    private TokenKey[] put(int count) {
+        final TokenKey[] issued = new TokenKey[count];
+        for (int i = 0; i < count; i++) {
+            issued[i] = tokenGenerator.nextKey();
+            writer.put(issued[i], securityContext, 30, TimeUnit.MINUTES);
+        }
+        return issued;
+    }
+
+    private int clientCount() {
+        int clients = 0;
+        for (final HazelcastInstance member : members) {
+            clients = Math.max(clients, member.getClientService().getConnectedClients().size());
+        }
+        return clients;
+    }
+
+    /**
+     * token store of an app node, near cache and filter registered as in CacheConfig
+     */
+    private static HazelcastTokenStore store(HazelcastInstance client) {
+        final IMap<TokenKey, SessionRecord> tokenMap = client.getMap(CacheConfig.USER_TOKEN_MAP);
+
+        final TokenNearCache<TokenKey, SessionRecord> tokenNearCache = new TokenNearCache<TokenKey, SessionRecord>(100_000, 60);
+        tokenMap.addEntryListener(tokenNearCache, false);
+        final TokenFilter tokenFilter = new TokenFilter(true, 100_000, 0.01, 10_000, 10, true, 10);
+        tokenMap.addEntryListener(tokenFilter, false);
+        tokenFilter.seed(tokenMap, 10_000);
+
+        return new HazelcastTokenStore(client, CacheConfig.USER_TOKEN_MAP, CacheConfig.USER_SESSION_INDEX, tokenNearCache, tokenFilter);
+    }
+
+    private static boolean await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static SecurityContext securityContext() {
+        final User user = new User();
+        user.setId(42L);
+        user.setUsername("tvajjala");
+        user.setAccountNonExpired(true);
+        user.setAccountNonLocked(true);
+        user.setCredentialsNonExpired(true);
+        user.setEnabled(true);
+        user.getAuthorities().add(new Authority(ApplicationRole.ROLE_USER));
+
+        final SecurityContext securityContext = new SecurityContextImpl();
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        return securityContext;
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.innominds.security.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.WebIntegrationTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.innominds.BootApplication;
+import com.innominds.config.CacheConfig;
+import com.innominds.config.HazelcastProperties;
+import com.innominds.config.TokenProperties;
+import com.innominds.persistence.repository.UserTokenRepository;
+
+/**
+ * Boots the application on the dev database for its token table, and runs a member of its own whose token map is persisted by a
+ * {@link SessionMapStore} as CacheConfig configures it. stores a batch of live and expired sessions through the map store and loads them back into the
+ * evicted map. the stored rows are removed again.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(BootApplication.class)
+@WebIntegrationTest({ "server.port=0", "server.servletPath=/api/*", "spring.devtools.restart.enabled=false" })
+@ActiveProfiles("dev")
+public class SessionMapStoreTest {
+
+    private static final int LIVE = 20;
+
+    @Autowired
+    private UserTokenRepository userTokenRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final TokenGenerator tokenGenerator = new TokenGenerator(1_000);
+
+    private SessionMapStore sessionMapStore;
+
+    private HazelcastInstance member;
+
+    private IMap<TokenKey, SessionRecord> tokenMap;
+
+    private final Map<TokenKey, SessionRecord> live = new HashMap<TokenKey, SessionRecord>();
+
+    private final Map<TokenKey, SessionRecord> expired = new HashMap<TokenKey, SessionRecord>();
+
+    @Before
+    public void startMember() {
+        sessionMapStore = new SessionMapStore(userTokenRepository, transactionManager);
+
+        final HazelcastProperties hazelcastProperties = new HazelcastProperties();
+        hazelcastProperties.setGroupName("session-map-store-test");
+        hazelcastProperties.setPort(5841);
+        final Config config = CacheConfig.hazelcastConfig(hazelcastProperties);
+        config.getMapConfig(CacheConfig.USER_TOKEN_MAP).setMapStoreConfig(CacheConfig.mapStoreConfig(sessionMapStore, new TokenProperties.Persistence()));
+        member = Hazelcast.newHazelcastInstance(config);
+        tokenMap = member.getMap(CacheConfig.USER_TOKEN_MAP);
+
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < LIVE; i++) {
+            live.put(tokenGenerator.nextKey(), session("user" + i % 3, now, now + TimeUnit.MINUTES.toMillis(30)));
+        }
+        expired.put(tokenGenerator.nextKey(), session("user0", now - TimeUnit.HOURS.toMillis(2), now - TimeUnit.HOURS.toMillis(1)));
+    }
+
+    @After
+    public void stopMember() {
+        member.getLifecycleService().terminate();
+
+        final List<TokenKey> stored = new ArrayList<TokenKey>(live.keySet());
+        stored.addAll(expired.keySet());
+        sessionMapStore.deleteAll(stored);
+    }
+
+    @Test
+    public void storedBatchLoadsBackIntoTheEvictedMap() {
+        final Map<TokenKey, SessionRecord> batch = new HashMap<TokenKey, SessionRecord>(live);
+        batch.putAll(expired);
+        sessionMapStore.storeAll(batch);
+        tokenMap.evictAll();
+
+        for (final Map.Entry<TokenKey, SessionRecord> entry : live.entrySet()) {
+            final SessionRecord loaded = tokenMap.get(entry.getKey());
+            assertNotNull(entry.getKey() + " not loaded", loaded);
+            assertEquals(entry.getValue().getUsername(), loaded.getUsername());
+            assertEquals(entry.getValue().getExpiresAt(), loaded.getExpiresAt());
+            assertEquals(entry.getValue().getAuthorities(), loaded.getAuthorities());
+        }
+        for (final TokenKey token : expired.keySet()) {
+            assertNull("expired session loaded", tokenMap.get(token));
+        }
+
+        tokenMap.evictAll();
+        assertEquals(live.keySet(), tokenMap.getAll(batch.keySet()).keySet());
+        assertEquals(live.keySet(), sessionMapStore.loadAll(batch.keySet()).keySet());
+        assertTrue(new HashSet<TokenKey>(sessionMapStore.loadTokens("user0")).containsAll(tokensOf("user0")));
+    }
+
+    @Test
+    public void expiredRowsArePurgedEveryFewBatches() {
+        final Map<TokenKey, SessionRecord> batch = new HashMap<TokenKey, SessionRecord>(live);
+        batch.putAll(expired);
+        sessionMapStore.storeAll(batch);
+        final TokenKey expiredToken = expired.keySet().iterator().next();
+        assertNotNull(userTokenRepository.findOne(expiredToken.toString()));
+
+        while (metric("token.persistence.purged") == 0 && metric("token.persistence.batches") < 64) {
+            sessionMapStore.storeAll(live);// stored again in place
+        }
+
+        assertTrue(metric("token.persistence.purged") >= 1);
+        assertNull(userTokenRepository.findOne(expiredToken.toString()));
+        assertEquals(live.size(), sessionMapStore.loadAll(live.keySet()).size());
+    }
+
+    private List<TokenKey> tokensOf(String username) {
+        final List<TokenKey> tokens = new ArrayList<TokenKey>();
+        for (final Map.Entry<TokenKey, SessionRecord> entry : live.entrySet()) {
+            if (entry.getValue().getUsername().equals(username)) {
+                tokens.add(entry.getKey());
+            }
+        }
+        return tokens;
+    }
+
+    private long metric(String name) {
+        for (final Metric<?> metric : sessionMapStore.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static SessionRecord session(String username, long issuedAt, long expiresAt) {
+        return new SessionRecord(42L, username, Authorities.setOfNames(Arrays.asList("ROLE_USER")), issuedAt, expiresAt);
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.innominds.security.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import com.innominds.persistence.constants.ApplicationRole;
+import com.innominds.persistence.vo.Authority;
+import com.innominds.persistence.vo.User;
+
+/**
+ * Checks that a {@link SignedTokenService} accepts the tokens it issued only unchanged, unexpired and unrevoked.
+ */
+public class SignedTokenServiceTest {
+
+    private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes();
+
+    private final TokenDenylist tokenDenylist = new LocalTokenDenylist();
+
+    private final SignedTokenService signedTokenService = new SignedTokenService(KEY, TimeUnit.MINUTES.toMillis(30), tokenDenylist);
+
+    @Test
+    public void issuedTokenIsVerified() {
+        final String token = signedTokenService.issue(authentication("tvajjala"));
+
+        assertTrue(SignedTokenService.isSigned(token));
+        final Authentication authentication = signedTokenService.verify(token);
+        assertNotNull(authentication);
+        assertEquals("tvajjala", authentication.getName());
+        assertEquals(Long.valueOf(42), ((User) authentication.getPrincipal()).getId());
+        assertEquals(AuthorityUtils.authorityListToSet(authentication("tvajjala").getAuthorities()),
+                AuthorityUtils.authorityListToSet(authentication.getAuthorities()));
+    }
+
+    @Test
+    public void changedClaimsAreRejected() {
+        final String token = signedTokenService.issue(authentication("tvajjala"));
+        final int separator = token.indexOf('.');
+        final byte[] claims = Base64.getUrlDecoder().decode(token.substring(0, separator));
+        claims[claims.length - 1] ^= 1;// last character of the last authority
+
+        assertNull(signedTokenService.verify(Base64.getUrlEncoder().withoutPadding().encodeToString(claims) + token.substring(separator)));
+        final String other = signedTokenService.issue(authentication("tvajjalb"));
+        assertNull(signedTokenService.verify(other.substring(0, other.indexOf('.')) + token.substring(separator)));
+    }
+
+    @Test
+    public void changedSignatureIsRejected() {
+        final String token = signedTokenService.issue(authentication("tvajjala"));
+        final char last = token.charAt(token.length() - 1);
+
+        assertNull(signedTokenService.verify(token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A')));
+        assertNull(new SignedTokenService("fedcba9876543210fedcba9876543210".getBytes(), TimeUnit.MINUTES.toMillis(30), tokenDenylist).verify(token));
+    }
+
+    @Test
+    public void truncatedAndGarbageTokensAreRejected() {
+        final String token = signedTokenService.issue(authentication("tvajjala"));
+
+        for (final String rejected : new String[] { token.substring(0, token.length() - 5), token.substring(0, token.indexOf('.') + 1),
+                token.substring(0, token.indexOf('.')), token.substring(token.indexOf('.')), ".", "..", "a.b", "!!!.???", "", "AAAA.AAAA" }) {
+            assertNull(rejected, signedTokenService.verify(rejected));
+            assertFalse(rejected, signedTokenService.revoke(rejected));
+        }
+        assertNotNull(signedTokenService.verify(token));
+    }
+
+    @Test
+    public void expiredTokenIsRejected() throws InterruptedException {
+        final String token = new SignedTokenService(KEY, 1, tokenDenylist).issue(authentication("tvajjala"));
+        Thread.sleep(10);
+
+        assertNull(signedTokenService.verify(token));
+    }
+
+    @Test
+    public void revokedTokenIsRejected() {
+        final String revoked = signedTokenService.issue(authentication("tvajjala"));
+        final String other = signedTokenService.issue(authentication("tvajjala"));
+
+        assertTrue(signedTokenService.revoke(revoked));
+        assertNull(signedTokenService.verify(revoked));
+        assertNotNull(signedTokenService.verify(other));
+    }
+
+    @Test
+    public void revokedUserIsRejectedUntilLoggedInAgain() throws InterruptedException {
+        final String before = signedTokenService.issue(authentication("tvajjala"));
+        final String otherUser = signedTokenService.issue(authentication("tvajjalb"));
+        Thread.sleep(5);
+
+        signedTokenService.revokeUser("tvajjala");
+        final String after = signedTokenService.issue(authentication("tvajjala"));
+
+        assertNull(signedTokenService.verify(before));
+        assertNotNull(signedTokenService.verify(after));
+        assertNotNull(signedTokenService.verify(otherUser));
+    }
+
+    /**
+     * a node with a shorter validity, as in a rolling deploy, neither lets older tokens through nor ends the denial before they expire
+     */
+    @Test
+    public void revokedUserStaysRejectedWhenTheValidityChanges() throws InterruptedException {
+        final String before = signedTokenService.issue(authentication("tvajjala"));
+        Thread.sleep(5);
+
+        final long revokedAt = System.currentTimeMillis();
+        new SignedTokenService(KEY, TimeUnit.MINUTES.toMillis(1), tokenDenylist).revokeUser("tvajjala");
+
+        assertNull(signedTokenService.verify(before));
+        assertTrue(tokenDenylist.deniedBefore("tvajjala") >= revokedAt);
+
+        final TokenDenylist shortLived = new LocalTokenDenylist();
+        shortLived.issued("tvajjala", System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(30));
+        shortLived.denyUser("tvajjala", System.currentTimeMillis(), System.currentTimeMillis() - 1);// would end at once by the validity alone
+        shortLived.denyUser("tvajjalb", 0, 0);// sweeps ended denials
+        assertTrue(shortLived.deniedBefore("tvajjala") > 0);
+    }
+
+    private static Authentication authentication(String username) {
+        final User user = new User();
+        user.setId(42L);
+        user.setUsername(username);
+        user.getAuthorities().add(new Authority(ApplicationRole.ROLE_USER));
+        user.getAuthorities().add(new Authority(ApplicationRole.ROLE_ADMIN));
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.innominds.security.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.innominds.config.CacheConfig;
+import com.innominds.config.HazelcastProperties;
+
+/**
+ * Checks that a negative of the {@link TokenFilter} is final for guessed and old tokens only, and that seeding in pages counts every token of the map.
+ */
+public class TokenFilterTest {
+
+    private final TokenGenerator tokenGenerator = new TokenGenerator(1_000);
+
+    @Test
+    public void tokenIssuedJustNowIsLookedUpBeforeItsAddedEventArrives() {
+        final TokenFilter tokenFilter = new TokenFilter(true, 1_000, 0.01, 100, 10, true, 10);
+        final TokenKey issued = tokenGenerator.nextKey();
+
+        assertTrue(tokenFilter.mightContain(issued));
+        assertFalse(tokenFilter.mightContain(issuedSecondsAgo(issued, 60)));
+        assertFalse(tokenFilter.mightContain(issuedSecondsAgo(issued, -60)));// too far ahead of this clock
+
+        tokenFilter.add(issued);
+        assertTrue(tokenFilter.mightContain(issued));
+    }
+
+    @Test
+    public void guessedTokensAreRejected() {
+        final TokenFilter tokenFilter = new TokenFilter(true, 1_000, 0.01, 100, 10, true, 10);
+        final byte[] bytes = new byte[TokenKey.BYTES];
+        int passed = 0;
+
+        for (int i = 0; i < 10_000; i++) {
+            ThreadLocalRandom.current().nextBytes(bytes);
+            passed += tokenFilter.mightContain(TokenKey.fromBytes(bytes)) ? 1 : 0;
+        }
+        assertEquals(0, passed);
+    }
+
+    @Test
+    public void seedCountsEveryTokenOfTheMapInPages() {
+        final HazelcastProperties hazelcastProperties = new HazelcastProperties();
+        hazelcastProperties.setGroupName("filter-test");
+        hazelcastProperties.setPort(5821);
+        final HazelcastInstance member = Hazelcast.newHazelcastInstance(CacheConfig.hazelcastConfig(hazelcastProperties));
+
+        try {
+            final IMap<TokenKey, SessionRecord> tokenMap = member.getMap(CacheConfig.USER_TOKEN_MAP);
+            final SessionRecord sessionRecord = new SessionRecord(42L, "tvajjala", Authorities.setOf(AuthorityUtils.createAuthorityList("ROLE_USER")),
+                    System.currentTimeMillis(), System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(30));
+            final TokenKey[] stored = new TokenKey[2_500];
+            for (int i = 0; i < stored.length; i++) {
+                stored[i] = issuedSecondsAgo(tokenGenerator.nextKey(), 3600);
+                tokenMap.set(stored[i], sessionRecord);
+            }
+
+            final TokenFilter tokenFilter = new TokenFilter(true, 10_000, 0.01, 100, 10, true, 10);
+            assertEquals(stored.length, tokenFilter.seed(tokenMap, 1_000));
+            for (final TokenKey token : stored) {
+                assertTrue(tokenFilter.mightContain(token));
+            }
+        } finally {
+            member.getLifecycleService().terminate();
+        }
+    }
+
+    private static TokenKey issuedSecondsAgo(TokenKey token, long seconds) {
+        final byte[] bytes = new byte[TokenKey.BYTES];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (token.getHigh() >>> 56 - 8 * i);
+            bytes[8 + i] = (byte) (token.getLow() >>> 56 - 8 * i);
+        }
+        return TokenKey.issued(token.getIssuedAtSecond() - seconds, bytes);
+    }
+
+}
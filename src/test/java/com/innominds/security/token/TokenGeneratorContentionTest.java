@@ -0,0 +1,74 @@
+package com.innominds.security.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Simulates a login storm: many threads generate tokens from one {@link TokenGenerator} at once, each reseeded several times on the way.
+ */
+public class TokenGeneratorContentionTest {
+
+    private static final Pattern URL_SAFE = Pattern.compile("[A-Za-z0-9_-]{" + TokenKey.LENGTH + "}");
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors() * 4;
+
+    private static final int TOKENS_PER_THREAD = 20_000;
+
+    @Test
+    public void concurrentTokensAreUniqueAndUrlSafe() throws Exception {
+
+        final TokenGenerator tokenGenerator = new TokenGenerator(5_000);
+        final Set<String> issued = ConcurrentHashMap.newKeySet(THREADS * TOKENS_PER_THREAD);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            final Callable<Integer> login = () -> {
+                start.await();
+                int duplicates = 0;
+                for (int i = 0; i < TOKENS_PER_THREAD; i++) {
+                    final TokenKey tokenKey = tokenGenerator.nextKey();
+                    final String token = tokenKey.toString();
+
+                    assertTrue("token is not url safe: " + token, URL_SAFE.matcher(token).matches());
+                    assertEquals(tokenKey, TokenKey.parse(token));
+                    duplicates += issued.add(token) ? 0 : 1;
+                }
+                return duplicates;
+            };
+
+            final List<Future<Integer>> threads = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < THREADS; t++) {
+                threads.add(executorService.submit(login));
+            }
+            start.countDown();
+
+            for (final Future<Integer> thread : threads) {
+                assertEquals("duplicate tokens", 0, thread.get(60, TimeUnit.SECONDS).intValue());
+            }
+            assertEquals(THREADS * TOKENS_PER_THREAD, issued.size());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reseedIntervalMustBePositive() {
+        new TokenGenerator(0);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.innominds.security.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link TokenKey#parse(String)} takes exactly the text {@link TokenKey#toString()} writes, the unpadded base64url of the 16 bytes.
+ */
+public class TokenKeyTest {
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    @Test
+    public void keyRoundTripsThroughItsTextForm() {
+        final Random random = new Random(42);
+        assertRoundTrip(new TokenKey(0, 0));
+        assertRoundTrip(new TokenKey(-1, -1));
+        assertRoundTrip(new TokenKey(0, -1));
+        assertRoundTrip(new TokenKey(-1, 0));
+
+        for (int i = 0; i < 10_000; i++) {
+            assertRoundTrip(new TokenKey(random.nextLong(), random.nextLong()));
+        }
+    }
+
+    @Test
+    public void wrongLengthIsRejected() {
+        final String text = new TokenKey(-1, -1).toString();
+
+        assertNull(TokenKey.parse(null));
+        assertNull(TokenKey.parse(""));
+        assertNull(TokenKey.parse(text.substring(1)));
+        assertNull(TokenKey.parse(text + "A"));
+        assertNull(TokenKey.parse(text + "=="));// padded
+    }
+
+    @Test
+    public void charactersOutsideTheAlphabetAreRejected() {
+        final String text = new TokenKey(0x0123456789abcdefL, 0xfedcba9876543210L).toString();
+
+        for (int i = 0; i < text.length(); i++) {
+            for (char c = 0; c < 0x3000; c++) {
+                if (ALPHABET.indexOf(c) < 0) {
+                    final String changed = text.substring(0, i) + c + text.substring(i + 1);
+                    assertNull(i + ": " + (int) c, TokenKey.parse(changed));
+                }
+            }
+        }
+        assertNull(TokenKey.parse(text.substring(0, 5) + '\uFF21' + text.substring(6)));// fullwidth A
+    }
+
+    @Test
+    public void lastCharacterWithPaddingBitsSetIsRejected() {
+        final String text = new TokenKey(-1, -1).toString();
+        final String prefix = text.substring(0, TokenKey.LENGTH - 1);
+
+        for (int value = 0; value < ALPHABET.length(); value++) {
+            final TokenKey parsed = TokenKey.parse(prefix + ALPHABET.charAt(value));
+            if ((value & 0xF) == 0) {
+                assertEquals(value >>> 4, parsed.getLow() & 3);
+            } else {
+                assertNull(ALPHABET.charAt(value) + " sets padding bits", parsed);
+            }
+        }
+    }
+
+    private static void assertRoundTrip(TokenKey key) {
+        final byte[] bytes = new byte[TokenKey.BYTES];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (key.getHigh() >>> 56 - 8 * i);
+            bytes[8 + i] = (byte) (key.getLow() >>> 56 - 8 * i);
+        }
+        final String text = key.toString();
+
+        assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), text);
+        assertEquals(text, key, TokenKey.parse(text));
+        assertEquals(key, TokenKey.fromBytes(Base64.getUrlDecoder().decode(text)));
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.innominds.security.token.offheap;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that removing from the middle of a probe run of an {@link AddressTable} leaves every other entry reachable. the tests store the address as key.
+ */
+public class AddressTableTest {
+
+    private static final AddressTable.Matcher<Long> MATCHER = (address, key) -> address == key;
+
+    @Test
+    public void removalInTheMiddleOfAProbeRunKeepsTheRestReachable() {
+        final AddressTable addressTable = new AddressTable(16);
+        put(addressTable, 3, 100);
+        put(addressTable, 19, 101);// home slot 3 as well
+        put(addressTable, 35, 102);
+        put(addressTable, 4, 103);// home slot 4, probed past the run
+
+        addressTable.remove(19, 101);
+
+        assertEquals(-1, addressTable.get(19, 101L, MATCHER));
+        assertEquals(100, addressTable.get(3, 100L, MATCHER));
+        assertEquals(102, addressTable.get(35, 102L, MATCHER));
+        assertEquals(103, addressTable.get(4, 103L, MATCHER));
+        assertEquals(3, addressTable.size());
+    }
+
+    @Test
+    public void removalInAProbeRunWrappingTheEndKeepsTheRestReachable() {
+        final AddressTable addressTable = new AddressTable(16);
+        put(addressTable, 15, 100);
+        put(addressTable, 31, 101);// wraps to slot 0
+        put(addressTable, 47, 102);// slot 1
+        put(addressTable, 16, 103);// home slot 0, slot 2
+
+        addressTable.remove(15, 100);
+
+        assertEquals(-1, addressTable.get(15, 100L, MATCHER));
+        assertEquals(101, addressTable.get(31, 101L, MATCHER));
+        assertEquals(102, addressTable.get(47, 102L, MATCHER));
+        assertEquals(103, addressTable.get(16, 103L, MATCHER));
+    }
+
+    @Test
+    public void answersAsAMapUnderCollisionsAndResizes() {
+        final Random random = new Random(42);
+        final AddressTable addressTable = new AddressTable(16);
+        final Map<Long, Long> expected = new HashMap<Long, Long>();
+
+        for (int i = 0; i < 20_000; i++) {
+            final long address = random.nextInt(2_000);
+            final long hash = 1 + address % 97;// many keys per hash
+
+            if (expected.containsKey(address)) {
+                addressTable.remove(expected.remove(address), address);
+            } else {
+                addressTable.put(hash, address);
+                expected.put(address, hash);
+            }
+
+            if (i % 100 == 0) {
+                for (long key = 0; key < 2_000; key++) {
+                    assertEquals(expected.containsKey(key) ? key : -1, addressTable.get(1 + key % 97, key, MATCHER));
+                }
+            }
+        }
+        assertEquals(expected.size(), addressTable.size());
+    }
+
+    private static void put(AddressTable addressTable, long hash, long address) {
+        addressTable.put(hash, address);
+        assertEquals(address, addressTable.get(hash, address, MATCHER));
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.innominds.security.token.offheap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import com.innominds.persistence.constants.ApplicationRole;
+import com.innominds.persistence.vo.Authority;
+import com.innominds.persistence.vo.User;
+import com.innominds.security.token.TokenGenerator;
+import com.innominds.security.token.TokenKey;
+
+/**
+ * Checks sessions of the {@link OffHeapTokenStore} through put, touch, revoke and expiry, and that freed blocks and user lists are reused intact.
+ * expiry runs on one second ticks, those tests wait for two of them.
+ */
+public class OffHeapTokenStoreTest {
+
+    private final OffHeapTokenStore tokenStore = new OffHeapTokenStore(1, 4);
+
+    private final TokenGenerator tokenGenerator = new TokenGenerator(1_000);
+
+    @After
+    public void close() {
+        tokenStore.close();
+    }
+
+    @Test
+    public void putSessionIsReadUntilRevoked() {
+        final TokenKey token = tokenGenerator.nextKey();
+        tokenStore.put(token, securityContext("tvajjala"), 30, TimeUnit.MINUTES);
+
+        assertEquals("tvajjala", tokenStore.get(token).getAuthentication().getName());
+        assertTrue(tokenStore.contains(token));
+        assertEquals(Arrays.asList(token), tokenStore.getTokens("tvajjala"));
+
+        tokenStore.revoke(token);
+        assertNull(tokenStore.get(token));
+        assertFalse(tokenStore.contains(token));
+        assertTrue(tokenStore.getTokens("tvajjala").isEmpty());
+        assertEquals(0, metric("token.offheap.entries"));
+        assertEquals(0, metric("token.offheap.used.bytes"));
+    }
+
+    @Test
+    public void putOverAnExistingTokenReplacesItsSession() {
+        final TokenKey token = tokenGenerator.nextKey();
+        tokenStore.put(token, securityContext("tvajjala"), 30, TimeUnit.MINUTES);
+        tokenStore.put(token, securityContext("tvajjalb"), 30, TimeUnit.MINUTES);
+
+        assertEquals("tvajjalb", tokenStore.get(token).getAuthentication().getName());
+        assertTrue(tokenStore.getTokens("tvajjala").isEmpty());
+        assertEquals(Arrays.asList(token), tokenStore.getTokens("tvajjalb"));
+        assertEquals(1, metric("token.offheap.entries"));
+    }
+
+    @Test
+    public void revokeByUsernameRemovesAllSessionsOfTheUserOnly() {
+        final TokenKey[] tokens = new TokenKey[4];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = tokenGenerator.nextKey();
+            tokenStore.put(tokens[i], securityContext("tvajjala"), 30, TimeUnit.MINUTES);
+        }
+        final TokenKey other = tokenGenerator.nextKey();
+        tokenStore.put(other, securityContext("tvajjalb"), 30, TimeUnit.MINUTES);
+
+        tokenStore.revoke(tokens[1]);// from the middle of the list of the user
+        assertEquals(new HashSet<TokenKey>(Arrays.asList(tokens[0], tokens[2], tokens[3])), new HashSet<TokenKey>(tokenStore.getTokens("tvajjala")));
+
+        assertEquals(3, tokenStore.revokeByUsername("tvajjala"));
+        for (final TokenKey token : tokens) {
+            assertNull(tokenStore.get(token));
+        }
+        assertTrue(tokenStore.getTokens("tvajjala").isEmpty());
+        assertEquals("tvajjalb", tokenStore.get(other).getAuthentication().getName());
+        assertEquals(1, metric("token.offheap.users"));
+    }
+
+    @Test
+    public void longUsernameIsStoredWhole() {
+        final char[] chars = new char[40_000];
+        Arrays.fill(chars, 'u');
+        final String username = new String(chars);
+        final TokenKey token = tokenGenerator.nextKey();
+
+        tokenStore.put(token, securityContext(username), 30, TimeUnit.MINUTES);
+
+        assertEquals(username, tokenStore.get(token).getAuthentication().getName());
+        assertEquals(Arrays.asList(token), tokenStore.getTokens(username));
+        assertEquals(1, tokenStore.revokeByUsername(username));
+        assertEquals(0, metric("token.offheap.users"));
+    }
+
+    @Test
+    public void sessionExpiresAfterItsTtl() throws InterruptedException {
+        final TokenKey expiring = tokenGenerator.nextKey();
+        final TokenKey lasting = tokenGenerator.nextKey();
+        tokenStore.put(expiring, securityContext("tvajjala"), 1, TimeUnit.SECONDS);
+        tokenStore.put(lasting, securityContext("tvajjala"), 30, TimeUnit.MINUTES);
+
+        Thread.sleep(2_100);
+        tokenStore.expireDue();
+
+        assertNull(tokenStore.get(expiring));
+        assertEquals(Arrays.asList(lasting), tokenStore.getTokens("tvajjala"));
+        assertEquals(1, metric("token.offheap.expirations"));
+    }
+
+    @Test
+    public void touchPushesTheExpiryBack() throws InterruptedException {
+        final TokenKey touched = tokenGenerator.nextKey();
+        final TokenKey unlimited = tokenGenerator.nextKey();
+        tokenStore.put(touched, securityContext("tvajjala"), 1, TimeUnit.SECONDS);
+        tokenStore.put(unlimited, securityContext("tvajjala"), 1, TimeUnit.SECONDS);
+
+        assertTrue(tokenStore.touch(touched, 30, TimeUnit.MINUTES));
+        assertTrue(tokenStore.touch(unlimited, 0, TimeUnit.MINUTES));// the store never expires it
+        Thread.sleep(2_100);
+        tokenStore.expireDue();
+
+        assertEquals("tvajjala", tokenStore.get(touched).getAuthentication().getName());
+        assertEquals("tvajjala", tokenStore.get(unlimited).getAuthentication().getName());
+        assertEquals(0, metric("token.offheap.expirations"));
+        assertFalse(tokenStore.touch(tokenGenerator.nextKey(), 30, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void reusedBlockIsNotExpiredByTheEntryOfItsFormerSession() throws InterruptedException {
+        final TokenKey revoked = tokenGenerator.nextKey();
+        tokenStore.put(revoked, securityContext("tvajjala"), 1, TimeUnit.SECONDS);
+        tokenStore.revoke(revoked);
+
+        final TokenKey reusing = tokenGenerator.nextKey();
+        tokenStore.put(reusing, securityContext("tvajjala"), 30, TimeUnit.MINUTES);// same block size, the free list hands out the freed block
+
+        Thread.sleep(2_100);
+        tokenStore.expireDue();
+
+        assertEquals("tvajjala", tokenStore.get(reusing).getAuthentication().getName());
+        assertEquals(0, metric("token.offheap.expirations"));
+    }
+
+    private long metric(String name) {
+        for (final Metric<?> metric : tokenStore.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static SecurityContext securityContext(String username) {
+        final User user = new User();
+        user.setId(42L);
+        user.setUsername(username);
+        user.getAuthorities().add(new Authority(ApplicationRole.ROLE_USER));
+
+        final SecurityContext securityContext = new SecurityContextImpl();
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        return securityContext;
+    }
+
+}
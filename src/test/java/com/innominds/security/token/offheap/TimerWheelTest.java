@@ -0,0 +1,128 @@
+package com.innominds.security.token.offheap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Checks that the {@link TimerWheel} expires records when they come due, on every level, and follows the expiry and sequence the records report.
+ */
+public class TimerWheelTest {
+
+    private static final long NOW = 1_500_000_000_000L;
+
+    private final FakeRecords records = new FakeRecords();
+
+    private final TimerWheel timerWheel = new TimerWheel(NOW);
+
+    @Test
+    public void recordExpiresWhenItComesDue() {
+        schedule(1, 1, NOW + 5_000);
+
+        assertEquals(0, timerWheel.advance(NOW + 4_999, records));
+        assertEquals(1, timerWheel.advance(NOW + 5_000, records));
+        assertFalse(records.contains(1));
+    }
+
+    @Test
+    public void recordsExpireOnEveryLevel() {
+        final long[] seconds = { 10, 64, 100, 4_096, 5_000, 262_144, 300_000, 5_000_000, 20_000_000 };// NOW is on a 64 second boundary
+        for (int i = 0; i < seconds.length; i++) {
+            schedule(i, 1, NOW + seconds[i] * 1000 - 300);
+        }
+
+        for (long second = 1; second <= seconds[seconds.length - 1]; second++) {
+            timerWheel.advance(NOW + second * 1000, records);
+
+            for (int i = 0; i < seconds.length; i++) {
+                if (second < seconds[i] != records.contains(i)) {
+                    fail("record due at " + seconds[i] + "s " + (records.contains(i) ? "still there" : "expired") + " at " + second + "s");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void touchedRecordIsRescheduled() {
+        schedule(1, 1, NOW + 5_000);
+        records.touch(1, NOW + 100_000);
+
+        assertEquals(0, timerWheel.advance(NOW + 99_000, records));
+        assertEquals(1, timerWheel.advance(NOW + 100_000, records));
+    }
+
+    @Test
+    public void entryOfAFreedAndReusedAddressIsDropped() {
+        schedule(1, 1, NOW + 5_000);
+        records.free(1);
+        schedule(1, 2, NOW + 60_000);
+
+        assertEquals(0, timerWheel.advance(NOW + 10_000, records));
+        assertTrue(records.contains(1));
+        assertEquals(1, timerWheel.advance(NOW + 60_000, records));
+    }
+
+    @Test
+    public void recordWithoutExpiryIsNotScheduled() {
+        schedule(1, 1, Long.MAX_VALUE);
+        schedule(2, 1, NOW + 5_000);
+        records.touch(2, Long.MAX_VALUE);
+
+        timerWheel.advance(NOW + 10_000, records);
+        assertEquals("only the entry of the touched record", 1, records.lookups);
+
+        timerWheel.advance(NOW + 3_600_000, records);
+        assertEquals("record without expiry rescheduled", 1, records.lookups);
+        assertTrue(records.contains(1) && records.contains(2));
+    }
+
+    private void schedule(long address, long sequence, long expiresAt) {
+        records.put(address, sequence, expiresAt);
+        timerWheel.schedule(address, sequence, expiresAt);
+    }
+
+    /**
+     * address against {sequence, expiresAt}
+     */
+    private static final class FakeRecords implements TimerWheel.Records {
+
+        private final Map<Long, long[]> records = new HashMap<Long, long[]>();
+
+        private int lookups;
+
+        void put(long address, long sequence, long expiresAt) {
+            records.put(address, new long[] { sequence, expiresAt });
+        }
+
+        void touch(long address, long expiresAt) {
+            records.get(address)[1] = expiresAt;
+        }
+
+        void free(long address) {
+            records.remove(address);
+        }
+
+        boolean contains(long address) {
+            return records.containsKey(address);
+        }
+
+        @Override
+        public long expiresAt(long address, long sequence) {
+            lookups++;
+            final long[] record = records.get(address);
+            return record == null || record[0] != sequence ? -1 : record[1];
+        }
+
+        @Override
+        public void expire(long address) {
+            records.remove(address);
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.innominds.web.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.WebIntegrationTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.innominds.BootApplication;
+import com.innominds.persistence.domain.AuthorityEntity;
+import com.innominds.persistence.domain.EndpointEntity;
+import com.innominds.persistence.repository.AuthorityRepository;
+import com.innominds.persistence.repository.EndpointsRepository;
+import com.innominds.security.acl.AclRule;
+import com.innominds.web.service.AccessControlService;
+
+/**
+ * Boots the application on the dev database and grows the endpoint table. at every size counts the SQL statements hibernate prepares for loading the
+ * access control list, for the roles of one url and for all the roles, none of them may grow with the table. the grown endpoints are removed again.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(BootApplication.class)
+@WebIntegrationTest({ "server.port=0", "server.servletPath=/api/*", "spring.devtools.restart.enabled=false" })
+@ActiveProfiles("dev")
+public class AccessControlServiceImplTest {
+
+    @Autowired
+    private AccessControlService accessControlService;
+
+    @Autowired
+    private EndpointsRepository endpointsRepository;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    private List<EndpointEntity> seeded;
+
+    @Before
+    public void enableStatistics() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        seeded = endpointsRepository.findAll();
+    }
+
+    /**
+     * the authorities are cascaded to, they are unlinked before the endpoints are deleted
+     */
+    @After
+    public void removeGrownEndpoints() {
+        transactionTemplate.execute(status -> {
+            final List<EndpointEntity> grown = endpointsRepository.findAll();
+            grown.removeAll(seeded);
+            for (final EndpointEntity endpointEntity : grown) {
+                endpointEntity.getAuthorities().clear();
+            }
+            endpointsRepository.delete(grown);
+            return grown.size();
+        });
+    }
+
+    @Test
+    public void statementsDoNotGrowWithTheEndpointTable() {
+        for (final int size : new int[] { 50, 500 }) {
+            final int stored = transactionTemplate.execute(status -> grow(size));
+
+            assertEquals(stored + " endpoints", 1, statements(accessControlService::getAclRules));
+            assertTrue(stored + " endpoints", statements(() -> accessControlService.getAllRolesByURI("/api/svc1/items")) <= 2);
+            assertEquals(stored + " endpoints", 1, statements(accessControlService::getAllRoles));
+            assertSameRules(transactionTemplate.execute(status -> lazyRules()), accessControlService.getAclRules());
+        }
+    }
+
+    /**
+     * adds endpoints up to the size, in a transaction: the authorities are cascaded to and must be managed
+     */
+    private int grow(int size) {
+        final List<AuthorityEntity> authorities = authorityRepository.findAll();
+        final List<EndpointEntity> added = new ArrayList<EndpointEntity>();
+
+        for (int stored = (int) endpointsRepository.count(); stored < size; stored++) {
+            final EndpointEntity endpointEntity = new EndpointEntity();
+            endpointEntity.setEndpoint("/api/svc" + stored + "/**");
+            endpointEntity.setRegex(true);
+            endpointEntity.getAuthorities().addAll(authorities.subList(0, 1 + stored % authorities.size()));
+            added.add(endpointEntity);
+        }
+        endpointsRepository.save(added);
+        return (int) endpointsRepository.count();
+    }
+
+    private long statements(Supplier<?> work) {
+        statistics.clear();
+        work.get();
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * the loading before the single statement: the entities, then their lazy authorities one endpoint after the other
+     */
+    private List<AclRule> lazyRules() {
+        final List<AclRule> rules = new ArrayList<AclRule>();
+
+        for (final EndpointEntity endpointEntity : endpointsRepository.findAll(new Sort("id"))) {
+            final List<String> names = new ArrayList<String>();
+            for (final AuthorityEntity authorityEntity : endpointEntity.getAuthorities()) {
+                names.add(authorityEntity.getAuthority());
+            }
+            rules.add(new AclRule(endpointEntity.getMethod(), endpointEntity.getEndpoint(), Boolean.TRUE.equals(endpointEntity.getRegex()), names));
+        }
+        return rules;
+    }
+
+    private static void assertSameRules(List<AclRule> expected, List<AclRule> rules) {
+        assertEquals(expected.size(), rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            final AclRule rule = rules.get(i);
+            final AclRule other = expected.get(i);
+            assertEquals(other.getMethod(), rule.getMethod());
+            assertEquals(other.getEndpoint(), rule.getEndpoint());
+            assertEquals(other.isRegex(), rule.isRegex());
+            assertEquals(new HashSet<String>(other.getAuthorities()), new HashSet<String>(rule.getAuthorities()));
+        }
+    }
+
+}